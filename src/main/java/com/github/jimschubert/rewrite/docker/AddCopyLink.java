@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.DockerfileSyntax;
+import com.github.jimschubert.rewrite.docker.internal.PackageManager;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Quoting;
+import com.github.jimschubert.rewrite.docker.tree.Space;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.marker.Markers;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adds {@code --link} to {@code COPY} and {@code ADD} instructions, so BuildKit copies files into an independent layer
+ * which can be reused when earlier layers change and kept when the image is rebased.
+ * <p>
+ * A linked copy doesn't see the filesystem it is copied onto, so instructions are only changed when that can't
+ * matter:
+ * <ul>
+ *     <li>the destination is a known path, not below a directory which is commonly a symlink in base images (such as
+ *     {@code /var/run} or {@code /lib}) or a symlink created by an earlier {@code RUN ln -s} in the stage;</li>
+ *     <li>{@code --chown} is absent or numeric, since user and group names can't be looked up in an empty layer.</li>
+ * </ul>
+ * {@code --link} needs Dockerfile syntax 1.4 or newer, so a {@code # syntax=docker/dockerfile:1} directive is added
+ * when there is none and replaces an older {@code docker/dockerfile} version, keeping a {@code -labs} channel. Files
+ * using another frontend, or the Windows escape character, are left unchanged, as are files pinning an older version
+ * by digest, which are marked with a warning.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class AddCopyLink extends Recipe {
+    private static final Pattern SYMLINK = Pattern.compile("(?:^|[;&|]\\s*)ln\\s+((?:-\\S+\\s+)*)(.+?)\\s*(?=$|[;&|])");
+    private static final Pattern NUMERIC_OWNER = Pattern.compile("\\d+(?::\\d+)?");
+    private static final List<String> SYMLINKED_DIRECTORIES = List.of(
+            "/bin", "/sbin", "/lib", "/lib32", "/lib64", "/libx32", "/var/run", "/var/lock");
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Add `--link` to COPY and ADD instructions";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Adds `--link` to `COPY` and `ADD` instructions whose result doesn't depend on earlier layers, so " +
+               "BuildKit can reuse the copied layer when earlier layers change. Instructions copying below a " +
+               "symlinked directory, or with a `--chown` by name, are left unchanged. A " +
+               "`# syntax=docker/dockerfile:1` directive is added when the Dockerfile doesn't already use syntax " +
+               "1.4 or newer.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                Boolean syntax = DockerfileSyntax.supports(dockerfile, 4);
+                if (syntax == null) {
+                    return dockerfile;
+                }
+
+                Docker.Document d = super.visitDocument(dockerfile, ctx);
+                if (d != dockerfile && !syntax) {
+                    d = DockerfileSyntax.requireLatest(dockerfile, d, ctx);
+                }
+                return d;
+            }
+
+            @Override
+            public Docker.Stage visitStage(Docker.Stage stage, ExecutionContext ctx) {
+                Docker.Stage s = super.visitStage(stage, ctx);
+                String[] workdir = {"/"};
+                List<String> symlinks = new ArrayList<>();
+                return s.withChildren(ListUtils.map(s.getChildren(), child -> {
+                    if (child instanceof Docker.Workdir) {
+                        Docker.Literal path = ((Docker.Workdir) child).getPath();
+                        workdir[0] = path == null || path.getText() == null ? workdir[0] : resolve(workdir[0], path.getText());
+                    } else if (child instanceof Docker.Run) {
+                        symlinks.addAll(symlinks((Docker.Run) child, workdir[0]));
+                    } else if (child instanceof Docker.Copy) {
+                        Docker.Copy copy = (Docker.Copy) child;
+                        if (isSafe(copy.getOptions(), copy.getSources(), copy.getDestination(), workdir[0], symlinks)) {
+                            return copy.withOptions(withLink(copy.getOptions()));
+                        }
+                    } else if (child instanceof Docker.Add) {
+                        Docker.Add add = (Docker.Add) child;
+                        if (isSafe(add.getOptions(), add.getSources(), add.getDestination(), workdir[0], symlinks)) {
+                            return add.withOptions(withLink(add.getOptions()));
+                        }
+                    }
+                    return child;
+                }));
+            }
+        };
+    }
+
+    private static boolean isSafe(@Nullable List<Docker.Option> options, @Nullable List<Docker.Literal> sources,
+                                  Docker.@Nullable Literal destination, String workdir, List<String> symlinks) {
+        if (destination == null || destination.getText() == null || destination.getText().contains("$") ||
+            sources == null || sources.isEmpty() || sources.get(0).getText() == null ||
+            sources.get(0).getText().startsWith("<<")) {
+            return false;
+        }
+        if (options != null) {
+            for (Docker.Option option : options) {
+                Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+                if (keyArgs == null) {
+                    continue;
+                }
+                if ("--link".equalsIgnoreCase(keyArgs.key())) {
+                    return false;
+                } else if ("--chown".equalsIgnoreCase(keyArgs.key()) &&
+                           (keyArgs.value() == null || !NUMERIC_OWNER.matcher(keyArgs.value()).matches())) {
+                    return false;
+                }
+            }
+        }
+
+        String target = resolve(workdir, destination.getText());
+        for (String directory : SYMLINKED_DIRECTORIES) {
+            if (isWithin(target, directory)) {
+                return false;
+            }
+        }
+        for (String symlink : symlinks) {
+            if (symlink.contains("$") || isWithin(target, symlink)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The link names created by {@code ln -s} in a {@code RUN}, resolved against the working directory.
+     */
+    private static List<String> symlinks(Docker.Run run, String workdir) {
+        List<String> links = new ArrayList<>();
+        Matcher matcher = SYMLINK.matcher(PackageManager.commandText(run));
+        while (matcher.find()) {
+            String flags = matcher.group(1);
+            if (!flags.matches("(?s).*(?:-[a-zA-Z]*s|--symbolic).*")) {
+                continue;
+            }
+            String[] operands = matcher.group(2).trim().split("\\s+");
+            String link = operands[operands.length - 1].replaceAll("^[\"']|[\"']$", "");
+            if (operands.length == 1) {
+                // the link is named after its target, in the working directory
+                link = link.substring(link.lastIndexOf('/', link.length() - 2) + 1);
+            }
+            links.add(resolve(workdir, link));
+        }
+        return links;
+    }
+
+    private static List<Docker.Option> withLink(@Nullable List<Docker.Option> options) {
+        // the new option goes first, so existing options keep their line continuations
+        List<Docker.Option> result = new ArrayList<>();
+        result.add(new Docker.Option(Tree.randomId(), Space.EMPTY,
+                new Docker.KeyArgs(Space.build(" "), Docker.Literal.build("--link"), Docker.Literal.build(null), false, Quoting.UNQUOTED),
+                Markers.EMPTY, Space.EMPTY));
+        if (options != null) {
+            result.addAll(options);
+        }
+        return result;
+    }
+
+    static String resolve(String workdir, String path) {
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : ((path.startsWith("/") ? "" : workdir + "/") + path).split("/")) {
+            if ("..".equals(segment)) {
+                segments.pollLast();
+            } else if (!segment.isEmpty() && !".".equals(segment)) {
+                segments.addLast(segment);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    private static boolean isWithin(String path, String directory) {
+        return path.equals(directory) || path.startsWith(directory.endsWith("/") ? directory : directory + "/");
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.PackageManager;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.NlsRewrite;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
+
+import java.util.*;
+
+/**
+ * Adds BuildKit cache mounts to {@code RUN} instructions which download packages or dependencies, so repeated builds
+ * reuse earlier downloads even when the layer itself is rebuilt.
+ * <p>
+ * Cache directories are those used by the official images when running as root. BuildKit creates cache mounts
+ * owned by root and only writable by it, so {@code RUN}s after a numeric {@code USER} other than root get mounts
+ * outside the home directory owned by that uid and gid, and {@code RUN}s after a {@code USER} given by name, whose
+ * ids can't be known, get none. Targets which are already mounted, or lie within a mounted directory, are left
+ * alone.
+ * <p>
+ * Debian and Ubuntu images delete downloaded packages after each install through
+ * {@code /etc/apt/apt.conf.d/docker-clean}, which this recipe leaves in place, so their apt cache mounts only keep
+ * package lists unless the Dockerfile removes that file.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class AddRunCacheMount extends Recipe {
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Add cache mounts to package manager RUN instructions";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Adds `--mount=type=cache,target=...` to `RUN` instructions invoking apt, apk, npm, yarn, pnpm, pip, " +
+               "Maven, Gradle, Go or Cargo, so their download caches survive between builds. apt caches are mounted " +
+               "with `sharing=locked`. Cache directories which are already mounted are not mounted again. After a " +
+               "numeric `USER` other than root, caches outside the home directory are mounted with its `uid` and " +
+               "`gid`; after a `USER` given by name, no caches are mounted. Debian and Ubuntu images only keep " +
+               "downloaded packages in the apt cache once the Dockerfile removes `/etc/apt/apt.conf.d/docker-clean`.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Stage visitStage(Docker.Stage stage, ExecutionContext ctx) {
+                Docker.Stage s = super.visitStage(stage, ctx);
+                String[] owner = {""};
+                return s.withChildren(ListUtils.map(s.getChildren(), child -> {
+                    if (child instanceof Docker.From) {
+                        owner[0] = "";
+                    } else if (child instanceof Docker.User) {
+                        owner[0] = owner((Docker.User) child);
+                    } else if (child instanceof Docker.Run && owner[0] != null) {
+                        return addCacheMounts((Docker.Run) child, owner[0]);
+                    }
+                    return child;
+                }));
+            }
+        };
+    }
+
+    /**
+     * @param owner Empty for root, otherwise the {@code uid} and {@code gid} fields to add to each mount.
+     */
+    private static Docker.Run addCacheMounts(Docker.Run run, String owner) {
+        String command = PackageManager.commandText(run);
+        if (command.isEmpty() || command.startsWith("[")) {
+            // exec form runs without a shell, and rarely runs a package manager
+            return run;
+        }
+
+        Set<String> mounted = mountedTargets(run.getOptions());
+        List<Docker.Option> added = new ArrayList<>();
+        for (PackageManager manager : PackageManager.values()) {
+            if (!manager.isInvokedBy(command)) {
+                continue;
+            }
+            List<String> caches = manager.getCaches();
+            List<String> mounts = manager.cacheMounts();
+            for (int i = 0; i < caches.size(); i++) {
+                String cache = caches.get(i);
+                if (!isMounted(mounted, cache) && (owner.isEmpty() || !cache.startsWith("/root/"))) {
+                    mounted.add(cache);
+                    added.add(Docker.Option.build("--mount", mounts.get(i) + owner));
+                }
+            }
+        }
+        if (added.isEmpty()) {
+            return run;
+        }
+
+        // new options go first, so existing options keep their line continuations
+        List<Docker.Option> options = new ArrayList<>(added);
+        if (run.getOptions() != null) {
+            options.addAll(run.getOptions());
+        }
+        return run.withOptions(options);
+    }
+
+    private static boolean isMounted(Set<String> mounted, String cache) {
+        for (String target : mounted) {
+            if (cache.equals(target) || cache.startsWith(target.endsWith("/") ? target : target + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> mountedTargets(List<Docker.Option> options) {
+        Set<String> targets = new HashSet<>();
+        if (options == null) {
+            return targets;
+        }
+        for (Docker.Option option : options) {
+            Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+            if (keyArgs == null || !"--mount".equalsIgnoreCase(keyArgs.key()) || keyArgs.value() == null) {
+                continue;
+            }
+            for (String field : keyArgs.value().split(",")) {
+                int eq = field.indexOf('=');
+                String key = eq < 0 ? field.trim() : field.substring(0, eq).trim();
+                if (eq > 0 && ("target".equals(key) || "dst".equals(key) || "destination".equals(key))) {
+                    String target = field.substring(eq + 1).trim();
+                    targets.add(target.length() > 1 && target.endsWith("/") ? target.substring(0, target.length() - 1) : target);
+                }
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * @return Empty for root, the mount fields owning a cache by a numeric user and group, or null when the user is
+     * given by name.
+     */
+    private static @Nullable String owner(Docker.User user) {
+        String name = user.getUsername() == null ? null : user.getUsername().getText();
+        String group = user.getGroup() == null ? null : user.getGroup().getText();
+        if (name == null || name.isEmpty() || "root".equals(name) || "0".equals(name)) {
+            return "";
+        } else if (!name.matches("\\d+") || (group != null && !group.isEmpty() && !group.matches("\\d+"))) {
+            return null;
+        }
+        return ",uid=" + name + (group == null || group.isEmpty() ? "" : ",gid=" + group);
+    }
+}
@@ -14,7 +14,9 @@
  */
 package com.github.jimschubert.rewrite.docker;
 
+import com.github.jimschubert.rewrite.docker.internal.DockerfileSniffer;
 import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.TokenIndex;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +24,7 @@ import lombok.Value;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 import org.openrewrite.*;
+import org.openrewrite.marker.Markers;
 import org.openrewrite.quark.Quark;
 import org.openrewrite.text.PlainText;
 import org.openrewrite.text.PlainTextVisitor;
@@ -61,16 +64,26 @@ public class AsDockerfile extends Recipe {
 
     @Override
     public TreeVisitor<?, ExecutionContext> getVisitor() {
+        // the parser holds no per-file state, so one instance serves every file this visitor sees
+        DockerParser parser = DockerParser.builder().build();
         PlainTextVisitor<ExecutionContext> visitor = new PlainTextVisitor<>() {
             @Override
             public @Nullable Tree visit(@Nullable Tree tree, @NonNull ExecutionContext executionContext) {
-                Optional<SourceFile> maybeDockerfile = Optional.empty();
+                String source = null;
                 if (tree instanceof PlainText) {
                     PlainText plainText = (PlainText) tree;
-                    maybeDockerfile = DockerParser.builder().build().parse(plainText.print(getCursor())).findFirst();
+                    // snippets are printed inline with the text, so only a snippet-free document can skip printing
+                    source = plainText.getSnippets() == null || plainText.getSnippets().isEmpty() ?
+                            plainText.getText() :
+                            plainText.print(getCursor());
                 } else if (tree instanceof Quark) {
                     Quark quark = (Quark) tree;
-                    maybeDockerfile = DockerParser.builder().build().parse(quark.print(getCursor())).findFirst();
+                    source = quark.print(getCursor());
+                }
+
+                Optional<SourceFile> maybeDockerfile = Optional.empty();
+                if (source != null && DockerfileSniffer.looksLikeDockerfile(source)) {
+                    maybeDockerfile = parser.parse(source).findFirst();
                 }
 
                 // this instanceof is required because rewrite may expose an error as a
@@ -78,6 +91,11 @@ public class AsDockerfile extends Recipe {
                 if (maybeDockerfile.isPresent() && maybeDockerfile.get() instanceof Docker.Document) {
                     SourceFile input = (SourceFile)tree;
                     Docker.Document dockerfile = (Docker.Document) maybeDockerfile.get();
+
+                    // keep the parser's token index, the stages it describes are carried over as-is
+                    Markers markers = dockerfile.getMarkers().findFirst(TokenIndex.class)
+                            .map(index -> input.getMarkers().addIfAbsent(index))
+                            .orElse(input.getMarkers());
                     return dockerfile
                             .withId(input.getId())
                             .withCharset(input.getCharset())
@@ -85,7 +103,7 @@ public class AsDockerfile extends Recipe {
                             .withFileAttributes(input.getFileAttributes())
                             .withChecksum(input.getChecksum())
                             .withCharsetBomMarked(input.isCharsetBomMarked())
-                            .withMarkers(input.getMarkers());
+                            .withMarkers(markers);
                 }
 
                 return super.visit(tree, executionContext);
@@ -16,6 +16,7 @@ package com.github.jimschubert.rewrite.docker;
 
 
 import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Dockerignore;
 import org.intellij.lang.annotations.Language;
 import org.jspecify.annotations.Nullable;
 import org.openrewrite.test.SourceSpec;
@@ -51,4 +52,29 @@ public class Assertions {
         spec.accept(doc);
         return doc;
     }
+
+    public static SourceSpecs dockerignore(@Nullable String before) {
+        return Assertions.dockerignore(before, s -> {
+        });
+    }
+
+    public static SourceSpecs dockerignore(@Nullable String before, Consumer<SourceSpec<Dockerignore.Document>> spec) {
+        SourceSpec<Dockerignore.Document> doc = new SourceSpec<>(Dockerignore.Document.class, null, DockerignoreParser.builder(), before, null);
+        doc.path(".dockerignore");
+        spec.accept(doc);
+        return doc;
+    }
+
+    public static SourceSpecs dockerignore(@Nullable String before, @Nullable String after) {
+        return dockerignore(before, after, s -> {
+        });
+    }
+
+    public static SourceSpecs dockerignore(@Nullable String before, @Nullable String after,
+                                           Consumer<SourceSpec<Dockerignore.Document>> spec) {
+        SourceSpec<Dockerignore.Document> doc = new SourceSpec<>(Dockerignore.Document.class, null, DockerignoreParser.builder(), before, s -> after);
+        doc.path(".dockerignore");
+        spec.accept(doc);
+        return doc;
+    }
 }
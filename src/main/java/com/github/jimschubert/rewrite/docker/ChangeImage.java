@@ -75,7 +75,7 @@ public class ChangeImage extends Recipe {
 
     @Override
     public TreeVisitor<?, ExecutionContext> getVisitor() {
-        return new DockerIsoVisitor<>() {
+        DockerIsoVisitor<ExecutionContext> visitor = new DockerIsoVisitor<>() {
             @Override
             public Docker.From visitFrom(Docker.From from, ExecutionContext executionContext) {
                 if (matchImage == null || newImage == null) {
@@ -129,5 +129,7 @@ public class ChangeImage extends Recipe {
                 return from;
             }
         };
+
+        return DockerPreconditions.checkMayMatch(matchImage, visitor);
     }
 }
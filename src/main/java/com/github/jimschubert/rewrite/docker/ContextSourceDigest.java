@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.ContextSnapshot;
+import com.github.jimschubert.rewrite.docker.internal.DockerignoreFileParser;
+import com.github.jimschubert.rewrite.docker.internal.DockerignoreMatcher;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Digests the build context files read by {@code COPY} and {@code ADD}, so that {@link LayerCacheKeys} sees changes to
+ * copied files as BuildKit does.
+ * <p>
+ * The context is listed once, on first use, and file digests are cached, so a resolver can be shared by every
+ * Dockerfile built from the same context.
+ */
+public class ContextSourceDigest implements LayerCacheKeys.SourceDigest {
+    private final Path context;
+    private final DockerignoreMatcher ignore;
+    private volatile @Nullable ContextSnapshot snapshot;
+
+    /**
+     * @param context The build context directory.
+     * @param ignore  The compiled .dockerignore of the context.
+     */
+    public ContextSourceDigest(Path context, DockerignoreMatcher ignore) {
+        this.context = context;
+        this.ignore = ignore;
+    }
+
+    /**
+     * @param root       The directory source paths are relative to.
+     * @param dockerfile The source path of a Dockerfile, whose directory is its build context.
+     * @return The ignore file BuildKit applies to the build: a Dockerfile-specific ignore file (e.g.
+     * {@code app.Dockerfile.dockerignore}) next to the Dockerfile, then {@code .dockerignore} at the root of the
+     * context. Null when there is neither.
+     */
+    public static @Nullable Path dockerignore(Path root, Path dockerfile) {
+        Path context = dockerfile.getParent() == null ? root : root.resolve(dockerfile.getParent());
+        for (Path candidate : Arrays.asList(
+                root.resolve(dockerfile.resolveSibling(dockerfile.getFileName() + ".dockerignore")),
+                context.resolve(".dockerignore"))) {
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param root       The directory source paths are relative to.
+     * @param dockerfile The source path of a Dockerfile, whose directory is its build context.
+     * @return A resolver for the build context of the Dockerfile, applying its ignore file.
+     */
+    public static ContextSourceDigest forDockerfile(Path root, Path dockerfile) throws IOException {
+        Path context = dockerfile.getParent() == null ? root : root.resolve(dockerfile.getParent());
+        Path ignoreFile = dockerignore(root, dockerfile);
+        DockerignoreMatcher ignore = ignoreFile == null ? DockerignoreMatcher.EMPTY : new DockerignoreFileParser()
+                .parse(new String(Files.readAllBytes(ignoreFile), StandardCharsets.UTF_8))
+                .getMatcher();
+        return new ContextSourceDigest(context, ignore);
+    }
+
+    public ContextSnapshot getSnapshot() {
+        ContextSnapshot taken = snapshot;
+        if (taken == null) {
+            synchronized (this) {
+                taken = snapshot;
+                if (taken == null) {
+                    try {
+                        taken = ContextSnapshot.take(context, ignore);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    snapshot = taken;
+                }
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * @param instruction A {@code COPY} or {@code ADD}.
+     * @return The context files the instruction copies, relative to the context, or an empty list when it copies from
+     * another stage or isn't a {@code COPY} or {@code ADD}.
+     */
+    public List<String> files(Docker.Instruction instruction) {
+        List<String> sources = ContextSnapshot.contextSources(instruction);
+        return sources == null || sources.isEmpty() ? Collections.emptyList() : getSnapshot().match(sources);
+    }
+
+    /**
+     * @param instruction A {@code COPY} or {@code ADD}.
+     * @return The SHA-256 digest of each file the instruction copies, keyed by path relative to the context.
+     */
+    public Map<String, String> fileDigests(Docker.Instruction instruction) {
+        Map<String, String> digests = new TreeMap<>();
+        for (String file : files(instruction)) {
+            digests.put(file, getSnapshot().digest(file));
+        }
+        return digests;
+    }
+
+    @Override
+    public @Nullable String digest(Docker.Instruction instruction) {
+        List<String> sources = ContextSnapshot.contextSources(instruction);
+        if (sources == null || sources.isEmpty()) {
+            return null;
+        }
+        return getSnapshot().digest(getSnapshot().match(sources));
+    }
+
+    /**
+     * @param before      The context of the previous version.
+     * @param after       The context of the current version.
+     * @param instruction A {@code COPY} or {@code ADD} of the current version.
+     * @return The files copied by the instruction in either version which were added, removed or changed.
+     */
+    public static List<String> changedFiles(ContextSourceDigest before, ContextSourceDigest after,
+                                            Docker.Instruction instruction) {
+        Map<String, String> previous = before.fileDigests(instruction);
+        Map<String, String> current = after.fileDigests(instruction);
+        Set<String> changed = new TreeSet<>();
+        for (Map.Entry<String, String> file : current.entrySet()) {
+            if (!file.getValue().equals(previous.get(file.getKey()))) {
+                changed.add(file.getKey());
+            }
+        }
+        for (String file : previous.keySet()) {
+            if (!current.containsKey(file)) {
+                changed.add(file);
+            }
+        }
+        return new ArrayList<>(changed);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.DockerignoreMatcher;
+import com.github.jimschubert.rewrite.docker.internal.PackageManager;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Space;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.marker.Markers;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Copies dependency manifests on their own before installing dependencies, so changes to the rest of the sources
+ * don't invalidate the install layer.
+ * <p>
+ * Given {@code COPY . .} followed by {@code RUN}s which only install dependencies (e.g. {@code npm ci},
+ * {@code pip install -r requirements.txt}, {@code go mod download}), the broad {@code COPY} is replaced with a
+ * {@code COPY} of the manifests and moved after the installs. Lock files are copied with a {@code *} suffix, so the
+ * build still works when a project doesn't have one.
+ * <p>
+ * Some projects can't resolve dependencies from their root manifest alone, so the build files next to the Dockerfile
+ * are checked when they're part of the source set: Maven is only handled when a {@code pom.xml} without
+ * {@code <modules>} is found, and Go is skipped when there is a {@code go.work} or {@code go.mod} replaces a module
+ * with a local directory. Cargo needs the crate's sources even to fetch, so it isn't handled.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class CopyDependencyManifestsFirst extends ScanningRecipe<CopyDependencyManifestsFirst.Scanned> {
+    private static final Set<String> BUILD_FILES = Set.of("pom.xml", "go.mod", "go.work");
+    private static final Pattern MODULES = Pattern.compile("<modules>");
+    private static final Pattern LOCAL_REPLACE = Pattern.compile("=>\\s*(?:\\.{1,2}/|/)");
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Copy dependency manifests before installing dependencies";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Where the whole build context is copied right before installing dependencies with npm, yarn, pnpm, " +
+               "pip, Maven, Go, Bundler or Composer, copies just the manifest and lock files before the install and " +
+               "the rest of the sources after it, so source changes reuse the cached dependency layer. Multi-module " +
+               "Maven projects, Maven projects whose `pom.xml` isn't in the source set, and Go workspaces or modules " +
+               "with local replacements are left alone.";
+    }
+
+    public static class Scanned {
+        /**
+         * The text of the build files which decide whether the root manifest is enough, by source path.
+         */
+        final Map<Path, String> buildFiles = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Scanned getInitialValue(ExecutionContext ctx) {
+        return new Scanned();
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getScanner(Scanned acc) {
+        return new TreeVisitor<Tree, ExecutionContext>() {
+            @Override
+            public @Nullable Tree visit(@Nullable Tree tree, ExecutionContext ctx) {
+                if (tree instanceof SourceFile) {
+                    Path path = ((SourceFile) tree).getSourcePath();
+                    if (path.getFileName() != null && BUILD_FILES.contains(path.getFileName().toString())) {
+                        acc.buildFiles.put(path, ((SourceFile) tree).printAll());
+                    }
+                }
+                return tree;
+            }
+        };
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor(Scanned acc) {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Stage visitStage(Docker.Stage stage, ExecutionContext ctx) {
+                Docker.Stage s = super.visitStage(stage, ctx);
+                Docker.Document document = getCursor().firstEnclosing(Docker.Document.class);
+                Path context = document == null || document.getSourcePath().getParent() == null ?
+                        Paths.get("") :
+                        document.getSourcePath().getParent();
+                List<Docker> children = s.getChildren();
+                for (int i = 0; i < children.size(); i++) {
+                    if (children.get(i) instanceof Docker.Copy && isBroad((Docker.Copy) children.get(i))) {
+                        List<Docker> reordered = reorder(children, i,
+                                manifests -> isSufficient(acc, context, manifests));
+                        if (reordered != null) {
+                            return s.withChildren(reordered);
+                        }
+                    }
+                }
+                return s;
+            }
+        };
+    }
+
+    private static @Nullable List<Docker> reorder(List<Docker> children, int copyIndex,
+                                                  Predicate<Set<String>> sufficient) {
+        Docker.Copy copy = (Docker.Copy) children.get(copyIndex);
+        int install = copyIndex + 1;
+        while (install < children.size() && isMetadata(children.get(install))) {
+            install++;
+        }
+
+        Set<String> manifests = new LinkedHashSet<>();
+        int end = install;
+        while (end < children.size() && children.get(end) instanceof Docker.Run) {
+            Set<String> found = PackageManager.installManifests((Docker.Run) children.get(end));
+            if (found == null) {
+                break;
+            }
+            manifests.addAll(found);
+            end++;
+        }
+        if (manifests.isEmpty() || !sufficient.test(manifests) ||
+            copiesManifest(children.subList(0, copyIndex), manifests)) {
+            return null;
+        }
+
+        Docker.Run lastInstall = (Docker.Run) children.get(end - 1);
+        List<Docker> result = new ArrayList<>(children.size() + 1);
+        result.addAll(children.subList(0, copyIndex));
+        result.add(manifestCopy(copy, manifests));
+        result.addAll(children.subList(copyIndex + 1, end - 1));
+        // the moved COPY takes the place of the last install, which may be the last line of the file
+        result.add(lastInstall.withEol(copy.getEol()));
+        result.add(copy.withEol(lastInstall.getEol()));
+        result.addAll(children.subList(end, children.size()));
+        return result;
+    }
+
+    /**
+     * @return True unless the build files of the context show that the manifests alone can't install dependencies.
+     */
+    private static boolean isSufficient(Scanned acc, Path context, Set<String> manifests) {
+        if (manifests.contains("pom.xml")) {
+            // modules have their own poms, and most projects listing none in the source set have some
+            String pom = acc.buildFiles.get(context.resolve("pom.xml"));
+            if (pom == null || MODULES.matcher(pom).find()) {
+                return false;
+            }
+        }
+        if (manifests.contains("go.mod")) {
+            String goMod = acc.buildFiles.get(context.resolve("go.mod"));
+            if (acc.buildFiles.containsKey(context.resolve("go.work")) ||
+                (goMod != null && LOCAL_REPLACE.matcher(goMod).find())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return True for a {@code COPY} of the whole build context.
+     */
+    private static boolean isBroad(Docker.Copy copy) {
+        if (copy.getOptions() != null && copy.getOptions().stream()
+                .map(Docker.Option::getKeyArgs)
+                .anyMatch(keyArgs -> keyArgs != null && "--from".equalsIgnoreCase(keyArgs.key()))) {
+            return false;
+        }
+        return copy.getSources() != null && copy.getSources().size() == 1 &&
+               copy.getSources().get(0).getText() != null &&
+               ".".equals(DockerignoreMatcher.normalize(copy.getSources().get(0).getText()));
+    }
+
+    /**
+     * Instructions which may sit between the {@code COPY} and the install without depending on the copied files.
+     */
+    private static boolean isMetadata(Docker child) {
+        return child instanceof Docker.Env || child instanceof Docker.Arg || child instanceof Docker.Label ||
+               child instanceof Docker.Comment;
+    }
+
+    /**
+     * @return True when an earlier {@code COPY} or {@code ADD} already names one of the manifests.
+     */
+    private static boolean copiesManifest(List<Docker> before, Set<String> manifests) {
+        Set<String> names = manifests.stream()
+                .map(manifest -> manifest.endsWith("*") ? manifest.substring(0, manifest.length() - 1) : manifest)
+                .collect(Collectors.toSet());
+        for (Docker child : before) {
+            List<Docker.Literal> sources = child instanceof Docker.Copy ? ((Docker.Copy) child).getSources() :
+                    child instanceof Docker.Add ? ((Docker.Add) child).getSources() : null;
+            if (sources == null) {
+                continue;
+            }
+            for (Docker.Literal source : sources) {
+                String text = source.getText();
+                if (text != null && names.contains(text.substring(text.lastIndexOf('/') + 1).replace("*", ""))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Docker.Copy manifestCopy(Docker.Copy copy, Set<String> manifests) {
+        String destination = copy.getDestination().getText();
+        if (".".equals(destination)) {
+            destination = "./";
+        } else if (!destination.endsWith("/")) {
+            // more than one source requires a directory destination
+            destination = destination + "/";
+        }
+        return new Docker.Copy(Tree.randomId(),
+                copy.getPrefix(),
+                copy.getOptions() == null ? null : copy.getOptions().stream()
+                        .map(option -> option.withId(Tree.randomId()))
+                        .collect(Collectors.toList()),
+                manifests.stream()
+                        .map(manifest -> Docker.Literal.build(manifest).withPrefix(Space.build(" ")))
+                        .collect(Collectors.toList()),
+                Docker.Literal.build(destination).withPrefix(copy.getDestination().getPrefix()),
+                Markers.EMPTY,
+                copy.getEol());
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.PackageManager;
+import com.github.jimschubert.rewrite.docker.internal.StageReferences;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.DockerRightPadded;
+import com.github.jimschubert.rewrite.docker.tree.Quoting;
+import com.github.jimschubert.rewrite.docker.tree.Space;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.NlsRewrite;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs build stages natively on the build machine with {@code FROM --platform=$BUILDPLATFORM}, instead of under
+ * emulation, when they can cross-compile for the target platform.
+ * <p>
+ * A stage is changed together with the stages built {@code FROM} it, when none of them is the final stage and their
+ * output is only copied into other stages with {@code COPY --from} or {@code RUN --mount=from=}. They must build
+ * with a toolchain whose output can target another platform:
+ * <ul>
+ *     <li>Go, where each {@code go build} is given {@code GOOS=$TARGETOS GOARCH=$TARGETARCH}, declared with
+ *     {@code ARG TARGETOS TARGETARCH} after the stage's {@code FROM}. cgo is enabled by default in the golang images
+ *     and turned off when cross-compiling, so every {@code go build} must run with {@code CGO_ENABLED=0}, set by
+ *     {@code ENV} or {@code ARG} or on the command;</li>
+ *     <li>Maven, Gradle or {@code javac}, whose bytecode runs on any platform;</li>
+ *     <li>npm, Yarn or pnpm, as long as no {@code node_modules}, which may hold native modules, are copied out, nor
+ *     the directory they were installed in or any of its parents.</li>
+ * </ul>
+ * Stages which also compile native code (C compilers, {@code make}, Cargo, GraalVM {@code native-image},
+ * {@code jlink}), check the machine's architecture, or use {@code go install}, which can't be retargeted, are left on
+ * the target platform, as are stages with an explicit {@code --platform}.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class CrossCompileBuildStages extends Recipe {
+    private static final String BUILD_PLATFORM = "$BUILDPLATFORM";
+    private static final Pattern TOOLCHAIN = Pattern.compile("\\b(?:go\\s+build|mvnw?|gradlew?|javac|npm|yarn|pnpm)\\b");
+    private static final Pattern NATIVE = Pattern.compile(
+            "\\b(?:go\\s+install|cargo|rustc|gcc|clang|cc|make|cmake|native-image|jlink|uname\\s+-m|" +
+            "dpkg\\s+--print-architecture|apk\\s+--print-arch)\\b|g\\+\\+");
+    private static final Pattern NODE = Pattern.compile("\\b(?:npm|yarn|pnpm)\\b");
+    private static final Pattern GO_BUILD = Pattern.compile("\\bgo\\s+build\\b");
+    private static final Pattern CGO_DISABLED = Pattern.compile("\\bCGO_ENABLED(?:=|\\s+)[\"']?0\\b");
+    private static final Pattern GO_TARGET = Pattern.compile("\\bGO(?:OS|ARCH)\\b");
+    private static final List<String> TARGET_ARGS = List.of("TARGETOS", "TARGETARCH");
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Cross-compile build stages on the build platform";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Sets `--platform=$BUILDPLATFORM` on build stages whose output is only copied into other stages and " +
+               "which compile with Go, Java or Node.js toolchains, so multi-platform builds compile natively " +
+               "instead of under emulation. `go build` is given `GOOS=$TARGETOS GOARCH=$TARGETARCH`. Stages which " +
+               "compile native code are left on the target platform.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                StageGraph graph = StageGraph.build(dockerfile);
+                if (graph.size() < 2 || !graph.isAcyclic()) {
+                    return dockerfile;
+                }
+
+                Set<Integer> roots = new HashSet<>();
+                Set<Integer> goStages = new HashSet<>();
+                for (StageGraph.Node node : graph.getNodes()) {
+                    if (node.getBase() == null && isCrossCompilable(graph, group(graph, node.getIndex()), goStages)) {
+                        roots.add(node.getIndex());
+                    }
+                }
+                if (roots.isEmpty()) {
+                    return dockerfile;
+                }
+
+                int[] index = {0};
+                return dockerfile.withStages(ListUtils.map(dockerfile.getStages(), stage -> {
+                    int i = index[0]++;
+                    if (roots.contains(i)) {
+                        stage = stage.withChildren(ListUtils.map(stage.getChildren(), child -> child instanceof Docker.From ?
+                                ((Docker.From) child).platform(BUILD_PLATFORM) :
+                                child));
+                    }
+                    return goStages.contains(i) ? targetGo(stage) : stage;
+                }));
+            }
+        };
+    }
+
+    /**
+     * @return The stage and every stage built {@code FROM} it, directly or transitively.
+     */
+    private static Set<Integer> group(StageGraph graph, int root) {
+        Set<Integer> group = new LinkedHashSet<>();
+        group.add(root);
+        for (StageGraph.Node node : graph.getNodes()) {
+            // bases always come first
+            if (node.getBase() != null && group.contains(node.getBase())) {
+                group.add(node.getIndex());
+            }
+        }
+        return group;
+    }
+
+    private static boolean isCrossCompilable(StageGraph graph, Set<Integer> group, Set<Integer> goStages) {
+        if (group.contains(graph.getFinalStage())) {
+            return false;
+        }
+        Docker.From from = from(graph.get(group.iterator().next()).getStage());
+        if (from == null || "scratch".equalsIgnoreCase(from.getImageSpec()) ||
+            (from.getPlatform() != null && from.getPlatform().getText() != null && !from.getPlatform().getText().isBlank())) {
+            return false;
+        }
+
+        Set<String> installs = nodeInstalls(graph, group);
+        boolean consumed = false;
+        for (StageGraph.Node node : graph.getNodes()) {
+            if (!group.contains(node.getIndex()) && !Collections.disjoint(node.getDependencies(), group)) {
+                consumed = true;
+                if (copiesNodeModules(graph, node.getStage(), group, installs)) {
+                    return false;
+                }
+            }
+        }
+        if (!consumed) {
+            return false;
+        }
+
+        boolean toolchain = false;
+        boolean targetsGo = false;
+        Set<Integer> builds = new HashSet<>();
+        Map<Integer, Boolean> cgoDisabled = new HashMap<>();
+        for (int i : group) {
+            Integer base = graph.get(i).getBase();
+            boolean withoutCgo = base != null && cgoDisabled.getOrDefault(base, false);
+            for (Docker child : graph.get(i).getStage().getChildren()) {
+                String text = child instanceof Docker.Run ? PackageManager.commandText((Docker.Run) child) :
+                        child instanceof Docker.Env || child instanceof Docker.Arg ? child.print(new Cursor(null, child)) :
+                        "";
+                if (NATIVE.matcher(text).find()) {
+                    return false;
+                }
+                toolchain |= TOOLCHAIN.matcher(text).find();
+                targetsGo |= GO_TARGET.matcher(text).find();
+                if (!(child instanceof Docker.Run)) {
+                    withoutCgo |= CGO_DISABLED.matcher(text).find();
+                } else if (GO_BUILD.matcher(text).find()) {
+                    // cgo code doesn't build for another platform, or links against the build platform's libc
+                    if (!canTargetGo((Docker.Run) child) || !(withoutCgo || CGO_DISABLED.matcher(text).find())) {
+                        return false;
+                    }
+                    builds.add(i);
+                }
+            }
+            cgoDisabled.put(i, withoutCgo);
+        }
+        if (toolchain && !targetsGo) {
+            goStages.addAll(builds);
+        }
+        return toolchain;
+    }
+
+    /**
+     * @return The working directories of the group's npm, Yarn and pnpm commands, where {@code node_modules} end up,
+     * or {@code $} for a directory that depends on a variable.
+     */
+    private static Set<String> nodeInstalls(StageGraph graph, Set<Integer> group) {
+        Set<String> installs = new HashSet<>();
+        Map<Integer, String> workdirs = new HashMap<>();
+        for (int i : group) {
+            Integer base = graph.get(i).getBase();
+            String workdir = base == null ? "/" : workdirs.getOrDefault(base, "/");
+            for (Docker child : graph.get(i).getStage().getChildren()) {
+                if (child instanceof Docker.Workdir) {
+                    Docker.Literal path = ((Docker.Workdir) child).getPath();
+                    if (path != null && path.getText() != null) {
+                        workdir = path.getText().contains("$") || "$".equals(workdir) ?
+                                "$" :
+                                AddCopyLink.resolve(workdir, path.getText());
+                    }
+                } else if (child instanceof Docker.Run && NODE.matcher(PackageManager.commandText((Docker.Run) child)).find()) {
+                    installs.add(workdir);
+                }
+            }
+            workdirs.put(i, workdir);
+        }
+        return installs;
+    }
+
+    /**
+     * @return Whether the stage copies or mounts {@code node_modules} from the group, or a directory containing one of
+     * the directories the group installed them in.
+     */
+    private static boolean copiesNodeModules(StageGraph graph, Docker.Stage stage, Set<Integer> group, Set<String> installs) {
+        for (Docker child : stage.getChildren()) {
+            for (Docker.Option option : StageReferences.options(child)) {
+                Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+                if (keyArgs == null || keyArgs.value() == null) {
+                    continue;
+                }
+                List<String> paths = new ArrayList<>();
+                String reference = null;
+                if ("--from".equalsIgnoreCase(keyArgs.key()) && child instanceof Docker.Copy) {
+                    reference = keyArgs.value();
+                    for (Docker.Literal source : ((Docker.Copy) child).getSources()) {
+                        paths.add(source.getText() == null ? "/" : source.getText());
+                    }
+                } else if ("--mount".equalsIgnoreCase(keyArgs.key())) {
+                    reference = field(keyArgs.value(), "from");
+                    String source = field(keyArgs.value(), "source");
+                    if (source == null) {
+                        source = field(keyArgs.value(), "src");
+                    }
+                    paths.add(source == null ? "/" : source);
+                }
+                Integer source = reference == null ? null : graph.find(reference);
+                if (source == null || !group.contains(source)) {
+                    continue;
+                }
+                for (String path : paths) {
+                    if (path.contains("node_modules")) {
+                        return true;
+                    }
+                    if (installs.isEmpty()) {
+                        continue;
+                    }
+                    String resolved = AddCopyLink.resolve("/", path);
+                    if (path.contains("$") || path.contains("*") || installs.contains("$") ||
+                        installs.stream().anyMatch(install -> isWithin(install, resolved))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static @Nullable String field(String mount, String name) {
+        for (String field : mount.split(",")) {
+            int eq = field.indexOf('=');
+            if (eq > 0 && name.equalsIgnoreCase(field.substring(0, eq).trim())) {
+                return field.substring(eq + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWithin(String path, String directory) {
+        return path.equals(directory) || path.startsWith(directory.endsWith("/") ? directory : directory + "/");
+    }
+
+    /**
+     * @return Whether every {@code go build} of the {@code RUN} is a separate word which can be prefixed.
+     */
+    private static boolean canTargetGo(Docker.Run run) {
+        Matcher matcher = GO_BUILD.matcher(PackageManager.commandText(run));
+        int builds = 0;
+        while (matcher.find()) {
+            builds++;
+        }
+        return builds == goBuilds(run.getCommands()).size();
+    }
+
+    private static List<Integer> goBuilds(@Nullable List<Docker.Literal> commands) {
+        List<Integer> builds = new ArrayList<>();
+        for (int i = 0; commands != null && i + 1 < commands.size(); i++) {
+            if ("go".equals(commands.get(i).getText()) && "build".equals(commands.get(i + 1).getText()) &&
+                commands.get(i).getQuoting() == Quoting.UNQUOTED) {
+                builds.add(i);
+            }
+        }
+        return builds;
+    }
+
+    private static Docker.Stage targetGo(Docker.Stage stage) {
+        Set<String> declared = new HashSet<>();
+        List<Docker> children = new ArrayList<>();
+        int from = -1;
+        for (Docker child : stage.getChildren()) {
+            if (child instanceof Docker.From) {
+                from = children.size();
+            } else if (child instanceof Docker.Arg && from >= 0) {
+                // arguments declared before the first FROM aren't in scope of the stage
+                for (DockerRightPadded<Docker.KeyArgs> arg : ((Docker.Arg) child).getArgs()) {
+                    declared.add(arg.getElement().key());
+                }
+            } else if (child instanceof Docker.Run) {
+                child = targetGo((Docker.Run) child);
+            }
+            children.add(child);
+        }
+
+        List<Docker.KeyArgs> missing = new ArrayList<>();
+        for (String name : TARGET_ARGS) {
+            if (!declared.contains(name)) {
+                missing.add(Docker.KeyArgs.build(name, null, false));
+            }
+        }
+        if (!missing.isEmpty() && from >= 0) {
+            children.add(from + 1, Docker.Arg.build(missing.toArray(new Docker.KeyArgs[0])));
+        }
+        return stage.withChildren(children);
+    }
+
+    private static Docker.Run targetGo(Docker.Run run) {
+        List<Integer> builds = goBuilds(run.getCommands());
+        if (builds.isEmpty()) {
+            return run;
+        }
+        List<Docker.Literal> commands = new ArrayList<>(run.getCommands());
+        for (int b = builds.size() - 1; b >= 0; b--) {
+            int i = builds.get(b);
+            Docker.Literal go = commands.get(i);
+            commands.set(i, go.withPrefix(Space.build(" ")));
+            commands.add(i, Docker.Literal.build(Quoting.UNQUOTED, Space.build(" "), "GOARCH=$TARGETARCH", Space.EMPTY));
+            commands.add(i, Docker.Literal.build(Quoting.UNQUOTED, go.getPrefix(), "GOOS=$TARGETOS", Space.EMPTY));
+        }
+        return run.withCommands(commands);
+    }
+
+    private static Docker.@Nullable From from(Docker.Stage stage) {
+        for (Docker child : stage.getChildren()) {
+            if (child instanceof Docker.From) {
+                return (Docker.From) child;
+            }
+        }
+        return null;
+    }
+}
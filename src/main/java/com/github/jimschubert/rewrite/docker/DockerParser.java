@@ -16,6 +16,7 @@ package com.github.jimschubert.rewrite.docker;
 
 import com.github.jimschubert.rewrite.docker.internal.DockerfileParser;
 import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.TokenIndex;
 import org.openrewrite.ExecutionContext;
 import org.openrewrite.Parser;
 import org.openrewrite.SourceFile;
@@ -40,6 +41,7 @@ public class DockerParser implements Parser {
                 Docker.Document document = parser.parse(is)
                         .withFileAttributes(input.getFileAttributes())
                         .withSourcePath(input.getPath());
+                document = document.withMarkers(document.getMarkers().add(TokenIndex.build(document)));
 
                 parsingListener.parsed(input, document);
 
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.RegexLiterals;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.TokenIndex;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.marker.SearchResult;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Cheap checks for use with {@link Preconditions#check(TreeVisitor, TreeVisitor)}, allowing recipes to skip
+ * documents which can't possibly contain what they're looking for without running a full visitor.
+ * <p>
+ * Each check marks a document as found when it <em>may</em> contain the requested text. False positives are possible,
+ * false negatives are not.
+ */
+public class DockerPreconditions {
+    private DockerPreconditions() {
+    }
+
+    /**
+     * Check that every substring may occur within a single token of a {@link Docker.Document}
+     * (literal text, option key or value, or an {@code image:tag} reference).
+     * <p>
+     * Uses the {@link TokenIndex} computed by the parser when the document is unchanged since parsing,
+     * and otherwise scans the document's tokens directly.
+     *
+     * @param substrings The substrings which must all be present.
+     * @return A precondition visitor.
+     */
+    public static TreeVisitor<?, ExecutionContext> mayContainTokens(String... substrings) {
+        return mayContainTokens(Arrays.asList(substrings));
+    }
+
+    /**
+     * @param substrings The substrings which must all be present.
+     * @return A precondition visitor.
+     * @see #mayContainTokens(String...)
+     */
+    public static TreeVisitor<?, ExecutionContext> mayContainTokens(Collection<String> substrings) {
+        List<String> required = substrings.stream()
+                .filter(s -> s != null && !s.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                // intentionally does not visit children, the whole point is to avoid a full traversal
+                return mayContain(dockerfile, required) ? SearchResult.found(dockerfile) : dockerfile;
+            }
+        };
+    }
+
+    /**
+     * Check that a document may contain a token fully matched by {@code regex}.
+     * Only the literal portions of the regular expression which every match must contain are considered.
+     *
+     * @param regex A regular expression matched against individual tokens.
+     * @return A precondition visitor.
+     */
+    public static TreeVisitor<?, ExecutionContext> mayMatch(String regex) {
+        return mayContainTokens(RegexLiterals.requiredSubstrings(regex));
+    }
+
+    /**
+     * Check the printed source of any {@link SourceFile} for every substring.
+     * This is exact, but requires printing the full document.
+     *
+     * @param substrings The substrings which must all be present.
+     * @return A precondition visitor.
+     */
+    public static TreeVisitor<?, ExecutionContext> containsText(String... substrings) {
+        return new TreeVisitor<>() {
+            @Override
+            public @Nullable Tree visit(@Nullable Tree tree, ExecutionContext ctx) {
+                if (tree instanceof SourceFile) {
+                    String text = ((SourceFile) tree).printAll();
+                    for (String substring : substrings) {
+                        if (!text.contains(substring)) {
+                            return tree;
+                        }
+                    }
+                    return SearchResult.found(tree);
+                }
+                return tree;
+            }
+        };
+    }
+
+    /**
+     * Guard {@code visitor} with {@link #mayMatch(String)} when {@code regex} implies required substrings.
+     *
+     * @param regex   A regular expression the visitor matches against tokens, may be null.
+     * @param visitor The visitor to guard.
+     * @return The guarded visitor, or {@code visitor} itself when nothing can be filtered on.
+     */
+    public static TreeVisitor<?, ExecutionContext> checkMayMatch(@Nullable String regex, TreeVisitor<?, ExecutionContext> visitor) {
+        List<String> required = RegexLiterals.requiredSubstrings(regex);
+        if (required.isEmpty()) {
+            return visitor;
+        }
+        return Preconditions.check(mayContainTokens(required), visitor);
+    }
+
+    static boolean mayContain(Docker.Document document, List<String> required) {
+        if (required.isEmpty()) {
+            return true;
+        }
+
+        Optional<TokenIndex> index = document.getMarkers().findFirst(TokenIndex.class)
+                .filter(i -> i.isCurrent(document));
+        if (index.isPresent()) {
+            for (String substring : required) {
+                if (!index.get().mightContainSubstring(substring)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // the document has been modified since parsing (or wasn't parsed by DockerParser), so look at the tokens directly
+        Set<String> tokens = TokenIndex.tokens(document);
+        for (String substring : required) {
+            if (tokens.stream().noneMatch(t -> t.contains(substring))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Dockerignore;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.SourceFile;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
+
+/**
+ * A visitor for .dockerignore LSTs.
+ *
+ * @param <P>
+ */
+public class DockerignoreVisitor<P> extends TreeVisitor<Dockerignore, P> {
+    @Override
+    public @Nullable String getLanguage() {
+        return "dockerignore";
+    }
+
+    @Override
+    public boolean isAcceptable(SourceFile sourceFile, P p) {
+        return sourceFile instanceof Dockerignore.Document;
+    }
+
+    public Dockerignore visitDocument(Dockerignore.Document document, P p) {
+        return document.withEntries(ListUtils.map(document.getEntries(), e -> visitAndCast(e, p)))
+                .withMarkers(visitMarkers(document.getMarkers(), p));
+    }
+
+    public Dockerignore visitPattern(Dockerignore.Pattern pattern, P p) {
+        return pattern.withMarkers(visitMarkers(pattern.getMarkers(), p));
+    }
+
+    public Dockerignore visitComment(Dockerignore.Comment comment, P p) {
+        return comment.withMarkers(visitMarkers(comment.getMarkers(), p));
+    }
+
+    public Dockerignore visitBlank(Dockerignore.Blank blank, P p) {
+        return blank.withMarkers(visitMarkers(blank.getMarkers(), p));
+    }
+}
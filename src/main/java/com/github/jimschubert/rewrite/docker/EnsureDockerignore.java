@@ -14,6 +14,10 @@
  */
 package com.github.jimschubert.rewrite.docker;
 
+import com.github.jimschubert.rewrite.docker.internal.DockerignoreFileParser;
+import com.github.jimschubert.rewrite.docker.internal.DockerignoreMatcher;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Dockerignore;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
@@ -22,9 +26,6 @@ import org.jspecify.annotations.Nullable;
 import org.openrewrite.*;
 import org.openrewrite.text.PlainText;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
@@ -70,16 +71,11 @@ public class EnsureDockerignore extends ScanningRecipe<EnsureDockerignore.Scanne
                     return tree;
                 }
 
+                // a Dockerfile without a .dockerignore in the LST may still have one on disk which wasn't parsed,
+                // so only generate one when neither is present rather than reading the file system here
                 SourceFile file = (SourceFile) tree;
-                if (file.getSourcePath().endsWith("Dockerfile") || file.getSourcePath().endsWith(".dockerignore")) {
-                    // if dockerfile, and .dockerignore is never loaded as plain text, this will retrieve from the file
-                    evaluatePath(acc, file.getSourcePath());
-
-                    // but if it's a .dockerignore, we can also read in the content, which will include any recipe updates to this point
-                    if (file.getSourcePath().endsWith(".dockerignore")) {
-                        evaluateContent(acc, file.printAll());
-                    }
-
+                if (file instanceof Docker.Document || file instanceof Dockerignore.Document ||
+                    file.getSourcePath().endsWith("Dockerfile") || file.getSourcePath().endsWith(".dockerignore")) {
                     acc.found = true;
                 }
                 return file;
@@ -94,13 +90,13 @@ public class EnsureDockerignore extends ScanningRecipe<EnsureDockerignore.Scanne
         if (!acc.found) {
             Path target = Paths.get(".dockerignore");
             if (generatedInThisCycle.stream().noneMatch(f -> f.getSourcePath().equals(target))) {
-                String toAppend = remainingExcludes(getExcludes(), acc.existingExcludes);
+                List<String> toAppend = remainingExcludes(DockerignoreMatcher.EMPTY);
                 if (toAppend.isEmpty()) {
                     return Collections.emptyList();
                 }
 
                 return Collections.singletonList(PlainText.builder()
-                        .text(toAppend)
+                        .text(String.join(System.lineSeparator(), toAppend))
                         .sourcePath(target)
                         .build());
             }
@@ -114,41 +110,43 @@ public class EnsureDockerignore extends ScanningRecipe<EnsureDockerignore.Scanne
         return Preconditions.check(acc.found, new TreeVisitor<>() {
             @Override
             public @Nullable Tree visit(@Nullable Tree tree, ExecutionContext ctx) {
-                if (tree != null) {
-                    SourceFile file = (SourceFile) tree;
-                    if (file.getSourcePath().endsWith(".dockerignore")) {
-                        // evaluate the file to see if it exists and if it has the excludes we need
-
-                        PlainText plainText = (PlainText) file;
-                        String original = plainText.printAll();
-                        if (!original.endsWith("\n")) {
-                            original = original + "\n";
-                        }
-                        evaluateContent(acc, original);
-                        String append = remainingExcludes(getExcludes(), acc.existingExcludes);
-
-                        return append.isEmpty() ?
-                                tree :
-                                plainText.withText(original + append);
+                if (tree instanceof Dockerignore.Document) {
+                    Dockerignore.Document dockerignore = (Dockerignore.Document) tree;
+                    return dockerignore.withPatternsAppended(remainingExcludes(dockerignore.getMatcher()));
+                }
+
+                if (tree instanceof PlainText && ((PlainText) tree).getSourcePath().endsWith(".dockerignore")) {
+                    PlainText plainText = (PlainText) tree;
+                    String original = plainText.printAll();
+                    List<String> append = remainingExcludes(new DockerignoreFileParser().parse(original).getMatcher());
+                    if (append.isEmpty()) {
+                        return tree;
                     }
-                    return file;
+                    if (!original.endsWith("\n")) {
+                        original = original + "\n";
+                    }
+                    return plainText.withText(original + String.join(System.lineSeparator(), append));
                 }
-                return null;
+                return tree;
             }
         });
     }
 
-    private String remainingExcludes(String excludes, Set<String> existingExcludes) {
-        if (excludes == null || excludes.isEmpty()) {
-            return "";
-        }
-        Set<String> toBeExcluded = new HashSet<>(List.of(excludes.split(",")));
-        toBeExcluded.removeAll(existingExcludes);
-        return toBeExcluded.stream()
+    /**
+     * @param existing The patterns already in a .dockerignore.
+     * @return The configured excludes not already present, compared as Docker would after cleaning each pattern.
+     */
+    private List<String> remainingExcludes(DockerignoreMatcher existing) {
+        Set<String> present = existing.getPatterns().stream()
+                .filter(pattern -> !pattern.startsWith("!"))
+                .collect(Collectors.toSet());
+        return Arrays.stream(getExcludes().split(","))
                 .map(String::trim)
                 .filter(pattern -> !pattern.isEmpty())
+                .filter(pattern -> !present.contains(DockerignoreMatcher.normalize(pattern)))
+                .distinct()
                 .sorted()
-                .collect(Collectors.joining(System.lineSeparator()));
+                .collect(Collectors.toList());
     }
 
     private String getExcludes() {
@@ -158,42 +156,7 @@ public class EnsureDockerignore extends ScanningRecipe<EnsureDockerignore.Scanne
         return excludes;
     }
 
-    private void evaluatePath(Scanned acc, Path path) {
-        // path is the Dockerfile path or .dockerignore path,
-        // get the root path of the Dockerfile to construct the .dockerignore path
-        // and check if it exists.
-        if (path.toFile().exists() && path.getFileName().endsWith(".dockerignore")) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(path.toFile()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    line = line.trim();
-                    if (line.isEmpty() || line.startsWith("#")) {
-                        continue;
-                    }
-                    acc.existingExcludes.add(line);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    private void evaluateContent(Scanned acc, String content) {
-        if (content == null || content.isEmpty()) {
-            return;
-        }
-        String[] lines = content.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty() || line.startsWith("#")) {
-                continue;
-            }
-            acc.existingExcludes.add(line);
-        }
-    }
-
     public static class Scanned {
         boolean found;
-        Set<String> existingExcludes = new HashSet<>();
     }
 }
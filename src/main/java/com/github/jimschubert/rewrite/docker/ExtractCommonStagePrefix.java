@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.StageReferences;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Space;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.NlsRewrite;
+import org.openrewrite.Recipe;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.marker.Markers;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Moves instructions which several stages start with into a base stage of their own, which the stages are then built
+ * {@code FROM}, so the work is done once.
+ * <p>
+ * Stages share a prefix when they are built from the same image and platform and their first instructions are the
+ * same, ignoring whitespace and line continuations. Instructions are compared by a structural hash of their printed
+ * form, and the prefix which saves the most repeated instructions is extracted first; stages built from the new base
+ * stage may share a prefix again, so extraction repeats until no stages do. A prefix must contain a {@code RUN},
+ * {@code COPY} or {@code ADD}, and ends at the first {@code ARG}, since arguments are scoped to the stage declaring
+ * them. Numeric stage references are updated for the inserted stages.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class ExtractCommonStagePrefix extends Recipe {
+    private static final Pattern LINE_CONTINUATION = Pattern.compile("[\\\\`]\\r?\\n");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Extract common stage prefixes into a base stage";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Finds stages which are built from the same image and start with the same instructions, moves those " +
+               "instructions into a new named base stage, and builds the stages `FROM` it instead, so the shared " +
+               "work is only done once. Only prefixes including a `RUN`, `COPY` or `ADD` are extracted.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                List<Docker.Stage> stages = dockerfile.getStages();
+                if (stages == null || stages.size() < 2) {
+                    return dockerfile;
+                }
+
+                Set<String> names = new HashSet<>();
+                for (Docker.Stage stage : stages) {
+                    Docker.From from = findFrom(stage.getChildren());
+                    if (from != null && !isBlank(from.getAlias().getText())) {
+                        names.add(from.getAlias().getText().toLowerCase(Locale.ROOT));
+                    }
+                }
+
+                List<Docker.Stage> result = stages;
+                for (int round = 0; round < stages.size(); round++) {
+                    Prefix prefix = longestSharedPrefix(result);
+                    if (prefix == null) {
+                        break;
+                    }
+                    result = extract(result, prefix, names);
+                }
+                return result == stages ? dockerfile : dockerfile.withStages(StageReferences.fixLastEol(stages, result));
+            }
+        };
+    }
+
+    @Value
+    private static class Prefix {
+        List<Integer> stages;
+        int length;
+    }
+
+    /**
+     * @return The prefix shared by stages built from the same image which saves the most instructions, or null.
+     */
+    private static @Nullable Prefix longestSharedPrefix(List<Docker.Stage> stages) {
+        Map<String, Integer> hashes = new HashMap<>();
+        Map<String, List<Integer>> byImage = new LinkedHashMap<>();
+        List<int[]> sequences = new ArrayList<>(stages.size());
+        for (int i = 0; i < stages.size(); i++) {
+            List<Docker> children = stages.get(i).getChildren();
+            int from = fromIndex(children);
+            List<Integer> sequence = new ArrayList<>();
+            if (from >= 0) {
+                Docker.From f = (Docker.From) children.get(from);
+                String platform = f.getPlatform() == null || f.getPlatform().getText() == null ? "" : f.getPlatform().getText();
+                String image = f.getImageSpecWithVersion() + " " + platform;
+                byImage.computeIfAbsent(image.toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(i);
+                for (int j = from + 1; j < children.size() && !(children.get(j) instanceof Docker.Arg); j++) {
+                    sequence.add(hashes.computeIfAbsent(structure(children.get(j)), k -> hashes.size()));
+                }
+            }
+            sequences.add(sequence.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        Prefix best = null;
+        int bestSaved = 0;
+        for (List<Integer> group : byImage.values()) {
+            if (group.size() < 2) {
+                continue;
+            }
+            for (int candidate : group) {
+                List<Docker> children = stages.get(candidate).getChildren();
+                int from = fromIndex(children);
+                boolean work = false;
+                for (int length = 1; length <= sequences.get(candidate).length; length++) {
+                    Docker last = children.get(from + length);
+                    work |= last instanceof Docker.Run || last instanceof Docker.Copy || last instanceof Docker.Add;
+                    // a trailing comment usually describes what follows the prefix
+                    if (!work || last instanceof Docker.Comment) {
+                        continue;
+                    }
+                    List<Integer> sharing = new ArrayList<>();
+                    for (int other : group) {
+                        if (startsWith(sequences.get(other), sequences.get(candidate), length)) {
+                            sharing.add(other);
+                        }
+                    }
+                    int saved = (sharing.size() - 1) * length;
+                    if (sharing.size() >= 2 && saved > bestSaved) {
+                        best = new Prefix(sharing, length);
+                        bestSaved = saved;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The instruction's printed form without formatting, so instructions differing only in whitespace and line
+     * continuations compare equal.
+     */
+    private static String structure(Docker instruction) {
+        String printed = instruction.print(new Cursor(null, instruction));
+        return WHITESPACE.matcher(LINE_CONTINUATION.matcher(printed).replaceAll(" ")).replaceAll(" ").trim();
+    }
+
+    private static boolean startsWith(int[] sequence, int[] prefix, int length) {
+        if (sequence.length < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (sequence[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Docker.Stage> extract(List<Docker.Stage> stages, Prefix prefix, Set<String> names) {
+        int first = prefix.getStages().get(0);
+        List<Docker> firstChildren = stages.get(first).getChildren();
+        int firstFrom = fromIndex(firstChildren);
+        Docker.From from = (Docker.From) firstChildren.get(firstFrom);
+        String base = unique(stageName(from.getImageSpec()), names);
+
+        List<Docker> baseChildren = new ArrayList<>(firstChildren.subList(0, firstFrom));
+        baseChildren.add(from.alias(base));
+        baseChildren.addAll(firstChildren.subList(firstFrom + 1, firstFrom + 1 + prefix.getLength()));
+
+        List<Docker.Stage> result = new ArrayList<>(stages.size() + 1);
+        Map<Integer, String> indexes = new HashMap<>();
+        for (int i = 0; i < stages.size(); i++) {
+            if (i >= first) {
+                indexes.put(i, String.valueOf(i + 1));
+            }
+            Docker.Stage stage = stages.get(i);
+            if (i == first) {
+                result.add(new Docker.Stage(Tree.randomId(), baseChildren, Markers.EMPTY));
+            }
+            if (!prefix.getStages().contains(i)) {
+                result.add(stage);
+                continue;
+            }
+
+            List<Docker> children = stage.getChildren();
+            int f = fromIndex(children);
+            Docker.From original = (Docker.From) children.get(f);
+            Docker.From fromBase = Docker.From.build(base)
+                    .withPrefix(i == first && original.getPrefix().isEmpty() ? Space.build("\n") : original.getPrefix())
+                    .withEol(original.getEol());
+            if (!isBlank(original.getAlias().getText())) {
+                fromBase = fromBase.alias(original.getAlias().getText());
+            }
+
+            List<Docker> remaining = new ArrayList<>();
+            if (i != first) {
+                remaining.addAll(children.subList(0, f));
+            }
+            remaining.add(fromBase);
+            remaining.addAll(children.subList(f + 1 + prefix.getLength(), children.size()));
+            result.add(stage.withChildren(remaining));
+        }
+        return StageReferences.rename(result, indexes);
+    }
+
+    private static String stageName(@Nullable String image) {
+        String name = image == null ? "" : image.substring(image.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9._-]+", "-")
+                .replaceAll("^[^a-z0-9]+|-+$", "");
+        return name.isEmpty() ? "base" : name + "-base";
+    }
+
+    private static String unique(String name, Set<String> names) {
+        String candidate = name;
+        for (int i = 2; !names.add(candidate.toLowerCase(Locale.ROOT)); i++) {
+            candidate = name + "-" + i;
+        }
+        return candidate;
+    }
+
+    private static int fromIndex(List<Docker> children) {
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) instanceof Docker.From) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Docker.@Nullable From findFrom(List<Docker> children) {
+        int from = fromIndex(children);
+        return from < 0 ? null : (Docker.From) children.get(from);
+    }
+
+    private static boolean isBlank(@Nullable String text) {
+        return text == null || text.trim().isEmpty();
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.BakeFile;
+import com.github.jimschubert.rewrite.docker.internal.ImageBuild;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.text.PlainText;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class GenerateBakeFile extends ScanningRecipe<GenerateBakeFile.Scanned> {
+    private static final String COMMENT = "Generated from the Dockerfiles in this repository. Build everything with `docker buildx bake`.";
+
+    @Option(
+            displayName = "Format",
+            description = "Write `docker-bake.hcl` or `docker-bake.json`. Defaults to `hcl`.",
+            valid = {"hcl", "json"},
+            example = "hcl",
+            required = false
+    )
+    @Nullable
+    String format;
+
+    @Option(
+            displayName = "Image name",
+            description = "The name of the image each Dockerfile produces, without a tag, used for the target's tag and " +
+                          "to find the Dockerfiles other Dockerfiles are built from. `{directory}` is replaced with the " +
+                          "name of the directory containing the Dockerfile, `{path}` with that directory's path, and " +
+                          "`{file}` with the Dockerfile's name without `Dockerfile`. Defaults to `{directory}`.",
+            example = "registry.example.com/team/{path}",
+            required = false
+    )
+    @Nullable
+    String imageName;
+
+    @Option(
+            displayName = "Cache repository",
+            description = "A registry repository shared by all targets for the build cache, tagged with the target name. " +
+                          "By default, no cache settings are written.",
+            example = "registry.example.com/team/build-cache",
+            required = false
+    )
+    @Nullable
+    String cacheRepository;
+
+    @Option(
+            displayName = "Build arguments",
+            description = "Comma-separated `NAME=value` build arguments to set in the bake file, for the targets whose " +
+                          "Dockerfile declares the `ARG`. Defaults in the Dockerfiles are never copied, so they stay " +
+                          "the single place to change them. Values containing `$` are left out, since bake would " +
+                          "interpolate them rather than the Dockerfile.",
+            example = "NODE_ENV=production,GIT_COMMIT=unknown",
+            required = false
+    )
+    @Nullable
+    String buildArgs;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Generate docker-bake file";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Generates a `docker buildx bake` file with a target for every Dockerfile, building its final stage with " +
+               "the Dockerfile's directory as context. Images built `FROM` or copied from other Dockerfiles of the " +
+               "repository are linked with `contexts = { image = \"target:name\" }`, including references made by " +
+               "inherited `ONBUILD` triggers, so a single `docker buildx bake` builds everything concurrently in " +
+               "dependency order. Only the build arguments given to the recipe are set, so `ARG` defaults stay in the " +
+               "Dockerfiles. An existing bake file at the same path is regenerated, as plain text if it was parsed as " +
+               "JSON or HCL.";
+    }
+
+    public static class Scanned {
+        final Map<String, ImageBuild> builds = new ConcurrentHashMap<>();
+
+        volatile boolean exists;
+
+        @Nullable
+        String content;
+    }
+
+    private Path bakeFile() {
+        return Paths.get("json".equalsIgnoreCase(format) ? "docker-bake.json" : "docker-bake.hcl");
+    }
+
+    @Override
+    public Scanned getInitialValue(ExecutionContext ctx) {
+        return new Scanned();
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getScanner(Scanned acc) {
+        return new TreeVisitor<Tree, ExecutionContext>() {
+            @Override
+            public @Nullable Tree visit(@Nullable Tree tree, ExecutionContext ctx) {
+                if (tree instanceof Docker.Document) {
+                    ImageBuild build = ImageBuild.of((Docker.Document) tree, imageName);
+                    acc.builds.put(build.getPath(), build);
+                } else if (tree instanceof SourceFile && ((SourceFile) tree).getSourcePath().equals(bakeFile())) {
+                    acc.exists = true;
+                }
+                return tree;
+            }
+        };
+    }
+
+    @Override
+    public Collection<? extends SourceFile> generate(Scanned acc, Collection<SourceFile> generatedInThisCycle, ExecutionContext ctx) {
+        // the accumulator is shared by all cycles, and other recipes may have changed the Dockerfiles since
+        acc.content = null;
+        String content = content(acc);
+        if (content == null || acc.builds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Path target = bakeFile();
+        if (acc.exists || generatedInThisCycle.stream().anyMatch(f -> f.getSourcePath().equals(target))) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(PlainText.builder()
+                .text(content)
+                .sourcePath(target)
+                .build());
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor(Scanned acc) {
+        return new TreeVisitor<Tree, ExecutionContext>() {
+            @Override
+            public @Nullable Tree visit(@Nullable Tree tree, ExecutionContext ctx) {
+                if (!(tree instanceof SourceFile) || !((SourceFile) tree).getSourcePath().equals(bakeFile())) {
+                    return tree;
+                }
+                String content = content(acc);
+                if (tree instanceof PlainText) {
+                    PlainText existing = (PlainText) tree;
+                    if (content != null && !content.equals(existing.getText())) {
+                        return existing.withText(content);
+                    }
+                } else if (content != null && !content.equals(((SourceFile) tree).printAll())) {
+                    // parsed as JSON or HCL, which we don't edit in place, so replace it with text
+                    SourceFile existing = (SourceFile) tree;
+                    return PlainText.builder()
+                            .id(existing.getId())
+                            .sourcePath(existing.getSourcePath())
+                            .charsetName(existing.getCharset() == null ? null : existing.getCharset().name())
+                            .charsetBomMarked(existing.isCharsetBomMarked())
+                            .fileAttributes(existing.getFileAttributes())
+                            .checksum(existing.getChecksum())
+                            .text(content)
+                            .build();
+                }
+                return tree;
+            }
+        };
+    }
+
+    private @Nullable String content(Scanned acc) {
+        if (acc.content == null && !acc.builds.isEmpty()) {
+            BakeFile bake = new BakeFile(COMMENT, targets(acc.builds.values()));
+            acc.content = "json".equalsIgnoreCase(format) ? bake.printJson() : bake.printHcl();
+        }
+        return acc.content;
+    }
+
+    private List<BakeFile.Target> targets(Collection<ImageBuild> scanned) {
+        Map<String, String> configuredArgs = configuredArgs();
+        List<ImageBuild> builds = new ArrayList<>(scanned);
+        builds.sort(Comparator.comparing(ImageBuild::getPath));
+
+        Set<String> names = new HashSet<>();
+        Map<String, String> targetNames = new HashMap<>();
+        Map<String, String> producers = new HashMap<>();
+        for (ImageBuild build : builds) {
+            String name = unique(targetName(build), names);
+            targetNames.put(build.getPath(), name);
+            if (build.getImage() != null) {
+                producers.putIfAbsent(build.getImage(), name);
+            }
+        }
+
+        List<BakeFile.Target> targets = new ArrayList<>(builds.size());
+        for (ImageBuild build : builds) {
+            String name = targetNames.get(build.getPath());
+
+            Map<String, String> references = new TreeMap<>(build.getReferences());
+            for (String baseImage : build.getBaseImages()) {
+                for (ImageBuild parent : builds) {
+                    if (baseImage.equals(parent.getImage()) && parent.isOnbuild()) {
+                        // the parent's triggers run in this build
+                        parent.getOnbuildReferences().forEach(references::putIfAbsent);
+                    }
+                }
+            }
+            Map<String, String> contexts = new TreeMap<>();
+            references.forEach((reference, image) -> {
+                String producer = producers.get(image);
+                if (producer != null && !producer.equals(name)) {
+                    contexts.put(reference, "target:" + producer);
+                }
+            });
+
+            Map<String, String> args = new TreeMap<>();
+            configuredArgs.forEach((arg, value) -> {
+                if (build.getArgs().containsKey(arg)) {
+                    args.put(arg, value);
+                }
+            });
+
+            Path path = Paths.get(build.getPath());
+            Path directory = path.getParent();
+            List<String> cacheFrom = new ArrayList<>();
+            List<String> cacheTo = new ArrayList<>();
+            if (cacheRepository != null && !cacheRepository.isEmpty()) {
+                cacheFrom.add("type=registry,ref=" + cacheRepository + ":" + name);
+                cacheTo.add("type=registry,ref=" + cacheRepository + ":" + name + ",mode=max");
+            }
+
+            targets.add(new BakeFile.Target(
+                    name,
+                    directory == null ? "." : directory.toString().replace('\\', '/'),
+                    path.getFileName().toString(),
+                    build.getImage() == null ? Collections.emptyList() : Collections.singletonList(build.getImage()),
+                    contexts,
+                    args,
+                    cacheFrom,
+                    cacheTo
+            ));
+        }
+        return targets;
+    }
+
+    private Map<String, String> configuredArgs() {
+        Map<String, String> args = new HashMap<>();
+        if (buildArgs == null) {
+            return args;
+        }
+        for (String arg : buildArgs.split(",")) {
+            int eq = arg.indexOf('=');
+            if (eq > 0 && arg.indexOf('$', eq) < 0) {
+                args.put(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+            }
+        }
+        return args;
+    }
+
+    private static String targetName(ImageBuild build) {
+        String source = build.getImage();
+        if (source == null) {
+            Path parent = Paths.get(build.getPath()).getParent();
+            source = parent == null ? "root" : parent.toString();
+        } else {
+            source = source.substring(source.lastIndexOf('/') + 1);
+        }
+        String name = source.replaceAll("[^A-Za-z0-9_-]+", "-").replaceAll("^-+|-+$", "");
+        // "default" is the group of all targets
+        return name.isEmpty() || "default".equals(name) ? "image" : name;
+    }
+
+    private static String unique(String name, Set<String> names) {
+        String candidate = name;
+        for (int i = 2; !names.add(candidate); i++) {
+            candidate = name + "-" + i;
+        }
+        return candidate;
+    }
+}
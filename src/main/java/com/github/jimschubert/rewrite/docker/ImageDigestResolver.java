@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.FileImageDigestResolver;
+import com.github.jimschubert.rewrite.docker.internal.RegistryImageDigestResolver;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Looks up the digest an image tag currently points to.
+ */
+public interface ImageDigestResolver {
+    /**
+     * @param image    The image reference, such as {@code alpine:3.20}.
+     * @param platform The platform to resolve, such as {@code linux/arm64}, or null for the digest of the tag itself,
+     *                 which covers every platform of a multi-platform image.
+     * @return The digest, such as {@code sha256:...}.
+     * @throws IOException If the image or platform can't be found.
+     */
+    String digest(String image, @Nullable String platform) throws IOException;
+
+    /**
+     * @return A resolver asking the image's registry over its HTTP API, anonymously.
+     */
+    static ImageDigestResolver registry() {
+        return new RegistryImageDigestResolver();
+    }
+
+    /**
+     * @param file A JSON file mapping image references to a digest, or to an object with the {@code digest} of the
+     *             tag and the digests of its {@code platforms}.
+     * @return A resolver reading digests from the file instead of a registry.
+     */
+    static ImageDigestResolver file(Path file) {
+        return new FileImageDigestResolver(file);
+    }
+}
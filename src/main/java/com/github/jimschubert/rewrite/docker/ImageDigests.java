@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.BoundedLookups;
+import com.github.jimschubert.rewrite.docker.internal.DiskCache;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resolves a batch of image tags to digests, looking each distinct image and platform up once, a few at a time.
+ * <p>
+ * With a cache directory, resolved digests are kept on disk and reused until they are older than the time to live,
+ * so repeated runs don't ask the registry again. Tags move, so the time to live bounds how stale a pin can be.
+ */
+public class ImageDigests {
+    private final ImageDigestResolver resolver;
+    private final @Nullable DiskCache cache;
+    private final int concurrency;
+
+    /**
+     * @param resolver       Looks digests up.
+     * @param cacheDirectory The directory to keep digests in between runs, or null to not cache them.
+     * @param ttl            How long cached digests are used.
+     * @param concurrency    The maximum number of lookups at once.
+     */
+    public ImageDigests(ImageDigestResolver resolver, @Nullable Path cacheDirectory, Duration ttl, int concurrency) {
+        this.resolver = resolver;
+        this.cache = cacheDirectory == null ? null : new DiskCache(cacheDirectory, ttl);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * @param lookups The images to resolve, each resolved once.
+     * @return The digest, or the reason there is none, of each image and platform.
+     */
+    public Map<Lookup, Digest> digest(Collection<Lookup> lookups) {
+        Map<Lookup, Digest> digests = new LinkedHashMap<>();
+        BoundedLookups.run(lookups, concurrency, this::digest).forEach((lookup, outcome) ->
+                digests.put(lookup, new Digest(lookup, outcome.getValue(), outcome.getError())));
+        return digests;
+    }
+
+    /**
+     * @param lookup The image to resolve.
+     * @return The image's digest.
+     * @throws IOException If the image can't be resolved.
+     */
+    public String digest(Lookup lookup) throws IOException {
+        String key = lookup.getImage() + "\n" + (lookup.getPlatform() == null ? "" : lookup.getPlatform());
+        if (cache != null) {
+            String cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String digest = resolver.digest(lookup.getImage(), lookup.getPlatform());
+        if (cache != null) {
+            cache.put(key, digest);
+        }
+        return digest;
+    }
+
+    @Value
+    public static class Lookup {
+        /**
+         * The image reference, such as {@code alpine:3.20}.
+         */
+        String image;
+
+        /**
+         * The platform, such as {@code linux/arm64}, or null for all platforms.
+         */
+        @Nullable
+        String platform;
+    }
+
+    @Value
+    public static class Digest {
+        Lookup lookup;
+
+        /**
+         * The digest, or null if the image couldn't be resolved.
+         */
+        @Nullable
+        String digest;
+
+        @Nullable
+        IOException error;
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.DockerRightPadded;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Cursor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Predicts BuildKit layer cache keys for a Dockerfile.
+ * <p>
+ * Each stage is a chain: the {@code FROM} key is derived from the base image (or the final key of the base stage), and
+ * every {@code RUN}, {@code COPY} and {@code ADD} is keyed by its parent key, its normalized text and the build state
+ * it sees. {@code RUN} sees the environment, build arguments, user, working directory and shell; {@code COPY} and
+ * {@code ADD} see the working directory. Instructions which only change image metadata don't produce layers, but
+ * change the key of later layers through that state. Stages referenced by {@code COPY --from} or
+ * {@code RUN --mount=from=} contribute their final key.
+ * <p>
+ * Keys are not BuildKit's own digests, which depend on the resolved base image and the build context, but a change to
+ * a key means BuildKit misses its cache for that layer and for everything after it in the stage. Changes to files in
+ * the build context are only seen when a {@link SourceDigest} is given.
+ */
+public class LayerCacheKeys {
+    private static final Pattern CONTINUATION = Pattern.compile("[\\\\`][ \\t]*\\r?\\n");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern HEREDOC = Pattern.compile("<<(-?)([\"']?)([A-Za-z_][A-Za-z0-9_]*)\\2");
+
+    /**
+     * Digests the build context files an instruction copies.
+     */
+    @FunctionalInterface
+    public interface SourceDigest {
+        SourceDigest NONE = instruction -> null;
+
+        /**
+         * @param instruction A {@code COPY} or {@code ADD} from the build context.
+         * @return A digest of the files the instruction copies, or null when unknown.
+         */
+        @Nullable
+        String digest(Docker.Instruction instruction);
+    }
+
+    @Value
+    public static class Layer {
+        int stage;
+
+        /**
+         * The position of the instruction in the chain of its stage, where 0 is {@code FROM}.
+         */
+        int index;
+
+        Docker.Instruction instruction;
+
+        /**
+         * The instruction text with line continuations, comments and redundant whitespace removed.
+         */
+        String text;
+
+        String key;
+
+        /**
+         * @return True for instructions which add a filesystem layer, false for {@code FROM}.
+         */
+        public boolean isFilesystem() {
+            return index > 0;
+        }
+    }
+
+    @Value
+    public static class Stage {
+        int index;
+
+        /**
+         * The stage name, or its index for unnamed stages.
+         */
+        String name;
+
+        List<Layer> layers;
+
+        /**
+         * @return The key of the last layer, which stages built from or copying from this stage depend on.
+         */
+        public String getFinalKey() {
+            return layers.get(layers.size() - 1).getKey();
+        }
+
+        /**
+         * @return The number of layers which add to the filesystem.
+         */
+        public int getFilesystemLayers() {
+            return layers.size() - 1;
+        }
+    }
+
+    @Value
+    public static class Invalidation {
+        Stage stage;
+
+        /**
+         * The first layer of the stage missing from the cache, or null when the whole stage is cached.
+         */
+        @Nullable
+        Layer firstInvalidated;
+
+        /**
+         * The number of filesystem layers of the stage which will be rebuilt.
+         */
+        int rebuiltLayers;
+    }
+
+    private final List<Stage> stages;
+
+    private LayerCacheKeys(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    public static LayerCacheKeys compute(Docker.Document document) {
+        return compute(document, SourceDigest.NONE);
+    }
+
+    /**
+     * @param document     A parsed Dockerfile.
+     * @param sourceDigest Digests the build context files copied by {@code COPY} and {@code ADD}.
+     * @return The cache keys of each stage.
+     */
+    public static LayerCacheKeys compute(Docker.Document document, SourceDigest sourceDigest) {
+        StageGraph graph = StageGraph.build(document);
+        Map<String, @Nullable String> globalArgs = new LinkedHashMap<>();
+        if (graph.size() > 0) {
+            for (Docker child : graph.get(0).getStage().getChildren()) {
+                if (child instanceof Docker.From) {
+                    break;
+                } else if (child instanceof Docker.Arg) {
+                    declare(globalArgs, ((Docker.Arg) child).getArgs(), Collections.emptyMap());
+                }
+            }
+        }
+
+        Stage[] computed = new Stage[graph.size()];
+        List<Integer> order = new ArrayList<>(graph.topologicalOrder());
+        for (int i = 0; i < graph.size(); i++) {
+            if (!order.contains(i)) {
+                // stages in a dependency cycle are keyed without the stages they can't be built after
+                order.add(i);
+            }
+        }
+        for (Integer index : order) {
+            computed[index] = computeStage(graph, graph.get(index), globalArgs, computed, sourceDigest);
+        }
+        return new LayerCacheKeys(Collections.unmodifiableList(Arrays.asList(computed)));
+    }
+
+    private static Stage computeStage(StageGraph graph, StageGraph.Node node, Map<String, @Nullable String> globalArgs,
+                                      Stage[] computed, SourceDigest sourceDigest) {
+        List<Layer> layers = new ArrayList<>();
+        Map<String, @Nullable String> env = new TreeMap<>();
+        Map<String, @Nullable String> args = new TreeMap<>();
+        String user = "";
+        String workdir = "/";
+        String shell = "";
+        String parent = null;
+
+        for (Docker child : node.getStage().getChildren()) {
+            if (!(child instanceof Docker.Instruction)) {
+                continue;
+            }
+            Docker.Instruction instruction = (Docker.Instruction) child;
+            if (child instanceof Docker.From) {
+                Docker.From from = (Docker.From) child;
+                Integer base = node.getBase();
+                String key;
+                if (base != null && computed[base] != null) {
+                    key = computed[base].getFinalKey();
+                } else {
+                    String image = String.valueOf(from.getImageSpecWithVersion());
+                    key = hash("FROM", String.valueOf(from.getPlatform().getText()), image,
+                            image.contains("$") ? globalArgs.toString() : "");
+                }
+                layers.add(new Layer(node.getIndex(), 0, from, normalize(from), key));
+                parent = key;
+            } else if (parent == null) {
+                // the preamble before the first FROM
+                continue;
+            } else if (child instanceof Docker.Env) {
+                declare(env, ((Docker.Env) child).getArgs(), Collections.emptyMap());
+            } else if (child instanceof Docker.Arg) {
+                declare(args, ((Docker.Arg) child).getArgs(), globalArgs);
+            } else if (child instanceof Docker.User) {
+                user = normalize(instruction);
+            } else if (child instanceof Docker.Shell) {
+                shell = normalize(instruction);
+            } else if (child instanceof Docker.Workdir) {
+                String path = String.valueOf(((Docker.Workdir) child).getPath().getText());
+                workdir = path.startsWith("/") ? path : workdir + (workdir.endsWith("/") ? "" : "/") + path;
+            } else if (child instanceof Docker.Run || child instanceof Docker.Copy || child instanceof Docker.Add) {
+                String text = normalize(instruction);
+                List<Docker.Option> options = child instanceof Docker.Run ? ((Docker.Run) child).getOptions() :
+                        child instanceof Docker.Copy ? ((Docker.Copy) child).getOptions() :
+                                ((Docker.Add) child).getOptions();
+                String references = references(graph, options, computed);
+
+                String key;
+                if (child instanceof Docker.Run) {
+                    key = hash(parent, text, references, env.toString(), args.toString(), user, workdir, shell);
+                } else {
+                    String sources = references.isEmpty() ? sourceDigest.digest(instruction) : null;
+                    key = hash(parent, text, references, workdir, sources == null ? "" : sources);
+                }
+                layers.add(new Layer(node.getIndex(), layers.size(), instruction, text, key));
+                parent = key;
+            }
+        }
+
+        if (layers.isEmpty()) {
+            // a document without FROM
+            layers.add(new Layer(node.getIndex(), 0, Docker.From.build("scratch"), "FROM scratch", hash("FROM")));
+        }
+        return new Stage(node.getIndex(), node.getDisplayName(), Collections.unmodifiableList(layers));
+    }
+
+    private static void declare(Map<String, @Nullable String> into, List<DockerRightPadded<Docker.KeyArgs>> declared,
+                                Map<String, @Nullable String> defaults) {
+        for (DockerRightPadded<Docker.KeyArgs> padded : declared) {
+            Docker.KeyArgs keyArgs = padded.getElement();
+            if (keyArgs.key() == null) {
+                continue;
+            }
+            String value = keyArgs.value();
+            into.put(keyArgs.key(), value == null ? defaults.get(keyArgs.key()) : value);
+        }
+    }
+
+    /**
+     * @return The final keys of the stages named by {@code --from} or {@code --mount=...,from=}.
+     */
+    private static String references(StageGraph graph, @Nullable List<Docker.Option> options, Stage[] computed) {
+        if (options == null) {
+            return "";
+        }
+        StringBuilder keys = new StringBuilder();
+        for (Docker.Option option : options) {
+            Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+            if (keyArgs == null || keyArgs.key() == null || keyArgs.value() == null) {
+                continue;
+            }
+            List<String> references = new ArrayList<>();
+            if ("--from".equalsIgnoreCase(keyArgs.key())) {
+                references.add(keyArgs.value());
+            } else if ("--mount".equalsIgnoreCase(keyArgs.key())) {
+                for (String field : keyArgs.value().split(",")) {
+                    int eq = field.indexOf('=');
+                    if (eq > 0 && "from".equalsIgnoreCase(field.substring(0, eq).trim())) {
+                        references.add(field.substring(eq + 1).trim());
+                    }
+                }
+            }
+            for (String reference : references) {
+                Integer index = graph.find(reference);
+                if (index != null && computed[index] != null) {
+                    keys.append(computed[index].getFinalKey()).append(';');
+                }
+            }
+        }
+        return keys.toString();
+    }
+
+    /**
+     * @param instruction An instruction.
+     * @return The instruction text as BuildKit sees it: line continuations and comment lines are removed, whitespace
+     * is collapsed and the keyword is upper-cased. Heredoc bodies are content, and are appended as they are.
+     */
+    static String normalize(Docker.Instruction instruction) {
+        StringBuilder text = new StringBuilder();
+        StringBuilder heredocs = new StringBuilder();
+        // the delimiters of heredocs whose bodies follow, "-EOF" for <<-EOF, which may be indented with tabs
+        Deque<String> pending = new ArrayDeque<>();
+        for (String line : instruction.print(new Cursor(null, instruction)).split("\\r?\\n")) {
+            if (!pending.isEmpty()) {
+                heredocs.append(line).append('\n');
+                String delimiter = pending.peek();
+                if (delimiter.startsWith("-") ? line.replaceFirst("^\\t+", "").equals(delimiter.substring(1)) :
+                        line.equals(delimiter)) {
+                    pending.poll();
+                }
+            } else if (!line.trim().startsWith("#")) {
+                text.append(line).append('\n');
+                Matcher heredoc = HEREDOC.matcher(line);
+                while (heredoc.find()) {
+                    pending.add(heredoc.group(1) + heredoc.group(3));
+                }
+            }
+        }
+        String joined = CONTINUATION.matcher(text).replaceAll(" ");
+        String collapsed = WHITESPACE.matcher(joined).replaceAll(" ").trim();
+        int space = collapsed.indexOf(' ');
+        String normalized = space < 0 ?
+                collapsed.toUpperCase(Locale.ROOT) :
+                collapsed.substring(0, space).toUpperCase(Locale.ROOT) + collapsed.substring(space);
+        return heredocs.length() == 0 ? normalized : normalized + '\n' + heredocs;
+    }
+
+    private static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder("sha256:");
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return The keys of every layer in the document, which are the layers a build of this version leaves in the
+     * cache.
+     */
+    public Set<String> keys() {
+        Set<String> keys = new HashSet<>();
+        for (Stage stage : stages) {
+            for (Layer layer : stage.getLayers()) {
+                keys.add(layer.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @param before The keys of the previous version, assumed to be in the cache.
+     * @return For each stage of this version, the first layer missing from the cache and the number of filesystem
+     * layers from that point on, which BuildKit rebuilds.
+     */
+    public List<Invalidation> invalidatedSince(LayerCacheKeys before) {
+        Set<String> cached = before.keys();
+        List<Invalidation> invalidations = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            Layer first = null;
+            for (Layer layer : stage.getLayers()) {
+                if (!cached.contains(layer.getKey())) {
+                    first = layer;
+                    break;
+                }
+            }
+            int rebuilt = first == null ? 0 : stage.getLayers().size() - Math.max(1, first.getIndex());
+            invalidations.add(new Invalidation(stage, first, rebuilt));
+        }
+        return invalidations;
+    }
+}
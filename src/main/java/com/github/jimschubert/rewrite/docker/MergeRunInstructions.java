@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.PackageManager;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Quoting;
+import com.github.jimschubert.rewrite.docker.tree.Space;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Merges consecutive shell-form {@code RUN} instructions of a stage into one, joining their commands with {@code &&}
+ * and line continuations.
+ * <p>
+ * Only {@code RUN}s with the same {@code --mount}, {@code --network} and {@code --security} options are merged.
+ * Comments between them become comment lines within the merged instruction, which Docker strips. Separate
+ * {@code RUN}s each start a new shell, so a {@code RUN} which changes the shell's state (e.g. {@code cd},
+ * {@code export}, {@code trap} or a bare {@code VERSION=...} assignment) is only merged as the last of a chain, and
+ * {@code RUN}s with heredocs or inline shell comments are left alone.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class MergeRunInstructions extends Recipe {
+    private static final String INDENT = "    ";
+    // builtins which change the shell, or a command made only of assignments ("VERSION=$(cat v) && ...")
+    private static final Pattern SHELL_STATE = Pattern.compile(
+            "(?:^|[;&|(]\\s*)(?:(?:cd|pushd|popd|export|unset|set|source|\\.|alias|umask|ulimit|shopt|exec|exit|" +
+            "eval|declare|typeset|readonly|trap)(?=\\s|$)|(?:\\w+=(?:\"[^\"]*\"|'[^']*'|\\$\\([^)]*\\)|[^\\s;&|)])*\\s*)+(?=$|[;&|)]))");
+
+    @Option(displayName = "Minimum RUN instructions",
+            description = "Only merge chains of at least this many consecutive `RUN` instructions. Defaults to 2.",
+            example = "3",
+            required = false)
+    @Nullable
+    Integer minimumRuns;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Merge consecutive RUN instructions";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Merges consecutive shell-form `RUN` instructions with the same options into one, joining commands " +
+               "with `&&` and line continuations, to reduce the number of layers. Comments between the instructions " +
+               "are kept within the merged instruction.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        int minimum = minimumRuns == null ? 2 : Math.max(2, minimumRuns);
+        return new DockerIsoVisitor<>() {
+            char escape = '\\';
+
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                escape = escapeCharacter(dockerfile);
+                return super.visitDocument(dockerfile, ctx);
+            }
+
+            @Override
+            public Docker.Stage visitStage(Docker.Stage stage, ExecutionContext ctx) {
+                Docker.Stage s = super.visitStage(stage, ctx);
+                List<Docker> children = s.getChildren();
+                List<Docker> result = new ArrayList<>(children.size());
+                boolean posixShell = true;
+                boolean changed = false;
+                for (int i = 0; i < children.size(); i++) {
+                    Docker child = children.get(i);
+                    if (child instanceof Docker.Shell) {
+                        posixShell = isPosixShell((Docker.Shell) child);
+                    }
+                    if (!posixShell || !(child instanceof Docker.Run) || !isMergeable((Docker.Run) child)) {
+                        result.add(child);
+                        continue;
+                    }
+
+                    // the chain, and the comments between its RUNs
+                    List<Docker> chain = new ArrayList<>();
+                    chain.add(child);
+                    int runs = 1;
+                    int end = i;
+                    int next = i + 1;
+                    while (!changesShellState((Docker.Run) children.get(end))) {
+                        while (next < children.size() && children.get(next) instanceof Docker.Comment) {
+                            next++;
+                        }
+                        if (next >= children.size() || !(children.get(next) instanceof Docker.Run) ||
+                            !isMergeable((Docker.Run) children.get(next)) ||
+                            !sameOptions((Docker.Run) child, (Docker.Run) children.get(next))) {
+                            break;
+                        }
+                        chain.addAll(children.subList(end + 1, next + 1));
+                        runs++;
+                        end = next;
+                        next++;
+                    }
+
+                    if (runs < minimum) {
+                        result.add(child);
+                        continue;
+                    }
+                    result.add(merge(chain, escape));
+                    changed = true;
+                    i = end;
+                }
+                return changed ? s.withChildren(result) : s;
+            }
+        };
+    }
+
+    private static Docker.Run merge(List<Docker> chain, char escape) {
+        Docker.Run first = (Docker.Run) chain.get(0);
+        Docker.Run last = first;
+        List<Docker.Literal> commands = new ArrayList<>(first.getCommands());
+        Space continuation = Space.build(" " + escape + "\n");
+        List<Docker.Comment> comments = new ArrayList<>();
+        for (Docker child : chain.subList(1, chain.size())) {
+            if (child instanceof Docker.Comment) {
+                comments.add((Docker.Comment) child);
+                continue;
+            }
+            Docker.Run run = (Docker.Run) child;
+            int lastIndex = commands.size() - 1;
+            commands.set(lastIndex, commands.get(lastIndex).withTrailing(continuation));
+            for (Docker.Comment comment : comments) {
+                for (String line : comment.getText().getText().split("\n")) {
+                    String prefix = comment.getText().getPrefix().getWhitespace();
+                    commands.add(Docker.Literal.build(Quoting.UNQUOTED, Space.build(INDENT),
+                            ("#" + prefix + line).trim(), Space.NEWLINE));
+                }
+            }
+            comments.clear();
+            commands.add(Docker.Literal.build(Quoting.UNQUOTED, Space.build(INDENT), "&&", Space.EMPTY));
+            commands.addAll(run.getCommands());
+            last = run;
+        }
+        return first.withCommands(commands).withEol(last.getEol());
+    }
+
+    private static boolean isMergeable(Docker.Run run) {
+        if (run.getCommands() == null || run.getCommands().isEmpty()) {
+            return false;
+        }
+        for (Docker.Literal literal : run.getCommands()) {
+            String text = literal.getText();
+            if (literal.getQuoting() == Quoting.UNQUOTED && text != null &&
+                (text.startsWith("<<") || text.startsWith("#"))) {
+                return false;
+            }
+        }
+        String first = run.getCommands().get(0).getText();
+        // exec form runs without a shell
+        if (first == null || first.startsWith("[")) {
+            return false;
+        }
+        // "a; && b" and "a & && b" aren't valid shell, though find's escaped "\;" ends a command as usual
+        String command = PackageManager.commandText(run);
+        return !(command.endsWith("&") || command.endsWith("|") ||
+                 (command.endsWith(";") && !command.endsWith("\\;")));
+    }
+
+    private static boolean changesShellState(Docker.Run run) {
+        return SHELL_STATE.matcher(PackageManager.commandText(run)).find();
+    }
+
+    private static boolean sameOptions(Docker.Run a, Docker.Run b) {
+        return options(a).equals(options(b));
+    }
+
+    private static Set<String> options(Docker.Run run) {
+        if (run.getOptions() == null) {
+            return Collections.emptySet();
+        }
+        return run.getOptions().stream()
+                .map(Docker.Option::getKeyArgs)
+                .filter(Objects::nonNull)
+                .map(keyArgs -> keyArgs.key() + "=" + keyArgs.value())
+                .collect(Collectors.toSet());
+    }
+
+    private static boolean isPosixShell(Docker.Shell shell) {
+        if (shell.getCommands() == null || shell.getCommands().isEmpty()) {
+            return true;
+        }
+        String executable = String.valueOf(shell.getCommands().get(0).getText()).toLowerCase(Locale.ROOT);
+        return executable.endsWith("sh") && !executable.contains("pwsh");
+    }
+
+    private static char escapeCharacter(Docker.Document dockerfile) {
+        if (dockerfile.getStages() != null && !dockerfile.getStages().isEmpty()) {
+            for (Docker child : dockerfile.getStages().get(0).getChildren()) {
+                if (child instanceof Docker.Directive) {
+                    Docker.Directive directive = (Docker.Directive) child;
+                    if ("escape".equalsIgnoreCase(directive.getKey()) && directive.getValue() != null &&
+                        !directive.getValue().isEmpty()) {
+                        return directive.getValue().charAt(0);
+                    }
+                } else if (!(child instanceof Docker.Comment)) {
+                    break;
+                }
+            }
+        }
+        return '\\';
+    }
+}
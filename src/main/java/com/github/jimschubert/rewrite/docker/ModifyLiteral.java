@@ -56,7 +56,7 @@ public class ModifyLiteral extends Recipe {
             return TreeVisitor.noop();
         }
 
-        return DockerLiteral.matcher(matchText)
+        return DockerPreconditions.checkMayMatch(matchText, DockerLiteral.matcher(matchText)
                 .asVisitor(n -> {
                     if (replacementText == null || replacementText.isEmpty()) {
                         return n.withText(replacementText).getTree();
@@ -96,7 +96,7 @@ public class ModifyLiteral extends Recipe {
                     }
 
                     return n.getTree();
-                });
+                }));
     }
 
     @Value
@@ -71,15 +71,15 @@ public class ModifyOptionValue extends Recipe {
     @Override
     public TreeVisitor<?, ExecutionContext> getVisitor() {
         if (parent == null || parent.isEmpty()) {
-            return Traits.option(matchKey, matchValue, true)
+            return DockerPreconditions.checkMayMatch(matchKey, Traits.option(matchKey, matchValue, true)
                     .asVisitor(n -> {
                         Docker.KeyArgs args = n.getTree().getKeyArgs();
                         return n.withArgs(args.withValue(args.getValue().withText(replacementText)))
                                 .getTree();
-                    });
+                    }));
         }
 
-        return Traits.option(matchKey, matchValue, true)
+        return DockerPreconditions.checkMayMatch(matchKey, Traits.option(matchKey, matchValue, true)
                 .asVisitor(n -> {
                     if (matchInstructionRegex) {
                         Tree tree = n.getCursor().getParent().getValue();
@@ -112,6 +112,6 @@ public class ModifyOptionValue extends Recipe {
                     Docker.KeyArgs args = n.getTree().getKeyArgs();
                     return n.withArgs(args.withValue(args.getValue().withText(replacementText)))
                             .getTree();
-                });
+                }));
     }
 }
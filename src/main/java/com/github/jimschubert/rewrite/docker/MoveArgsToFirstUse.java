@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.DockerRightPadded;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves {@code ARG} instructions within a stage down to just before the first instruction which references them.
+ * <p>
+ * A changed build argument invalidates the cache of every instruction after its declaration, so declaring it late
+ * keeps the layers before its first use cached. References are {@code $NAME} or {@code ${NAME...}} anywhere in an
+ * instruction, including options and heredocs, and in later {@code ARG}s, which move along. Comments directly above
+ * an {@code ARG} move with it.
+ * <p>
+ * Global {@code ARG}s before the first {@code FROM} stay where they are, as do {@code ARG}s which are never
+ * referenced and those commonly read from the environment by tools rather than referenced, such as
+ * {@code DEBIAN_FRONTEND} or {@code GOFLAGS}.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class MoveArgsToFirstUse extends Recipe {
+    private static final Pattern VARIABLE = Pattern.compile("\\$\\{(\\w+)|\\$(\\w+)");
+    private static final List<String> ENVIRONMENT_PREFIXES = List.of(
+            "DEBIAN_FRONTEND", "GO", "CGO_", "PIP_", "NPM_CONFIG_", "YARN_", "CARGO_", "RUSTFLAGS", "MAVEN_",
+            "GRADLE_", "JAVA_", "NODE_", "PYTHON");
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Move ARG declarations to their first use";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Moves each `ARG` in a stage to just before the first instruction referencing it, so changing the " +
+               "argument doesn't invalidate the cache of the instructions in between. Global `ARG`s used by `FROM` " +
+               "stay in place, as do arguments which tools read from the environment, such as `DEBIAN_FRONTEND`.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Stage visitStage(Docker.Stage stage, ExecutionContext ctx) {
+                Docker.Stage s = super.visitStage(stage, ctx);
+                List<Docker> children = reorder(s.getChildren());
+                return children == null ? s : s.withChildren(children);
+            }
+        };
+    }
+
+    /**
+     * @return The reordered children, or null if no {@code ARG} moves.
+     */
+    private static @Nullable List<Docker> reorder(List<Docker> children) {
+        int from = -1;
+        for (int i = 0; i < children.size() && from < 0; i++) {
+            if (children.get(i) instanceof Docker.From) {
+                from = i;
+            }
+        }
+        if (from < 0) {
+            return null;
+        }
+
+        List<Set<String>> references = new ArrayList<>(children.size());
+        for (Docker child : children) {
+            references.add(child instanceof Docker.Instruction && !(child instanceof Docker.Comment) ?
+                    references((Docker.Instruction) child) :
+                    Collections.emptySet());
+        }
+
+        // the instruction each ARG moves before; later ARGs first, since an ARG may be referenced by a later one
+        int[] anchor = new int[children.size()];
+        Arrays.fill(anchor, -1);
+        for (int i = children.size() - 1; i > from; i--) {
+            if (!(children.get(i) instanceof Docker.Arg)) {
+                continue;
+            }
+            Set<String> names = names((Docker.Arg) children.get(i));
+            if (names.isEmpty() || names.stream().anyMatch(MoveArgsToFirstUse::isReadFromEnvironment)) {
+                continue;
+            }
+
+            int use = -1;
+            for (int k = i + 1; k < children.size() && (use < 0 || k < use); k++) {
+                if (!Collections.disjoint(references.get(k), names)) {
+                    // a moving ARG is used where it moves to
+                    int at = anchor[k] >= 0 ? anchor[k] : k;
+                    use = use < 0 ? at : Math.min(use, at);
+                }
+            }
+            if (use >= 0 && hasStayingInstruction(children, anchor, i, use)) {
+                anchor[i] = use;
+            }
+        }
+
+        // comments directly above a moving ARG move with it
+        int[] unit = new int[children.size()];
+        Arrays.fill(unit, -1);
+        boolean moving = false;
+        for (int i = from + 1; i < children.size(); i++) {
+            if (anchor[i] < 0) {
+                continue;
+            }
+            moving = true;
+            unit[i] = i;
+            for (int j = i - 1; j > from && children.get(j) instanceof Docker.Comment && anchor[j] < 0 && unit[j] < 0; j--) {
+                unit[j] = i;
+            }
+        }
+        if (!moving) {
+            return null;
+        }
+
+        List<Docker> reordered = new ArrayList<>(children.size());
+        for (int k = 0; k < children.size(); k++) {
+            if (unit[k] >= 0) {
+                continue;
+            }
+            if (!(children.get(k) instanceof Docker.Comment)) {
+                // moved ARGs go above the comments describing the instruction they're used by
+                int comments = 0;
+                while (k - comments - 1 > from && children.get(k - comments - 1) instanceof Docker.Comment &&
+                       unit[k - comments - 1] < 0) {
+                    comments++;
+                }
+                for (int j = 0; j < children.size(); j++) {
+                    if (unit[j] >= 0 && anchor[unit[j]] == k) {
+                        reordered.add(reordered.size() - comments, children.get(j));
+                    }
+                }
+            }
+            reordered.add(children.get(k));
+        }
+        return reordered;
+    }
+
+    private static boolean hasStayingInstruction(List<Docker> children, int[] anchor, int from, int to) {
+        for (int k = from + 1; k < to; k++) {
+            if (anchor[k] < 0 && !(children.get(k) instanceof Docker.Comment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> names(Docker.Arg arg) {
+        Set<String> names = new HashSet<>();
+        if (arg.getArgs() != null) {
+            for (DockerRightPadded<Docker.KeyArgs> padded : arg.getArgs()) {
+                if (padded.getElement() != null && padded.getElement().key() != null) {
+                    names.add(padded.getElement().key());
+                }
+            }
+        }
+        return names;
+    }
+
+    private static Set<String> references(Docker.Instruction instruction) {
+        Set<String> names = new HashSet<>();
+        Matcher matcher = VARIABLE.matcher(instruction.print(new Cursor(null, instruction)));
+        while (matcher.find()) {
+            names.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+        }
+        return names;
+    }
+
+    private static boolean isReadFromEnvironment(String name) {
+        for (String prefix : ENVIRONMENT_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
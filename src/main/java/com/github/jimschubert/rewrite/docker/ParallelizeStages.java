@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.StageReferences;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.DockerRightPadded;
+import com.github.jimschubert.rewrite.docker.tree.Space;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.NlsRewrite;
+import org.openrewrite.Recipe;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.marker.Markers;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits independent groups of work within a stage into stages of their own, which BuildKit builds concurrently.
+ * <p>
+ * A group is a {@code WORKDIR} followed by {@code COPY}, {@code ADD} and {@code RUN} instructions. Consecutive groups
+ * are independent when their directories don't overlap and each group only refers to paths beneath its own
+ * directory. Each group moves to a stage built from the same base, and the original stage copies the directories
+ * back with {@code COPY --from}. Shell commands can write anywhere, so groups are only moved when every command is
+ * known to work in the current directory, such as file utilities, {@code npm ci}, {@code go build}, {@code mvn package}
+ * or {@code make}, without installing or publishing anything, and no argument refers to other absolute paths, the
+ * home directory or parent directories.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class ParallelizeStages extends Recipe {
+    private static final Pattern VARIABLE = Pattern.compile("\\$\\{(\\w+)}|\\$(\\w+)");
+    private static final Pattern TOKEN_DELIMITER = Pattern.compile("[\\s;&|<>()'\"`=,]+");
+    private static final Pattern COMMAND_SEPARATOR = Pattern.compile("\\s*(?:&&|\\|\\||[;|&])\\s*");
+    private static final Pattern ASSIGNMENT = Pattern.compile("^(?:\\w+=\\S*(?:\\s+|$))+");
+    /**
+     * Commands which only write where their arguments say, or below the current directory, apart from caches.
+     */
+    private static final Pattern LOCAL_COMMAND = Pattern.compile(
+            "^(?:cd|mkdir|cp|mv|rm|ln|touch|chmod|cat|echo|printf|sed|tar|unzip|gzip|gunzip|ls|test|true|" +
+            "(?:npm|pnpm)\\s+(?:ci|install|i|run|run-script|test|prune)|yarn(?:\\s+(?:install|run|build|test))?|" +
+            "go\\s+(?:build|test|vet|generate)|cargo\\s+(?:build|test)|(?:\\./)?(?:mvnw?|gradlew?)|make|cmake)(?=\\s|$)");
+    /**
+     * Arguments which make an otherwise local command install or publish outside the current directory.
+     */
+    private static final Pattern GLOBAL_ARGUMENT = Pattern.compile(
+            "(?:^|\\s)(?:-g|--global|--install|--prefix\\S*|install|deploy|link|publish\\w*|DESTDIR=\\S*)(?=\\s|$)");
+    private static final Pattern HOME = Pattern.compile("\\$\\{?HOME\\b|(?:^|\\s)~");
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Split independent work into parallel stages";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Moves consecutive `WORKDIR` groups of `COPY`, `ADD` and `RUN` instructions which don't depend on each " +
+               "other into stages of their own, copying their directories back with `COPY --from`, so BuildKit can " +
+               "build them concurrently. Instructions before the groups become a shared base stage. Numeric stage " +
+               "references are replaced with names, as `NameAllStages` does, since the new stages shift stage indexes. " +
+               "Groups which write outside their own directory, such as by installing packages, are not moved.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                List<Docker.Stage> stages = dockerfile.getStages();
+                if (stages == null || stages.isEmpty()) {
+                    return dockerfile;
+                }
+
+                List<@Nullable Plan> plans = new ArrayList<>(stages.size());
+                boolean split = false;
+                for (Docker.Stage stage : stages) {
+                    Plan plan = plan(stage);
+                    plans.add(plan);
+                    split |= plan != null;
+                }
+                if (!split) {
+                    return dockerfile;
+                }
+
+                Set<String> names = new HashSet<>();
+                for (Docker.Stage stage : stages) {
+                    Docker.From from = findFrom(stage.getChildren());
+                    if (from != null && !isBlank(from.getAlias().getText())) {
+                        names.add(from.getAlias().getText().toLowerCase(Locale.ROOT));
+                    }
+                }
+                List<Docker.Stage> named = nameNumericReferences(stages, names);
+
+                List<Docker.Stage> result = new ArrayList<>();
+                for (int i = 0; i < named.size(); i++) {
+                    Plan plan = plans.get(i);
+                    if (plan == null) {
+                        result.add(named.get(i));
+                    } else {
+                        result.addAll(split(named.get(i), i, plan, names));
+                    }
+                }
+                return dockerfile.withStages(StageReferences.fixLastEol(stages, result));
+            }
+        };
+    }
+
+    @Value
+    private static class Group {
+        String directory;
+        int start;
+        int end;
+    }
+
+    @Value
+    private static class Plan {
+        int from;
+        int blockStart;
+        List<Group> groups;
+        List<Docker.Arg> args;
+    }
+
+    private static @Nullable Plan plan(Docker.Stage stage) {
+        List<Docker> children = stage.getChildren();
+        int from = -1;
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) instanceof Docker.From) {
+                from = i;
+                break;
+            }
+        }
+        if (from < 0) {
+            return null;
+        }
+
+        Map<String, String> env = new HashMap<>();
+        List<Docker.Arg> args = new ArrayList<>();
+        String workdir = "/";
+        for (int i = from + 1; i < children.size(); i++) {
+            Docker child = children.get(i);
+            if (child instanceof Docker.Workdir) {
+                List<Group> groups = groups(children, i, workdir, env);
+                if (groups.size() >= 2) {
+                    return new Plan(from, i, groups, args);
+                }
+                workdir = resolve(workdir, expand(((Docker.Workdir) child).getPath().getText(), env));
+            } else if (child instanceof Docker.Env) {
+                for (DockerRightPadded<Docker.KeyArgs> arg : ((Docker.Env) child).getArgs()) {
+                    Docker.KeyArgs keyArgs = arg.getElement();
+                    if (keyArgs.key() != null && keyArgs.value() != null) {
+                        env.put(keyArgs.key(), expand(keyArgs.value(), env));
+                    }
+                }
+            } else if (child instanceof Docker.Arg) {
+                args.add((Docker.Arg) child);
+                for (DockerRightPadded<Docker.KeyArgs> arg : ((Docker.Arg) child).getArgs()) {
+                    Docker.KeyArgs keyArgs = arg.getElement();
+                    if (keyArgs.key() != null && keyArgs.value() != null) {
+                        env.putIfAbsent(keyArgs.key(), expand(keyArgs.value(), env));
+                    }
+                }
+            } else if (child instanceof Docker.User) {
+                // files copied from another stage are owned by root, so they'd no longer belong to this user
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collect the consecutive independent groups starting with the {@code WORKDIR} at {@code start}.
+     */
+    private static List<Group> groups(List<Docker> children, int start, @Nullable String workdir, Map<String, String> env) {
+        List<Group> groups = new ArrayList<>();
+        int i = start;
+        while (i < children.size() && children.get(i) instanceof Docker.Workdir) {
+            String directory = resolve(workdir, expand(((Docker.Workdir) children.get(i)).getPath().getText(), env));
+            if (directory == null || "/".equals(directory) || isUnder(directory, "/tmp") || isUnder(directory, "/dev")) {
+                break;
+            }
+
+            int end = i + 1;
+            boolean run = false;
+            for (int j = i + 1; j < children.size(); j++) {
+                Docker child = children.get(j);
+                if (child instanceof Docker.Run) {
+                    run = true;
+                } else if (!(child instanceof Docker.Copy || child instanceof Docker.Add || child instanceof Docker.Comment)) {
+                    break;
+                }
+                if (!(child instanceof Docker.Comment)) {
+                    // trailing comments usually describe what follows the group
+                    end = j + 1;
+                }
+            }
+            if (!run || !isSelfContained(children.subList(i + 1, end), directory, env)) {
+                break;
+            }
+            for (Group group : groups) {
+                if (isUnder(directory, group.getDirectory()) || isUnder(group.getDirectory(), directory)) {
+                    return groups;
+                }
+            }
+
+            groups.add(new Group(directory, i, end));
+            workdir = directory;
+            i = end;
+        }
+        return groups;
+    }
+
+    private static boolean isSelfContained(List<Docker> instructions, String directory, Map<String, String> env) {
+        for (Docker instruction : instructions) {
+            if (instruction instanceof Docker.Run) {
+                StringBuilder command = new StringBuilder();
+                for (Docker.Literal literal : ((Docker.Run) instruction).getCommands()) {
+                    command.append(' ').append(literal.getText());
+                }
+                String expanded = expand(command.toString(), env).trim();
+                if (HOME.matcher(expanded).find() || expanded.contains("$(") || expanded.contains("`")) {
+                    return false;
+                }
+                for (String part : COMMAND_SEPARATOR.split(expanded)) {
+                    if (!isLocalCommand(part)) {
+                        return false;
+                    }
+                }
+                for (String token : TOKEN_DELIMITER.split(expanded)) {
+                    if (!isLocalPath(token, directory)) {
+                        return false;
+                    }
+                }
+            } else if (instruction instanceof Docker.Copy || instruction instanceof Docker.Add) {
+                Docker.Literal destination = instruction instanceof Docker.Copy ?
+                        ((Docker.Copy) instruction).getDestination() :
+                        ((Docker.Add) instruction).getDestination();
+                if (destination == null || destination.getText() == null ||
+                    !isLocalPath(expand(destination.getText(), env), directory)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLocalCommand(String command) {
+        String withoutAssignments = ASSIGNMENT.matcher(command).replaceFirst("");
+        if (withoutAssignments.isEmpty()) {
+            // a variable assignment on its own
+            return true;
+        }
+        Matcher matcher = LOCAL_COMMAND.matcher(withoutAssignments);
+        return matcher.lookingAt() && !GLOBAL_ARGUMENT.matcher(withoutAssignments.substring(matcher.end())).find();
+    }
+
+    private static boolean isLocalPath(String token, String directory) {
+        if (token.equals("..") || token.startsWith("../") || token.contains("/../") || token.endsWith("/..")) {
+            return false;
+        }
+        if (token.startsWith("$")) {
+            // an unknown variable used as a path could point anywhere
+            return !token.contains("/");
+        }
+        if (token.startsWith("/")) {
+            return isUnder(token, directory) || isUnder(token, "/tmp") || isUnder(token, "/dev");
+        }
+        return true;
+    }
+
+    private static boolean isUnder(String path, String directory) {
+        String normalized = path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        return normalized.equals(directory) || normalized.startsWith(directory + "/");
+    }
+
+    private static @Nullable String resolve(@Nullable String workdir, @Nullable String path) {
+        if (path == null || path.contains("$")) {
+            return null;
+        }
+        String absolute;
+        if (path.startsWith("/")) {
+            absolute = path;
+        } else if (workdir == null) {
+            return null;
+        } else {
+            absolute = workdir + "/" + path;
+        }
+
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : absolute.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                segments.pollLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+
+    private static String expand(String text, Map<String, String> env) {
+        if (text.indexOf('$') < 0) {
+            return text;
+        }
+        Matcher matcher = VARIABLE.matcher(text);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String name = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            String value = env.get(name);
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value == null ? matcher.group() : value));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static List<Docker.Stage> split(Docker.Stage stage, int index, Plan plan, Set<String> names) {
+        List<Docker> children = stage.getChildren();
+        Docker.From from = (Docker.From) children.get(plan.getFrom());
+        String alias = isBlank(from.getAlias().getText()) ? null : from.getAlias().getText();
+        String prefix = alias == null ? "stage" + index : alias;
+
+        List<Docker.Stage> stages = new ArrayList<>();
+        List<Docker> leading = new ArrayList<>(children.subList(0, plan.getFrom()));
+        List<Docker> setup = children.subList(plan.getFrom() + 1, plan.getBlockStart());
+
+        String base = null;
+        if (!setup.isEmpty()) {
+            base = unique(prefix + "-base", names);
+            List<Docker> baseChildren = new ArrayList<>(leading);
+            baseChildren.add(from.alias(base));
+            baseChildren.addAll(setup);
+            stages.add(new Docker.Stage(Tree.randomId(), baseChildren, Markers.EMPTY));
+        }
+
+        List<String> groupNames = new ArrayList<>();
+        for (Group group : plan.getGroups()) {
+            String name = unique(prefix + "-" + stageName(group.getDirectory()), names);
+            groupNames.add(name);
+            List<Docker> groupChildren = new ArrayList<>();
+            if (stages.isEmpty()) {
+                groupChildren.addAll(leading);
+                groupChildren.add(from.withId(Tree.randomId()).alias(name));
+            } else {
+                groupChildren.add(fromStage(base, from, name));
+                groupChildren.addAll(copies(plan.getArgs()));
+            }
+            // the stage starts from the base, where a relative WORKDIR would resolve differently than after the
+            // previous group
+            Docker.Workdir workdir = (Docker.Workdir) children.get(group.getStart());
+            String path = workdir.getPath().getText();
+            groupChildren.add(path != null && path.startsWith("/") ?
+                    workdir :
+                    workdir.withPath(workdir.getPath().withText(group.getDirectory())));
+            groupChildren.addAll(children.subList(group.getStart() + 1, group.getEnd()));
+            stages.add(new Docker.Stage(Tree.randomId(), groupChildren, Markers.EMPTY));
+        }
+
+        List<Docker> remaining = new ArrayList<>();
+        if (base == null) {
+            remaining.add(from.getPrefix().isEmpty() ? from.withPrefix(Space.build("\n")) : from);
+        } else {
+            Docker.From fromBase = Docker.From.build(base).withPrefix(Space.build("\n"));
+            remaining.add(alias == null ? fromBase : fromBase.alias(alias));
+            remaining.addAll(copies(plan.getArgs()));
+        }
+        List<Group> groups = plan.getGroups();
+        for (int i = 0; i < groups.size(); i++) {
+            remaining.add(copyFrom(groupNames.get(i), groups.get(i).getDirectory()));
+        }
+        remaining.add(Docker.Workdir.build(groups.get(groups.size() - 1).getDirectory()));
+        remaining.addAll(children.subList(groups.get(groups.size() - 1).getEnd(), children.size()));
+        stages.add(stage.withChildren(remaining));
+        return stages;
+    }
+
+    private static Docker.From fromStage(@Nullable String base, Docker.From from, String name) {
+        Docker.From result = base == null ?
+                from.withId(Tree.randomId()).alias(name) :
+                Docker.From.build(base).alias(name);
+        return result.withPrefix(Space.build("\n"));
+    }
+
+    private static List<Docker> copies(List<Docker.Arg> args) {
+        List<Docker> copies = new ArrayList<>(args.size());
+        for (Docker.Arg arg : args) {
+            // ARG is scoped to the stage which declares it
+            copies.add(((Docker.Arg) arg.copyPaste()).withPrefix(Space.EMPTY));
+        }
+        return copies;
+    }
+
+    private static Docker.Copy copyFrom(String stage, String directory) {
+        return new Docker.Copy(Tree.randomId(),
+                Space.EMPTY,
+                new ArrayList<>(Collections.singletonList(Docker.Option.build("--from", stage))),
+                Collections.singletonList(Docker.Literal.build(directory).withPrefix(Space.build(" "))),
+                Docker.Literal.build(directory).withPrefix(Space.build(" ")),
+                Markers.EMPTY,
+                Space.NEWLINE);
+    }
+
+    private static String stageName(String directory) {
+        String last = directory.substring(directory.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+        String name = last.replaceAll("[^a-z0-9._-]+", "-").replaceAll("^[^a-z0-9]+", "");
+        return name.isEmpty() ? "group" : name;
+    }
+
+    private static String unique(String name, Set<String> names) {
+        String candidate = name;
+        for (int i = 2; !names.add(candidate.toLowerCase(Locale.ROOT)); i++) {
+            candidate = name + "-" + i;
+        }
+        return candidate;
+    }
+
+    /**
+     * Stage indexes change once stages are inserted, so refer to stages by name, naming unnamed stages
+     * {@code stage<index>} as {@link NameAllStages} does.
+     */
+    private static List<Docker.Stage> nameNumericReferences(List<Docker.Stage> stages, Set<String> names) {
+        Map<Integer, String> referenced = new TreeMap<>();
+        for (Docker.Stage stage : stages) {
+            for (Docker child : stage.getChildren()) {
+                for (Docker.Option option : StageReferences.options(child)) {
+                    Integer index = StageReferences.numericReference(option, stages.size());
+                    if (index != null) {
+                        referenced.put(index, null);
+                    }
+                }
+            }
+        }
+        if (referenced.isEmpty()) {
+            return stages;
+        }
+
+        List<Docker.Stage> result = new ArrayList<>(stages);
+        for (Integer index : referenced.keySet()) {
+            Docker.Stage stage = result.get(index);
+            Docker.From from = findFrom(stage.getChildren());
+            if (from == null) {
+                continue;
+            }
+            String alias = from.getAlias().getText();
+            if (isBlank(alias)) {
+                alias = unique("stage" + index, names);
+                Docker.From named = from.alias(alias);
+                result.set(index, stage.withChildren(ListUtils.map(stage.getChildren(), c -> c == from ? named : c)));
+            }
+            referenced.put(index, alias);
+        }
+
+        return StageReferences.rename(result, referenced);
+    }
+
+    private static Docker.@Nullable From findFrom(List<Docker> children) {
+        for (Docker child : children) {
+            if (child instanceof Docker.From) {
+                return (Docker.From) child;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBlank(@Nullable String text) {
+        return text == null || text.trim().isEmpty();
+    }
+}
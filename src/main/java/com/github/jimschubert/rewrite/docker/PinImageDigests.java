@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Space;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.marker.Markup;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pins {@code FROM} images to the digest their tag currently points to, keeping the tag for readers, e.g.
+ * {@code FROM alpine:3.20@sha256:...}.
+ * <p>
+ * Images are collected from all Dockerfiles first, then each distinct image and platform is resolved once, a few at
+ * a time. Digests resolved through registries are cached on disk for a while; those read from a digest file aren't.
+ * A {@code FROM --platform=linux/arm64} is pinned to that platform's manifest; without a platform, or with one given
+ * by a build argument, the multi-platform digest of the tag is used. Images built from an earlier stage,
+ * {@code scratch}, images using build arguments and images which are already pinned are left unchanged, as are images
+ * which can't be resolved, which are marked with a warning.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class PinImageDigests extends ScanningRecipe<PinImageDigests.Accumulator> {
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final int DEFAULT_TTL_HOURS = 24;
+
+    @Option(displayName = "Digest file",
+            description = "A JSON file mapping image references to digests, used instead of asking registries. " +
+                          "Each value is either a digest, or an object with the `digest` of the tag and the digests " +
+                          "of its `platforms`. By default, digests are resolved through each image's registry.",
+            example = "image-digests.json",
+            required = false)
+    @Nullable
+    String digestFile;
+
+    @Option(displayName = "Cache directory",
+            description = "The directory to keep digests resolved through registries in between runs. Defaults to " +
+                          "a directory below the system temporary directory. Digests read from a digest file aren't " +
+                          "cached.",
+            example = "/home/user/.cache/rewrite-docker",
+            required = false)
+    @Nullable
+    String cacheDirectory;
+
+    @Option(displayName = "Cache time to live",
+            description = "The number of hours a cached digest is used before the registry is asked again. " +
+                          "Defaults to 24.",
+            example = "1",
+            required = false)
+    @Nullable
+    Integer cacheTtlHours;
+
+    @Option(displayName = "Maximum concurrency",
+            description = "The maximum number of images resolved at once. Defaults to 4.",
+            example = "8",
+            required = false)
+    @Nullable
+    Integer maxConcurrency;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Pin FROM images to digests";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Adds the digest each `FROM` image's tag currently points to, keeping the tag, so builds are " +
+               "reproducible and don't look tags up. Images with `--platform` are pinned to that platform's " +
+               "manifest. Digests resolved through registries are cached on disk.";
+    }
+
+    @Override
+    public Accumulator getInitialValue(ExecutionContext ctx) {
+        return new Accumulator();
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getScanner(Accumulator acc) {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                StageGraph graph = StageGraph.build(dockerfile);
+                for (int i = 0; i < graph.size(); i++) {
+                    ImageDigests.Lookup lookup = lookup(graph.get(i));
+                    if (lookup != null) {
+                        acc.lookups.add(lookup);
+                    }
+                }
+                return dockerfile;
+            }
+        };
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor(Accumulator acc) {
+        Map<ImageDigests.Lookup, ImageDigests.Digest> digests = acc.digests(this);
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                StageGraph graph = StageGraph.build(dockerfile);
+                int[] index = {0};
+                return dockerfile.withStages(ListUtils.map(dockerfile.getStages(), stage -> {
+                    ImageDigests.Lookup lookup = lookup(graph.get(index[0]++));
+                    ImageDigests.Digest digest = lookup == null ? null : digests.get(lookup);
+                    if (digest == null) {
+                        return stage;
+                    }
+                    return stage.withChildren(ListUtils.map(stage.getChildren(), child -> {
+                        if (!(child instanceof Docker.From)) {
+                            return child;
+                        } else if (digest.getDigest() == null) {
+                            //noinspection ConstantConditions
+                            return Markup.warn(child, digest.getError());
+                        }
+                        return pin((Docker.From) child, digest.getDigest());
+                    }));
+                }));
+            }
+        };
+    }
+
+    /**
+     * @return The image and platform a stage's {@code FROM} resolves, or null if it shouldn't be pinned.
+     */
+    private static ImageDigests.@Nullable Lookup lookup(StageGraph.Node node) {
+        Docker.From from = null;
+        for (Docker child : node.getStage().getChildren()) {
+            if (child instanceof Docker.From) {
+                from = (Docker.From) child;
+                break;
+            }
+        }
+        if (from == null || node.getBase() != null || from.getDigest() != null) {
+            return null;
+        }
+        String image = from.getImageSpecWithVersion();
+        if (image == null || image.isEmpty() || image.contains("$") || "scratch".equalsIgnoreCase(image)) {
+            return null;
+        }
+
+        String platform = from.getPlatform() == null ? null : from.getPlatform().getText();
+        if (platform != null) {
+            int eq = platform.indexOf('=');
+            platform = eq < 0 ? null : platform.substring(eq + 1).trim();
+            if (platform != null && (platform.isEmpty() || platform.contains("$"))) {
+                // a build argument, usually one of the automatic platform arguments, chosen at build time
+                platform = null;
+            }
+        }
+        return new ImageDigests.Lookup(image, platform);
+    }
+
+    private static Docker.From pin(Docker.From from, String digest) {
+        Docker.Literal image = from.getImage();
+        if (from.getVersion().getText() == null && !image.getTrailing().isEmpty()) {
+            // the image's trailing whitespace follows the new version
+            from = from.withImage(image.withTrailing(Space.EMPTY))
+                    .withVersion(from.getVersion().withTrailing(image.getTrailing()));
+        }
+        return from.withDigest(digest);
+    }
+
+    private ImageDigests imageDigests() {
+        if (digestFile != null) {
+            // the file is cheap to read, and its digests must neither be cached for registry lookups nor be
+            // overridden by digests cached from them
+            return new ImageDigests(ImageDigestResolver.file(Paths.get(digestFile)), null, Duration.ZERO,
+                    maxConcurrency == null ? DEFAULT_CONCURRENCY : maxConcurrency);
+        }
+        Path cache = cacheDirectory == null ?
+                Paths.get(System.getProperty("java.io.tmpdir"), "rewrite-docker", "image-digests") :
+                Paths.get(cacheDirectory);
+        return new ImageDigests(
+                ImageDigestResolver.registry(),
+                cache,
+                Duration.ofHours(cacheTtlHours == null ? DEFAULT_TTL_HOURS : cacheTtlHours),
+                maxConcurrency == null ? DEFAULT_CONCURRENCY : maxConcurrency);
+    }
+
+    public static class Accumulator {
+        final Set<ImageDigests.Lookup> lookups = ConcurrentHashMap.newKeySet();
+        @Nullable
+        Map<ImageDigests.Lookup, ImageDigests.Digest> digests;
+
+        synchronized Map<ImageDigests.Lookup, ImageDigests.Digest> digests(PinImageDigests recipe) {
+            if (digests == null) {
+                // resolved once, after every file has been scanned
+                digests = recipe.imageDigests().digest(lookups);
+            }
+            return digests;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.DockerfileSyntax;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.marker.Markup;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Pins {@code ADD <url>} instructions to the current content of the file with {@code --checksum=sha256:...}, so
+ * builds fail instead of silently using a changed file.
+ * <p>
+ * URLs are collected from all Dockerfiles first, then each is fetched once, a few at a time, and hashed. Digests are
+ * cached on disk under the URL and ETag between runs. Sources using build arguments, git repositories and
+ * instructions with more than one source are left unchanged, as are instructions whose file can't be fetched,
+ * which are marked with a warning.
+ * <p>
+ * {@code --checksum} needs Dockerfile syntax 1.6 or newer, so the {@code # syntax} directive is added or updated as
+ * for {@link AddCopyLink}.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class PinRemoteAddChecksums extends ScanningRecipe<PinRemoteAddChecksums.Accumulator> {
+    private static final Pattern REMOTE = Pattern.compile("(?i)https?://[^$\\s]+");
+    private static final Pattern GIT = Pattern.compile("(?i).*\\.git(?:#.*)?$");
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    @Option(displayName = "Mirror directory",
+            description = "A directory to read remote files from instead of downloading them, laid out as " +
+                          "`<host>/<path>`. By default, files are downloaded over HTTP(S).",
+            example = "/srv/mirror",
+            required = false)
+    @Nullable
+    String mirrorDirectory;
+
+    @Option(displayName = "Cache directory",
+            description = "The directory to keep file digests in between runs. Defaults to a directory below the " +
+                          "system temporary directory.",
+            example = "/home/user/.cache/rewrite-docker",
+            required = false)
+    @Nullable
+    String cacheDirectory;
+
+    @Option(displayName = "Maximum concurrency",
+            description = "The maximum number of files fetched at once. Defaults to 4.",
+            example = "8",
+            required = false)
+    @Nullable
+    Integer maxConcurrency;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Pin remote ADD sources with --checksum";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Adds `--checksum=sha256:...` to `ADD` instructions downloading a file over HTTP(S), using the " +
+               "digest of the file's current content. Digests are cached on disk under the file's URL and ETag. " +
+               "A `# syntax=docker/dockerfile:1` directive is added when the Dockerfile doesn't already use " +
+               "syntax 1.6 or newer.";
+    }
+
+    @Override
+    public Accumulator getInitialValue(ExecutionContext ctx) {
+        return new Accumulator();
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getScanner(Accumulator acc) {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Add visitAdd(Docker.Add add, ExecutionContext ctx) {
+                String url = remoteSource(add);
+                if (url != null) {
+                    acc.urls.add(url);
+                }
+                return add;
+            }
+        };
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor(Accumulator acc) {
+        Map<String, RemoteFileDigests.Digest> digests = acc.digests(this);
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                Boolean syntax = DockerfileSyntax.supports(dockerfile, 6);
+                if (syntax == null) {
+                    return dockerfile;
+                }
+
+                int[] pinned = {0};
+                Docker.Document d = dockerfile.withStages(ListUtils.map(dockerfile.getStages(), stage ->
+                        stage.withChildren(ListUtils.map(stage.getChildren(), child -> {
+                            String url = child instanceof Docker.Add ? remoteSource((Docker.Add) child) : null;
+                            RemoteFileDigests.Digest digest = url == null ? null : digests.get(url);
+                            if (digest == null) {
+                                return child;
+                            } else if (digest.getDigest() == null) {
+                                //noinspection ConstantConditions
+                                return Markup.warn(child, digest.getError());
+                            }
+                            pinned[0]++;
+                            return pin((Docker.Add) child, digest.getDigest());
+                        }))));
+                if (pinned[0] > 0 && !syntax) {
+                    d = DockerfileSyntax.requireLatest(dockerfile, d, ctx);
+                }
+                return d;
+            }
+        };
+    }
+
+    /**
+     * @return The URL of an {@code ADD} which can be pinned, or null.
+     */
+    private static @Nullable String remoteSource(Docker.Add add) {
+        if (add.getSources() == null || add.getSources().size() != 1) {
+            return null;
+        }
+        if (add.getOptions() != null) {
+            for (Docker.Option option : add.getOptions()) {
+                if (option != null && option.getKeyArgs() != null && "--checksum".equalsIgnoreCase(option.getKeyArgs().key())) {
+                    return null;
+                }
+            }
+        }
+        String text = add.getSources().get(0).getText();
+        return text == null || !REMOTE.matcher(text).matches() || GIT.matcher(text).matches() ? null : text;
+    }
+
+    private static Docker.Add pin(Docker.Add add, String digest) {
+        // the new option goes first, so existing options keep their line continuations
+        List<Docker.Option> options = new ArrayList<>();
+        options.add(Docker.Option.build("--checksum", digest));
+        if (add.getOptions() != null) {
+            options.addAll(add.getOptions());
+        }
+        return add.withOptions(options);
+    }
+
+    private RemoteFileDigests remoteFileDigests() {
+        Path cache = cacheDirectory == null ?
+                Paths.get(System.getProperty("java.io.tmpdir"), "rewrite-docker", "remote-files") :
+                Paths.get(cacheDirectory);
+        return new RemoteFileDigests(
+                mirrorDirectory == null ? RemoteFileResolver.http() : RemoteFileResolver.directory(Paths.get(mirrorDirectory)),
+                cache,
+                maxConcurrency == null ? DEFAULT_CONCURRENCY : maxConcurrency);
+    }
+
+    public static class Accumulator {
+        final Set<String> urls = ConcurrentHashMap.newKeySet();
+        @Nullable
+        Map<String, RemoteFileDigests.Digest> digests;
+
+        synchronized Map<String, RemoteFileDigests.Digest> digests(PinRemoteAddChecksums recipe) {
+            if (digests == null) {
+                // fetched once, after every file has been scanned
+                digests = recipe.remoteFileDigests().digest(urls);
+            }
+            return digests;
+        }
+    }
+}
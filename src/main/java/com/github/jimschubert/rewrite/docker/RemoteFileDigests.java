@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.BoundedLookups;
+import com.github.jimschubert.rewrite.docker.internal.DiskCache;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes the SHA-256 digests of remote files, in the {@code sha256:<hex>} form {@code ADD --checksum} expects.
+ * <p>
+ * Files are fetched through a {@link RemoteFileResolver} by a bounded number of threads and hashed as they stream
+ * in, so no file is held in memory. With a cache directory, digests are kept under the file's URL and ETag, and a
+ * file which hasn't changed isn't downloaded again; files without an ETag are always downloaded.
+ */
+public class RemoteFileDigests {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RemoteFileResolver resolver;
+    private final @Nullable DiskCache cache;
+    private final int concurrency;
+
+    /**
+     * @param resolver       Fetches the files.
+     * @param cacheDirectory The directory to keep digests in between runs, or null to not cache them.
+     * @param concurrency    The maximum number of files fetched at once.
+     */
+    public RemoteFileDigests(RemoteFileResolver resolver, @Nullable Path cacheDirectory, int concurrency) {
+        this.resolver = resolver;
+        this.cache = cacheDirectory == null ? null : new DiskCache(cacheDirectory, null);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * @param urls The files to digest, each fetched once.
+     * @return The digest, or the reason there is none, of each file.
+     */
+    public Map<String, Digest> digest(Collection<String> urls) {
+        Map<String, Digest> digests = new LinkedHashMap<>();
+        BoundedLookups.run(urls, concurrency, this::digest).forEach((url, outcome) ->
+                digests.put(url, new Digest(url, outcome.getValue(), outcome.getError())));
+        return digests;
+    }
+
+    /**
+     * @param url The file to digest.
+     * @return The file's digest, as {@code sha256:<hex>}.
+     * @throws IOException If the file can't be fetched.
+     */
+    public String digest(String url) throws IOException {
+        String etag = resolver.etag(url);
+        String key = etag == null ? null : url + "\n" + etag;
+        if (cache != null && key != null) {
+            String cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = resolver.open(url)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                sha256.update(buffer, 0, read);
+            }
+        }
+        StringBuilder digest = new StringBuilder("sha256:");
+        for (byte b : sha256.digest()) {
+            digest.append(String.format("%02x", b));
+        }
+
+        if (cache != null && key != null) {
+            cache.put(key, digest.toString());
+        }
+        return digest.toString();
+    }
+
+    @Value
+    public static class Digest {
+        String url;
+
+        /**
+         * The digest, as {@code sha256:<hex>}, or null if the file couldn't be fetched.
+         */
+        @Nullable
+        String digest;
+
+        @Nullable
+        IOException error;
+    }
+}
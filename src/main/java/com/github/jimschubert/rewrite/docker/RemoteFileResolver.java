@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.DirectoryRemoteFileResolver;
+import com.github.jimschubert.rewrite.docker.internal.HttpRemoteFileResolver;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Fetches the remote files referenced by {@code ADD <url>}.
+ */
+public interface RemoteFileResolver {
+    /**
+     * @param url The file's URL.
+     * @return A value which changes whenever the file's content does, such as its ETag, or null if there is none.
+     * @throws IOException If the file can't be found.
+     */
+    @Nullable
+    String etag(String url) throws IOException;
+
+    /**
+     * @param url The file's URL.
+     * @return The file's content, which the caller closes.
+     * @throws IOException If the file can't be fetched.
+     */
+    InputStream open(String url) throws IOException;
+
+    /**
+     * @return A resolver downloading files over HTTP(S), using the {@code ETag} or {@code Last-Modified} header.
+     */
+    static RemoteFileResolver http() {
+        return new HttpRemoteFileResolver();
+    }
+
+    /**
+     * @param root A directory mirroring remote files as {@code <host>/<path>}.
+     * @return A resolver reading files from the mirror instead of the network.
+     */
+    static RemoteFileResolver directory(Path root) {
+        return new DirectoryRemoteFileResolver(root);
+    }
+}
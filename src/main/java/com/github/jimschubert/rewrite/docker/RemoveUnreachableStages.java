@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.StageReferences;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+
+import java.util.*;
+
+/**
+ * Removes stages which the target stage doesn't depend on, directly or transitively, through {@code FROM},
+ * {@code COPY --from} or {@code RUN --mount=from=}. BuildKit skips such stages, but the classic builder runs them.
+ * <p>
+ * Comments before a removed stage's {@code FROM} are removed with it. Instructions before the first {@code FROM},
+ * such as directives and global {@code ARG}s, are always kept, as are comments at the top of the file. Numeric stage
+ * references are renumbered. Dockerfiles whose stage references use build arguments are left unchanged, since any
+ * stage may be the one an argument names.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class RemoveUnreachableStages extends Recipe {
+    @Option(displayName = "Target",
+            description = "The stage to build, as with `docker build --target`. Defaults to the final stage, " +
+                          "which is also used for Dockerfiles without a stage of this name.",
+            example = "release",
+            required = false)
+    @Nullable
+    String target;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Remove unreachable stages";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Removes stages which the final stage, or the given target, doesn't use through `FROM`, " +
+               "`COPY --from` or `RUN --mount=from=`. The classic builder builds every stage up to the target, " +
+               "used or not. Stages after the target are removed too, since they can't be built. Numeric stage " +
+               "references are renumbered. Dockerfiles which refer to stages through build arguments are left unchanged.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                StageGraph graph = StageGraph.build(dockerfile);
+                // a stage named through a build argument may be needed by a build which sets it
+                if (graph.size() < 2 || !graph.isAcyclic() || graph.hasVariableReferences() ||
+                    findFrom(dockerfile.getStages().get(0)) < 0) {
+                    return dockerfile;
+                }
+                Integer index = target == null ? null : graph.find(target);
+                Set<Integer> reachable = new HashSet<>(graph.reachableFrom(index == null ? graph.getFinalStage() : index));
+                if (reachable.size() == graph.size()) {
+                    return dockerfile;
+                }
+                return dockerfile.withStages(prune(dockerfile.getStages(), reachable));
+            }
+        };
+    }
+
+    private static List<Docker.Stage> prune(List<Docker.Stage> stages, Set<Integer> reachable) {
+        List<Docker.Stage> result = new ArrayList<>();
+        List<Docker> carried = new ArrayList<>();
+        Map<Integer, String> renumbered = new HashMap<>();
+        for (int i = 0; i < stages.size(); i++) {
+            Docker.Stage stage = stages.get(i);
+            List<Docker> children = stage.getChildren();
+            int from = findFrom(stage);
+            int tail = children.size();
+            while (tail > from + 1 && children.get(tail - 1) instanceof Docker.Comment) {
+                tail--;
+            }
+
+            // the comments after a stage's last instruction belong to the next stage
+            boolean nextKept = i == stages.size() - 1 || reachable.contains(i + 1);
+            List<Docker> kept = new ArrayList<>();
+            if (reachable.contains(i)) {
+                if (i != result.size()) {
+                    renumbered.put(i, String.valueOf(result.size()));
+                }
+                kept.addAll(carried);
+                carried.clear();
+                kept.addAll(children.subList(0, tail));
+                if (nextKept) {
+                    kept.addAll(children.subList(tail, children.size()));
+                }
+                result.add(stage.withChildren(kept));
+                continue;
+            }
+
+            if (from > 0) {
+                // directives and global ARGs, but not comments describing the removed stage
+                int header = from;
+                while (header > 0 && children.get(header - 1) instanceof Docker.Comment) {
+                    header--;
+                }
+                kept.addAll(children.subList(0, header == 0 ? from : header));
+            }
+            if (nextKept) {
+                kept.addAll(children.subList(tail, children.size()));
+            }
+            if (result.isEmpty()) {
+                carried.addAll(kept);
+            } else {
+                Docker.Stage previous = result.get(result.size() - 1);
+                List<Docker> appended = new ArrayList<>(previous.getChildren());
+                appended.addAll(kept);
+                result.set(result.size() - 1, previous.withChildren(appended));
+            }
+        }
+        return StageReferences.fixLastEol(stages, StageReferences.rename(result, renumbered));
+    }
+
+    private static int findFrom(Docker.Stage stage) {
+        List<Docker> children = stage.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) instanceof Docker.From) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
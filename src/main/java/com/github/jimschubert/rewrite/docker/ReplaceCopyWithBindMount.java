@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.internal.DockerfileSyntax;
+import com.github.jimschubert.rewrite.docker.internal.PackageManager;
+import com.github.jimschubert.rewrite.docker.internal.StageReferences;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.NlsRewrite;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces a {@code COPY} whose files are only read by the {@code RUN} after it with a bind mount on that
+ * {@code RUN}, so the files are never written to a layer.
+ * <p>
+ * A {@code COPY} is only replaced when it copies a single source to a known path, with no options other than
+ * {@code --from} and {@code --link}, and only {@code COPY}s and comments separate it from the {@code RUN}, which must
+ * refer to the copied path. The copied path must not be referred to by any other instruction of the stage, of stages
+ * built {@code FROM} it, or by {@code COPY --from} and {@code RUN --mount=from=} in other stages, and must not be the
+ * working directory of any later instruction, which could read it by a relative path. A relative destination is only
+ * known after an absolute {@code WORKDIR} in the stage or a stage it is built {@code FROM}, since base images set their
+ * own. Paths below system directories such as {@code /etc} or {@code /usr}, which base images populate and a mount
+ * would hide, are left alone. Directory mounts are read-write, so a {@code RUN} building in place still works; its
+ * changes are discarded with the mount.
+ * <p>
+ * {@code RUN --mount} needs Dockerfile syntax 1.2 or newer, so a {@code # syntax=docker/dockerfile:1} directive is
+ * added when there is none and replaces an older {@code docker/dockerfile} version, keeping a {@code -labs} channel.
+ * Files pinning an older version by digest are left unchanged and marked with a warning.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class ReplaceCopyWithBindMount extends Recipe {
+    private static final Pattern COMMAND_SEPARATOR = Pattern.compile("\\s*(?:&&|\\|\\||;)\\s*");
+    private static final Pattern ABSOLUTE_PATH = Pattern.compile("(?<![\\w.$-])/[\\w./-]*");
+    private static final List<String> SYSTEM_DIRECTORIES = List.of(
+            "/bin", "/boot", "/dev", "/etc", "/home", "/lib", "/lib32", "/lib64", "/libx32", "/media", "/mnt", "/opt",
+            "/proc", "/root", "/run", "/sbin", "/srv", "/sys", "/usr", "/var");
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Replace build-only COPY with a bind mount";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Replaces a `COPY` whose files are only read by the following `RUN` with " +
+               "`RUN --mount=type=bind,source=...,target=...`, so install scripts, lockfiles and sources which are " +
+               "compiled and discarded don't end up in a layer. A `# syntax=docker/dockerfile:1` directive is added " +
+               "when the Dockerfile doesn't already use syntax 1.2 or newer.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                Boolean syntax = DockerfileSyntax.supports(dockerfile, 2);
+                if (syntax == null) {
+                    return dockerfile;
+                }
+
+                StageGraph graph = StageGraph.build(dockerfile);
+                String[] workdirs = new String[graph.size()];
+                for (StageGraph.Node node : graph.getNodes()) {
+                    workdirs[node.getIndex()] = workdir(node.getStage().getChildren(), startWorkdir(graph, workdirs, node));
+                }
+
+                int[] index = {0};
+                Docker.Document d = dockerfile.withStages(ListUtils.map(dockerfile.getStages(), stage ->
+                        replaceCopies(graph, workdirs, index[0]++)));
+                if (d != dockerfile && !syntax) {
+                    d = DockerfileSyntax.requireLatest(dockerfile, d, ctx);
+                }
+                return d;
+            }
+        };
+    }
+
+    private static Docker.Stage replaceCopies(StageGraph graph, String[] workdirs, int index) {
+        StageGraph.Node node = graph.get(index);
+        List<Docker> children = node.getStage().getChildren();
+        Map<Integer, List<Docker.Option>> mounts = new HashMap<>();
+        Set<Integer> replaced = new HashSet<>();
+
+        String workdir = startWorkdir(graph, workdirs, node);
+        boolean afterFrom = false;
+        for (int i = 0; i < children.size(); i++) {
+            Docker child = children.get(i);
+            if (child instanceof Docker.From) {
+                afterFrom = true;
+            } else if (child instanceof Docker.Workdir) {
+                workdir = workdir(Collections.singletonList(child), workdir);
+            } else if (afterFrom && child instanceof Docker.Copy) {
+                int run = nextRun(children, i);
+                if (run < 0) {
+                    continue;
+                }
+                Docker.Option mount = mount((Docker.Copy) child, workdir);
+                if (mount != null && isOnlyReadBy(graph, workdirs, index, i, run, mount)) {
+                    mounts.computeIfAbsent(run, r -> new ArrayList<>()).add(mount);
+                    replaced.add(i);
+                }
+            }
+        }
+        if (replaced.isEmpty()) {
+            return node.getStage();
+        }
+
+        List<Docker> result = new ArrayList<>(children.size() - replaced.size());
+        for (int i = 0; i < children.size(); i++) {
+            if (replaced.contains(i)) {
+                continue;
+            }
+            Docker child = children.get(i);
+            if (mounts.containsKey(i)) {
+                Docker.Run run = (Docker.Run) child;
+                // new options go first, so existing options keep their line continuations
+                List<Docker.Option> options = new ArrayList<>(mounts.get(i));
+                if (run.getOptions() != null) {
+                    options.addAll(run.getOptions());
+                }
+                child = run.withOptions(options);
+            }
+            result.add(child);
+        }
+        return node.getStage().withChildren(result);
+    }
+
+    /**
+     * @return The index of the {@code RUN} following the {@code COPY} at {@code copy}, separated from it only by
+     * comments and other {@code COPY}s, or -1.
+     */
+    private static int nextRun(List<Docker> children, int copy) {
+        for (int i = copy + 1; i < children.size(); i++) {
+            Docker child = children.get(i);
+            if (child instanceof Docker.Run) {
+                return i;
+            } else if (!(child instanceof Docker.Comment) && !(child instanceof Docker.Copy)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The bind mount equivalent to the {@code COPY}, or null when the copied path isn't known or a mount would
+     * behave differently.
+     */
+    private static Docker.@Nullable Option mount(Docker.Copy copy, String workdir) {
+        if (copy.getSources() == null || copy.getSources().size() != 1 || copy.getDestination() == null) {
+            return null;
+        }
+        String source = copy.getSources().get(0).getText();
+        String destination = copy.getDestination().getText();
+        // a relative destination needs the working directory, which base images set without the Dockerfile saying
+        if (source == null || destination == null || (workdir.contains("$") && !destination.startsWith("/")) ||
+            destination.contains("$") ||
+            source.isEmpty() || !source.matches("[\\w./@+-]+") || source.startsWith("<<")) {
+            return null;
+        }
+
+        String from = null;
+        if (copy.getOptions() != null) {
+            for (Docker.Option option : copy.getOptions()) {
+                Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+                if (keyArgs == null) {
+                    continue;
+                }
+                if ("--from".equalsIgnoreCase(keyArgs.key()) && keyArgs.value() != null && !keyArgs.value().contains("$")) {
+                    from = keyArgs.value();
+                } else if (!"--link".equalsIgnoreCase(keyArgs.key())) {
+                    // ownership, permissions and exclusions have no bind mount equivalent
+                    return null;
+                }
+            }
+        }
+
+        String name = source.replaceAll("/+\\.?$", "");
+        name = name.substring(name.lastIndexOf('/') + 1);
+        // names like conf.d and .config are as likely to be directories as files
+        boolean directory = source.equals(".") || source.endsWith("/") || source.endsWith("/.") || !name.contains(".") ||
+                            name.startsWith(".") || name.endsWith(".d");
+        String target = AddCopyLink.resolve(workdir, destination);
+        if (destination.equals(".") || destination.equals("..") || destination.endsWith("/") || destination.endsWith("/.")) {
+            if (!source.equals(".") && !source.endsWith("/") && !source.endsWith("/.")) {
+                if (directory || name.equals("..")) {
+                    // a file or the contents of a directory, which can't be told apart without the build context
+                    return null;
+                }
+                target = AddCopyLink.resolve(target, name);
+            }
+        }
+        if (target.equals("/") || target.equals("/tmp")) {
+            return null;
+        }
+        for (String system : SYSTEM_DIRECTORIES) {
+            if (isWithin(target, system)) {
+                return null;
+            }
+        }
+
+        String fields = "type=bind" + (from == null ? "" : ",from=" + from) + ",source=" + source + ",target=" + target +
+                        (directory ? ",rw" : "");
+        return Docker.Option.build("--mount", fields);
+    }
+
+    private static boolean isOnlyReadBy(StageGraph graph, String[] workdirs, int index, int copy, int run,
+                                        Docker.Option mount) {
+        //noinspection ConstantConditions
+        String target = field(mount, "target");
+        // files are read by their name, except for those tools look for in the working directory
+        String name = target.substring(target.lastIndexOf('/') + 1);
+        boolean implicit = mount.getKeyArgs().value().endsWith(",rw") || name.startsWith(".") || PackageManager.isManifest(name);
+        StageGraph.Node node = graph.get(index);
+        List<Docker> children = node.getStage().getChildren();
+
+        String workdir = startWorkdir(graph, workdirs, node);
+        boolean afterFrom = false;
+        for (int i = 0; i < children.size(); i++) {
+            Docker child = children.get(i);
+            if (child instanceof Docker.From) {
+                afterFrom = true;
+            } else if (child instanceof Docker.Workdir) {
+                workdir = workdir(Collections.singletonList(child), workdir);
+                // creating the working directory doesn't put files in the way of the mount
+                if (i < copy) {
+                    continue;
+                }
+            }
+            if (!afterFrom || i == copy || child instanceof Docker.Comment) {
+                continue;
+            }
+
+            String text = child.print(new Cursor(null, child));
+            if (i == run) {
+                Docker.Run r = (Docker.Run) child;
+                if (!refersTo(r.withOptions(null).print(new Cursor(null, r)), target) || removes(r, target) ||
+                    isMounted(r, target)) {
+                    return false;
+                }
+            } else if (refersTo(text, target) || (implicit && i > copy && isWorkingIn(child, workdir, target))) {
+                return false;
+            }
+        }
+
+        // the files copied by a base stage could be in the way of the mount
+        for (Integer base = node.getBase(); base != null; base = graph.get(base).getBase()) {
+            for (Docker child : graph.get(base).getStage().getChildren()) {
+                if (!(child instanceof Docker.From) && refersTo(child.print(new Cursor(null, child)), target)) {
+                    return false;
+                }
+            }
+        }
+
+        Set<Integer> derived = new HashSet<>();
+        derived.add(index);
+        for (StageGraph.Node other : graph.getNodes()) {
+            if (other.getBase() != null && derived.contains(other.getBase())) {
+                derived.add(other.getIndex());
+                String inherited = workdirs[other.getBase()];
+                for (Docker child : other.getStage().getChildren()) {
+                    if (child instanceof Docker.From) {
+                        continue;
+                    } else if (child instanceof Docker.Workdir) {
+                        inherited = workdir(Collections.singletonList(child), inherited);
+                    }
+                    if (refersTo(child.print(new Cursor(null, child)), target) || (implicit && isWorkingIn(child, inherited, target))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        for (StageGraph.Node other : graph.getNodes()) {
+            if (derived.contains(other.getIndex())) {
+                continue;
+            }
+            for (Docker child : other.getStage().getChildren()) {
+                if (readsFromStage(graph, child, derived, target)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the instruction mentions the target's name, or an absolute path containing the target.
+     */
+    private static boolean refersTo(String text, String target) {
+        String name = target.substring(target.lastIndexOf('/') + 1);
+        if (Pattern.compile("(?<![\\w.-])" + Pattern.quote(name) + "(?![\\w.-])").matcher(text).find()) {
+            return true;
+        }
+        Matcher matcher = ABSOLUTE_PATH.matcher(text);
+        while (matcher.find()) {
+            String path = AddCopyLink.resolve("/", matcher.group());
+            if (!path.equals("/") && isWithin(target, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the instruction runs a command in or above the target, which could read it by a relative path.
+     */
+    private static boolean isWorkingIn(Docker child, String workdir, String target) {
+        if (!(child instanceof Docker.Run) && !(child instanceof Docker.Cmd) && !(child instanceof Docker.Entrypoint) &&
+            !(child instanceof Docker.Healthcheck)) {
+            return false;
+        }
+        return workdir.contains("$") || isWithin(target, workdir) || isWithin(workdir, target);
+    }
+
+    /**
+     * @return Whether the {@code RUN} deletes the target, which fails on a mount.
+     */
+    private static boolean removes(Docker.Run run, String target) {
+        for (String command : COMMAND_SEPARATOR.split(PackageManager.commandText(run))) {
+            if (command.startsWith("rm ") && refersTo(command, target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMounted(Docker.Run run, String target) {
+        for (Docker.Option option : StageReferences.options(run)) {
+            String mounted = option == null ? null : field(option, "target");
+            if (mounted == null) {
+                mounted = option == null ? null : field(option, "dst");
+            }
+            if (mounted != null && (isWithin(target, AddCopyLink.resolve("/", mounted)) ||
+                                    isWithin(AddCopyLink.resolve("/", mounted), target))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the instruction copies or mounts files overlapping the target from one of the stages.
+     */
+    private static boolean readsFromStage(StageGraph graph, Docker child, Set<Integer> stages, String target) {
+        for (Docker.Option option : StageReferences.options(child)) {
+            Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+            if (keyArgs == null || keyArgs.value() == null) {
+                continue;
+            }
+            List<String> paths = new ArrayList<>();
+            String reference = null;
+            if ("--from".equalsIgnoreCase(keyArgs.key()) && child instanceof Docker.Copy) {
+                reference = keyArgs.value();
+                for (Docker.Literal source : ((Docker.Copy) child).getSources()) {
+                    paths.add(source.getText() == null ? "/" : source.getText());
+                }
+            } else if ("--mount".equalsIgnoreCase(keyArgs.key())) {
+                reference = field(option, "from");
+                String source = field(option, "source");
+                if (source == null) {
+                    source = field(option, "src");
+                }
+                paths.add(source == null ? "/" : source);
+            }
+            Integer stage = reference == null ? null : graph.find(reference);
+            if (stage == null || !stages.contains(stage)) {
+                continue;
+            }
+            for (String path : paths) {
+                String resolved = AddCopyLink.resolve("/", path);
+                if (path.contains("$") || path.contains("*") || isWithin(target, resolved) || isWithin(resolved, target)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static @Nullable String field(Docker.Option option, String name) {
+        Docker.KeyArgs keyArgs = option.getKeyArgs();
+        if (keyArgs == null || !"--mount".equalsIgnoreCase(keyArgs.key()) || keyArgs.value() == null) {
+            return null;
+        }
+        for (String field : keyArgs.value().split(",")) {
+            if (field.startsWith(name + "=")) {
+                return field.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The working directory a stage starts in, or {@code $} when it's built from an image, whose working
+     * directory isn't known.
+     */
+    private static String startWorkdir(StageGraph graph, String[] workdirs, StageGraph.Node node) {
+        return node.getBase() == null ? "$" : workdirs[node.getBase()];
+    }
+
+    private static String workdir(List<Docker> children, String workdir) {
+        for (Docker child : children) {
+            if (child instanceof Docker.Workdir) {
+                Docker.Literal path = ((Docker.Workdir) child).getPath();
+                if (path != null && path.getText() != null) {
+                    workdir = path.getText().contains("$") ? "$" : AddCopyLink.resolve(workdir, path.getText());
+                }
+            }
+        }
+        return workdir;
+    }
+
+    private static boolean isWithin(String path, String directory) {
+        return path.equals(directory) || path.startsWith(directory.endsWith("/") ? directory : directory + "/");
+    }
+}
@@ -52,7 +52,7 @@ public class SetImagePlatform extends Recipe {
 
     @Override
     public TreeVisitor<?, ExecutionContext> getVisitor() {
-        return new DockerIsoVisitor<>() {
+        DockerIsoVisitor<ExecutionContext> visitor = new DockerIsoVisitor<>() {
             @Override
             public Docker.From visitFrom(Docker.From from, ExecutionContext executionContext) {
                 from = super.visitFrom(from, executionContext);
@@ -67,5 +67,7 @@ public class SetImagePlatform extends Recipe {
                 return from;
             }
         };
+
+        return DockerPreconditions.checkMayMatch(matchImage, visitor);
     }
 }
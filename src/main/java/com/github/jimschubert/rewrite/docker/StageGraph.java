@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * The dependencies between the stages of a multi-stage Dockerfile.
+ * <p>
+ * A stage depends on another when its {@code FROM} names an earlier stage, when it copies from a stage with
+ * {@code COPY --from}, or when it mounts one with {@code RUN --mount=from=}. BuildKit builds only the stages the
+ * target depends on, and builds stages concurrently unless one depends on another, so the {@link #levels(int) levels}
+ * of the graph are the waves a build can run in and the {@link #criticalPath(int) critical path} bounds how much that
+ * helps.
+ * <p>
+ * References which don't name a stage, such as images or unresolved build arguments, are not dependencies; use
+ * {@link #hasVariableReferences()} before relying on a stage being unused.
+ */
+public class StageGraph {
+    private final List<Node> nodes;
+    private final boolean variableReferences;
+
+    private StageGraph(List<Node> nodes, boolean variableReferences) {
+        this.nodes = nodes;
+        this.variableReferences = variableReferences;
+    }
+
+    @Value
+    public static class Node {
+        /**
+         * The position of the stage in the document.
+         */
+        int index;
+
+        /**
+         * The stage name given with {@code FROM ... AS name}, if any.
+         */
+        @Nullable
+        String name;
+
+        Docker.Stage stage;
+
+        /**
+         * The index of the stage this stage is built {@code FROM}, or null when it is built from an image.
+         */
+        @Nullable
+        Integer base;
+
+        /**
+         * The indexes of all stages this stage depends on, including {@link #base}, in ascending order.
+         */
+        List<Integer> dependencies;
+
+        /**
+         * @return The stage name, or its index for unnamed stages, as accepted by {@code COPY --from}.
+         */
+        public String getDisplayName() {
+            return name == null ? String.valueOf(index) : name;
+        }
+    }
+
+    /**
+     * @param document A parsed Dockerfile.
+     * @return The dependencies between the stages of the document. Leading instructions before the first
+     * {@code FROM}, such as global {@code ARG}s, belong to the first stage.
+     */
+    public static StageGraph build(Docker.Document document) {
+        List<Docker.Stage> stages = document.getStages() == null ? Collections.emptyList() : document.getStages();
+        List<Docker.@Nullable From> froms = new ArrayList<>(stages.size());
+        Map<String, Integer> names = new HashMap<>();
+        for (int i = 0; i < stages.size(); i++) {
+            Docker.From from = findFrom(stages.get(i));
+            froms.add(from);
+            String alias = from == null ? null : from.getAlias().getText();
+            if (alias != null && !alias.isEmpty()) {
+                // stage names are case-insensitive, and the first definition wins
+                names.putIfAbsent(alias.toLowerCase(Locale.ROOT), i);
+            }
+        }
+
+        List<Node> nodes = new ArrayList<>(stages.size());
+        boolean variableReferences = false;
+        for (int i = 0; i < stages.size(); i++) {
+            Docker.From from = froms.get(i);
+            Set<Integer> dependencies = new TreeSet<>();
+
+            Integer base = null;
+            if (from != null && from.getImageSpec() != null) {
+                variableReferences |= mayNameStage(from.getImageSpec());
+                // FROM can only name a stage defined before it
+                Integer named = names.get(from.getImageSpec().toLowerCase(Locale.ROOT));
+                if (named != null && named < i) {
+                    base = named;
+                    dependencies.add(named);
+                }
+            }
+
+            for (Docker child : stages.get(i).getChildren()) {
+                if (child instanceof Docker.Copy) {
+                    variableReferences |= addOptionDependencies(((Docker.Copy) child).getOptions(), i, stages.size(),
+                            names, dependencies);
+                } else if (child instanceof Docker.Run) {
+                    variableReferences |= addOptionDependencies(((Docker.Run) child).getOptions(), i, stages.size(),
+                            names, dependencies);
+                }
+            }
+
+            String alias = from == null ? null : from.getAlias().getText();
+            nodes.add(new Node(i, alias == null || alias.isEmpty() ? null : alias, stages.get(i), base,
+                    Collections.unmodifiableList(new ArrayList<>(dependencies))));
+        }
+        return new StageGraph(Collections.unmodifiableList(nodes), variableReferences);
+    }
+
+    private static Docker.@Nullable From findFrom(Docker.Stage stage) {
+        for (Docker child : stage.getChildren()) {
+            if (child instanceof Docker.From) {
+                return (Docker.From) child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Whether any of the references depends on a build argument.
+     */
+    private static boolean addOptionDependencies(@Nullable List<Docker.Option> options, int self, int size,
+                                                 Map<String, Integer> names, Set<Integer> dependencies) {
+        if (options == null) {
+            return false;
+        }
+        boolean variable = false;
+        for (Docker.Option option : options) {
+            Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+            if (keyArgs == null || keyArgs.key() == null || keyArgs.value() == null) {
+                continue;
+            }
+            String reference = null;
+            if ("--from".equalsIgnoreCase(keyArgs.key())) {
+                reference = keyArgs.value();
+            } else if ("--mount".equalsIgnoreCase(keyArgs.key())) {
+                for (String field : keyArgs.value().split(",")) {
+                    int eq = field.indexOf('=');
+                    if (eq > 0 && "from".equalsIgnoreCase(field.substring(0, eq).trim())) {
+                        reference = field.substring(eq + 1).trim();
+                    }
+                }
+            }
+            variable |= reference != null && mayNameStage(reference);
+            Integer index = reference == null ? null : resolve(reference, size, names);
+            if (index != null && index != self) {
+                dependencies.add(index);
+            }
+        }
+        return variable;
+    }
+
+    /**
+     * @return Whether the reference uses a build argument and may expand to a stage name. Image references with a
+     * registry, tag or digest outside the argument, such as {@code golang:${GO_VERSION}}, can't.
+     */
+    private static boolean mayNameStage(String reference) {
+        if (!reference.contains("$")) {
+            return false;
+        }
+        String literal = reference.replaceAll("\\$\\{[^}]*}", "");
+        return literal.indexOf(':') < 0 && literal.indexOf('/') < 0 && literal.indexOf('@') < 0;
+    }
+
+    private static @Nullable Integer resolve(String reference, int size, Map<String, Integer> names) {
+        if (!reference.isEmpty() && reference.chars().allMatch(Character::isDigit)) {
+            try {
+                int index = Integer.parseInt(reference);
+                return index < size ? index : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return names.get(reference.toLowerCase(Locale.ROOT));
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public Node get(int index) {
+        return nodes.get(index);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return Whether a {@code FROM}, {@code COPY --from} or {@code RUN --mount=from=} uses a build argument which may
+     * expand to the name of a stage, which then isn't counted as a dependency.
+     */
+    public boolean hasVariableReferences() {
+        return variableReferences;
+    }
+
+    /**
+     * @return The index of the final stage, which is built when no target is given, or -1 for an empty document.
+     */
+    public int getFinalStage() {
+        return nodes.size() - 1;
+    }
+
+    /**
+     * @param nameOrIndex A stage name, case-insensitive, or a stage index.
+     * @return The index of the stage, or null when there is no such stage.
+     */
+    public @Nullable Integer find(String nameOrIndex) {
+        for (Node node : nodes) {
+            if (node.getName() != null && node.getName().equalsIgnoreCase(nameOrIndex)) {
+                return node.getIndex();
+            }
+        }
+        return resolve(nameOrIndex, nodes.size(), Collections.emptyMap());
+    }
+
+    /**
+     * @return All stages ordered so that every stage follows the stages it depends on, keeping document order where
+     * the dependencies allow. Stages in a dependency cycle, which BuildKit rejects, are left out.
+     */
+    public List<Integer> topologicalOrder() {
+        int[] pending = new int[nodes.size()];
+        List<List<Integer>> dependents = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (Node node : nodes) {
+            pending[node.getIndex()] = node.getDependencies().size();
+            for (Integer dependency : node.getDependencies()) {
+                dependents.get(dependency).add(node.getIndex());
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < pending.length; i++) {
+            if (pending[i] == 0) {
+                ready.add(i);
+            }
+        }
+        List<Integer> order = new ArrayList<>(nodes.size());
+        while (!ready.isEmpty()) {
+            int next = ready.poll();
+            order.add(next);
+            for (Integer dependent : dependents.get(next)) {
+                if (--pending[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @return True unless some stages depend on each other in a cycle.
+     */
+    public boolean isAcyclic() {
+        return topologicalOrder().size() == nodes.size();
+    }
+
+    /**
+     * @param target The index of the stage being built.
+     * @return The target and every stage it depends on, directly or transitively, in ascending order.
+     */
+    public List<Integer> reachableFrom(int target) {
+        BitSet reachable = reachable(target);
+        List<Integer> result = new ArrayList<>(reachable.cardinality());
+        for (int i = reachable.nextSetBit(0); i >= 0; i = reachable.nextSetBit(i + 1)) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param target The index of the stage being built.
+     * @return The stages which are not needed to build the target, in ascending order.
+     */
+    public List<Integer> unreachableFrom(int target) {
+        BitSet reachable = reachable(target);
+        List<Integer> result = new ArrayList<>(nodes.size() - reachable.cardinality());
+        for (int i = reachable.nextClearBit(0); i < nodes.size(); i = reachable.nextClearBit(i + 1)) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    private BitSet reachable(int target) {
+        BitSet reachable = new BitSet(nodes.size());
+        if (target < 0 || target >= nodes.size()) {
+            return reachable;
+        }
+        Deque<Integer> work = new ArrayDeque<>();
+        work.push(target);
+        reachable.set(target);
+        while (!work.isEmpty()) {
+            for (Integer dependency : nodes.get(work.pop()).getDependencies()) {
+                if (!reachable.get(dependency)) {
+                    reachable.set(dependency);
+                    work.push(dependency);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Group the stages needed by the target into waves. Every stage in a wave depends only on stages in earlier
+     * waves, so the stages of a wave can be built concurrently.
+     *
+     * @param target The index of the stage being built.
+     * @return The waves, each in ascending order. Stages in a dependency cycle are left out.
+     */
+    public List<List<Integer>> levels(int target) {
+        int[] depth = depths(target);
+        List<List<Integer>> levels = new ArrayList<>();
+        for (int i = 0; i < depth.length; i++) {
+            if (depth[i] > 0) {
+                while (levels.size() < depth[i]) {
+                    levels.add(new ArrayList<>());
+                }
+                levels.get(depth[i] - 1).add(i);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * The longest chain of stages which must be built one after another to build the target. However many stages
+     * BuildKit runs concurrently, a build takes at least as long as its critical path.
+     *
+     * @param target The index of the stage being built.
+     * @return The chain in build order, ending with the target, or an empty list when the target is in a cycle.
+     */
+    public List<Integer> criticalPath(int target) {
+        int[] depth = depths(target);
+        if (target < 0 || target >= depth.length || depth[target] == 0) {
+            return Collections.emptyList();
+        }
+        LinkedList<Integer> path = new LinkedList<>();
+        int current = target;
+        while (true) {
+            path.addFirst(current);
+            int next = -1;
+            for (Integer dependency : nodes.get(current).getDependencies()) {
+                if (depth[dependency] == depth[current] - 1) {
+                    next = dependency;
+                    break;
+                }
+            }
+            if (next < 0) {
+                return path;
+            }
+            current = next;
+        }
+    }
+
+    /**
+     * @return For each stage needed by the target, the number of stages in the longest chain ending with it; zero for
+     * stages which are not needed or are in a cycle.
+     */
+    private int[] depths(int target) {
+        int[] depth = new int[nodes.size()];
+        BitSet reachable = reachable(target);
+        for (Integer index : topologicalOrder()) {
+            if (!reachable.get(index)) {
+                continue;
+            }
+            int max = 0;
+            for (Integer dependency : nodes.get(index).getDependencies()) {
+                max = Math.max(max, depth[dependency]);
+            }
+            depth[index] = max + 1;
+        }
+        return depth;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.internal.BuildContextWalker;
+import com.github.jimschubert.rewrite.docker.internal.ContextSnapshot;
+import com.github.jimschubert.rewrite.docker.internal.DockerignoreFileParser;
+import com.github.jimschubert.rewrite.docker.internal.DockerignoreMatcher;
+import com.github.jimschubert.rewrite.docker.table.BuildContextReport;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Dockerignore;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.text.PlainText;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class BuildContextSize extends ScanningRecipe<BuildContextSize.Scanned> {
+    private static final int DEFAULT_MAX_DIRECTORIES = 10;
+
+    /**
+     * Directory names which are almost never needed by a build, and commonly large.
+     */
+    private static final Set<String> COMMON_EXCLUDES = Set.of(
+            ".git", ".gradle", ".idea", ".vscode", ".venv", "venv", ".tox", "__pycache__", "node_modules",
+            ".next", ".terraform", ".cache", "coverage", "target", "build", "dist", "out"
+    );
+
+    @EqualsAndHashCode.Exclude
+    transient BuildContextReport report = new BuildContextReport(this);
+
+    @Option(
+            displayName = "Root directory",
+            description = "The directory source paths are relative to. Defaults to the current working directory.",
+            example = "/home/user/project",
+            required = false
+    )
+    @Nullable
+    String rootDirectory;
+
+    @Option(
+            displayName = "Maximum directories",
+            description = "The number of largest directories to report per build context. Defaults to 10.",
+            example = "10",
+            required = false
+    )
+    @Nullable
+    Integer maxDirectories;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Analyze build context size";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Walks the build context of each Dockerfile, applying .dockerignore rules, and reports the bytes and " +
+               "files sent to the builder, the portion matched by each COPY and ADD source, and the largest " +
+               "directories. Commonly unneeded directories (e.g. `node_modules`, `.git`) which aren't ignored " +
+               "are suggested as exclusions for `EnsureDockerignore`.";
+    }
+
+    public static class Scanned {
+        final Map<Path, List<String>> sources = new TreeMap<>();
+        final Map<Path, DockerignoreMatcher> dockerignores = new HashMap<>();
+    }
+
+    @Override
+    public Scanned getInitialValue(ExecutionContext ctx) {
+        return new Scanned();
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getScanner(Scanned acc) {
+        return new TreeVisitor<>() {
+            @Override
+            public @Nullable Tree visit(@Nullable Tree tree, ExecutionContext ctx) {
+                if (tree instanceof Docker.Document) {
+                    Docker.Document dockerfile = (Docker.Document) tree;
+                    acc.sources.put(dockerfile.getSourcePath(), contextSources(dockerfile));
+                } else if (tree instanceof Dockerignore.Document) {
+                    Dockerignore.Document dockerignore = (Dockerignore.Document) tree;
+                    acc.dockerignores.put(dockerignore.getSourcePath(), dockerignore.getMatcher());
+                } else if (tree instanceof PlainText && ((PlainText) tree).getSourcePath().toString().endsWith(".dockerignore")) {
+                    PlainText plainText = (PlainText) tree;
+                    acc.dockerignores.put(plainText.getSourcePath(),
+                            new DockerignoreFileParser().parse(plainText.getText()).getMatcher());
+                }
+                return tree;
+            }
+        };
+    }
+
+    @Override
+    public Collection<? extends SourceFile> generate(Scanned acc, ExecutionContext ctx) {
+        Path root = rootDirectory == null || rootDirectory.isEmpty() ? Paths.get("") : Paths.get(rootDirectory);
+        for (Map.Entry<Path, List<String>> entry : acc.sources.entrySet()) {
+            Path dockerfile = entry.getKey();
+            Path relativeContext = dockerfile.getParent() == null ? Paths.get("") : dockerfile.getParent();
+            Path context = root.resolve(relativeContext);
+            if (!Files.isDirectory(context)) {
+                continue;
+            }
+
+            try {
+                DockerignoreMatcher ignore = dockerignore(acc, root, dockerfile, relativeContext);
+                BuildContextWalker.Result result = new BuildContextWalker(ignore, entry.getValue()).walk(context);
+                insertRows(ctx, dockerfile, relativeContext, entry.getValue(), result);
+            } catch (IOException e) {
+                ctx.getOnError().accept(e);
+            }
+        }
+        acc.sources.clear();
+
+        return Collections.emptyList();
+    }
+
+    private void insertRows(ExecutionContext ctx, Path dockerfile, Path relativeContext, List<String> sources,
+                            BuildContextWalker.Result result) {
+        String path = dockerfile.toString();
+        String context = relativeContext.toString().isEmpty() ? "." : relativeContext.toString();
+
+        BuildContextWalker.Totals total = result.getContext();
+        report.insertRow(ctx, new BuildContextReport.Row(path, context, BuildContextReport.EntryType.CONTEXT,
+                total.getPath(), total.getBytes(), total.getFiles(), null));
+
+        for (BuildContextWalker.Totals source : result.getSources()) {
+            report.insertRow(ctx, new BuildContextReport.Row(path, context, BuildContextReport.EntryType.SOURCE,
+                    source.getPath(), source.getBytes(), source.getFiles(), null));
+        }
+
+        List<String> copied = sources.stream()
+                .map(DockerignoreMatcher::normalize)
+                .filter(s -> !s.equals("."))
+                .collect(Collectors.toList());
+        Set<String> suggestions = new HashSet<>();
+        for (BuildContextWalker.Totals directory : result.getDirectories()) {
+            String name = directory.getPath().substring(directory.getPath().lastIndexOf('/') + 1);
+            if (COMMON_EXCLUDES.contains(name) && !isCopiedExplicitly(directory.getPath(), copied)) {
+                suggestions.add(directory.getPath());
+            }
+        }
+        // a suggestion beneath another suggestion is redundant
+        Set<String> redundant = suggestions.stream()
+                .filter(dir -> suggestions.stream().anyMatch(other -> dir.startsWith(other + "/")))
+                .collect(Collectors.toSet());
+        suggestions.removeAll(redundant);
+
+        List<BuildContextWalker.Totals> directories = largestDirectories(result.getDirectories());
+        Set<String> reported = directories.stream().map(BuildContextWalker.Totals::getPath).collect(Collectors.toSet());
+        for (BuildContextWalker.Totals directory : result.getDirectories()) {
+            if (suggestions.contains(directory.getPath()) && !reported.contains(directory.getPath())) {
+                directories.add(directory);
+            }
+        }
+        directories.sort(BY_SIZE);
+
+        for (BuildContextWalker.Totals directory : directories) {
+            report.insertRow(ctx, new BuildContextReport.Row(path, context, BuildContextReport.EntryType.DIRECTORY,
+                    directory.getPath(), directory.getBytes(), directory.getFiles(),
+                    suggestions.contains(directory.getPath()) ? directory.getPath() : null));
+        }
+    }
+
+    private static final Comparator<BuildContextWalker.Totals> BY_SIZE =
+            Comparator.comparingLong(BuildContextWalker.Totals::getBytes).reversed()
+                    .thenComparing(BuildContextWalker.Totals::getPath);
+
+    /**
+     * The largest directories, skipping a directory when its parent was already reported with the same size, since
+     * a chain of single-child directories says nothing new.
+     */
+    private List<BuildContextWalker.Totals> largestDirectories(List<BuildContextWalker.Totals> all) {
+        int limit = maxDirectories == null ? DEFAULT_MAX_DIRECTORIES : maxDirectories;
+        List<BuildContextWalker.Totals> sorted = new ArrayList<>(all);
+        sorted.sort(BY_SIZE);
+
+        Map<String, Long> selected = new HashMap<>();
+        List<BuildContextWalker.Totals> result = new ArrayList<>();
+        for (BuildContextWalker.Totals directory : sorted) {
+            if (result.size() >= limit) {
+                break;
+            }
+            int slash = directory.getPath().lastIndexOf('/');
+            Long parent = slash < 0 ? null : selected.get(directory.getPath().substring(0, slash));
+            selected.put(directory.getPath(), directory.getBytes());
+            if (parent == null || parent != directory.getBytes()) {
+                result.add(directory);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isCopiedExplicitly(String directory, List<String> sources) {
+        for (String source : sources) {
+            if (source.equals(directory) || source.startsWith(directory + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * BuildKit prefers a Dockerfile-specific ignore file (e.g. {@code app.Dockerfile.dockerignore}) next to the
+     * Dockerfile, then {@code .dockerignore} at the root of the context. Ignore files in the LST reflect changes made
+     * by other recipes, so they win over the file system.
+     */
+    private static DockerignoreMatcher dockerignore(Scanned acc, Path root, Path dockerfile, Path context) throws IOException {
+        Path specific = dockerfile.resolveSibling(dockerfile.getFileName() + ".dockerignore");
+        Path shared = context.resolve(".dockerignore");
+        for (Path candidate : Arrays.asList(specific, shared)) {
+            DockerignoreMatcher matcher = acc.dockerignores.get(candidate);
+            if (matcher != null) {
+                return matcher;
+            }
+            Path file = root.resolve(candidate);
+            if (Files.isRegularFile(file)) {
+                return new DockerignoreFileParser()
+                        .parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+                        .getMatcher();
+            }
+        }
+        return DockerignoreMatcher.EMPTY;
+    }
+
+    /**
+     * @return The COPY and ADD sources read from the build context, i.e. not from another stage, a URL, or a heredoc.
+     */
+    private static List<String> contextSources(Docker.Document dockerfile) {
+        List<String> sources = new ArrayList<>();
+        for (Docker.Stage stage : dockerfile.getStages()) {
+            for (Docker child : stage.getChildren()) {
+                List<String> instructionSources = ContextSnapshot.contextSources(child);
+                if (instructionSources != null) {
+                    sources.addAll(instructionSources);
+                }
+            }
+        }
+        return sources;
+    }
+}
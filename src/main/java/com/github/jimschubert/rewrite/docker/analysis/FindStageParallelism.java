@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.DockerIsoVisitor;
+import com.github.jimschubert.rewrite.docker.StageGraph;
+import com.github.jimschubert.rewrite.docker.table.StageParallelismReport;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class FindStageParallelism extends Recipe {
+    @EqualsAndHashCode.Exclude
+    transient StageParallelismReport report = new StageParallelismReport(this);
+
+    @Option(
+            displayName = "Target",
+            description = "The stage to build, as with `docker build --target`. Defaults to the final stage, " +
+                          "which is also used for Dockerfiles without a stage of this name.",
+            example = "release",
+            required = false
+    )
+    @Nullable
+    String target;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Find stage parallelism";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Outputs a data table describing how the stages of each multi-stage Dockerfile depend on each other " +
+               "(`FROM` an earlier stage, `COPY --from`, `RUN --mount=from=`), which stages are not needed to build " +
+               "the target, the longest chain of stages which must be built one after another, and how many stages " +
+               "BuildKit can build concurrently.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                StageGraph graph = StageGraph.build(dockerfile);
+                if (graph.size() == 0 || graph.get(0).getStage().getChildren().stream().noneMatch(Docker.From.class::isInstance)) {
+                    return dockerfile;
+                }
+
+                Integer index = target == null ? null : graph.find(target);
+                int built = index == null ? graph.getFinalStage() : index;
+                List<Integer> reachable = graph.reachableFrom(built);
+                List<Integer> criticalPath = graph.criticalPath(built);
+                int maxParallelism = graph.levels(built).stream().mapToInt(List::size).max().orElse(0);
+
+                report.insertRow(ctx, new StageParallelismReport.Row(
+                        dockerfile.getSourcePath().toString(),
+                        graph.get(built).getDisplayName(),
+                        graph.size(),
+                        reachable.size(),
+                        names(graph, graph.unreachableFrom(built), ", "),
+                        criticalPath.size(),
+                        names(graph, criticalPath, " -> "),
+                        maxParallelism,
+                        criticalPath.isEmpty() ? 0 : (double) reachable.size() / criticalPath.size()
+                ));
+                return dockerfile;
+            }
+        };
+    }
+
+    private static String names(StageGraph graph, List<Integer> stages, String delimiter) {
+        return stages.stream()
+                .map(i -> graph.get(i).getDisplayName())
+                .collect(Collectors.joining(delimiter));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.table.ImageUseReport;
+import com.github.jimschubert.rewrite.docker.table.ImageUsageSummary;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hash aggregation of image uses, safe to update from concurrent scanners. Only counters are kept per distinct
+ * image/tag/digest/platform, so memory depends on the number of distinct images rather than the number of files.
+ */
+class ImageUsageAggregator {
+    private static final Comparator<@Nullable String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Key> ORDER = Comparator
+            .comparing(Key::getImage, NULLS_FIRST)
+            .thenComparing(Key::getTag, NULLS_FIRST)
+            .thenComparing(Key::getDigest, NULLS_FIRST)
+            .thenComparing(Key::getPlatform, NULLS_FIRST);
+
+    private final Map<Key, Usage> usages = new ConcurrentHashMap<>();
+    private final Map<String, Usage> images = new ConcurrentHashMap<>();
+
+    @Value
+    private static class Key {
+        @Nullable String image;
+        @Nullable String tag;
+        @Nullable String digest;
+        @Nullable String platform;
+    }
+
+    private static class Usage {
+        final LongAdder stages = new LongAdder();
+        final LongAdder files = new LongAdder();
+        final AtomicInteger firstStage = new AtomicInteger(Integer.MAX_VALUE);
+        final AtomicInteger lastStage = new AtomicInteger(-1);
+
+        void stage(int index) {
+            stages.increment();
+            firstStage.accumulateAndGet(index, Math::min);
+            lastStage.accumulateAndGet(index, Math::max);
+        }
+    }
+
+    /**
+     * @param rows Every row of a single Dockerfile. Each Dockerfile is added once, which is what makes counting
+     *             distinct files possible without remembering paths.
+     */
+    void addFile(List<ImageUseReport.Row> rows) {
+        Set<Key> keys = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (ImageUseReport.Row row : rows) {
+            Key key = new Key(row.getImage(), row.getTag(), row.getDigest(), row.getPlatform());
+            int stage = row.getStageNumber() == null ? 0 : row.getStageNumber();
+            usages.computeIfAbsent(key, k -> new Usage()).stage(stage);
+            keys.add(key);
+
+            String image = String.valueOf(row.getImage());
+            images.computeIfAbsent(image, k -> new Usage()).stage(stage);
+            names.add(image);
+        }
+        for (Key key : keys) {
+            usages.get(key).files.increment();
+        }
+        for (String image : names) {
+            images.get(image).files.increment();
+        }
+    }
+
+    /**
+     * @return Summary rows ordered by image, tag, digest, then platform. Clears the aggregation.
+     */
+    List<ImageUsageSummary.Row> drain() {
+        List<Key> keys = new ArrayList<>(usages.keySet());
+        keys.sort(ORDER);
+        List<ImageUsageSummary.Row> rows = new ArrayList<>(keys.size());
+        for (Key key : keys) {
+            Usage usage = usages.get(key);
+            Usage image = images.get(String.valueOf(key.getImage()));
+            rows.add(new ImageUsageSummary.Row(
+                    key.getImage(),
+                    key.getTag(),
+                    key.getDigest(),
+                    key.getPlatform(),
+                    usage.stages.sum(),
+                    usage.files.sum(),
+                    usage.firstStage.get(),
+                    usage.lastStage.get(),
+                    image.stages.sum(),
+                    image.files.sum()
+            ));
+        }
+        usages.clear();
+        images.clear();
+        return rows;
+    }
+}
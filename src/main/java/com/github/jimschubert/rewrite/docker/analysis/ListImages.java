@@ -15,25 +15,84 @@
 package com.github.jimschubert.rewrite.docker.analysis;
 
 import com.github.jimschubert.rewrite.docker.DockerIsoVisitor;
+import com.github.jimschubert.rewrite.docker.internal.StripedAccumulator;
 import com.github.jimschubert.rewrite.docker.table.ImageUseReport;
+import com.github.jimschubert.rewrite.docker.table.ImageUsageSummary;
 import com.github.jimschubert.rewrite.docker.tree.Docker;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
 import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
 import org.openrewrite.ScanningRecipe;
 import org.openrewrite.SourceFile;
 import org.openrewrite.TreeVisitor;
 import org.openrewrite.marker.SearchResult;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
-public class ListImages extends ScanningRecipe<List<ImageUseReport.Row>> {
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class ListImages extends ScanningRecipe<ListImages.Accumulator> {
+    private static final StripedAccumulator.Codec<ImageUseReport.Row> CODEC = new StripedAccumulator.Codec<>() {
+        @Override
+        public void write(DataOutput out, ImageUseReport.Row row) throws IOException {
+            StripedAccumulator.writeString(out, row.getPath());
+            StripedAccumulator.writeString(out, row.getImage());
+            StripedAccumulator.writeString(out, row.getTag());
+            StripedAccumulator.writeString(out, row.getDigest());
+            StripedAccumulator.writeString(out, row.getPlatform());
+            StripedAccumulator.writeString(out, row.getAlias());
+            out.writeInt(row.getStageNumber() == null ? -1 : row.getStageNumber());
+        }
+
+        @Override
+        public ImageUseReport.Row read(DataInput in) throws IOException {
+            return new ImageUseReport.Row(
+                    StripedAccumulator.readString(in),
+                    StripedAccumulator.readString(in),
+                    StripedAccumulator.readString(in),
+                    StripedAccumulator.readString(in),
+                    StripedAccumulator.readString(in),
+                    StripedAccumulator.readString(in),
+                    readStageNumber(in)
+            );
+        }
+
+        private @Nullable Integer readStageNumber(DataInput in) throws IOException {
+            int stageNumber = in.readInt();
+            return stageNumber < 0 ? null : stageNumber;
+        }
+    };
+
     @EqualsAndHashCode.Exclude
     transient ImageUseReport report = new ImageUseReport(this);
 
+    @EqualsAndHashCode.Exclude
+    transient ImageUsageSummary summary = new ImageUsageSummary(this);
+
+    @Option(
+            displayName = "Spill threshold",
+            description = "The number of rows to hold in memory before spilling image rows to a temporary file. " +
+                          "Spilled rows are replayed into the data table at the end of the run, keeping heap usage flat on large repositories. " +
+                          "By default, all rows are held in memory.",
+            example = "100000",
+            required = false
+    )
+    @Nullable
+    Integer spillThreshold;
+
     @Override
     public String getDisplayName() {
         return "List docker images";
@@ -41,20 +100,32 @@ public class ListImages extends ScanningRecipe<List<ImageUseReport.Row>> {
 
     @Override
     public String getDescription() {
-        return "A recipe which outputs a data table describing the images referenced in the Dockerfile.";
+        return "A recipe which outputs a data table describing the images referenced in the Dockerfile, " +
+               "and a summary of how often each image is used across all Dockerfiles.";
+    }
+
+    public static class Accumulator {
+        final StripedAccumulator<ImageUseReport.Row> rows;
+        final ImageUsageAggregator usage = new ImageUsageAggregator();
+
+        Accumulator(StripedAccumulator<ImageUseReport.Row> rows) {
+            this.rows = rows;
+        }
     }
 
     @Override
-    public List<ImageUseReport.Row> getInitialValue(ExecutionContext ctx) {
-        return new ArrayList<>();
+    public Accumulator getInitialValue(ExecutionContext ctx) {
+        // scanners may run concurrently across source files
+        return new Accumulator(StripedAccumulator.spilling(spillThreshold, CODEC));
     }
 
     @Override
-    public TreeVisitor<?, ExecutionContext> getScanner(List<ImageUseReport.Row> acc) {
+    public TreeVisitor<?, ExecutionContext> getScanner(Accumulator acc) {
         return new DockerIsoVisitor<>() {
             @Override
             public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
                 Path file = dockerfile.getSourcePath();
+                List<ImageUseReport.Row> found = new ArrayList<>();
 
                 if (dockerfile.getStages() != null) {
                     List<Docker.Stage> stages = dockerfile.getStages();
@@ -69,7 +140,7 @@ public class ListImages extends ScanningRecipe<List<ImageUseReport.Row>> {
                                         platformSwitch = from.getPlatform().getText().split("=")[1];
                                     }
 
-                                    acc.add(new ImageUseReport.Row(
+                                    ImageUseReport.Row row = new ImageUseReport.Row(
                                             file.toString(),
                                             from.getImageSpec(),
                                             from.getTag(),
@@ -77,14 +148,17 @@ public class ListImages extends ScanningRecipe<List<ImageUseReport.Row>> {
                                             platformSwitch,
                                             from.getAlias().getText(),
                                             i
-                                    ));
+                                    );
+                                    found.add(row);
+                                    acc.rows.add(file.toString(), i, row);
                                 }
                             }
                         }
                     }
                 }
 
-                if (!acc.isEmpty()) {
+                if (!found.isEmpty()) {
+                    acc.usage.addFile(found);
                     return SearchResult.found(dockerfile);
                 }
                 return dockerfile;
@@ -93,12 +167,12 @@ public class ListImages extends ScanningRecipe<List<ImageUseReport.Row>> {
     }
 
     @Override
-    public Collection<? extends SourceFile> generate(List<ImageUseReport.Row> acc, Collection<SourceFile> generatedInThisCycle, ExecutionContext ctx) {
-        for (ImageUseReport.Row row : acc) {
-            report.insertRow(ctx, row);
+    public Collection<? extends SourceFile> generate(Accumulator acc, Collection<SourceFile> generatedInThisCycle, ExecutionContext ctx) {
+        acc.rows.drain(row -> report.insertRow(ctx, row));
+        for (ImageUsageSummary.Row row : acc.usage.drain()) {
+            summary.insertRow(ctx, row);
         }
-        acc.clear();
 
-        return super.generate(Collections.emptyList(), generatedInThisCycle, ctx);
+        return Collections.emptyList();
     }
 }
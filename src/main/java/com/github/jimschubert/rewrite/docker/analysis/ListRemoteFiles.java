@@ -15,25 +15,64 @@
 package com.github.jimschubert.rewrite.docker.analysis;
 
 import com.github.jimschubert.rewrite.docker.DockerIsoVisitor;
+import com.github.jimschubert.rewrite.docker.internal.StripedAccumulator;
 import com.github.jimschubert.rewrite.docker.table.RemoteFileReport;
 import com.github.jimschubert.rewrite.docker.tree.Docker;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
 import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
 import org.openrewrite.ScanningRecipe;
 import org.openrewrite.SourceFile;
 import org.openrewrite.TreeVisitor;
 import org.openrewrite.marker.SearchResult;
 
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
-public class ListRemoteFiles extends ScanningRecipe<List<RemoteFileReport.Row>> {
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class ListRemoteFiles extends ScanningRecipe<StripedAccumulator<RemoteFileReport.Row>> {
+    private static final StripedAccumulator.Codec<RemoteFileReport.Row> CODEC = new StripedAccumulator.Codec<>() {
+        @Override
+        public void write(DataOutput out, RemoteFileReport.Row row) throws IOException {
+            StripedAccumulator.writeString(out, row.getPath());
+            StripedAccumulator.writeString(out, row.getUrl());
+        }
+
+        @Override
+        public RemoteFileReport.Row read(DataInput in) throws IOException {
+            return new RemoteFileReport.Row(
+                    StripedAccumulator.readString(in),
+                    StripedAccumulator.readString(in)
+            );
+        }
+    };
+
     @EqualsAndHashCode.Exclude
     transient RemoteFileReport report = new RemoteFileReport(this);
 
+    @Option(
+            displayName = "Spill threshold",
+            description = "The number of rows to hold in memory before spilling remote file rows to a temporary file. " +
+                          "Spilled rows are replayed into the data table at the end of the run, keeping heap usage flat on large repositories. " +
+                          "By default, all rows are held in memory.",
+            example = "100000",
+            required = false
+    )
+    @Nullable
+    Integer spillThreshold;
+
     @Override
     public String getDisplayName() {
         return "List remote files";
@@ -45,17 +84,22 @@ public class ListRemoteFiles extends ScanningRecipe<List<RemoteFileReport.Row>>
     }
 
     @Override
-    public List<RemoteFileReport.Row> getInitialValue(ExecutionContext ctx) {
-        return new ArrayList<>();
+    public StripedAccumulator<RemoteFileReport.Row> getInitialValue(ExecutionContext ctx) {
+        // scanners may run concurrently across source files
+        return StripedAccumulator.spilling(spillThreshold, CODEC);
     }
 
     @Override
-    public TreeVisitor<?, ExecutionContext> getScanner(List<RemoteFileReport.Row> acc) {
+    public TreeVisitor<?, ExecutionContext> getScanner(StripedAccumulator<RemoteFileReport.Row> acc) {
         return new DockerIsoVisitor<>() {
             @Override
             public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                String path = dockerfile.getSourcePath().toString();
+                boolean found = false;
                 if (dockerfile.getStages() != null) {
-                    for (Docker.Stage stage : dockerfile.getStages()) {
+                    List<Docker.Stage> stages = dockerfile.getStages();
+                    for (int i = 0; i < stages.size(); i++) {
+                        Docker.Stage stage = stages.get(i);
                         if (stage != null) {
                             for (Docker child : stage.getChildren()) {
                                 if (child instanceof Docker.Add) {
@@ -64,20 +108,16 @@ public class ListRemoteFiles extends ScanningRecipe<List<RemoteFileReport.Row>>
                                             .filter(s -> s.getText().startsWith("http"))
                                             .collect(Collectors.toList());
 
-                                    if (!urls.isEmpty()) {
-                                        urls.forEach(url -> {
-                                            acc.add(new RemoteFileReport.Row(
-                                                    dockerfile.getSourcePath().toString(),
-                                                    url.getText()
-                                            ));
-                                        });
+                                    for (Docker.Literal url : urls) {
+                                        found = true;
+                                        acc.add(path, i, new RemoteFileReport.Row(path, url.getText()));
                                     }
                                 }
                             }
                         }
                     }
                 }
-                if (!acc.isEmpty()) {
+                if (found) {
                     return SearchResult.found(dockerfile);
                 }
                 return dockerfile;
@@ -86,16 +126,8 @@ public class ListRemoteFiles extends ScanningRecipe<List<RemoteFileReport.Row>>
     }
 
     @Override
-    public Collection<? extends SourceFile> generate(List<RemoteFileReport.Row> acc, ExecutionContext ctx) {
-        if (acc.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        for (RemoteFileReport.Row row : acc) {
-            report.insertRow(ctx, row);
-        }
-
-        acc.clear();
+    public Collection<? extends SourceFile> generate(StripedAccumulator<RemoteFileReport.Row> acc, ExecutionContext ctx) {
+        acc.drain(row -> report.insertRow(ctx, row));
 
         return Collections.emptyList();
     }
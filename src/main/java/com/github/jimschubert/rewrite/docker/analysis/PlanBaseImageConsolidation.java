@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.DockerIsoVisitor;
+import com.github.jimschubert.rewrite.docker.StageGraph;
+import com.github.jimschubert.rewrite.docker.internal.ImageReference;
+import com.github.jimschubert.rewrite.docker.table.BaseImageConsolidationReport;
+import com.github.jimschubert.rewrite.docker.table.ImagePrewarmReport;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Estimates how many base image pulls build nodes could avoid by consolidating tags, and which images to pre-pull.
+ * <p>
+ * Tags of a repository are grouped when they share a major version and variant, such as {@code 3.11-slim} and
+ * {@code 3.12.4-slim}; each group could use its most common tag instead. Tags without a leading version, such as
+ * {@code latest} or {@code bookworm}, form groups of their own. Images pinned to a digest are kept as they are.
+ * Stages built from other stages, {@code scratch}, and images named by build arguments aren't pulls, or can't be
+ * resolved, and are left out.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+public class PlanBaseImageConsolidation extends ScanningRecipe<PlanBaseImageConsolidation.Accumulator> {
+    private static final Pattern VERSIONED_TAG = Pattern.compile("v?(\\d{1,9})((?:\\.\\d+)*)(.*)");
+    private static final Pattern NUMBER = Pattern.compile("\\d{1,9}");
+    private static final Comparator<Group> GROUP_ORDER = Comparator
+            .comparing(Group::getRepository)
+            .thenComparing(g -> g.getMajorVersion() == null ? Integer.MAX_VALUE : Integer.parseInt(g.getMajorVersion()))
+            .thenComparing(Group::getVariant);
+    private static final Comparator<Map.Entry<Image, Usage>> TAG_ORDER = (a, b) -> {
+        int compared = Long.compare(b.getValue().files.sum(), a.getValue().files.sum());
+        if (compared == 0) {
+            compared = Long.compare(b.getValue().stages.sum(), a.getValue().stages.sum());
+        }
+        if (compared == 0) {
+            // the newest version first
+            compared = compareVersions(b.getKey().getTag(), a.getKey().getTag());
+        }
+        return compared == 0 ? String.valueOf(a.getKey().getTag()).compareTo(String.valueOf(b.getKey().getTag())) : compared;
+    };
+    private static final Comparator<ImagePrewarmReport.Row> PREWARM_ORDER = Comparator
+            .comparingLong((ImagePrewarmReport.Row row) -> -row.getFiles())
+            .thenComparingLong(row -> -row.getStages())
+            .thenComparing(ImagePrewarmReport.Row::getImage);
+
+    @EqualsAndHashCode.Exclude
+    transient BaseImageConsolidationReport consolidation = new BaseImageConsolidationReport(this);
+
+    @EqualsAndHashCode.Exclude
+    transient ImagePrewarmReport prewarm = new ImagePrewarmReport(this);
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Plan base image consolidation";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Outputs a data table grouping the base image tags of all Dockerfiles by repository, major version and " +
+               "variant, with the pulls avoided by moving each group to its most common tag, and a ranked list of " +
+               "images to pre-pull on build nodes once tags are consolidated.";
+    }
+
+    @Value
+    private static class Group {
+        String repository;
+
+        @Nullable
+        String majorVersion;
+
+        String variant;
+    }
+
+    @Value
+    private static class Image {
+        String repository;
+
+        @Nullable
+        String tag;
+
+        @Nullable
+        String digest;
+
+        /**
+         * The group of tags the image could be consolidated with, or null when it is pinned to a digest.
+         */
+        @Nullable
+        Group group;
+
+        String reference() {
+            return repository + (tag == null ? "" : ":" + tag) + (digest == null ? "" : "@" + digest);
+        }
+    }
+
+    private static class Usage {
+        final LongAdder stages = new LongAdder();
+        final LongAdder files = new LongAdder();
+    }
+
+    public static class Accumulator {
+        final Map<Image, Usage> images = new ConcurrentHashMap<>();
+        final Map<Group, LongAdder> groupFiles = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Accumulator getInitialValue(ExecutionContext ctx) {
+        return new Accumulator();
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getScanner(Accumulator acc) {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                Set<Image> found = new HashSet<>();
+                for (StageGraph.Node node : StageGraph.build(dockerfile).getNodes()) {
+                    Docker.From from = findFrom(node.getStage());
+                    Image image = node.getBase() == null && from != null ? image(from) : null;
+                    if (image != null) {
+                        acc.images.computeIfAbsent(image, k -> new Usage()).stages.increment();
+                        found.add(image);
+                    }
+                }
+
+                // each Dockerfile is scanned once, so files are counted without remembering paths
+                Set<Group> groups = new HashSet<>();
+                for (Image image : found) {
+                    acc.images.get(image).files.increment();
+                    if (image.getGroup() != null && groups.add(image.getGroup())) {
+                        acc.groupFiles.computeIfAbsent(image.getGroup(), k -> new LongAdder()).increment();
+                    }
+                }
+                return dockerfile;
+            }
+        };
+    }
+
+    @Override
+    public Collection<? extends SourceFile> generate(Accumulator acc, Collection<SourceFile> generatedInThisCycle, ExecutionContext ctx) {
+        Map<Group, List<Map.Entry<Image, Usage>>> groups = new TreeMap<>(GROUP_ORDER);
+        List<ImagePrewarmReport.Row> pulls = new ArrayList<>();
+        for (Map.Entry<Image, Usage> entry : acc.images.entrySet()) {
+            Image image = entry.getKey();
+            if (image.getGroup() == null) {
+                pulls.add(new ImagePrewarmReport.Row(0, image.reference(),
+                        entry.getValue().stages.sum(), entry.getValue().files.sum(), null));
+            } else {
+                groups.computeIfAbsent(image.getGroup(), k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        for (Map.Entry<Group, List<Map.Entry<Image, Usage>>> entry : groups.entrySet()) {
+            Group group = entry.getKey();
+            List<Map.Entry<Image, Usage>> tags = entry.getValue();
+            tags.sort(TAG_ORDER);
+
+            Image suggested = tags.get(0).getKey();
+            long stages = tags.stream().mapToLong(t -> t.getValue().stages.sum()).sum();
+            long files = acc.groupFiles.get(group).sum();
+            List<String> names = tags.stream().map(t -> t.getKey().getTag()).collect(Collectors.toList());
+            consolidation.insertRow(ctx, new BaseImageConsolidationReport.Row(
+                    group.getRepository(),
+                    group.getMajorVersion(),
+                    group.getVariant(),
+                    String.join(", ", names),
+                    suggested.getTag(),
+                    stages,
+                    files,
+                    stages - tags.get(0).getValue().stages.sum(),
+                    tags.size() - 1
+            ));
+            pulls.add(new ImagePrewarmReport.Row(0, suggested.reference(), stages, files,
+                    tags.size() == 1 ? null : String.join(", ", names.subList(1, names.size()))));
+        }
+
+        pulls.sort(PREWARM_ORDER);
+        for (int i = 0; i < pulls.size(); i++) {
+            ImagePrewarmReport.Row row = pulls.get(i);
+            prewarm.insertRow(ctx, new ImagePrewarmReport.Row(i + 1, row.getImage(), row.getStages(), row.getFiles(),
+                    row.getConsolidatedTags()));
+        }
+
+        // the accumulator outlives a cycle and is scanned again when other recipes cause another one, so start over
+        // as the drained accumulators of ListImages do, rather than counting every Dockerfile twice
+        acc.images.clear();
+        acc.groupFiles.clear();
+        return Collections.emptyList();
+    }
+
+    private static @Nullable Image image(Docker.From from) {
+        String reference = from.getImageSpecWithVersion();
+        if (reference == null || reference.isEmpty() || reference.contains("$") || "scratch".equalsIgnoreCase(reference)) {
+            return null;
+        }
+
+        ImageReference parsed = ImageReference.parse(reference);
+        String repository = "docker.io".equals(parsed.getRegistry()) ?
+                parsed.getRepository().replaceFirst("^library/", "") :
+                parsed.getRegistry() + "/" + parsed.getRepository();
+        if (parsed.getDigest() != null) {
+            return new Image(repository, from.getTag(), parsed.getDigest(), null);
+        }
+
+        String tag = parsed.getTag();
+        Matcher matcher = VERSIONED_TAG.matcher(tag);
+        Group group = matcher.matches() ?
+                new Group(repository, matcher.group(1), matcher.group(3).replaceAll("[\\d.]+", "")) :
+                new Group(repository, null, tag);
+        return new Image(repository, tag, null, group);
+    }
+
+    /**
+     * Compare tags by the numbers they contain, so {@code 3.12.4-slim} is newer than {@code 3.11-slim} and
+     * {@code 20-alpine3.20} is newer than {@code 20-alpine3.19}.
+     */
+    private static int compareVersions(@Nullable String a, @Nullable String b) {
+        Matcher left = NUMBER.matcher(String.valueOf(a));
+        Matcher right = NUMBER.matcher(String.valueOf(b));
+        while (true) {
+            boolean hasLeft = left.find();
+            boolean hasRight = right.find();
+            if (!hasLeft || !hasRight) {
+                return Boolean.compare(hasLeft, hasRight);
+            }
+            int compared = Integer.compare(Integer.parseInt(left.group()), Integer.parseInt(right.group()));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+    }
+
+    private static Docker.@Nullable From findFrom(Docker.Stage stage) {
+        for (Docker child : stage.getChildren()) {
+            if (child instanceof Docker.From) {
+                return (Docker.From) child;
+            }
+        }
+        return null;
+    }
+}
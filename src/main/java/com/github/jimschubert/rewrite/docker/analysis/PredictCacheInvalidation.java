@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.ContextSourceDigest;
+import com.github.jimschubert.rewrite.docker.DockerIsoVisitor;
+import com.github.jimschubert.rewrite.docker.LayerCacheKeys;
+import com.github.jimschubert.rewrite.docker.internal.ContextSnapshot;
+import com.github.jimschubert.rewrite.docker.internal.DockerfileParser;
+import com.github.jimschubert.rewrite.docker.table.CacheInvalidationReport;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class PredictCacheInvalidation extends Recipe {
+    @EqualsAndHashCode.Exclude
+    transient CacheInvalidationReport report = new CacheInvalidationReport(this);
+
+    @Option(
+            displayName = "Baseline directory",
+            description = "A checkout of the previous version of the project, e.g. the merge base of a pull request. " +
+                          "Each Dockerfile is compared with the file at the same relative path; Dockerfiles missing " +
+                          "from the baseline are reported as fully rebuilt.",
+            example = "/tmp/main"
+    )
+    String baselineDirectory;
+
+    @Option(
+            displayName = "Root directory",
+            description = "The directory source paths of the current version are relative to. When set, the " +
+                          "contents of files copied from the build context by `COPY` and `ADD` are part of the " +
+                          "cache keys of both versions, and the files which changed are reported.",
+            example = "/home/user/project",
+            required = false
+    )
+    @Nullable
+    String rootDirectory;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Predict layer cache invalidation";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Computes a BuildKit-like cache key for each layer of each stage, chaining the normalized instruction " +
+               "and the build state it sees onto the key of the layer before it, for both the current and a previous " +
+               "version of each Dockerfile. Outputs a data table with, per stage, the first instruction missing from " +
+               "the previous version's cache and how many layers will be rebuilt. With a root directory, changes to " +
+               "files copied from the build context invalidate the layers which copy them.";
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        Path baselineRoot = Paths.get(baselineDirectory == null ? "" : baselineDirectory);
+        Map<String, ContextSourceDigest> resolvers = new HashMap<>();
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                Path sourcePath = dockerfile.getSourcePath();
+                Docker.@Nullable Document previous = baseline(baselineRoot.resolve(sourcePath), ctx);
+
+                ContextSourceDigest beforeContext = null;
+                ContextSourceDigest afterContext = null;
+                if (rootDirectory != null && !rootDirectory.isEmpty()) {
+                    try {
+                        afterContext = resolver(resolvers, Paths.get(rootDirectory), sourcePath);
+                        beforeContext = previous == null ? null : resolver(resolvers, baselineRoot, sourcePath);
+                    } catch (IOException e) {
+                        ctx.getOnError().accept(e);
+                    }
+                }
+
+                LayerCacheKeys before = previous == null ?
+                        LayerCacheKeys.compute(Docker.Document.build(Collections.emptyList())) :
+                        LayerCacheKeys.compute(previous, beforeContext == null ? LayerCacheKeys.SourceDigest.NONE : beforeContext);
+                LayerCacheKeys after = LayerCacheKeys.compute(dockerfile,
+                        afterContext == null ? LayerCacheKeys.SourceDigest.NONE : afterContext);
+                for (LayerCacheKeys.Invalidation invalidation : after.invalidatedSince(before)) {
+                    LayerCacheKeys.Layer first = invalidation.getFirstInvalidated();
+                    String changedFiles = null;
+                    if (first != null && beforeContext != null && afterContext != null &&
+                        ContextSnapshot.contextSources(first.getInstruction()) != null) {
+                        changedFiles = String.join(", ",
+                                ContextSourceDigest.changedFiles(beforeContext, afterContext, first.getInstruction()));
+                    }
+                    report.insertRow(ctx, new CacheInvalidationReport.Row(
+                            sourcePath.toString(),
+                            invalidation.getStage().getName(),
+                            invalidation.getStage().getFilesystemLayers(),
+                            first == null ? null : first.getIndex(),
+                            first == null ? null : first.getText(),
+                            changedFiles == null || changedFiles.isEmpty() ? null : changedFiles,
+                            invalidation.getRebuiltLayers()
+                    ));
+                }
+                return dockerfile;
+            }
+        };
+    }
+
+    private static Docker.@Nullable Document baseline(Path previous, ExecutionContext ctx) {
+        if (Files.isRegularFile(previous)) {
+            try (InputStream is = Files.newInputStream(previous)) {
+                return new DockerfileParser().parse(is);
+            } catch (IOException | RuntimeException e) {
+                ctx.getOnError().accept(e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Dockerfiles sharing a build context and ignore file share a resolver, so the context is listed and its files
+     * digested once.
+     */
+    private static ContextSourceDigest resolver(Map<String, ContextSourceDigest> resolvers, Path root,
+                                                Path dockerfile) throws IOException {
+        Path context = dockerfile.getParent() == null ? root : root.resolve(dockerfile.getParent());
+        String key = context + File.pathSeparator + ContextSourceDigest.dockerignore(root, dockerfile);
+        ContextSourceDigest resolver = resolvers.get(key);
+        if (resolver == null) {
+            resolver = ContextSourceDigest.forDockerfile(root, dockerfile);
+            resolvers.put(key, resolver);
+        }
+        return resolver;
+    }
+}
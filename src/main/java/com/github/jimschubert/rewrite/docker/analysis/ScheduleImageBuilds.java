@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.DockerIsoVisitor;
+import com.github.jimschubert.rewrite.docker.internal.ImageBuild;
+import com.github.jimschubert.rewrite.docker.table.BuildScheduleReport;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Value
+@EqualsAndHashCode(callSuper = false)
+@RequiredArgsConstructor
+@NoArgsConstructor(force = true)
+public class ScheduleImageBuilds extends ScanningRecipe<ScheduleImageBuilds.Scanned> {
+    @EqualsAndHashCode.Exclude
+    transient BuildScheduleReport report = new BuildScheduleReport(this);
+
+    @Option(
+            displayName = "Image name",
+            description = "The name of the image each Dockerfile produces, without a tag. `{directory}` is replaced with " +
+                          "the name of the directory containing the Dockerfile, `{path}` with that directory's path, and " +
+                          "`{file}` with the Dockerfile's name without `Dockerfile` (`api` for `api.Dockerfile` or " +
+                          "`Dockerfile.api`). Defaults to `{directory}`. Dockerfiles whose name is empty, such as one at " +
+                          "the repository root with the default, don't produce an image other Dockerfiles can depend on.",
+            example = "registry.example.com/team/{path}",
+            required = false
+    )
+    @Nullable
+    String imageName;
+
+    @Override
+    public @NlsRewrite.DisplayName String getDisplayName() {
+        return "Schedule image builds";
+    }
+
+    @Override
+    public @NlsRewrite.Description String getDescription() {
+        return "Outputs a data table with a parallel build schedule for the Dockerfiles of a repository. Each Dockerfile " +
+               "is mapped to the image it produces by a naming convention, and depends on the Dockerfiles producing " +
+               "the images it is built `FROM` or copies from, including through inherited `ONBUILD` triggers. " +
+               "Dockerfiles are grouped into waves which can be built concurrently, and the longest chain of " +
+               "builds which must run one after another is marked as the critical path.";
+    }
+
+    public static class Scanned {
+        final Map<String, ImageBuild> builds = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Scanned getInitialValue(ExecutionContext ctx) {
+        return new Scanned();
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getScanner(Scanned acc) {
+        return new DockerIsoVisitor<>() {
+            @Override
+            public Docker.Document visitDocument(Docker.Document dockerfile, ExecutionContext ctx) {
+                ImageBuild build = ImageBuild.of(dockerfile, imageName);
+                acc.builds.put(build.getPath(), build);
+                return dockerfile;
+            }
+        };
+    }
+
+    @Override
+    public Collection<? extends SourceFile> generate(Scanned acc, ExecutionContext ctx) {
+        List<ImageBuild> builds = new ArrayList<>(acc.builds.values());
+        builds.sort(Comparator.comparing(ImageBuild::getPath));
+        acc.builds.clear();
+
+        Map<String, List<Integer>> producers = new HashMap<>();
+        for (int i = 0; i < builds.size(); i++) {
+            String image = builds.get(i).getImage();
+            if (image != null) {
+                producers.computeIfAbsent(image, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<Set<Integer>> dependencies = new ArrayList<>(builds.size());
+        boolean[] inheritsOnbuild = new boolean[builds.size()];
+        for (int i = 0; i < builds.size(); i++) {
+            ImageBuild build = builds.get(i);
+            Set<Integer> depends = new TreeSet<>();
+            for (String reference : build.getReferences().values()) {
+                depends.addAll(producers.getOrDefault(reference, Collections.emptyList()));
+            }
+            for (String baseImage : build.getBaseImages()) {
+                for (Integer producer : producers.getOrDefault(baseImage, Collections.emptyList())) {
+                    if (builds.get(producer).isOnbuild()) {
+                        inheritsOnbuild[i] = true;
+                        // the parent's triggers run in this build
+                        for (String reference : builds.get(producer).getOnbuildReferences().values()) {
+                            depends.addAll(producers.getOrDefault(reference, Collections.emptyList()));
+                        }
+                    }
+                }
+            }
+            depends.remove(i);
+            dependencies.add(depends);
+        }
+
+        int[] wave = waves(dependencies);
+        Set<Integer> criticalPath = criticalPath(dependencies, wave);
+
+        List<Integer> order = new ArrayList<>(builds.size());
+        for (int i = 0; i < builds.size(); i++) {
+            order.add(i);
+        }
+        // dockerfiles in a cycle have no wave and go last
+        order.sort(Comparator.<Integer>comparingInt(i -> wave[i] == 0 ? Integer.MAX_VALUE : wave[i])
+                .thenComparing(i -> builds.get(i).getPath()));
+        for (Integer i : order) {
+            ImageBuild build = builds.get(i);
+            Set<String> dependsOn = new TreeSet<>();
+            for (Integer dependency : dependencies.get(i)) {
+                dependsOn.add(builds.get(dependency).getImage());
+            }
+            report.insertRow(ctx, new BuildScheduleReport.Row(
+                    build.getPath(),
+                    build.getImage(),
+                    wave[i] == 0 ? null : wave[i],
+                    String.join(", ", dependsOn),
+                    criticalPath.contains(i),
+                    inheritsOnbuild[i]
+            ));
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return The 1-based wave of each build: one more than the latest wave it depends on. Zero for builds in, or
+     * depending on, a cycle.
+     */
+    private static int[] waves(List<Set<Integer>> dependencies) {
+        int size = dependencies.size();
+        int[] pending = new int[size];
+        List<List<Integer>> dependents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<>());
+        }
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            pending[i] = dependencies.get(i).size();
+            for (Integer dependency : dependencies.get(i)) {
+                dependents.get(dependency).add(i);
+            }
+            if (pending[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        int[] wave = new int[size];
+        while (!ready.isEmpty()) {
+            int next = ready.poll();
+            int latest = 0;
+            for (Integer dependency : dependencies.get(next)) {
+                latest = Math.max(latest, wave[dependency]);
+            }
+            wave[next] = latest + 1;
+            for (Integer dependent : dependents.get(next)) {
+                if (--pending[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return wave;
+    }
+
+    /**
+     * @return The longest chain of builds, ending with the first build in the last wave.
+     */
+    private static Set<Integer> criticalPath(List<Set<Integer>> dependencies, int[] wave) {
+        int current = -1;
+        for (int i = 0; i < wave.length; i++) {
+            if (wave[i] > 0 && (current < 0 || wave[i] > wave[current])) {
+                current = i;
+            }
+        }
+        Set<Integer> path = new HashSet<>();
+        while (current >= 0) {
+            path.add(current);
+            int next = -1;
+            for (Integer dependency : dependencies.get(current)) {
+                if (wave[dependency] == wave[current] - 1) {
+                    next = dependency;
+                    break;
+                }
+            }
+            current = next;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A {@code docker buildx bake} file, printed as HCL or JSON.
+ */
+@Value
+public class BakeFile {
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_-]*");
+
+    String comment;
+    List<Target> targets;
+
+    @Value
+    public static class Target {
+        String name;
+        String context;
+        String dockerfile;
+        List<String> tags;
+
+        /**
+         * Named contexts, such as an image reference mapped to {@code target:<name>}.
+         */
+        Map<String, String> contexts;
+
+        Map<String, String> args;
+        List<String> cacheFrom;
+        List<String> cacheTo;
+    }
+
+    public String printHcl() {
+        StringBuilder out = new StringBuilder();
+        out.append("# ").append(comment).append('\n');
+        out.append("group \"default\" {\n");
+        out.append("  targets = ");
+        hclList(targets.stream().map(Target::getName).collect(Collectors.toList()), out);
+        out.append("\n}\n");
+
+        for (Target target : targets) {
+            out.append("\ntarget ").append(hclString(target.getName())).append(" {\n");
+            out.append("  context = ").append(hclString(target.getContext())).append('\n');
+            out.append("  dockerfile = ").append(hclString(target.getDockerfile())).append('\n');
+            if (!target.getTags().isEmpty()) {
+                out.append("  tags = ");
+                hclList(target.getTags(), out);
+                out.append('\n');
+            }
+            hclMap("contexts", target.getContexts(), out);
+            hclMap("args", target.getArgs(), out);
+            if (!target.getCacheFrom().isEmpty()) {
+                out.append("  cache-from = ");
+                hclList(target.getCacheFrom(), out);
+                out.append('\n');
+            }
+            if (!target.getCacheTo().isEmpty()) {
+                out.append("  cache-to = ");
+                hclList(target.getCacheTo(), out);
+                out.append('\n');
+            }
+            out.append("}\n");
+        }
+        return out.toString();
+    }
+
+    public String printJson() {
+        StringBuilder out = new StringBuilder();
+        out.append("{\n");
+        out.append("  \"group\": {\n");
+        out.append("    \"default\": {\n");
+        out.append("      \"targets\": ");
+        jsonList(targets.stream().map(Target::getName).collect(Collectors.toList()), out);
+        out.append("\n    }\n");
+        out.append("  },\n");
+        out.append("  \"target\": {");
+        for (int i = 0; i < targets.size(); i++) {
+            Target target = targets.get(i);
+            out.append(i == 0 ? "\n" : ",\n");
+            out.append("    ").append(jsonString(target.getName())).append(": {\n");
+            out.append("      \"context\": ").append(jsonString(target.getContext())).append(",\n");
+            out.append("      \"dockerfile\": ").append(jsonString(target.getDockerfile()));
+            if (!target.getTags().isEmpty()) {
+                out.append(",\n      \"tags\": ");
+                jsonList(target.getTags(), out);
+            }
+            jsonMap("contexts", target.getContexts(), out);
+            jsonMap("args", target.getArgs(), out);
+            if (!target.getCacheFrom().isEmpty()) {
+                out.append(",\n      \"cache-from\": ");
+                jsonList(target.getCacheFrom(), out);
+            }
+            if (!target.getCacheTo().isEmpty()) {
+                out.append(",\n      \"cache-to\": ");
+                jsonList(target.getCacheTo(), out);
+            }
+            out.append("\n    }");
+        }
+        out.append(targets.isEmpty() ? "}\n" : "\n  }\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static void hclList(List<String> values, StringBuilder out) {
+        out.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(hclString(values.get(i)));
+        }
+        out.append(']');
+    }
+
+    private static void hclMap(String name, Map<String, String> values, StringBuilder out) {
+        if (values.isEmpty()) {
+            return;
+        }
+        out.append("  ").append(name).append(" = {\n");
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = IDENTIFIER.matcher(entry.getKey()).matches() ? entry.getKey() : hclString(entry.getKey());
+            out.append("    ").append(key).append(" = ").append(hclString(entry.getValue())).append('\n');
+        }
+        out.append("  }\n");
+    }
+
+    /**
+     * Quote a string literal, escaping HCL interpolation and template sequences so the value is taken literally.
+     */
+    static String hclString(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c == '$' || c == '%') && i + 1 < value.length() && value.charAt(i + 1) == '{') {
+                out.append(c).append(c);
+            } else {
+                escape(c, out);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static void jsonList(List<String> values, StringBuilder out) {
+        out.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(jsonString(values.get(i)));
+        }
+        out.append(']');
+    }
+
+    private static void jsonMap(String name, Map<String, String> values, StringBuilder out) {
+        if (values.isEmpty()) {
+            return;
+        }
+        out.append(",\n      ").append(jsonString(name)).append(": {");
+        boolean first = true;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            out.append(first ? "\n" : ",\n");
+            first = false;
+            out.append("        ").append(jsonString(entry.getKey())).append(": ").append(jsonString(entry.getValue()));
+        }
+        out.append("\n      }");
+    }
+
+    static String jsonString(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            escape(value.charAt(i), out);
+        }
+        return out.append('"').toString();
+    }
+
+    private static void escape(char c, StringBuilder out) {
+        switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs slow lookups, such as network requests, for a batch of keys on a bounded number of threads.
+ */
+public final class BoundedLookups {
+    private BoundedLookups() {
+    }
+
+    public interface Lookup<K, V> {
+        V apply(K key) throws IOException;
+    }
+
+    /**
+     * @param keys        The keys to look up, each looked up once.
+     * @param concurrency The maximum number of lookups running at once.
+     * @param lookup      The lookup.
+     * @return The outcome of each lookup, in the order of {@code keys}.
+     */
+    public static <K, V> Map<K, Outcome<V>> run(Collection<K> keys, int concurrency, Lookup<K, V> lookup) {
+        Set<K> unique = new LinkedHashSet<>(keys);
+        Map<K, Outcome<V>> outcomes = new LinkedHashMap<>();
+        if (unique.isEmpty()) {
+            return outcomes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, unique.size())), runnable -> {
+            Thread thread = new Thread(runnable, "rewrite-docker-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<K, Future<V>> pending = new LinkedHashMap<>();
+            for (K key : unique) {
+                pending.put(key, executor.submit(() -> lookup.apply(key)));
+            }
+            for (Map.Entry<K, Future<V>> entry : pending.entrySet()) {
+                outcomes.put(entry.getKey(), await(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return outcomes;
+    }
+
+    private static <V> Outcome<V> await(Object key, Future<V> future) {
+        try {
+            return new Outcome<>(future.get(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Outcome<>(null, new InterruptedIOException("Interrupted looking up " + key));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                return new Outcome<>(null, (IOException) e.getCause());
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Value
+    public static class Outcome<V> {
+        /**
+         * The value, or null if the lookup failed or found nothing.
+         */
+        @Nullable
+        V value;
+
+        @Nullable
+        IOException error;
+    }
+}
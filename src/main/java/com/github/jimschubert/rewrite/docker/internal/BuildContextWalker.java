@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Walks a build context directory the way the builder would see it: files excluded by {@code .dockerignore} are not
+ * counted, symbolic links are not followed, and excluded directories are skipped entirely unless a {@code !} pattern
+ * could re-include something beneath them.
+ * <p>
+ * Each directory is listed by its own fork/join task, so large trees are walked in parallel. Sizes attributable to
+ * COPY/ADD sources are accumulated during the same walk.
+ */
+public class BuildContextWalker {
+    private final DockerignoreMatcher ignore;
+    private final List<String> sources;
+    private final List<DockerignoreMatcher> sourceMatchers;
+
+    /**
+     * @param ignore  The compiled .dockerignore of the context.
+     * @param sources COPY/ADD sources relative to the context. A source matches a file when it names the file or one
+     *                of its parent directories, with the same wildcards as .dockerignore patterns.
+     */
+    public BuildContextWalker(DockerignoreMatcher ignore, List<String> sources) {
+        this.ignore = ignore;
+        this.sources = sources;
+        this.sourceMatchers = new ArrayList<>(sources.size());
+        for (String source : sources) {
+            String normalized = DockerignoreMatcher.normalize(source);
+            // the context root itself, e.g. "COPY . ." matches everything
+            sourceMatchers.add(normalized.equals(".") || normalized.equals("/") ? null :
+                    DockerignoreMatcher.compile(Collections.singletonList(normalized)));
+        }
+    }
+
+    @Value
+    public static class Totals {
+        String path;
+        long bytes;
+        long files;
+    }
+
+    @Value
+    public static class Result {
+        /**
+         * Everything sent to the builder.
+         */
+        Totals context;
+
+        /**
+         * Totals per source, in the order the sources were given.
+         */
+        List<Totals> sources;
+
+        /**
+         * Totals per non-ignored directory, relative to the context, in no particular order.
+         */
+        List<Totals> directories;
+    }
+
+    public Result walk(Path context) throws IOException {
+        LongAdder[] sourceBytes = adders(sources.size());
+        LongAdder[] sourceFiles = adders(sources.size());
+        Queue<Totals> directories = new ConcurrentLinkedQueue<>();
+
+        long[] total;
+        try {
+            total = ForkJoinPool.commonPool().invoke(new DirectoryTask(context, "", sourceBytes, sourceFiles, directories));
+        } catch (RuntimeException e) {
+            // fork/join may rethrow a copy of the task's exception, so look for the I/O failure in the causes
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw e;
+        }
+
+        List<Totals> perSource = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            perSource.add(new Totals(sources.get(i), sourceBytes[i].sum(), sourceFiles[i].sum()));
+        }
+        return new Result(new Totals(".", total[0], total[1]), perSource, new ArrayList<>(directories));
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private class DirectoryTask extends RecursiveTask<long[]> {
+        private final Path directory;
+        private final String relative;
+        private final LongAdder[] sourceBytes;
+        private final LongAdder[] sourceFiles;
+        private final Queue<Totals> directories;
+
+        DirectoryTask(Path directory, String relative, LongAdder[] sourceBytes, LongAdder[] sourceFiles, Queue<Totals> directories) {
+            this.directory = directory;
+            this.relative = relative;
+            this.sourceBytes = sourceBytes;
+            this.sourceFiles = sourceFiles;
+            this.directories = directories;
+        }
+
+        @Override
+        protected long[] compute() {
+            long bytes = 0;
+            long files = 0;
+            List<DirectoryTask> children = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    String path = relative.isEmpty() ? name : relative + "/" + name;
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    boolean excluded = ignore.isExcluded(path);
+                    if (attributes.isDirectory()) {
+                        if (!excluded || ignore.hasNegations()) {
+                            DirectoryTask child = new DirectoryTask(entry, path, sourceBytes, sourceFiles, directories);
+                            child.fork();
+                            children.add(child);
+                        }
+                    } else if (!excluded) {
+                        long size = attributes.size();
+                        bytes += size;
+                        files++;
+                        for (int i = 0; i < sourceMatchers.size(); i++) {
+                            DockerignoreMatcher source = sourceMatchers.get(i);
+                            if (source == null || source.isExcluded(path)) {
+                                sourceBytes[i].add(size);
+                                sourceFiles[i].increment();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // surfaced by walk(), after outstanding tasks are joined below
+                for (DirectoryTask child : children) {
+                    child.join();
+                }
+                throw new UncheckedIOException(e);
+            }
+
+            for (DirectoryTask child : children) {
+                long[] totals = child.join();
+                bytes += totals[0];
+                files += totals[1];
+            }
+
+            if (!relative.isEmpty() && files > 0) {
+                directories.add(new Totals(relative, bytes, files));
+            }
+            return new long[]{bytes, files};
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * The files of a build context, listed once and kept in memory so each COPY/ADD source can be expanded without
+ * walking the directory again.
+ * <p>
+ * Files excluded by {@code .dockerignore} are left out and symbolic links are not followed, as with
+ * {@link BuildContextWalker}. File digests are computed on first use and cached; small files are read directly,
+ * larger ones through a memory-mapped view so the whole file is never copied onto the heap.
+ */
+public class ContextSnapshot {
+    private static final int MAPPED_THRESHOLD = 64 * 1024;
+    private static final long MAPPED_CHUNK = 64L * 1024 * 1024;
+
+    private final Path context;
+    private final List<String> files;
+    private final Map<String, String> digests = new ConcurrentHashMap<>();
+
+    private ContextSnapshot(Path context, List<String> files) {
+        this.context = context;
+        this.files = files;
+    }
+
+    /**
+     * @param context The build context directory.
+     * @param ignore  The compiled .dockerignore of the context.
+     * @return The regular files of the context, relative to it, in sorted order.
+     */
+    public static ContextSnapshot take(Path context, DockerignoreMatcher ignore) throws IOException {
+        List<String> files = new ArrayList<>();
+        if (Files.isDirectory(context)) {
+            Files.walkFileTree(context, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    String path = relative(dir);
+                    return path.isEmpty() || !ignore.isExcluded(path) || ignore.hasNegations() ?
+                            FileVisitResult.CONTINUE :
+                            FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String path = relative(file);
+                    if (attrs.isRegularFile() && !ignore.isExcluded(path)) {
+                        files.add(path);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private String relative(Path path) {
+                    return context.relativize(path).toString().replace('\\', '/');
+                }
+            });
+        }
+        Collections.sort(files);
+        return new ContextSnapshot(context, Collections.unmodifiableList(files));
+    }
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * @param sources COPY/ADD sources relative to the context. A source matches a file when it names the file or one
+     *                of its parent directories, with the same wildcards as .dockerignore patterns.
+     * @return The matched files, in sorted order.
+     */
+    public List<String> match(List<String> sources) {
+        List<DockerignoreMatcher> matchers = new ArrayList<>(sources.size());
+        for (String source : sources) {
+            String normalized = DockerignoreMatcher.normalize(source);
+            if (normalized.equals(".") || normalized.equals("/")) {
+                return files;
+            }
+            matchers.add(DockerignoreMatcher.compile(Collections.singletonList(normalized)));
+        }
+        return files.stream()
+                .filter(file -> matchers.stream().anyMatch(matcher -> matcher.isExcluded(file)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param files Files of this snapshot. Uncached digests are computed in parallel.
+     * @return A digest of the names and contents of the files, independent of the order they are given in.
+     */
+    public String digest(List<String> files) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(files));
+        List<String> contents;
+        try {
+            contents = sorted.parallelStream().map(this::digest).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            // a file removed since the snapshot was taken changes the content like any other edit
+            contents = sorted.stream().map(file -> {
+                try {
+                    return digest(file);
+                } catch (UncheckedIOException missing) {
+                    return "missing";
+                }
+            }).collect(Collectors.toList());
+        }
+
+        MessageDigest digest = sha256();
+        for (int i = 0; i < sorted.size(); i++) {
+            digest.update(sorted.get(i).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(contents.get(i).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @param file A file of this snapshot.
+     * @return The SHA-256 digest of the file's contents.
+     */
+    public String digest(String file) {
+        return digests.computeIfAbsent(file, f -> {
+            try {
+                return hex(contentDigest(context.resolve(f)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static byte[] contentDigest(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAPPED_THRESHOLD) {
+                digest.update(Files.readAllBytes(file));
+            } else {
+                for (long position = 0; position < size; position += MAPPED_CHUNK) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAPPED_CHUNK, size - position));
+                    digest.update(buffer);
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * @param instruction A COPY or ADD instruction.
+     * @return The sources the instruction reads from the build context, or null when it reads from another stage or
+     * isn't a COPY or ADD. Sources which can't be resolved without building, such as those referencing build
+     * arguments, URLs and heredocs, are left out.
+     */
+    public static @Nullable List<String> contextSources(Docker instruction) {
+        List<Docker.Option> options;
+        List<Docker.Literal> literals;
+        if (instruction instanceof Docker.Copy) {
+            options = ((Docker.Copy) instruction).getOptions();
+            literals = ((Docker.Copy) instruction).getSources();
+        } else if (instruction instanceof Docker.Add) {
+            options = ((Docker.Add) instruction).getOptions();
+            literals = ((Docker.Add) instruction).getSources();
+        } else {
+            return null;
+        }
+
+        boolean fromStage = options != null && options.stream()
+                .map(Docker.Option::getKeyArgs)
+                .anyMatch(keyArgs -> keyArgs != null && "--from".equalsIgnoreCase(keyArgs.key()));
+        if (fromStage || literals == null) {
+            return null;
+        }
+
+        List<String> sources = new ArrayList<>();
+        for (Docker.Literal literal : literals) {
+            String text = literal.getText();
+            // variables can't be resolved without build args
+            if (text == null || text.isEmpty() || text.startsWith("<<") || text.contains("$") ||
+                text.contains("://") || text.startsWith("git@")) {
+                continue;
+            }
+            sources.add(text);
+        }
+        return sources;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder("sha256:");
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
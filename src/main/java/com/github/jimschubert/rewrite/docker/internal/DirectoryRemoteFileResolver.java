@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.RemoteFileResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Reads remote files from a local mirror laid out as {@code <host>/<path>}, e.g. for tests or air-gapped builds.
+ */
+public class DirectoryRemoteFileResolver implements RemoteFileResolver {
+    private final Path root;
+
+    public DirectoryRemoteFileResolver(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String etag(String url) throws IOException {
+        Path file = file(url);
+        return Files.size(file) + "-" + Files.getLastModifiedTime(file).toMillis();
+    }
+
+    @Override
+    public InputStream open(String url) throws IOException {
+        return Files.newInputStream(file(url));
+    }
+
+    private Path file(String url) throws IOException {
+        URI uri = URI.create(url);
+        Path file = root.resolve(uri.getHost() + uri.getPath()).normalize();
+        if (uri.getHost() == null || !file.startsWith(root) || !Files.isRegularFile(file)) {
+            throw new NoSuchFileException(url);
+        }
+        return file;
+    }
+}
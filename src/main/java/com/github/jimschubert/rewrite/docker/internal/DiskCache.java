@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A small on-disk cache of string values which outlives a single recipe run, one file per key.
+ * <p>
+ * Keys are hashed into file names. Entries are written to a temporary file and moved into place, so concurrent
+ * writers never leave a partial entry behind. With a time to live, entries older than it are treated as missing.
+ * The cache is best effort: entries which can't be read or written are misses.
+ */
+public class DiskCache {
+    private final Path directory;
+    private final @Nullable Duration ttl;
+
+    /**
+     * @param directory The directory holding the entries, created on first write.
+     * @param ttl       How long entries are valid, or null if they never expire.
+     */
+    public DiskCache(Path directory, @Nullable Duration ttl) {
+        this.directory = directory;
+        this.ttl = ttl;
+    }
+
+    public @Nullable String get(String key) {
+        Path entry = entry(key);
+        try {
+            if (ttl != null && Files.getLastModifiedTime(entry).toInstant().plus(ttl).isBefore(Instant.now())) {
+                return null;
+            }
+            return new String(Files.readAllBytes(entry), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void put(String key, String value) {
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, ".entry-", ".tmp");
+            Files.write(temp, value.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, entry(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the value is computed again next time
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // a leftover temporary file is never read
+                }
+            }
+        }
+    }
+
+    private Path entry(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
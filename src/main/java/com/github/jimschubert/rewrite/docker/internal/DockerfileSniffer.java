@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import java.util.Set;
+
+import static com.github.jimschubert.rewrite.docker.internal.ParserConstants.*;
+
+/**
+ * A fast, allocation-light check of whether some text looks like a Dockerfile.
+ * <p>
+ * Only the beginning of the text is inspected: leading blank lines and comments are skipped, a parser directive
+ * (e.g. {@code # syntax=docker/dockerfile:1}) is accepted immediately, and otherwise the first significant line must
+ * start with a known instruction keyword followed by whitespace. This allows for rejecting YAML, JSON, shell scripts,
+ * etc. before doing a full parse.
+ */
+public class DockerfileSniffer {
+    /**
+     * The maximum number of lines to look at before giving up. A file with this many leading comments is unusual,
+     * but we'd rather pay for a full parse than reject a real Dockerfile.
+     */
+    static final int MAX_LINES = 64;
+
+    private static final Set<String> INSTRUCTIONS = Set.of(
+            ADD, ARG, CMD, COPY, ENTRYPOINT, ENV, EXPOSE, FROM, HEALTHCHECK, LABEL, MAINTAINER, ONBUILD, RUN,
+            SHELL, STOPSIGNAL, USER, VOLUME, WORKDIR
+    );
+
+    private static final Set<String> DIRECTIVES = Set.of("syntax", "escape", "check");
+
+    private DockerfileSniffer() {
+    }
+
+    /**
+     * @param text The full or partial text of a file.
+     * @return true if the text may be a Dockerfile and is worth parsing.
+     */
+    public static boolean looksLikeDockerfile(CharSequence text) {
+        if (text == null) {
+            return false;
+        }
+
+        int length = text.length();
+        // a byte order mark is not whitespace, skip it explicitly
+        int pos = length > 0 && text.charAt(0) == '\uFEFF' ? 1 : 0;
+        int lines = 0;
+        while (pos < length && lines++ < MAX_LINES) {
+            int end = pos;
+            while (end < length && text.charAt(end) != '\n') {
+                end++;
+            }
+
+            int start = skipWhitespace(text, pos, end);
+            if (start < end) {
+                if (text.charAt(start) != '#') {
+                    return startsWithInstruction(text, start, end);
+                }
+                if (isDirective(text, start + 1, end)) {
+                    return true;
+                }
+            }
+
+            pos = end + 1;
+        }
+
+        // out of budget on a long comment header, let the parser decide
+        if (lines > MAX_LINES) {
+            return true;
+        }
+
+        // empty, or nothing but comments
+        return false;
+    }
+
+    private static boolean startsWithInstruction(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && Character.isLetter(text.charAt(i))) {
+            i++;
+        }
+
+        if (i == start || i - start > HEALTHCHECK.length()) {
+            return false;
+        }
+
+        // the keyword must be followed by whitespace, e.g. "FROM alpine" but not "from: alpine"
+        if (i < end && !Character.isWhitespace(text.charAt(i))) {
+            return false;
+        }
+
+        return INSTRUCTIONS.contains(text.subSequence(start, i).toString().toUpperCase());
+    }
+
+    private static boolean isDirective(CharSequence text, int start, int end) {
+        int i = skipWhitespace(text, start, end);
+        int keyStart = i;
+        while (i < end && Character.isLetter(text.charAt(i))) {
+            i++;
+        }
+        if (i == keyStart) {
+            return false;
+        }
+        String key = text.subSequence(keyStart, i).toString().toLowerCase();
+        i = skipWhitespace(text, i, end);
+        return i < end && text.charAt(i) == '=' && DIRECTIVES.contains(key);
+    }
+
+    private static int skipWhitespace(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
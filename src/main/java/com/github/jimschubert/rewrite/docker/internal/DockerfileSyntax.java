@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.AddOrUpdateDirective;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.marker.Markup;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The Dockerfile frontend selected by a {@code # syntax=} directive, for recipes which add flags only newer
+ * {@code docker/dockerfile} versions understand.
+ */
+public final class DockerfileSyntax {
+    public static final String LATEST = "docker/dockerfile:1";
+
+    private static final String LABS = "-labs";
+    private static final Pattern DOCKERFILE_FRONTEND = Pattern.compile(
+            "((?:docker\\.io/)?docker/dockerfile(?:-upstream)?)(?::(\\d+)(?:\\.(\\d+))?(?:\\.\\d+)*([^@]*))?(@.*)?");
+
+    private DockerfileSyntax() {
+    }
+
+    /**
+     * @param dockerfile The Dockerfile.
+     * @param minor      The {@code docker/dockerfile:1.x} version which introduced the feature.
+     * @return True if the declared syntax supports the feature, false if it will once the directive is set to
+     * {@link #LATEST}, or null if the file uses another frontend or the Windows escape character and shouldn't be
+     * changed.
+     */
+    public static @Nullable Boolean supports(Docker.Document dockerfile, int minor) {
+        if (dockerfile.getStages().isEmpty()) {
+            return null;
+        }
+        Boolean supported = false;
+        for (Docker child : dockerfile.getStages().get(0).getChildren()) {
+            if (!(child instanceof Docker.Directive)) {
+                continue;
+            }
+            Docker.Directive directive = (Docker.Directive) child;
+            String value = directive.getValue() == null ? "" : directive.getValue().trim();
+            if ("escape".equalsIgnoreCase(directive.getKey()) && "`".equals(value)) {
+                return null;
+            } else if ("syntax".equalsIgnoreCase(directive.getKey())) {
+                Matcher matcher = DOCKERFILE_FRONTEND.matcher(value);
+                if (!matcher.matches()) {
+                    return null;
+                }
+                supported = matcher.group(2) == null || Integer.parseInt(matcher.group(2)) > 1 ||
+                            (Integer.parseInt(matcher.group(2)) == 1 &&
+                             (matcher.group(3) == null || Integer.parseInt(matcher.group(3)) >= minor));
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Add a {@code # syntax=docker/dockerfile:1} directive, or replace the existing one, keeping its image and
+     * {@code -labs} channel. A directive pinned by digest can't be moved to another version without looking it up, so
+     * the changes are dropped and the directive is marked with a warning instead.
+     *
+     * @param original The Dockerfile before the changes needing a newer syntax.
+     * @param changed  The Dockerfile with those changes.
+     */
+    public static Docker.Document requireLatest(Docker.Document original, Docker.Document changed,
+                                                ExecutionContext ctx) {
+        String latest = LATEST;
+        Docker.Directive syntax = syntax(original);
+        if (syntax != null && syntax.getValue() != null) {
+            String value = syntax.getValue().trim();
+            Matcher matcher = DOCKERFILE_FRONTEND.matcher(value);
+            if (matcher.matches() && matcher.group(5) != null) {
+                String warning = "Dockerfile syntax " + value + " is pinned to a version too old for this change; " +
+                                 "update it to apply the change";
+                return original.withStages(ListUtils.mapFirst(original.getStages(), stage ->
+                        stage.withChildren(ListUtils.map(stage.getChildren(), child ->
+                                child == syntax ? Markup.warn(child, warning, null) : child))));
+            } else if (matcher.matches()) {
+                latest = matcher.group(1) + ":1" + (LABS.equals(matcher.group(4)) ? LABS : "");
+            }
+        }
+
+        AddOrUpdateDirective directive = new AddOrUpdateDirective("syntax=" + latest);
+        AddOrUpdateDirective.Scanned acc = directive.getInitialValue(ctx);
+        directive.getScanner(acc).visit(changed, ctx);
+        return (Docker.Document) directive.getVisitor(acc).visitNonNull(changed, ctx);
+    }
+
+    private static Docker.@Nullable Directive syntax(Docker.Document dockerfile) {
+        if (dockerfile.getStages().isEmpty()) {
+            return null;
+        }
+        Docker.Directive syntax = null;
+        for (Docker child : dockerfile.getStages().get(0).getChildren()) {
+            if (child instanceof Docker.Directive && "syntax".equalsIgnoreCase(((Docker.Directive) child).getKey())) {
+                syntax = (Docker.Directive) child;
+            }
+        }
+        return syntax;
+    }
+}
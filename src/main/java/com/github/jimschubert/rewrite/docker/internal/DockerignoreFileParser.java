@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.tree.Dockerignore;
+import org.openrewrite.Tree;
+import org.openrewrite.marker.Markers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits .dockerignore content into entries, one per line.
+ * Like Docker, a line is only a comment when {@code #} is its first character.
+ */
+public class DockerignoreFileParser {
+    public Dockerignore.Document parse(String content) {
+        List<Dockerignore.Entry> entries = new ArrayList<>();
+        int length = content.length();
+        int start = 0;
+        while (start < length) {
+            int newline = content.indexOf('\n', start);
+            int end = newline < 0 ? length : newline;
+            String eol = newline < 0 ? "" : "\n";
+            if (end > start && content.charAt(end - 1) == '\r' && newline >= 0) {
+                end--;
+                eol = "\r\n";
+            }
+
+            entries.add(entry(content.substring(start, end), eol));
+            start = newline < 0 ? length : newline + 1;
+        }
+        return Dockerignore.Document.build(entries);
+    }
+
+    private static Dockerignore.Entry entry(String line, String eol) {
+        if (line.startsWith("#")) {
+            return new Dockerignore.Comment(Tree.randomId(), line.substring(1), Markers.EMPTY, eol);
+        }
+
+        String text = line.trim();
+        if (text.isEmpty()) {
+            return new Dockerignore.Blank(Tree.randomId(), line, Markers.EMPTY, eol);
+        }
+
+        int begin = line.indexOf(text);
+        return new Dockerignore.Pattern(Tree.randomId(),
+                line.substring(0, begin),
+                text,
+                line.substring(begin + text.length()),
+                Markers.EMPTY,
+                eol);
+    }
+}
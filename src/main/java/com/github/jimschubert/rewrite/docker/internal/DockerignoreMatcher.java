@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A compiled set of {@code .dockerignore} patterns.
+ * <p>
+ * Patterns follow Docker's rules: each pattern is cleaned like Go's {@code filepath.Clean} (with a leading {@code /}
+ * removed), split into {@code /}-separated segments matched with {@code filepath.Match} semantics, {@code **} matches
+ * any number of directories, a leading {@code !} re-includes paths, and the last matching pattern wins. A path is
+ * excluded when it or any of its parent directories matches.
+ * <p>
+ * Each pattern is compiled once into a sequence of segment matchers. Patterns without {@code **} are matched
+ * segment-by-segment in a single pass; patterns with {@code **} run as a small NFA over path segments whose state set
+ * is a bitmask. Matching a path only allocates the segment offsets of that path.
+ * Instances are immutable and safe to share between threads.
+ */
+public class DockerignoreMatcher {
+    public static final DockerignoreMatcher EMPTY = new DockerignoreMatcher(Collections.emptyList());
+
+    private final List<CompiledPattern> patterns;
+    private final boolean hasNegations;
+
+    private DockerignoreMatcher(List<CompiledPattern> patterns) {
+        this.patterns = patterns;
+        this.hasNegations = patterns.stream().anyMatch(p -> p.negated);
+    }
+
+    /**
+     * @param patterns Pattern lines as they appear in a {@code .dockerignore} file. Blank lines and lines starting with
+     *                 {@code #} are ignored.
+     * @return The compiled matcher.
+     */
+    public static DockerignoreMatcher compile(List<String> patterns) {
+        List<CompiledPattern> compiled = new ArrayList<>(patterns.size());
+        for (String line : patterns) {
+            if (line == null || line.startsWith("#")) {
+                continue;
+            }
+            String pattern = line.trim();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            boolean negated = pattern.charAt(0) == '!';
+            if (negated) {
+                pattern = pattern.substring(1).trim();
+                if (pattern.isEmpty()) {
+                    continue;
+                }
+            }
+            compiled.add(new CompiledPattern(normalize(pattern), negated));
+        }
+        return compiled.isEmpty() ? EMPTY : new DockerignoreMatcher(Collections.unmodifiableList(compiled));
+    }
+
+    /**
+     * Normalize a pattern the way Docker does before matching: {@code filepath.Clean} with forward slashes, then
+     * drop a leading {@code /}. The {@code !} of a negated pattern must be removed first.
+     *
+     * @param pattern The pattern text.
+     * @return The normalized pattern.
+     */
+    public static String normalize(String pattern) {
+        String cleaned = clean(pattern);
+        return cleaned.length() > 1 && cleaned.charAt(0) == '/' ? cleaned.substring(1) : cleaned;
+    }
+
+    /**
+     * Lexical path cleaning equivalent to Go's {@code path.Clean}.
+     */
+    static String clean(String path) {
+        if (path.isEmpty()) {
+            return ".";
+        }
+        boolean rooted = path.charAt(0) == '/';
+        Deque<String> parts = new ArrayDeque<>();
+        int start = 0;
+        int length = path.length();
+        while (start <= length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            String part = path.substring(start, end);
+            if (part.equals("..")) {
+                if (!parts.isEmpty() && !parts.peekLast().equals("..")) {
+                    parts.removeLast();
+                } else if (!rooted) {
+                    parts.addLast(part);
+                }
+            } else if (!part.isEmpty() && !part.equals(".")) {
+                parts.addLast(part);
+            }
+            start = end + 1;
+        }
+
+        String joined = String.join("/", parts);
+        if (rooted) {
+            return "/" + joined;
+        }
+        return joined.isEmpty() ? "." : joined;
+    }
+
+    /**
+     * @return The normalized patterns, in file order. Negated patterns are prefixed with {@code !}.
+     */
+    public List<String> getPatterns() {
+        List<String> result = new ArrayList<>(patterns.size());
+        for (CompiledPattern pattern : patterns) {
+            result.add(pattern.negated ? "!" + pattern.pattern : pattern.pattern);
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    /**
+     * @return true if any pattern re-includes paths with {@code !}. Without negations, an excluded directory can be
+     * skipped entirely when walking a build context.
+     */
+    public boolean hasNegations() {
+        return hasNegations;
+    }
+
+    /**
+     * @param path A path relative to the build context, using {@code /} separators.
+     * @return true if the path is excluded from the build context.
+     */
+    public boolean isExcluded(String path) {
+        if (patterns.isEmpty()) {
+            return false;
+        }
+        int[] bounds = segments(path);
+        if (bounds == null) {
+            // only needed for paths containing "..", which are rare enough not to optimize for
+            String cleaned = normalize(path);
+            bounds = segments(cleaned);
+            path = cleaned;
+            if (bounds == null) {
+                return false;
+            }
+        }
+
+        // the last matching pattern wins, so look from the end
+        for (int i = patterns.size() - 1; i >= 0; i--) {
+            CompiledPattern pattern = patterns.get(i);
+            if (pattern.matchesOrParentMatches(path, bounds)) {
+                return !pattern.negated;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Split a path into segment offsets, skipping empty and {@code .} segments.
+     *
+     * @return start/end offset pairs, or null if the path contains a {@code ..} segment.
+     */
+    private static int[] segments(String path) {
+        int count = 0;
+        int length = path.length();
+        int[] bounds = new int[8];
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && path.charAt(end) != '/') {
+                end++;
+            }
+            int size = end - start;
+            if (size == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.') {
+                return null;
+            }
+            if (size > 0 && !(size == 1 && path.charAt(start) == '.')) {
+                if (count * 2 + 2 > bounds.length) {
+                    int[] grown = new int[bounds.length * 2];
+                    System.arraycopy(bounds, 0, grown, 0, bounds.length);
+                    bounds = grown;
+                }
+                bounds[count * 2] = start;
+                bounds[count * 2 + 1] = end;
+                count++;
+            }
+            start = end + 1;
+        }
+
+        if (count * 2 == bounds.length) {
+            return bounds;
+        }
+        int[] exact = new int[count * 2];
+        System.arraycopy(bounds, 0, exact, 0, exact.length);
+        return exact;
+    }
+
+    private static final class CompiledPattern {
+        final String pattern;
+        final boolean negated;
+        final Segment[] segments;
+        final boolean hasDoubleStar;
+
+        CompiledPattern(String pattern, boolean negated) {
+            this.pattern = pattern;
+            this.negated = negated;
+
+            String[] parts = pattern.split("/", -1);
+            this.segments = new Segment[parts.length];
+            boolean doubleStar = false;
+            for (int i = 0; i < parts.length; i++) {
+                segments[i] = Segment.compile(parts[i]);
+                doubleStar |= segments[i] == Segment.DOUBLE_STAR;
+            }
+            this.hasDoubleStar = doubleStar;
+        }
+
+        boolean matchesOrParentMatches(String path, int[] bounds) {
+            int pathSegments = bounds.length / 2;
+            if (!hasDoubleStar) {
+                // a parent (or the path itself) matches when the first segments.length path segments match
+                if (pathSegments < segments.length) {
+                    return false;
+                }
+                for (int i = 0; i < segments.length; i++) {
+                    if (!segments[i].matches(path, bounds[i * 2], bounds[i * 2 + 1])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return segments.length < Long.SIZE ?
+                    matchesWithMask(path, bounds, pathSegments) :
+                    matchesWithBitSet(path, bounds, pathSegments);
+        }
+
+        /**
+         * States are indexes into {@link #segments}; state {@code segments.length} accepts. A non-trailing {@code **}
+         * may match zero segments. A trailing {@code **} must match at least one segment, so {@code foo/**} matches
+         * everything below {@code foo} but not {@code foo} itself.
+         */
+        private boolean matchesWithMask(String path, int[] bounds, int pathSegments) {
+            int accept = segments.length;
+            long states = closure(1L);
+            for (int s = 0; s < pathSegments && states != 0; s++) {
+                int start = bounds[s * 2];
+                int end = bounds[s * 2 + 1];
+                long next = 0;
+                for (long remaining = states; remaining != 0; remaining &= remaining - 1) {
+                    int state = Long.numberOfTrailingZeros(remaining);
+                    if (state == accept) {
+                        continue;
+                    }
+                    Segment segment = segments[state];
+                    if (segment == Segment.DOUBLE_STAR) {
+                        next |= 1L << state;
+                        if (state == accept - 1) {
+                            next |= 1L << accept;
+                        }
+                    } else if (segment.matches(path, start, end)) {
+                        next |= 1L << (state + 1);
+                    }
+                }
+                states = closure(next);
+                if ((states & (1L << accept)) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long closure(long states) {
+            long result = states;
+            // a "**" can be skipped, which may expose another "**"; states only move forward, so one pass suffices
+            for (int i = 0; i < segments.length - 1; i++) {
+                if ((result & (1L << i)) != 0 && segments[i] == Segment.DOUBLE_STAR) {
+                    result |= 1L << (i + 1);
+                }
+            }
+            return result;
+        }
+
+        private boolean matchesWithBitSet(String path, int[] bounds, int pathSegments) {
+            int accept = segments.length;
+            java.util.BitSet states = new java.util.BitSet(accept + 1);
+            states.set(0);
+            closure(states);
+            for (int s = 0; s < pathSegments && !states.isEmpty(); s++) {
+                int start = bounds[s * 2];
+                int end = bounds[s * 2 + 1];
+                java.util.BitSet next = new java.util.BitSet(accept + 1);
+                for (int state = states.nextSetBit(0); state >= 0 && state < accept; state = states.nextSetBit(state + 1)) {
+                    Segment segment = segments[state];
+                    if (segment == Segment.DOUBLE_STAR) {
+                        next.set(state);
+                        if (state == accept - 1) {
+                            next.set(accept);
+                        }
+                    } else if (segment.matches(path, start, end)) {
+                        next.set(state + 1);
+                    }
+                }
+                closure(next);
+                if (next.get(accept)) {
+                    return true;
+                }
+                states = next;
+            }
+            return false;
+        }
+
+        private void closure(java.util.BitSet states) {
+            for (int i = 0; i < segments.length - 1; i++) {
+                if (states.get(i) && segments[i] == Segment.DOUBLE_STAR) {
+                    states.set(i + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * A single path segment of a pattern.
+     */
+    abstract static class Segment {
+        static final Segment DOUBLE_STAR = new Segment() {
+            @Override
+            boolean matches(String path, int start, int end) {
+                return true;
+            }
+        };
+
+        static final Segment STAR = new Segment() {
+            @Override
+            boolean matches(String path, int start, int end) {
+                return true;
+            }
+        };
+
+        static final Segment NEVER = new Segment() {
+            @Override
+            boolean matches(String path, int start, int end) {
+                return false;
+            }
+        };
+
+        abstract boolean matches(String path, int start, int end);
+
+        static Segment compile(String segment) {
+            if (segment.equals("**")) {
+                return DOUBLE_STAR;
+            }
+            if (segment.equals("*")) {
+                return STAR;
+            }
+            boolean literal = true;
+            for (int i = 0; i < segment.length() && literal; i++) {
+                char c = segment.charAt(i);
+                literal = c != '*' && c != '?' && c != '[' && c != '\\';
+            }
+            if (literal) {
+                return new Literal(segment);
+            }
+            Glob glob = Glob.compile(segment);
+            return glob == null ? NEVER : glob;
+        }
+    }
+
+    private static final class Literal extends Segment {
+        final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        boolean matches(String path, int start, int end) {
+            return end - start == text.length() && path.regionMatches(start, text, 0, text.length());
+        }
+    }
+
+    /**
+     * A segment with {@code filepath.Match} wildcards: {@code *}, {@code ?}, {@code [...]} classes and {@code \}
+     * escapes. Matching is iterative, backtracking only to the most recent {@code *}.
+     */
+    private static final class Glob extends Segment {
+        private static final int STAR = -1;
+        private static final int ANY = -2;
+
+        /**
+         * A code per pattern position: a character, {@link #STAR}, {@link #ANY}, or {@code -3 - n} for {@code classes[n]}.
+         */
+        final int[] codes;
+        final CharClass[] classes;
+
+        private Glob(int[] codes, CharClass[] classes) {
+            this.codes = codes;
+            this.classes = classes;
+        }
+
+        /**
+         * @return The compiled glob, or null when the pattern is malformed (Go returns {@code ErrBadPattern}).
+         */
+        static Glob compile(String segment) {
+            int[] codes = new int[segment.length()];
+            List<CharClass> classes = new ArrayList<>();
+            int count = 0;
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                switch (c) {
+                    case '*':
+                        // consecutive stars are equivalent to one
+                        if (count == 0 || codes[count - 1] != STAR) {
+                            codes[count++] = STAR;
+                        }
+                        break;
+                    case '?':
+                        codes[count++] = ANY;
+                        break;
+                    case '\\':
+                        if (++i >= segment.length()) {
+                            return null;
+                        }
+                        codes[count++] = segment.charAt(i);
+                        break;
+                    case '[': {
+                        int end = CharClass.parse(segment, i + 1, classes);
+                        if (end < 0) {
+                            return null;
+                        }
+                        codes[count++] = -3 - (classes.size() - 1);
+                        i = end;
+                        break;
+                    }
+                    default:
+                        codes[count++] = c;
+                }
+            }
+            int[] exact = new int[count];
+            System.arraycopy(codes, 0, exact, 0, count);
+            return new Glob(exact, classes.toArray(new CharClass[0]));
+        }
+
+        @Override
+        boolean matches(String path, int start, int end) {
+            int p = 0;
+            int s = start;
+            int starP = -1;
+            int starS = -1;
+            while (s < end) {
+                if (p < codes.length) {
+                    int code = codes[p];
+                    if (code == STAR) {
+                        starP = p++;
+                        starS = s;
+                        continue;
+                    }
+                    char c = path.charAt(s);
+                    if (code == ANY || (code >= 0 ? code == c : classes[-3 - code].matches(c))) {
+                        p++;
+                        s++;
+                        continue;
+                    }
+                }
+                if (starP < 0) {
+                    return false;
+                }
+                // let the last star absorb one more character and retry
+                p = starP + 1;
+                s = ++starS;
+            }
+            while (p < codes.length && codes[p] == STAR) {
+                p++;
+            }
+            return p == codes.length;
+        }
+    }
+
+    private static final class CharClass {
+        final boolean negated;
+        final char[] ranges;
+
+        private CharClass(boolean negated, char[] ranges) {
+            this.negated = negated;
+            this.ranges = ranges;
+        }
+
+        boolean matches(char c) {
+            boolean found = false;
+            for (int i = 0; i < ranges.length && !found; i += 2) {
+                found = ranges[i] <= c && c <= ranges[i + 1];
+            }
+            return found != negated;
+        }
+
+        /**
+         * @param start The index just past the opening bracket.
+         * @return The index of the closing bracket, or -1 when malformed.
+         */
+        static int parse(String segment, int start, List<CharClass> classes) {
+            int i = start;
+            int length = segment.length();
+            boolean negated = i < length && segment.charAt(i) == '^';
+            if (negated) {
+                i++;
+            }
+            StringBuilder ranges = new StringBuilder();
+            boolean first = true;
+            while (true) {
+                if (i >= length) {
+                    return -1;
+                }
+                char c = segment.charAt(i);
+                if (c == ']' && !first) {
+                    break;
+                }
+                first = false;
+                int[] lo = escaped(segment, i);
+                if (lo == null) {
+                    return -1;
+                }
+                char low = (char) lo[0];
+                char high = low;
+                i = lo[1];
+                if (i < length && segment.charAt(i) == '-') {
+                    int[] hi = escaped(segment, i + 1);
+                    if (hi == null) {
+                        return -1;
+                    }
+                    high = (char) hi[0];
+                    i = hi[1];
+                }
+                ranges.append(low).append(high);
+            }
+            classes.add(new CharClass(negated, ranges.toString().toCharArray()));
+            return i;
+        }
+
+        /**
+         * @return The (possibly escaped) character at {@code i} and the index after it, or null when malformed.
+         */
+        private static int[] escaped(String segment, int i) {
+            if (i >= segment.length()) {
+                return null;
+            }
+            char c = segment.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= segment.length()) {
+                    return null;
+                }
+                return new int[]{segment.charAt(i + 1), i + 2};
+            }
+            if (c == '-' || c == ']') {
+                return null;
+            }
+            return new int[]{c, i + 1};
+        }
+    }
+}
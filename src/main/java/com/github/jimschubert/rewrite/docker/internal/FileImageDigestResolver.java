@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jimschubert.rewrite.docker.ImageDigestResolver;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Reads image digests from a JSON file, e.g. for tests or air-gapped builds:
+ * <pre>{@code
+ * {
+ *   "alpine:3.20": "sha256:...",
+ *   "node:20": {"digest": "sha256:...", "platforms": {"linux/amd64": "sha256:...", "linux/arm64": "sha256:..."}}
+ * }
+ * }</pre>
+ * An image mapped to a plain digest has that digest on every platform.
+ */
+public class FileImageDigestResolver implements ImageDigestResolver {
+    private final Path file;
+    private volatile @Nullable JsonNode digests;
+
+    public FileImageDigestResolver(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public String digest(String image, @Nullable String platform) throws IOException {
+        JsonNode entry = digests().get(image);
+        JsonNode digest = entry == null || entry.isTextual() ? entry :
+                platform == null ? entry.get("digest") : entry.path("platforms").get(platform);
+        if (digest == null || !digest.isTextual()) {
+            throw new IOException("No digest for " + image + (platform == null ? "" : " on " + platform) + " in " + file);
+        }
+        return digest.asText();
+    }
+
+    private JsonNode digests() throws IOException {
+        JsonNode read = digests;
+        if (read == null) {
+            synchronized (this) {
+                read = digests;
+                if (read == null) {
+                    read = new ObjectMapper().readTree(file.toFile());
+                    digests = read;
+                }
+            }
+        }
+        return read;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.RemoteFileResolver;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class HttpRemoteFileResolver implements RemoteFileResolver {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration DOWNLOAD_TIMEOUT = Duration.ofMinutes(10);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(TIMEOUT)
+            .build();
+    private final Duration timeout;
+    private final Duration downloadTimeout;
+
+    public HttpRemoteFileResolver() {
+        this(TIMEOUT, DOWNLOAD_TIMEOUT);
+    }
+
+    /**
+     * @param timeout         The longest wait for the response headers, or for each part of a body.
+     * @param downloadTimeout The longest a body may take to download in full.
+     */
+    HttpRemoteFileResolver(Duration timeout, Duration downloadTimeout) {
+        this.timeout = timeout;
+        this.downloadTimeout = downloadTimeout;
+    }
+
+    @Override
+    public @Nullable String etag(String url) throws IOException {
+        HttpResponse<Void> response = send(HttpRequest.newBuilder(URI.create(url))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(timeout)
+                .build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 405 || response.statusCode() == 501) {
+            // HEAD isn't supported, so the file is always downloaded
+            return null;
+        } else if (response.statusCode() >= 400) {
+            throw new IOException(url + " returned HTTP " + response.statusCode());
+        }
+        return response.headers().firstValue("ETag")
+                .or(() -> response.headers().firstValue("Last-Modified"))
+                .orElse(null);
+    }
+
+    @Override
+    public InputStream open(String url) throws IOException {
+        // the request's timeout ends once the headers arrive, so the body is read with deadlines of its own
+        HttpResponse<Flow.Publisher<List<ByteBuffer>>> response = send(HttpRequest.newBuilder(URI.create(url))
+                .GET()
+                .timeout(timeout)
+                .build(), HttpResponse.BodyHandlers.ofPublisher());
+        BodyStream body = new BodyStream(url, timeout, downloadTimeout);
+        response.body().subscribe(body);
+        if (response.statusCode() >= 400) {
+            body.close();
+            throw new IOException(url + " returned HTTP " + response.statusCode());
+        }
+        return body;
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetching " + request.uri());
+        }
+    }
+
+    /**
+     * A response body which fails with an {@link HttpTimeoutException}, rather than blocking, when the server stalls
+     * for longer than the timeout or the whole body takes longer than the download timeout.
+     */
+    private static final class BodyStream extends InputStream implements Flow.Subscriber<List<ByteBuffer>> {
+        private static final List<ByteBuffer> END = new ArrayList<>(0);
+
+        private final BlockingQueue<List<ByteBuffer>> parts = new LinkedBlockingQueue<>();
+        private final String url;
+        private final long timeoutNanos;
+        private final long deadline;
+        private volatile Flow.@Nullable Subscription subscription;
+        private volatile @Nullable Throwable error;
+        private Iterator<ByteBuffer> current = Collections.emptyIterator();
+        private @Nullable ByteBuffer buffer;
+        private boolean done;
+
+        BodyStream(String url, Duration timeout, Duration downloadTimeout) {
+            this.url = url;
+            this.timeoutNanos = timeout.toNanos();
+            this.deadline = System.nanoTime() + downloadTimeout.toNanos();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            parts.offer(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            parts.offer(END);
+        }
+
+        @Override
+        public void onComplete() {
+            parts.offer(END);
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteBuffer next = next();
+            return next == null ? -1 : next.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer next = next();
+            if (next == null) {
+                return -1;
+            }
+            int read = Math.min(len, next.remaining());
+            next.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public void close() {
+            done = true;
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+
+        private @Nullable ByteBuffer next() throws IOException {
+            while (buffer == null || !buffer.hasRemaining()) {
+                if (current.hasNext()) {
+                    buffer = current.next();
+                    continue;
+                }
+                if (done) {
+                    return null;
+                }
+                List<ByteBuffer> part = poll();
+                if (part == END) {
+                    done = true;
+                    Throwable failure = error;
+                    if (failure != null) {
+                        throw failure instanceof IOException ? (IOException) failure :
+                                new IOException("Failed reading " + url, failure);
+                    }
+                    return null;
+                }
+                current = part.iterator();
+                Flow.Subscription s = subscription;
+                if (s != null) {
+                    s.request(1);
+                }
+            }
+            return buffer;
+        }
+
+        private List<ByteBuffer> poll() throws IOException {
+            long wait = Math.min(timeoutNanos, deadline - System.nanoTime());
+            @Nullable List<ByteBuffer> part;
+            try {
+                part = wait <= 0 ? null : parts.poll(wait, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new InterruptedIOException("Interrupted reading " + url);
+            }
+            if (part == null) {
+                close();
+                throw new HttpTimeoutException("Timed out reading " + url);
+            }
+            return part;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.StageGraph;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.DockerRightPadded;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What building a Dockerfile's final stage produces and needs from other images, for relating Dockerfiles of the
+ * same repository to each other.
+ */
+@Value
+public class ImageBuild {
+    public static final String DEFAULT_IMAGE_NAME = "{directory}";
+
+    private static final Pattern VARIABLE = Pattern.compile("\\$\\{(\\w+)}|\\$(\\w+)");
+
+    String path;
+
+    /**
+     * The image the Dockerfile produces, without a tag, or null when the naming convention gives it no name.
+     */
+    @Nullable
+    String image;
+
+    /**
+     * Images used by the stages needed to build the final stage, with {@code FROM}, {@code COPY --from} or
+     * {@code RUN --mount=from=}. Keys are the references as BuildKit looks them up as named contexts: with build
+     * arguments expanded and without a {@code :latest} tag. Values are the image names, without tag or digest.
+     */
+    Map<String, String> references;
+
+    /**
+     * Images the final stage is built {@code FROM}, directly or through earlier stages, without tag or digest.
+     */
+    Set<String> baseImages;
+
+    /**
+     * True when the final stage declares {@code ONBUILD} triggers, which run when another image is built from it.
+     */
+    boolean onbuild;
+
+    /**
+     * Images used by {@code ONBUILD} triggers, keyed as {@link #references}.
+     */
+    Map<String, String> onbuildReferences;
+
+    /**
+     * Build arguments declared before the first {@code FROM} or in the stages needed to build the final stage, with
+     * their defaults, or null for arguments without one.
+     */
+    Map<String, @Nullable String> args;
+
+    /**
+     * @param dockerfile        A parsed Dockerfile.
+     * @param imageNameTemplate The naming convention, see {@link #imageName(Path, String)}.
+     * @return What building the final stage of the Dockerfile involves.
+     */
+    public static ImageBuild of(Docker.Document dockerfile, @Nullable String imageNameTemplate) {
+        String path = dockerfile.getSourcePath().toString();
+        String image = imageName(dockerfile.getSourcePath(), imageNameTemplate);
+        StageGraph graph = StageGraph.build(dockerfile);
+        if (graph.size() == 0) {
+            return new ImageBuild(path, image, Collections.emptyMap(), Collections.emptySet(), false,
+                    Collections.emptyMap(), Collections.emptyMap());
+        }
+
+        Map<String, @Nullable String> args = new LinkedHashMap<>();
+        Map<String, String> globalArgs = new HashMap<>();
+        for (Docker child : graph.get(0).getStage().getChildren()) {
+            if (child instanceof Docker.From) {
+                break;
+            }
+            if (child instanceof Docker.Arg) {
+                addArgs((Docker.Arg) child, args);
+                addArgs((Docker.Arg) child, globalArgs);
+            }
+        }
+
+        Map<String, String> references = new TreeMap<>();
+        for (Integer index : graph.reachableFrom(graph.getFinalStage())) {
+            StageGraph.Node node = graph.get(index);
+            boolean afterFrom = false;
+            for (Docker child : node.getStage().getChildren()) {
+                if (child instanceof Docker.From) {
+                    afterFrom = true;
+                    if (node.getBase() == null) {
+                        addImage(((Docker.From) child).getImageSpecWithVersion(), globalArgs, references);
+                    }
+                } else if (afterFrom && child instanceof Docker.Arg) {
+                    addArgs((Docker.Arg) child, args);
+                } else {
+                    addOptionImages(child, graph, globalArgs, references);
+                }
+            }
+        }
+
+        Map<String, String> baseImages = new TreeMap<>();
+        StageGraph.Node base = graph.get(graph.getFinalStage());
+        while (base.getBase() != null) {
+            base = graph.get(base.getBase());
+        }
+        for (Docker child : base.getStage().getChildren()) {
+            if (child instanceof Docker.From) {
+                addImage(((Docker.From) child).getImageSpecWithVersion(), globalArgs, baseImages);
+            }
+        }
+
+        boolean onbuild = false;
+        Map<String, String> onbuildReferences = new TreeMap<>();
+        for (Docker child : graph.get(graph.getFinalStage()).getStage().getChildren()) {
+            if (child instanceof Docker.OnBuild) {
+                onbuild = true;
+                addOptionImages(((Docker.OnBuild) child).getInstruction(), null, globalArgs, onbuildReferences);
+            }
+        }
+
+        return new ImageBuild(path, image, references, new TreeSet<>(baseImages.values()), onbuild,
+                onbuildReferences, args);
+    }
+
+    /**
+     * @param sourcePath        The path of a Dockerfile.
+     * @param imageNameTemplate The name of the image, without a tag. {@code {directory}} is replaced with the name of
+     *                          the directory containing the Dockerfile, {@code {path}} with that directory's path, and
+     *                          {@code {file}} with the Dockerfile's name without {@code Dockerfile} ({@code api} for
+     *                          {@code api.Dockerfile} or {@code Dockerfile.api}). Defaults to {@code {directory}}.
+     * @return The image name, or null when it would be empty.
+     */
+    public static @Nullable String imageName(Path sourcePath, @Nullable String imageNameTemplate) {
+        Path parent = sourcePath.getParent();
+        String directory = parent == null ? "" : parent.getFileName().toString();
+        String directoryPath = parent == null ? "" : parent.toString().replace('\\', '/');
+
+        String file = sourcePath.getFileName().toString();
+        String lower = file.toLowerCase(Locale.ROOT);
+        for (String name : new String[]{"dockerfile", "containerfile"}) {
+            if (lower.equals(name)) {
+                file = "";
+            } else if (lower.startsWith(name + ".")) {
+                file = file.substring(name.length() + 1);
+            } else if (lower.endsWith("." + name)) {
+                file = file.substring(0, file.length() - name.length() - 1);
+            }
+        }
+
+        String name = (imageNameTemplate == null ? DEFAULT_IMAGE_NAME : imageNameTemplate)
+                .replace("{directory}", directory)
+                .replace("{path}", directoryPath)
+                .replace("{file}", file)
+                .toLowerCase(Locale.ROOT)
+                // drop separators left dangling by empty placeholders
+                .replaceAll("/{2,}", "/")
+                .replaceAll("[-._]+(?=/|$)|(?<=/|^)[-._]+", "")
+                .replaceAll("/+$", "");
+        return name.isEmpty() || name.startsWith("/") ? null : name;
+    }
+
+    private static void addArgs(Docker.Arg arg, Map<String, @Nullable String> args) {
+        for (DockerRightPadded<Docker.KeyArgs> padded : arg.getArgs()) {
+            Docker.KeyArgs keyArgs = padded.getElement();
+            if (keyArgs.key() != null && !keyArgs.key().isEmpty()) {
+                args.putIfAbsent(keyArgs.key(), keyArgs.value());
+            }
+        }
+    }
+
+    /**
+     * Add images used by {@code COPY --from} or {@code RUN --mount=from=}, ignoring references to stages.
+     */
+    private static void addOptionImages(Docker instruction, @Nullable StageGraph graph, Map<String, String> args,
+                                        Map<String, String> images) {
+        List<Docker.Option> options = null;
+        if (instruction instanceof Docker.Copy) {
+            options = ((Docker.Copy) instruction).getOptions();
+        } else if (instruction instanceof Docker.Run) {
+            options = ((Docker.Run) instruction).getOptions();
+        }
+        if (options == null) {
+            return;
+        }
+        for (Docker.Option option : options) {
+            Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+            if (keyArgs == null || keyArgs.key() == null || keyArgs.value() == null) {
+                continue;
+            }
+            if ("--from".equalsIgnoreCase(keyArgs.key())) {
+                addReference(keyArgs.value(), graph, args, images);
+            } else if ("--mount".equalsIgnoreCase(keyArgs.key())) {
+                for (String field : keyArgs.value().split(",")) {
+                    if (field.startsWith("from=")) {
+                        addReference(field.substring("from=".length()), graph, args, images);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addReference(String reference, @Nullable StageGraph graph, Map<String, String> args,
+                                     Map<String, String> images) {
+        if (graph == null || graph.find(reference) == null) {
+            addImage(reference, args, images);
+        }
+    }
+
+    private static void addImage(@Nullable String reference, Map<String, String> args, Map<String, String> images) {
+        if (reference == null) {
+            return;
+        }
+        String expanded = expand(reference, args);
+        String image = expanded;
+        int digest = image.indexOf('@');
+        if (digest >= 0) {
+            image = image.substring(0, digest);
+        }
+        int tag = image.lastIndexOf(':');
+        if (tag > image.lastIndexOf('/')) {
+            image = image.substring(0, tag);
+        }
+        if (image.isEmpty() || image.contains("$")) {
+            return;
+        }
+        String key = expanded.contains("$") ? image : expanded;
+        if (key.endsWith(":latest")) {
+            key = key.substring(0, key.length() - ":latest".length());
+        }
+        images.put(key, image.toLowerCase(Locale.ROOT));
+    }
+
+    private static String expand(String text, Map<String, @Nullable String> args) {
+        if (text.indexOf('$') < 0) {
+            return text;
+        }
+        Matcher matcher = VARIABLE.matcher(text);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String name = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            String value = args.get(name);
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value == null ? matcher.group() : value));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An image reference such as {@code ghcr.io/org/app:1.2} split into the parts a registry API needs.
+ */
+@Value
+public class ImageReference {
+    private static final String DOCKER_HUB = "docker.io";
+
+    /**
+     * The registry host, {@code docker.io} for Docker Hub.
+     */
+    String registry;
+
+    /**
+     * The repository within the registry, with the implied {@code library/} of official Docker Hub images.
+     */
+    String repository;
+
+    /**
+     * The tag, {@code latest} when none is given.
+     */
+    String tag;
+
+    @Nullable
+    String digest;
+
+    /**
+     * @param reference An image reference, as written after {@code FROM}.
+     * @return The parsed reference.
+     */
+    public static ImageReference parse(String reference) {
+        String name = reference;
+        String digest = null;
+        int at = name.indexOf('@');
+        if (at >= 0) {
+            digest = name.substring(at + 1);
+            name = name.substring(0, at);
+        }
+
+        String tag = "latest";
+        int colon = name.lastIndexOf(':');
+        if (colon > name.lastIndexOf('/')) {
+            tag = name.substring(colon + 1);
+            name = name.substring(0, colon);
+        }
+
+        String registry = DOCKER_HUB;
+        int slash = name.indexOf('/');
+        if (slash > 0) {
+            String first = name.substring(0, slash);
+            if (first.contains(".") || first.contains(":") || "localhost".equals(first)) {
+                registry = first;
+                name = name.substring(slash + 1);
+            }
+        }
+        if (DOCKER_HUB.equals(registry) && !name.contains("/")) {
+            name = "library/" + name;
+        }
+        return new ImageReference(registry, name, tag, digest);
+    }
+
+    /**
+     * @return The host serving the registry API.
+     */
+    public String getApiHost() {
+        return DOCKER_HUB.equals(registry) ? "registry-1.docker.io" : registry;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Package managers whose dependency installation can be recognized in {@code RUN} commands.
+ * <p>
+ * Install patterns match a single shell command, i.e. one part of a command list split on {@code &&}, {@code ||} and
+ * {@code ;}, and only when the command reads nothing but the manager's manifests. Commands which also build or
+ * install the project itself, such as {@code npm install express} or {@code pip install .}, don't match.
+ * <p>
+ * Invocation patterns are looser, matching any command which may download packages or dependencies.
+ */
+public enum PackageManager {
+    APT(null, "apt(?:-get)?\\s+(?:-\\S+\\s+)*(?:install|update|upgrade|dist-upgrade|build-dep)\\b",
+            Arrays.asList("/var/cache/apt", "/var/lib/apt")),
+    APK(null, "apk\\s+(?:-\\S+\\s+)*(?:add|update|upgrade)\\b",
+            Collections.singletonList("/var/cache/apk")),
+    NPM("^npm\\s+(?:ci|install|i)" + PackageManager.FLAGS + "$", "npm\\s+(?:ci|install|i)\\b",
+            Collections.singletonList("/root/.npm"), "package.json", "package-lock.json*"),
+    YARN("^yarn(?:\\s+install)?" + PackageManager.FLAGS + "$", "yarn(?:\\s+(?:install|add)\\b|\\s*$|\\s*(?:&&|\\|\\||;))",
+            Collections.singletonList("/usr/local/share/.cache/yarn"), "package.json", "yarn.lock*"),
+    PNPM("^pnpm\\s+(?:install|i)" + PackageManager.FLAGS + "$", "pnpm\\s+(?:install|i|add)\\b",
+            Collections.singletonList("/root/.local/share/pnpm/store"), "package.json", "pnpm-lock.yaml*"),
+    PIP("^(?:python3?\\s+-m\\s+)?pip3?\\s+install(?:\\s+(?:-r|--requirement)[=\\s]+\\S+|\\s+--?[\\w-]+(?:=\\S+)?)*$",
+            "pip3?\\s+install\\b", Collections.singletonList("/root/.cache/pip")),
+    MAVEN("^mvn(?:\\s+--?[\\w.-]+(?:=\\S+)?)*\\s+dependency:(?:go-offline|resolve|resolve-plugins)" + PackageManager.FLAGS + "$",
+            "(?:\\./)?mvnw?(?=\\s|$)", Collections.singletonList("/root/.m2/repository"), "pom.xml"),
+    GRADLE(null, "(?:\\./)?gradlew?(?=\\s|$)", Arrays.asList("/root/.gradle/caches", "/root/.gradle/wrapper")),
+    GO("^go\\s+mod\\s+download" + PackageManager.FLAGS + "$",
+            "go\\s+(?:build|install|test|get|generate|run|vet|mod\\s+download)\\b",
+            Arrays.asList("/go/pkg/mod", "/root/.cache/go-build"), "go.mod", "go.sum*"),
+    // cargo fetch needs a target's sources as well as the manifest, so copying the manifest first doesn't help
+    CARGO(null, "cargo\\s+(?:build|install|fetch|test|check|run)\\b",
+            Arrays.asList("/usr/local/cargo/registry", "/usr/local/cargo/git"), "Cargo.toml", "Cargo.lock*"),
+    BUNDLER("^bundle\\s+install" + PackageManager.FLAGS + "$", null, Collections.emptyList(),
+            "Gemfile", "Gemfile.lock*"),
+    COMPOSER("^composer\\s+install" + PackageManager.FLAGS + "$", null, Collections.emptyList(),
+            "composer.json", "composer.lock*");
+
+    private static final String FLAGS = "(?:\\s+--?[\\w-]+(?:=\\S+)?)*";
+    private static final Pattern COMMAND_SEPARATOR = Pattern.compile("\\s*(?:&&|\\|\\||;)\\s*");
+    private static final Pattern REQUIREMENTS = Pattern.compile("(?:-r|--requirement)[=\\s]+(\\S+)");
+
+    /**
+     * Commands which may accompany an install without reading any other files.
+     */
+    private static final Pattern HOUSEKEEPING = Pattern.compile(
+            "^(?:(?:npm|yarn|pnpm)\\s+cache\\s+clean.*|pip3?\\s+cache\\s+purge|rm\\s+-rf?\\s+(?:/tmp|/root/\\.cache|/root/\\.npm)\\S*|set\\s+-[euxo]+|true)$");
+
+    private final @Nullable Pattern install;
+    private final @Nullable Pattern invocation;
+    private final List<String> caches;
+    private final List<String> manifests;
+
+    PackageManager(@Nullable String install, @Nullable String invocation, List<String> caches, String... manifests) {
+        this.install = install == null ? null : Pattern.compile(install);
+        this.invocation = invocation == null ? null : Pattern.compile("(?:^|[\\s;&|(])" + invocation);
+        this.caches = caches;
+        this.manifests = Arrays.asList(manifests);
+    }
+
+    /**
+     * @return The directories the manager caches downloads in, as used by the official images when running as root.
+     * Configuration next to them, such as Maven's {@code settings.xml} or {@code gradle.properties}, isn't included,
+     * since a mount would hide it.
+     */
+    public List<String> getCaches() {
+        return caches;
+    }
+
+    /**
+     * @return The values of {@code --mount} options which keep the manager's caches between builds. apt holds locks
+     * in its cache directories, so concurrent builds must not share them.
+     */
+    public List<String> cacheMounts() {
+        List<String> mounts = new ArrayList<>(caches.size());
+        for (String cache : caches) {
+            mounts.add("type=cache,target=" + cache + (this == APT ? ",sharing=locked" : ""));
+        }
+        return mounts;
+    }
+
+    /**
+     * @param command A shell command, possibly a list of commands.
+     * @return True if the command runs this manager in a way which downloads packages or dependencies.
+     */
+    public boolean isInvokedBy(String command) {
+        return invocation != null && invocation.matcher(command).find();
+    }
+
+    /**
+     * @param fileName The name of a file, without directories.
+     * @return True if the file is a manifest or lock file which package managers read from the working directory
+     * without being told to.
+     */
+    public static boolean isManifest(String fileName) {
+        for (PackageManager manager : values()) {
+            for (String manifest : manager.manifests) {
+                if (manifest.replace("*", "").equals(fileName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param command A single shell command.
+     * @return The files to copy before the command so it can run, with a {@code *} suffix for lock files which may
+     * not exist, or null when the command isn't a dependency installation of this manager.
+     */
+    public @Nullable List<String> manifests(String command) {
+        if (install == null || !install.matcher(command).matches()) {
+            return null;
+        }
+        if (this != PIP) {
+            return manifests;
+        }
+        List<String> requirements = new ArrayList<>();
+        Matcher matcher = REQUIREMENTS.matcher(command);
+        while (matcher.find()) {
+            String file = matcher.group(1);
+            // the file is copied next to the working directory, so nested or variable paths wouldn't be found
+            if (file.contains("/") || file.contains("$")) {
+                return null;
+            }
+            requirements.add(file);
+        }
+        return requirements.isEmpty() ? null : requirements;
+    }
+
+    /**
+     * @param run A {@code RUN} instruction.
+     * @return The manifests every command of the instruction needs, in order, or null unless every command installs
+     * dependencies or is housekeeping such as clearing a cache.
+     */
+    public static @Nullable Set<String> installManifests(Docker.Run run) {
+        Set<String> manifests = new LinkedHashSet<>();
+        for (String command : COMMAND_SEPARATOR.split(commandText(run))) {
+            if (command.isEmpty() || HOUSEKEEPING.matcher(command).matches()) {
+                continue;
+            }
+            List<String> found = null;
+            for (PackageManager manager : values()) {
+                found = manager.manifests(command);
+                if (found != null) {
+                    break;
+                }
+            }
+            if (found == null) {
+                return null;
+            }
+            manifests.addAll(found);
+        }
+        return manifests.isEmpty() ? null : manifests;
+    }
+
+    /**
+     * @return The shell command of a {@code RUN}, with line continuations removed.
+     */
+    public static String commandText(Docker.Run run) {
+        return run.getCommands() == null ? "" : run.getCommands().stream()
+                .map(Docker.Literal::getText)
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining(" "))
+                .trim();
+    }
+}
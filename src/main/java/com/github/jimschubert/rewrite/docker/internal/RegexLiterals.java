@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Extracts literal substrings which must appear in any text matched by a regular expression.
+ * <p>
+ * This is intentionally conservative: anything it doesn't fully understand (alternation, case-insensitive or
+ * comments flags, lookarounds, etc.) contributes no requirement rather than a possibly wrong one. An empty
+ * result means "no requirement could be proven", never "matches nothing".
+ */
+public class RegexLiterals {
+    private RegexLiterals() {
+    }
+
+    private static class Frame {
+        final List<String> required = new ArrayList<>();
+        final StringBuilder run = new StringBuilder();
+        boolean alternation;
+        boolean discard;
+
+        void flush() {
+            if (run.length() > 0) {
+                required.add(run.toString());
+                run.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * @param regex A {@link Pattern} compatible regular expression, applied with {@link java.util.regex.Matcher#matches()}.
+     * @return Literal substrings which any matching input must contain.
+     */
+    public static List<String> requiredSubstrings(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        try {
+            Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            return Collections.emptyList();
+        }
+
+        try {
+            return extract(regex);
+        } catch (RuntimeException e) {
+            // anything unexpected means we can't make any claims about the pattern
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<String> extract(String regex) {
+        Deque<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame());
+        boolean lastLiteral = false;
+        int length = regex.length();
+
+        for (int i = 0; i < length; i++) {
+            Frame frame = frames.peek();
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\': {
+                    char next = regex.charAt(++i);
+                    if (next == 'Q') {
+                        int end = regex.indexOf("\\E", i + 1);
+                        String quoted = end < 0 ? regex.substring(i + 1) : regex.substring(i + 1, end);
+                        frame.run.append(quoted);
+                        lastLiteral = !quoted.isEmpty();
+                        i = end < 0 ? length : end + 1;
+                    } else if (Character.isLetterOrDigit(next)) {
+                        frame.flush();
+                        lastLiteral = false;
+                        i = skipEscape(regex, i);
+                    } else {
+                        frame.run.append(next);
+                        lastLiteral = true;
+                    }
+                    break;
+                }
+                case '[':
+                    frame.flush();
+                    lastLiteral = false;
+                    i = skipCharacterClass(regex, i);
+                    break;
+                case '(': {
+                    frame.flush();
+                    Frame group = new Frame();
+                    if (i + 1 < length && regex.charAt(i + 1) == '?') {
+                        int end = i + 2;
+                        char kind = regex.charAt(end);
+                        if (kind == ':' || kind == '>') {
+                            i = end;
+                        } else if (kind == '=' || kind == '!') {
+                            group.discard = true;
+                            i = end;
+                        } else if (kind == '<') {
+                            char after = regex.charAt(end + 1);
+                            if (after == '=' || after == '!') {
+                                group.discard = true;
+                                i = end + 1;
+                            } else {
+                                i = regex.indexOf('>', end);
+                            }
+                        } else {
+                            // inline flags, e.g. (?i) or (?s:...)
+                            int close = end;
+                            while (regex.charAt(close) != ')' && regex.charAt(close) != ':') {
+                                close++;
+                            }
+                            String flags = regex.substring(end, close);
+                            int minus = flags.indexOf('-');
+                            String enabled = minus < 0 ? flags : flags.substring(0, minus);
+                            if (enabled.contains("i") || enabled.contains("x") || enabled.contains("u")) {
+                                return Collections.emptyList();
+                            }
+                            if (regex.charAt(close) == ')') {
+                                i = close;
+                                lastLiteral = false;
+                                break;
+                            }
+                            i = close;
+                        }
+                    }
+                    frames.push(group);
+                    lastLiteral = false;
+                    break;
+                }
+                case ')': {
+                    frame.flush();
+                    Frame group = frames.pop();
+                    Frame parent = frames.peek();
+                    if (parent == null) {
+                        return Collections.emptyList();
+                    }
+                    if (!group.discard && !group.alternation && !isOptionalQuantifier(regex, i + 1)) {
+                        parent.required.addAll(group.required);
+                    }
+                    lastLiteral = false;
+                    break;
+                }
+                case '|':
+                    frame.flush();
+                    frame.alternation = true;
+                    lastLiteral = false;
+                    break;
+                case '.':
+                case '^':
+                case '$':
+                    frame.flush();
+                    lastLiteral = false;
+                    break;
+                case '?':
+                case '*':
+                case '+':
+                case '{': {
+                    boolean optional = isOptionalQuantifier(regex, i);
+                    if (lastLiteral && optional && frame.run.length() > 0) {
+                        frame.run.setLength(frame.run.length() - 1);
+                    }
+                    frame.flush();
+                    i = skipQuantifier(regex, i);
+                    lastLiteral = false;
+                    break;
+                }
+                default:
+                    frame.run.append(c);
+                    lastLiteral = true;
+                    break;
+            }
+        }
+
+        Frame root = frames.pop();
+        if (!frames.isEmpty() || root.alternation) {
+            return Collections.emptyList();
+        }
+        root.flush();
+        return root.required;
+    }
+
+    /**
+     * @return true if the quantifier starting at {@code index} allows zero occurrences.
+     */
+    private static boolean isOptionalQuantifier(String regex, int index) {
+        if (index >= regex.length()) {
+            return false;
+        }
+        char c = regex.charAt(index);
+        if (c == '?' || c == '*') {
+            return true;
+        }
+        if (c == '{') {
+            int end = regex.indexOf('}', index);
+            String bounds = regex.substring(index + 1, end);
+            String min = bounds.contains(",") ? bounds.substring(0, bounds.indexOf(',')) : bounds;
+            return min.trim().isEmpty() || Integer.parseInt(min.trim()) == 0;
+        }
+        return false;
+    }
+
+    private static int skipQuantifier(String regex, int index) {
+        int i = index;
+        if (regex.charAt(i) == '{') {
+            i = regex.indexOf('}', i);
+        }
+        // lazy and possessive modifiers
+        if (i + 1 < regex.length() && (regex.charAt(i + 1) == '?' || regex.charAt(i + 1) == '+')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @param index The index of the escaped character (after the backslash).
+     * @return The index of the last character consumed by the escape sequence.
+     */
+    private static int skipEscape(String regex, int index) {
+        char c = regex.charAt(index);
+        int next = index + 1;
+        boolean hasNext = next < regex.length();
+        switch (c) {
+            case 'p':
+            case 'P':
+            case 'x':
+            case 'N':
+                if (hasNext && regex.charAt(next) == '{') {
+                    return regex.indexOf('}', next);
+                }
+                return c == 'x' ? index + 2 : (c == 'N' ? index : index + 1);
+            case 'k':
+                return hasNext && regex.charAt(next) == '<' ? regex.indexOf('>', next) : index;
+            case 'u':
+                return index + 4;
+            case 'c':
+                return index + 1;
+            case '0': {
+                int i = index;
+                while (i + 1 < regex.length() && i - index < 3 && regex.charAt(i + 1) >= '0' && regex.charAt(i + 1) <= '7') {
+                    i++;
+                }
+                return i;
+            }
+            default:
+                if (Character.isDigit(c)) {
+                    int i = index;
+                    while (i + 1 < regex.length() && Character.isDigit(regex.charAt(i + 1))) {
+                        i++;
+                    }
+                    return i;
+                }
+                return index;
+        }
+    }
+
+    /**
+     * @param index The index of the opening bracket.
+     * @return The index of the matching closing bracket.
+     */
+    private static int skipCharacterClass(String regex, int index) {
+        int depth = 0;
+        int i = index;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // a ']' immediately after '[' or '[^' is a literal
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+            i++;
+        }
+        return regex.length();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jimschubert.rewrite.docker.ImageDigestResolver;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves digests through the OCI distribution API, authenticating anonymously with the registry's token service
+ * when it asks for it.
+ * <p>
+ * Without a platform, only the manifest headers are requested, which registries such as Docker Hub don't count
+ * against pull limits. With a platform, the image index is read and the matching manifest's digest returned; a
+ * single-platform image resolves to its own digest.
+ */
+public class RegistryImageDigestResolver implements ImageDigestResolver {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final String ACCEPT = String.join(", ",
+            "application/vnd.oci.image.index.v1+json",
+            "application/vnd.docker.distribution.manifest.list.v2+json",
+            "application/vnd.oci.image.manifest.v1+json",
+            "application/vnd.docker.distribution.manifest.v2+json");
+    private static final Pattern CHALLENGE_PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(TIMEOUT)
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+
+    @Override
+    public String digest(String image, @Nullable String platform) throws IOException {
+        ImageReference reference = ImageReference.parse(image);
+        URI manifest = URI.create("https://" + reference.getApiHost() + "/v2/" + reference.getRepository() +
+                                  "/manifests/" + (reference.getDigest() == null ? reference.getTag() : reference.getDigest()));
+
+        if (platform == null) {
+            HttpResponse<Void> head = send(reference, manifest, "HEAD", HttpResponse.BodyHandlers.discarding());
+            String digest = head.headers().firstValue("Docker-Content-Digest").orElse(null);
+            if (digest != null) {
+                return digest;
+            }
+        }
+
+        HttpResponse<byte[]> response = send(reference, manifest, "GET", HttpResponse.BodyHandlers.ofByteArray());
+        JsonNode body = mapper.readTree(response.body());
+        if (platform != null && body.has("manifests")) {
+            String[] parts = platform.split("/");
+            for (JsonNode candidate : body.get("manifests")) {
+                JsonNode p = candidate.path("platform");
+                if (p.path("os").asText().equals(parts[0]) &&
+                    (parts.length < 2 || p.path("architecture").asText().equals(parts[1])) &&
+                    (parts.length < 3 || p.path("variant").asText().equals(parts[2]))) {
+                    return candidate.path("digest").asText();
+                }
+            }
+            throw new IOException(image + " has no manifest for " + platform);
+        }
+        return response.headers().firstValue("Docker-Content-Digest").orElseGet(() -> sha256(response.body()));
+    }
+
+    private <T> HttpResponse<T> send(ImageReference reference, URI uri, String method,
+                                     HttpResponse.BodyHandler<T> handler) throws IOException {
+        String scope = "repository:" + reference.getRepository() + ":pull";
+        String key = reference.getApiHost() + "/" + scope;
+        HttpResponse<T> response = send(request(uri, method, tokens.get(key)), handler);
+        if (response.statusCode() == 401) {
+            String challenge = response.headers().firstValue("WWW-Authenticate").orElse("");
+            String token = token(challenge, scope);
+            if (token != null) {
+                tokens.put(key, token);
+                response = send(request(uri, method, token), handler);
+            }
+        }
+        if (response.statusCode() >= 400) {
+            throw new IOException(uri + " returned HTTP " + response.statusCode());
+        }
+        return response;
+    }
+
+    private HttpRequest request(URI uri, String method, @Nullable String token) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .header("Accept", ACCEPT)
+                .timeout(TIMEOUT);
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return request.build();
+    }
+
+    /**
+     * @return An anonymous token for a {@code Bearer} challenge, or null for other challenges.
+     */
+    private @Nullable String token(String challenge, String scope) throws IOException {
+        if (!challenge.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+        String realm = null;
+        StringBuilder query = new StringBuilder();
+        Matcher matcher = CHALLENGE_PARAMETER.matcher(challenge);
+        while (matcher.find()) {
+            if ("realm".equals(matcher.group(1))) {
+                realm = matcher.group(2);
+            } else if ("service".equals(matcher.group(1))) {
+                query.append(query.length() == 0 ? "?" : "&").append("service=")
+                        .append(URLEncoder.encode(matcher.group(2), StandardCharsets.UTF_8));
+            }
+        }
+        if (realm == null) {
+            return null;
+        }
+        query.append(query.length() == 0 ? "?" : "&").append("scope=").append(URLEncoder.encode(scope, StandardCharsets.UTF_8));
+
+        HttpResponse<byte[]> response = send(HttpRequest.newBuilder(URI.create(realm + query))
+                .GET()
+                .timeout(TIMEOUT)
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() >= 400) {
+            throw new IOException(realm + " returned HTTP " + response.statusCode());
+        }
+        JsonNode body = mapper.readTree(response.body());
+        JsonNode token = body.has("token") ? body.get("token") : body.get("access_token");
+        return token == null ? null : token.asText();
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted requesting " + request.uri());
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder digest = new StringBuilder("sha256:");
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                digest.append(String.format("%02x", b));
+            }
+            return digest.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
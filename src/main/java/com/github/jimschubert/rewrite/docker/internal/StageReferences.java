@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.Space;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.internal.ListUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for recipes which add, remove or reorder stages, and so must keep numeric stage references and the
+ * document's final line ending intact.
+ */
+public class StageReferences {
+    private StageReferences() {
+    }
+
+    /**
+     * Replace numeric stage references in {@code COPY --from} and {@code RUN --mount=from=} options.
+     *
+     * @param stages The stages to update.
+     * @param names  The replacement for each referenced stage index, either a stage name or a new index.
+     * @return The updated stages.
+     */
+    public static List<Docker.Stage> rename(List<Docker.Stage> stages, Map<Integer, String> names) {
+        return ListUtils.map(stages, stage -> stage.withChildren(ListUtils.map(stage.getChildren(), child -> {
+            if (child instanceof Docker.Copy) {
+                Docker.Copy copy = (Docker.Copy) child;
+                return copy.withOptions(ListUtils.map(copy.getOptions(), o -> renameReference(o, names)));
+            } else if (child instanceof Docker.Run) {
+                Docker.Run run = (Docker.Run) child;
+                return run.withOptions(ListUtils.map(run.getOptions(), o -> renameReference(o, names)));
+            }
+            return child;
+        })));
+    }
+
+    /**
+     * @return The options of a {@code COPY} or {@code RUN}, which may refer to stages, or an empty list.
+     */
+    public static List<Docker.Option> options(Docker child) {
+        List<Docker.Option> options = null;
+        if (child instanceof Docker.Copy) {
+            options = ((Docker.Copy) child).getOptions();
+        } else if (child instanceof Docker.Run) {
+            options = ((Docker.Run) child).getOptions();
+        }
+        return options == null ? Collections.emptyList() : options;
+    }
+
+    /**
+     * @param option An option of a {@code COPY} or {@code RUN}.
+     * @param size   The number of stages.
+     * @return The stage index referred to by {@code --from=<index>} or {@code --mount=...,from=<index>}, or null.
+     */
+    public static @Nullable Integer numericReference(Docker.@Nullable Option option, int size) {
+        Docker.KeyArgs keyArgs = option == null ? null : option.getKeyArgs();
+        if (keyArgs == null || keyArgs.key() == null || keyArgs.value() == null) {
+            return null;
+        }
+        String reference = null;
+        if ("--from".equalsIgnoreCase(keyArgs.key())) {
+            reference = keyArgs.value();
+        } else if ("--mount".equalsIgnoreCase(keyArgs.key())) {
+            for (String field : keyArgs.value().split(",")) {
+                if (field.startsWith("from=")) {
+                    reference = field.substring("from=".length());
+                }
+            }
+        }
+        if (reference == null || !reference.matches("\\d{1,9}")) {
+            return null;
+        }
+        int index = Integer.parseInt(reference);
+        return index < size ? index : null;
+    }
+
+    static Docker.@Nullable Option renameReference(Docker.@Nullable Option option, Map<Integer, String> names) {
+        if (option == null) {
+            return null;
+        }
+        Integer index = numericReference(option, Integer.MAX_VALUE);
+        String name = index == null ? null : names.get(index);
+        if (name == null) {
+            return option;
+        }
+        Docker.KeyArgs keyArgs = option.getKeyArgs();
+        String value = keyArgs.value();
+        if ("--from".equalsIgnoreCase(keyArgs.key())) {
+            value = name;
+        } else {
+            String[] fields = value.split(",", -1);
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].equals("from=" + index)) {
+                    fields[i] = "from=" + name;
+                }
+            }
+            value = String.join(",", fields);
+        }
+        return option.withKeyArgs(keyArgs.withValue(keyArgs.getValue().withText(value)));
+    }
+
+    /**
+     * The document's last instruction carries the document's final line ending, which may be empty. Keep it that way
+     * when instructions move.
+     */
+    public static List<Docker.Stage> fixLastEol(List<Docker.Stage> before, List<Docker.Stage> after) {
+        Docker.Instruction originalLast = lastInstruction(before);
+        Docker.Instruction newLast = lastInstruction(after);
+        if (originalLast == null || newLast == null || originalLast == newLast) {
+            return after;
+        }
+        return ListUtils.map(after, stage -> stage.withChildren(ListUtils.map(stage.getChildren(), child -> {
+            if (child == newLast) {
+                return newLast.withEol(originalLast.getEol());
+            } else if (child == originalLast && originalLast.getEol().isEmpty()) {
+                return originalLast.withEol(Space.NEWLINE);
+            }
+            return child;
+        })));
+    }
+
+    private static Docker.@Nullable Instruction lastInstruction(List<Docker.Stage> stages) {
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            List<Docker> children = stages.get(i).getChildren();
+            if (!children.isEmpty() && children.get(children.size() - 1) instanceof Docker.Instruction) {
+                return (Docker.Instruction) children.get(children.size() - 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free accumulator for rows produced by a scanning recipe's scanner.
+ * <p>
+ * Rows are appended to one of several stripes, chosen by the calling thread, so concurrent scanners rarely contend on
+ * the same queue. {@link #drain(Consumer)} merges the stripes and orders rows by source path and stage index, keeping
+ * the order in which rows of the same stage were added; the result is the same however files were scheduled.
+ * <p>
+ * When created with a spill threshold, memory use is bounded: once that many rows are held, one thread sorts them and
+ * appends them as a run to a temporary file while other threads keep adding. Draining then merges the sorted runs
+ * from disk with the rows still in memory, streaming rows to the consumer in order.
+ *
+ * @param <T> The row type.
+ */
+public class StripedAccumulator<T> {
+    private static final Comparator<Entry<?>> ORDER = Comparator
+            .<Entry<?>, String>comparing(e -> e.path)
+            .thenComparingInt(e -> e.stage)
+            .thenComparingLong(e -> e.sequence);
+
+    /**
+     * Writes and reads rows to and from a spill file.
+     */
+    public interface Codec<T> {
+        void write(DataOutput out, T row) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    private final ConcurrentLinkedQueue<Entry<T>>[] stripes;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final int spillThreshold;
+    private final @Nullable Codec<T> codec;
+    private final AtomicInteger held = new AtomicInteger();
+    private final AtomicBoolean spilling = new AtomicBoolean();
+    private final List<Run> runs = new ArrayList<>();
+    private @Nullable Path spillFile;
+    private long spillLength;
+
+    public StripedAccumulator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedAccumulator(int parallelism) {
+        this(parallelism, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * @param parallelism    The expected number of concurrent scanning threads.
+     * @param spillThreshold The number of rows to hold in memory before spilling to disk.
+     * @param codec          Serializes rows for spilling, may be null to never spill.
+     */
+    @SuppressWarnings("unchecked")
+    public StripedAccumulator(int parallelism, int spillThreshold, @Nullable Codec<T> codec) {
+        int size = Integer.highestOneBit(Math.max(1, parallelism) * 2 - 1) << 1;
+        this.stripes = new ConcurrentLinkedQueue[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.spillThreshold = Math.max(1, spillThreshold);
+        this.codec = codec;
+    }
+
+    /**
+     * @param spillThreshold The number of rows to hold in memory before spilling to disk, or null to never spill.
+     * @param codec          Serializes rows for spilling.
+     * @return A new accumulator.
+     */
+    public static <T> StripedAccumulator<T> spilling(@Nullable Integer spillThreshold, Codec<T> codec) {
+        return spillThreshold == null ?
+                new StripedAccumulator<>() :
+                new StripedAccumulator<>(Runtime.getRuntime().availableProcessors(), spillThreshold, codec);
+    }
+
+    /**
+     * @param path  The source path the row was found in.
+     * @param stage The index of the stage the row was found in.
+     * @param row   The row.
+     */
+    public void add(String path, int stage, T row) {
+        stripes[(int) (Thread.currentThread().getId() & mask)].add(new Entry<>(path, stage, sequence.getAndIncrement(), row));
+        if (codec != null && held.incrementAndGet() >= spillThreshold) {
+            spill();
+        }
+    }
+
+    public boolean isEmpty() {
+        if (!runs.isEmpty()) {
+            return false;
+        }
+        for (ConcurrentLinkedQueue<Entry<T>> stripe : stripes) {
+            if (!stripe.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove all rows added so far. Call once scanning is complete, e.g. from {@code generate}.
+     *
+     * @return The rows, ordered by path, then stage index, then insertion order.
+     */
+    public List<T> drain() {
+        List<T> rows = new ArrayList<>();
+        drain(rows::add);
+        return rows;
+    }
+
+    /**
+     * Remove all rows added so far, passing each to {@code consumer} without holding spilled rows in memory.
+     * Call once scanning is complete, e.g. from {@code generate}.
+     *
+     * @param consumer Receives rows ordered by path, then stage index, then insertion order.
+     */
+    public void drain(Consumer<? super T> consumer) {
+        List<Entry<T>> remaining = poll();
+        if (runs.isEmpty()) {
+            for (Entry<T> entry : remaining) {
+                consumer.accept(entry.row);
+            }
+            return;
+        }
+
+        // every run reads from one channel at its own position, so there's a single file handle however many
+        // runs were spilled
+        FileChannel channel = null;
+        try {
+            //noinspection ConstantConditions
+            channel = FileChannel.open(spillFile, StandardOpenOption.READ);
+
+            // k-way merge of the sorted runs and the (sorted) rows still in memory
+            PriorityQueue<Cursor> queue = new PriorityQueue<>((a, b) -> ORDER.compare(a.head, b.head));
+            for (Run run : runs) {
+                Cursor cursor = new Cursor(new RunReader(channel, run), null);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            Cursor inMemory = new Cursor(null, remaining.iterator());
+            if (inMemory.advance()) {
+                queue.add(inMemory);
+            }
+
+            while (!queue.isEmpty()) {
+                Cursor cursor = queue.poll();
+                consumer.accept(cursor.head.row);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // read only
+                }
+            }
+            reset();
+        }
+    }
+
+    private List<Entry<T>> poll() {
+        List<Entry<T>> entries = new ArrayList<>();
+        for (ConcurrentLinkedQueue<Entry<T>> stripe : stripes) {
+            Entry<T> entry;
+            while ((entry = stripe.poll()) != null) {
+                entries.add(entry);
+            }
+        }
+        held.addAndGet(-entries.size());
+        entries.sort(ORDER);
+        return entries;
+    }
+
+    /**
+     * Sort the rows currently held and append them to the spill file as a run. Only one thread spills at a time;
+     * others carry on adding rows, which are picked up by the next spill or by {@link #drain(Consumer)}.
+     */
+    private void spill() {
+        if (!spilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Entry<T>> entries = poll();
+            if (entries.isEmpty()) {
+                return;
+            }
+            if (spillFile == null) {
+                spillFile = Files.createTempFile("rewrite-docker-", ".rows");
+                spillFile.toFile().deleteOnExit();
+            }
+
+            long start = spillLength;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(spillFile.toFile(), true)))) {
+                for (Entry<T> entry : entries) {
+                    out.writeUTF(entry.path);
+                    out.writeInt(entry.stage);
+                    out.writeLong(entry.sequence);
+                    //noinspection ConstantConditions
+                    codec.write(out, entry.row);
+                }
+                out.flush();
+                spillLength = start + out.size();
+            }
+            synchronized (runs) {
+                runs.add(new Run(start, entries.size()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            spilling.set(false);
+        }
+    }
+
+    private void reset() {
+        runs.clear();
+        spillLength = 0;
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ignored) {
+                // deleteOnExit was requested when the file was created
+            }
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Write a string which may be null or longer than {@link DataOutput#writeUTF(String)} allows.
+     */
+    public static void writeString(DataOutput out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static @Nullable String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Entry<T> {
+        final String path;
+        final int stage;
+        final long sequence;
+        final T row;
+
+        Entry(String path, int stage, long sequence, T row) {
+            this.path = path;
+            this.stage = stage;
+            this.sequence = sequence;
+            this.row = row;
+        }
+    }
+
+    private static final class Run {
+        final long offset;
+        final int count;
+
+        Run(long offset, int count) {
+            this.offset = offset;
+            this.count = count;
+        }
+    }
+
+    private final class RunReader {
+        final DataInputStream in;
+        int remaining;
+
+        RunReader(FileChannel channel, Run run) {
+            this.in = new DataInputStream(new BufferedInputStream(new PositionalInputStream(channel, run.offset)));
+            this.remaining = run.count;
+        }
+
+        @Nullable
+        Entry<T> next() throws IOException {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            String path = in.readUTF();
+            int stage = in.readInt();
+            long sequence = in.readLong();
+            //noinspection ConstantConditions
+            return new Entry<>(path, stage, sequence, codec.read(in));
+        }
+    }
+
+    /**
+     * Reads a shared channel from a position of its own, without moving the channel's position.
+     */
+    private static final class PositionalInputStream extends InputStream {
+        final FileChannel channel;
+        long position;
+
+        PositionalInputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    private final class Cursor {
+        final @Nullable RunReader reader;
+        final @Nullable Iterator<Entry<T>> iterator;
+        Entry<T> head;
+
+        Cursor(@Nullable RunReader reader, @Nullable Iterator<Entry<T>> iterator) {
+            this.reader = reader;
+            this.iterator = iterator;
+        }
+
+        boolean advance() throws IOException {
+            Entry<T> next = null;
+            if (reader != null) {
+                next = reader.next();
+            } else if (iterator != null && iterator.hasNext()) {
+                next = iterator.next();
+            }
+            if (next == null) {
+                return false;
+            }
+            head = next;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A small Bloom filter over the tokens of a Dockerfile.
+ * <p>
+ * Every token is added in full, along with each of its character trigrams. This allows for answering
+ * "might this document contain a token equal to X" as well as "might some token contain the substring X"
+ * without keeping the tokens themselves around. As with any Bloom filter, a negative answer is definitive
+ * while a positive answer may be a false positive.
+ */
+@Value
+public class TokenBloomFilter {
+    /**
+     * The length of the character n-grams used to answer substring queries.
+     */
+    public static final int GRAM_LENGTH = 3;
+
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_COUNT = 7;
+    private static final long TOKEN_SEED = 0x27d4eb2f165667c5L;
+    private static final long GRAM_SEED = 0x165667b19e3779f9L;
+
+    long[] bits;
+    int hashCount;
+
+    public static TokenBloomFilter of(Collection<String> tokens) {
+        // count distinct entries up front so the filter is sized for the document rather than a fixed capacity
+        Set<String> grams = new HashSet<>();
+        int tokenCount = 0;
+        for (String token : tokens) {
+            if (token == null) {
+                continue;
+            }
+            tokenCount++;
+            for (int i = 0; i + GRAM_LENGTH <= token.length(); i++) {
+                grams.add(token.substring(i, i + GRAM_LENGTH));
+            }
+        }
+
+        long bitCount = Math.max(64L, (long) (tokenCount + grams.size()) * BITS_PER_ENTRY);
+        TokenBloomFilter filter = new TokenBloomFilter(new long[(int) ((bitCount + 63) >>> 6)], HASH_COUNT);
+        for (String token : tokens) {
+            if (token != null) {
+                filter.put(hash(token, 0, token.length(), TOKEN_SEED));
+            }
+        }
+        for (String gram : grams) {
+            filter.put(hash(gram, 0, gram.length(), GRAM_SEED));
+        }
+        return filter;
+    }
+
+    /**
+     * @param token The full token text.
+     * @return false if the token is definitely absent, true if it may be present.
+     */
+    public boolean mightContainToken(String token) {
+        if (token == null) {
+            return false;
+        }
+        return test(hash(token, 0, token.length(), TOKEN_SEED));
+    }
+
+    /**
+     * Substrings shorter than {@link #GRAM_LENGTH} can't be answered by the filter and always return true.
+     *
+     * @param substring The text to look for within a single token.
+     * @return false if no token contains the substring, true if one may.
+     */
+    public boolean mightContainSubstring(String substring) {
+        if (substring == null || substring.length() < GRAM_LENGTH) {
+            return true;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= substring.length(); i++) {
+            if (!test(hash(substring, i, i + GRAM_LENGTH, GRAM_SEED))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void put(long hash) {
+        long size = (long) bits.length << 6;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long idx = ((h1 + (long) i * h2) & Long.MAX_VALUE) % size;
+            bits[(int) (idx >>> 6)] |= 1L << idx;
+        }
+    }
+
+    private boolean test(long hash) {
+        long size = (long) bits.length << 6;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long idx = ((h1 + (long) i * h2) & Long.MAX_VALUE) % size;
+            if ((bits[(int) (idx >>> 6)] & (1L << idx)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(CharSequence text, int from, int to, long seed) {
+        // FNV-1a over the chars, finished with the murmur3 64-bit mixer
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = from; i < to; i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e4e63L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class BaseImageConsolidationReport extends DataTable<BaseImageConsolidationReport.Row> {
+    public BaseImageConsolidationReport(Recipe recipe) {
+        super(recipe,
+                "Base Image Consolidation Report",
+                "Contains the tags of each base image repository, grouped by major version and variant, and the " +
+                "pulls avoided by consolidating each group to its most common tag.");
+    }
+
+    @Value
+    @JsonIgnoreType
+    public static class Row {
+        @Column(displayName = "Repository",
+                description = "The image repository, with the registry unless it is Docker Hub.")
+        String repository;
+
+        @Column(displayName = "Major Version",
+                description = "The major version of the tags, or empty for tags without a version such as `latest`.")
+        @Nullable
+        String majorVersion;
+
+        @Column(displayName = "Variant",
+                description = "The suffix of the tags without version numbers, such as `-slim` or `-alpine`, or the " +
+                              "whole tag for tags without a version.")
+        String variant;
+
+        @Column(displayName = "Tags",
+                description = "The distinct tags in use, most used first.")
+        String tags;
+
+        @Column(displayName = "Suggested Tag",
+                description = "The most used tag, by files then stages, preferring the newest version on a tie.")
+        String suggestedTag;
+
+        @Column(displayName = "Stages",
+                description = "The number of stages (FROM instructions) using any of the tags.")
+        long stages;
+
+        @Column(displayName = "Files",
+                description = "The number of distinct Dockerfiles using any of the tags.")
+        long files;
+
+        @Column(displayName = "Stages To Change",
+                description = "The number of stages using another tag than the suggested one.")
+        long stagesToChange;
+
+        @Column(displayName = "Avoidable Pulls",
+                description = "The number of distinct images which would no longer be pulled once every stage uses " +
+                              "the suggested tag.")
+        int avoidablePulls;
+    }
+}
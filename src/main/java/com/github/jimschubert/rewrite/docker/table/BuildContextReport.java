@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class BuildContextReport extends DataTable<BuildContextReport.Row> {
+    public BuildContextReport(Recipe recipe) {
+        super(recipe,
+                "Build Context Report",
+                "Contains the size of each Dockerfile's build context after applying .dockerignore rules, " +
+                "the portion copied by each COPY or ADD source, and the largest directories sent to the builder.");
+    }
+
+    public enum EntryType {
+        /**
+         * Everything sent to the builder.
+         */
+        CONTEXT,
+        /**
+         * The files matched by a COPY or ADD source.
+         */
+        SOURCE,
+        /**
+         * One of the largest directories in the context.
+         */
+        DIRECTORY
+    }
+
+    @Value
+    @JsonIgnoreType
+    public static class Row {
+        @Column(displayName = "Dockerfile Path",
+                description = "The path to the Dockerfile.")
+        String path;
+
+        @Column(displayName = "Context Directory",
+                description = "The build context directory, relative to the project root.")
+        String context;
+
+        @Column(displayName = "Entry Type",
+                description = "CONTEXT for the whole build context, SOURCE for a COPY/ADD source, DIRECTORY for one of the largest directories.")
+        EntryType type;
+
+        @Column(displayName = "Entry",
+                description = "The COPY/ADD source or directory, relative to the build context.")
+        String entry;
+
+        @Column(displayName = "Bytes",
+                description = "The total size in bytes of the files which are not ignored.")
+        long bytes;
+
+        @Column(displayName = "Files",
+                description = "The number of files which are not ignored.")
+        long files;
+
+        @Column(displayName = "Suggested Exclude",
+                description = "A .dockerignore pattern which would drop this directory from the build context, if it looks unnecessary.")
+        @Nullable
+        String suggestedExclude;
+    }
+}
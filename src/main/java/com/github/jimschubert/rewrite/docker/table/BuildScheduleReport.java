@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class BuildScheduleReport extends DataTable<BuildScheduleReport.Row> {
+    public BuildScheduleReport(Recipe recipe) {
+        super(recipe,
+                "Build Schedule Report",
+                "Contains, for each Dockerfile, the image it produces, the images from the same repository it depends on, " +
+                "and the wave in which it can be built. Dockerfiles in the same wave can be built concurrently.");
+    }
+
+    @Value
+    @JsonIgnoreType
+    public static class Row {
+        @Column(displayName = "Dockerfile Path",
+                description = "The path to the Dockerfile.")
+        String path;
+
+        @Column(displayName = "Image",
+                description = "The image the Dockerfile produces, according to the naming convention.")
+        @Nullable
+        String image;
+
+        @Column(displayName = "Wave",
+                description = "The build step, starting at 1, after which this image can be built. Empty for Dockerfiles in a dependency cycle.")
+        @Nullable
+        Integer wave;
+
+        @Column(displayName = "Depends On",
+                description = "The images produced in this repository which must be built first.")
+        String dependsOn;
+
+        @Column(displayName = "Critical Path",
+                description = "Whether the Dockerfile is on the longest chain of builds which must run one after another.")
+        boolean criticalPath;
+
+        @Column(displayName = "Inherits ONBUILD",
+                description = "Whether an image this Dockerfile is built FROM has ONBUILD triggers, which run as part of this build.")
+        boolean inheritsOnbuild;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class CacheInvalidationReport extends DataTable<CacheInvalidationReport.Row> {
+    public CacheInvalidationReport(Recipe recipe) {
+        super(recipe,
+                "Cache Invalidation Report",
+                "Contains, per stage, the first instruction whose layer cache key differs from the previous version " +
+                "of the Dockerfile and the number of layers which will be rebuilt.");
+    }
+
+    @Value
+    @JsonIgnoreType
+    public static class Row {
+        @Column(displayName = "Dockerfile Path",
+                description = "The path to the Dockerfile.")
+        String path;
+
+        @Column(displayName = "Stage",
+                description = "The stage, by name or index.")
+        String stage;
+
+        @Column(displayName = "Layers",
+                description = "The number of layers the stage adds with `RUN`, `COPY` and `ADD`.")
+        int layers;
+
+        @Column(displayName = "First Invalidated Layer",
+                description = "The position of the first instruction missing from the cache, where 0 is `FROM`. " +
+                              "Empty when the whole stage is cached.")
+        @Nullable
+        Integer firstInvalidatedLayer;
+
+        @Column(displayName = "First Invalidated Instruction",
+                description = "The normalized text of the first instruction missing from the cache.")
+        @Nullable
+        String firstInvalidatedInstruction;
+
+        @Column(displayName = "Changed Files",
+                description = "When the first invalidated instruction is a `COPY` or `ADD` from the build context, " +
+                              "the copied files which were added, removed or changed.")
+        @Nullable
+        String changedFiles;
+
+        @Column(displayName = "Rebuilt Layers",
+                description = "The number of layers from the first invalidated instruction to the end of the stage.")
+        int rebuiltLayers;
+    }
+}
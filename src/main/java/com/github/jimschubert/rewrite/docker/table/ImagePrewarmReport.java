@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class ImagePrewarmReport extends DataTable<ImagePrewarmReport.Row> {
+    public ImagePrewarmReport(Recipe recipe) {
+        super(recipe,
+                "Image Prewarm Report",
+                "Contains the base images to pre-pull on build nodes once tags are consolidated, most used first.");
+    }
+
+    @Value
+    @JsonIgnoreType
+    public static class Row {
+        @Column(displayName = "Rank",
+                description = "The position of the image in the prewarm list, starting at 1.")
+        int rank;
+
+        @Column(displayName = "Image",
+                description = "The image reference to pull.")
+        String image;
+
+        @Column(displayName = "Stages",
+                description = "The number of stages which would use the image once tags are consolidated.")
+        long stages;
+
+        @Column(displayName = "Files",
+                description = "The number of distinct Dockerfiles which would use the image once tags are consolidated.")
+        long files;
+
+        @Column(displayName = "Consolidated Tags",
+                description = "The other tags whose stages would move to this image, if any.")
+        @Nullable
+        String consolidatedTags;
+    }
+}
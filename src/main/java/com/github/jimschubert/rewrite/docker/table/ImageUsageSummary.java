@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class ImageUsageSummary extends DataTable<ImageUsageSummary.Row> {
+
+    public ImageUsageSummary(Recipe recipe) {
+        super(recipe,
+                "Image Usage Summary",
+                "Contains how often each image, tag or digest, and platform is used across all Dockerfiles.");
+    }
+
+    @Value
+    @JsonIgnoreType
+    public static class Row {
+        @Column(displayName = "Image Name",
+                description = "The name of the image.")
+        String image;
+
+        @Column(displayName = "Image Tag",
+                description = "The tag of the image, if any.")
+        String tag;
+
+        @Column(displayName = "Image Digest",
+                description = "The digest of the image, if any.")
+        String digest;
+
+        @Column(displayName = "Image Platform",
+                description = "The platform requested with --platform, if any.")
+        String platform;
+
+        @Column(displayName = "Stages",
+                description = "The number of stages (FROM instructions) using this image, tag or digest, and platform.")
+        long stages;
+
+        @Column(displayName = "Files",
+                description = "The number of distinct Dockerfiles using this image, tag or digest, and platform.")
+        long files;
+
+        @Column(displayName = "First Stage",
+                description = "The lowest stage index at which this combination is used in any Dockerfile.")
+        int firstStage;
+
+        @Column(displayName = "Last Stage",
+                description = "The highest stage index at which this combination is used in any Dockerfile.")
+        int lastStage;
+
+        @Column(displayName = "Image Stages",
+                description = "The number of stages using this image with any tag, digest, or platform.")
+        long imageStages;
+
+        @Column(displayName = "Image Files",
+                description = "The number of distinct Dockerfiles using this image with any tag, digest, or platform.")
+        long imageFiles;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class StageParallelismReport extends DataTable<StageParallelismReport.Row> {
+    public StageParallelismReport(Recipe recipe) {
+        super(recipe,
+                "Stage Parallelism Report",
+                "Contains, per Dockerfile, the stages needed to build the target, the longest chain of stages which " +
+                "must be built one after another, and how many stages BuildKit can build concurrently.");
+    }
+
+    @Value
+    @JsonIgnoreType
+    public static class Row {
+        @Column(displayName = "Dockerfile Path",
+                description = "The path to the Dockerfile.")
+        String path;
+
+        @Column(displayName = "Target",
+                description = "The stage being built, by name or index.")
+        String target;
+
+        @Column(displayName = "Stages",
+                description = "The number of stages in the Dockerfile.")
+        int stages;
+
+        @Column(displayName = "Reachable Stages",
+                description = "The number of stages needed to build the target, including the target.")
+        int reachableStages;
+
+        @Column(displayName = "Unreachable Stages",
+                description = "The stages which are not needed to build the target, by name or index.")
+        String unreachableStages;
+
+        @Column(displayName = "Critical Path Length",
+                description = "The number of stages in the longest chain which must be built one after another.")
+        int criticalPathLength;
+
+        @Column(displayName = "Critical Path",
+                description = "The longest chain of stages, in build order.")
+        String criticalPath;
+
+        @Column(displayName = "Max Parallelism",
+                description = "The largest number of stages which can be built concurrently.")
+        int maxParallelism;
+
+        @Column(displayName = "Average Parallelism",
+                description = "The reachable stages divided by the critical path length. 1.0 means the build is fully serial.")
+        double averageParallelism;
+    }
+}
@@ -749,7 +749,8 @@ public interface Docker extends Tree {
             if (v == null) {
                 return null;
             }
-            return v.startsWith("@") ? v.substring(1) : null;
+            int at = v.indexOf('@');
+            return at < 0 ? null : v.substring(at + 1);
         }
 
         public From platform(String platform) {
@@ -764,12 +765,18 @@ public interface Docker extends Tree {
             return this.withVersion(this.version.withText(version));
         }
 
+        /**
+         * Pin the image to a digest, keeping the tag if there is one, e.g. {@code alpine:3.20@sha256:...}.
+         *
+         * @param digest The digest, or null to remove the tag and digest.
+         */
         public From withDigest(String digest) {
             if (digest == null) {
                 return version(null);
             }
             digest = digest.indexOf('@') == 0 ? digest : "@" + digest;
-            return version(digest);
+            String tag = getTag();
+            return version(tag == null ? digest : ":" + tag + digest);
         }
 
         public From withTag(String tag) {
@@ -786,7 +793,11 @@ public interface Docker extends Tree {
                 return null;
             }
 
-            return v.startsWith(":") ? v.substring(1) : null;
+            if (!v.startsWith(":")) {
+                return null;
+            }
+            int at = v.indexOf('@');
+            return at < 0 ? v.substring(1) : v.substring(1, at);
         }
 
         public From alias(String alias) {
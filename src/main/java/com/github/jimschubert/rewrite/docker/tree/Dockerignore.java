@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.tree;
+
+import com.github.jimschubert.rewrite.docker.DockerignoreVisitor;
+import com.github.jimschubert.rewrite.docker.internal.DockerignoreMatcher;
+import lombok.*;
+import lombok.experimental.NonFinal;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.*;
+import org.openrewrite.marker.Markers;
+
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * A .dockerignore LST.
+ * <p>
+ * Each line of the file is an {@link Entry}: a {@link Pattern}, a {@link Comment} (only when {@code #} is the first
+ * character of the line, as with Docker), or a {@link Blank} line. Entries carry their own line terminator, so the
+ * file prints exactly as it was read.
+ */
+public interface Dockerignore extends Tree {
+
+    interface Entry extends Dockerignore {
+        /**
+         * @return The line terminator, empty for a last line without one.
+         */
+        String getEol();
+
+        <T extends Entry> T withEol(String eol);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    default <R extends Tree, P> R accept(TreeVisitor<R, P> v, P p) {
+        return (R) acceptDockerignore(v.adapt(DockerignoreVisitor.class), p);
+    }
+
+    @Override
+    default <P> boolean isAcceptable(TreeVisitor<?, P> v, P p) {
+        return v.isAdaptableTo(DockerignoreVisitor.class);
+    }
+
+    @Nullable
+    default <P> Dockerignore acceptDockerignore(DockerignoreVisitor<P> v, P p) {
+        return v.defaultValue(this, p);
+    }
+
+    @Override
+    default <P> TreeVisitor<?, PrintOutputCapture<P>> printer(Cursor cursor) {
+        return new DockerignorePrinter<>();
+    }
+
+    @Value
+    @EqualsAndHashCode(callSuper = false, onlyExplicitlyIncluded = true)
+    @RequiredArgsConstructor
+    @With
+    class Document implements Dockerignore, SourceFile {
+        @EqualsAndHashCode.Include
+        UUID id;
+
+        Path sourcePath;
+
+        @Nullable
+        FileAttributes fileAttributes;
+
+        @Nullable
+        @With(AccessLevel.PRIVATE)
+        String charsetName;
+
+        boolean charsetBomMarked;
+
+        @Nullable
+        Checksum checksum;
+
+        List<Entry> entries;
+
+        Markers markers;
+
+        @Nullable
+        @NonFinal
+        @With(AccessLevel.NONE)
+        transient SoftReference<DockerignoreMatcher> matcher;
+
+        /**
+         * Used by the withers, which pass every field along. The matcher isn't kept, so a modified document compiles
+         * its own patterns.
+         */
+        @SuppressWarnings("unused")
+        private Document(UUID id, Path sourcePath, @Nullable FileAttributes fileAttributes, @Nullable String charsetName,
+                         boolean charsetBomMarked, @Nullable Checksum checksum, List<Entry> entries, Markers markers,
+                         @Nullable SoftReference<DockerignoreMatcher> matcher) {
+            this(id, sourcePath, fileAttributes, charsetName, charsetBomMarked, checksum, entries, markers);
+        }
+
+        @Override
+        public Charset getCharset() {
+            return charsetName == null ? StandardCharsets.UTF_8 : Charset.forName(charsetName);
+        }
+
+        @Override
+        public SourceFile withCharset(Charset charset) {
+            return withCharsetName(charset.name());
+        }
+
+        @Override
+        public <P> Dockerignore acceptDockerignore(DockerignoreVisitor<P> v, P p) {
+            return v.visitDocument(this, p);
+        }
+
+        public List<Pattern> getPatterns() {
+            return entries.stream()
+                    .filter(Pattern.class::isInstance)
+                    .map(Pattern.class::cast)
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * The compiled matcher for this document's patterns. It is computed on first use and cached for as long as
+         * memory allows; documents are immutable, so a modified document compiles its own.
+         *
+         * @return The matcher.
+         */
+        public DockerignoreMatcher getMatcher() {
+            DockerignoreMatcher compiled = matcher == null ? null : matcher.get();
+            if (compiled == null) {
+                compiled = DockerignoreMatcher.compile(getPatterns().stream()
+                        .map(Pattern::getText)
+                        .collect(Collectors.toList()));
+                matcher = new SoftReference<>(compiled);
+            }
+            return compiled;
+        }
+
+        /**
+         * Append patterns to the end of the file, adding a line terminator to the last line if needed.
+         *
+         * @param patterns The patterns to add.
+         * @return The modified document, or this document if there's nothing to add.
+         */
+        public Document withPatternsAppended(Collection<String> patterns) {
+            if (patterns.isEmpty()) {
+                return this;
+            }
+            List<Entry> result = new ArrayList<>(entries);
+            if (!result.isEmpty()) {
+                Entry last = result.get(result.size() - 1);
+                if (last.getEol().isEmpty()) {
+                    result.set(result.size() - 1, last.withEol("\n"));
+                }
+            }
+            for (String pattern : patterns) {
+                result.add(Pattern.build(pattern));
+            }
+            return withEntries(result);
+        }
+
+        public static Document build(List<Entry> entries) {
+            return new Document(Tree.randomId(), Path.of(".dockerignore"), null, StandardCharsets.UTF_8.name(), false,
+                    null, entries, Markers.EMPTY);
+        }
+    }
+
+    /**
+     * A pattern line. {@code text} excludes surrounding whitespace, which Docker ignores, and includes a leading
+     * {@code !} for patterns which re-include paths.
+     */
+    @Value
+    @EqualsAndHashCode(callSuper = false, onlyExplicitlyIncluded = true)
+    @With
+    class Pattern implements Entry {
+        @EqualsAndHashCode.Include
+        UUID id;
+
+        String prefix;
+
+        String text;
+
+        String trailing;
+
+        Markers markers;
+
+        String eol;
+
+        @Override
+        public <P> Dockerignore acceptDockerignore(DockerignoreVisitor<P> v, P p) {
+            return v.visitPattern(this, p);
+        }
+
+        public boolean isNegated() {
+            return text.startsWith("!");
+        }
+
+        /**
+         * @return The pattern as Docker matches it, without {@code !} and cleaned.
+         * @see DockerignoreMatcher#normalize(String)
+         */
+        public String getNormalized() {
+            return DockerignoreMatcher.normalize(isNegated() ? text.substring(1).trim() : text);
+        }
+
+        public static Pattern build(String text) {
+            return new Pattern(Tree.randomId(), "", text, "", Markers.EMPTY, "\n");
+        }
+    }
+
+    /**
+     * A comment line. {@code text} follows the leading {@code #}.
+     */
+    @Value
+    @EqualsAndHashCode(callSuper = false, onlyExplicitlyIncluded = true)
+    @With
+    class Comment implements Entry {
+        @EqualsAndHashCode.Include
+        UUID id;
+
+        String text;
+
+        Markers markers;
+
+        String eol;
+
+        @Override
+        public <P> Dockerignore acceptDockerignore(DockerignoreVisitor<P> v, P p) {
+            return v.visitComment(this, p);
+        }
+
+        public static Comment build(String text) {
+            return new Comment(Tree.randomId(), " " + text, Markers.EMPTY, "\n");
+        }
+    }
+
+    /**
+     * An empty or whitespace-only line.
+     */
+    @Value
+    @EqualsAndHashCode(callSuper = false, onlyExplicitlyIncluded = true)
+    @With
+    class Blank implements Entry {
+        @EqualsAndHashCode.Include
+        UUID id;
+
+        String whitespace;
+
+        Markers markers;
+
+        String eol;
+
+        @Override
+        public <P> Dockerignore acceptDockerignore(DockerignoreVisitor<P> v, P p) {
+            return v.visitBlank(this, p);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.tree;
+
+import com.github.jimschubert.rewrite.docker.DockerignoreVisitor;
+import org.openrewrite.Cursor;
+import org.openrewrite.PrintOutputCapture;
+import org.openrewrite.marker.Marker;
+import org.openrewrite.marker.Markers;
+
+import java.util.function.UnaryOperator;
+
+public class DockerignorePrinter<P> extends DockerignoreVisitor<PrintOutputCapture<P>> {
+    private static final UnaryOperator<String> MARKER_WRAPPER =
+            out -> "~~" + out + (out.isEmpty() ? "" : "~~") + ">";
+
+    @Override
+    public Dockerignore visitDocument(Dockerignore.Document document, PrintOutputCapture<P> p) {
+        beforeSyntax(document.getMarkers(), p);
+        for (Dockerignore.Entry entry : document.getEntries()) {
+            visit(entry, p);
+        }
+        afterSyntax(document.getMarkers(), p);
+        return document;
+    }
+
+    @Override
+    public Dockerignore visitPattern(Dockerignore.Pattern pattern, PrintOutputCapture<P> p) {
+        p.append(pattern.getPrefix());
+        beforeSyntax(pattern.getMarkers(), p);
+        p.append(pattern.getText());
+        afterSyntax(pattern.getMarkers(), p);
+        p.append(pattern.getTrailing()).append(pattern.getEol());
+        return pattern;
+    }
+
+    @Override
+    public Dockerignore visitComment(Dockerignore.Comment comment, PrintOutputCapture<P> p) {
+        beforeSyntax(comment.getMarkers(), p);
+        p.append("#").append(comment.getText());
+        afterSyntax(comment.getMarkers(), p);
+        p.append(comment.getEol());
+        return comment;
+    }
+
+    @Override
+    public Dockerignore visitBlank(Dockerignore.Blank blank, PrintOutputCapture<P> p) {
+        beforeSyntax(blank.getMarkers(), p);
+        p.append(blank.getWhitespace());
+        afterSyntax(blank.getMarkers(), p);
+        p.append(blank.getEol());
+        return blank;
+    }
+
+    private void beforeSyntax(Markers markers, PrintOutputCapture<P> p) {
+        for (Marker marker : markers.getMarkers()) {
+            p.append(p.getMarkerPrinter().beforeSyntax(marker, new Cursor(getCursor(), marker), MARKER_WRAPPER));
+        }
+    }
+
+    private void afterSyntax(Markers markers, PrintOutputCapture<P> p) {
+        for (Marker marker : markers.getMarkers()) {
+            p.append(p.getMarkerPrinter().afterSyntax(marker, new Cursor(getCursor(), marker), MARKER_WRAPPER));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.tree;
+
+import com.github.jimschubert.rewrite.docker.DockerIsoVisitor;
+import com.github.jimschubert.rewrite.docker.internal.TokenBloomFilter;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Value;
+import lombok.With;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Tree;
+import org.openrewrite.marker.Marker;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A per-document index of tokens (image references, option keys and values, literal text), computed by the parser.
+ * <p>
+ * The index describes the stages it was built from. Once a recipe modifies the document, the stages no longer
+ * match and {@link #isCurrent(Docker.Document)} returns false; callers must then fall back to inspecting the tree.
+ */
+@Value
+@With
+public class TokenIndex implements Marker {
+    UUID id;
+
+    TokenBloomFilter filter;
+
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    @With(AccessLevel.NONE)
+    @Nullable
+    transient WeakReference<List<Docker.Stage>> indexed;
+
+    public static TokenIndex build(Docker.Document document) {
+        return new TokenIndex(Tree.randomId(),
+                TokenBloomFilter.of(tokens(document)),
+                new WeakReference<>(document.getStages()));
+    }
+
+    /**
+     * @param document The document carrying this marker.
+     * @return true if the document is unchanged since the index was built.
+     */
+    public boolean isCurrent(Docker.Document document) {
+        return indexed != null && indexed.get() == document.getStages();
+    }
+
+    public boolean mightContainToken(String token) {
+        return filter.mightContainToken(token);
+    }
+
+    public boolean mightContainSubstring(String substring) {
+        return filter.mightContainSubstring(substring);
+    }
+
+    /**
+     * Collect the tokens of a tree: the text of every literal, option keys and values, exposed ports,
+     * and the full {@code image:tag}/{@code image@digest} reference of each FROM.
+     *
+     * @param tree The tree to inspect.
+     * @return All tokens in document order.
+     */
+    public static Set<String> tokens(Docker tree) {
+        Set<String> tokens = new LinkedHashSet<>();
+        new DockerIsoVisitor<Set<String>>() {
+            @Override
+            public Docker.From visitFrom(Docker.From from, Set<String> acc) {
+                if (from.getImage() != null && from.getImage().getText() != null) {
+                    acc.add(from.getImageSpecWithVersion());
+                }
+                return super.visitFrom(from, acc);
+            }
+
+            @Override
+            public Docker.Comment visitComment(Docker.Comment comment, Set<String> acc) {
+                if (comment.getText() != null && comment.getText().getText() != null) {
+                    acc.add(comment.getText().getText());
+                }
+                return super.visitComment(comment, acc);
+            }
+
+            @Override
+            public Docker.Expose visitExpose(Docker.Expose expose, Set<String> acc) {
+                for (DockerRightPadded<Docker.Port> port : expose.getPorts()) {
+                    acc.add(port.getElement().getPort());
+                    acc.add(port.getElement().getProtocol());
+                }
+                return super.visitExpose(expose, acc);
+            }
+
+            @Override
+            public Docker visitOption(Docker.Option option, Set<String> acc) {
+                Docker.KeyArgs keyArgs = option.getKeyArgs();
+                if (keyArgs != null) {
+                    if (keyArgs.getKey() != null && keyArgs.key() != null) {
+                        acc.add(keyArgs.key());
+                    }
+                    if (keyArgs.getValue() != null && keyArgs.value() != null) {
+                        acc.add(keyArgs.value());
+                    }
+                }
+                return super.visitOption(option, acc);
+            }
+
+            @Override
+            public Docker visitLiteral(Docker.Literal literal, Set<String> acc) {
+                if (literal.getText() != null) {
+                    acc.add(literal.getText());
+                }
+                return literal;
+            }
+        }.visit(tree, tokens);
+        tokens.remove(null);
+        return tokens;
+    }
+}
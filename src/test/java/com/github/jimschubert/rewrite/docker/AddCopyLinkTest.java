@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class AddCopyLinkTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new AddCopyLink());
+    }
+
+    @Test
+    void addsLinkAndSyntaxDirective() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        WORKDIR /src
+                        COPY . .
+                        RUN go build -o /out/app
+                        FROM gcr.io/distroless/static
+                        COPY --from=build /out/app /app
+                        ADD --chown=65532:65532 config.yaml /etc/app/
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1
+                        FROM golang:1.22 AS build
+                        WORKDIR /src
+                        COPY --link . .
+                        RUN go build -o /out/app
+                        FROM gcr.io/distroless/static
+                        COPY --link --from=build /out/app /app
+                        ADD --link --chown=65532:65532 config.yaml /etc/app/
+                        """
+                )
+        );
+    }
+
+    @Test
+    void updatesOldSyntaxVersion() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        # syntax=docker/dockerfile:1.3
+                        FROM alpine:3.20
+                        COPY app /usr/local/bin/app
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1
+                        FROM alpine:3.20
+                        COPY --link app /usr/local/bin/app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsLabsChannel() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        # syntax=docker/dockerfile:1.3-labs
+                        FROM alpine:3.20
+                        COPY app /usr/local/bin/app
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1-labs
+                        FROM alpine:3.20
+                        COPY --link app /usr/local/bin/app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void oldSyntaxPinnedByDigestIsUnchanged() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        # syntax=docker/dockerfile:1.3-labs@sha256:42399d4635eddd7a9b8a24be879d2f9a930d0ed040a61324cfdf59ef1357b3b2
+                        FROM alpine:3.20
+                        COPY app /usr/local/bin/app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsNewerSyntaxVersion() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        # syntax=docker/dockerfile:1.7-labs
+                        FROM alpine:3.20
+                        COPY app /usr/local/bin/app
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1.7-labs
+                        FROM alpine:3.20
+                        COPY --link app /usr/local/bin/app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void skipsUnsafeCopies() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM debian:bookworm
+                        RUN useradd app && ln -s /opt/app-1.2 /opt/app
+                        COPY --chown=app:app settings.conf /home/app/
+                        COPY plugins/ /opt/app/plugins/
+                        COPY app.pid /var/run/app.pid
+                        COPY --link lib.so /usr/lib/
+                        COPY run.sh $HOME/run.sh
+                        """
+                )
+        );
+    }
+
+    @Test
+    void otherFrontendIsUnchanged() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        # syntax=example.com/custom/frontend:1
+                        FROM alpine:3.20
+                        COPY app /usr/local/bin/app
+                        """
+                )
+        );
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class AddRunCacheMountTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new AddRunCacheMount());
+    }
+
+    @Test
+    void aptWithLockedSharing() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM debian:bookworm
+                        RUN apt-get update && apt-get install -y curl
+                        """,
+                        """
+                        FROM debian:bookworm
+                        RUN --mount=type=cache,target=/var/cache/apt,sharing=locked --mount=type=cache,target=/var/lib/apt,sharing=locked apt-get update && apt-get install -y curl
+                        """
+                )
+        );
+    }
+
+    @Test
+    void languageManagers() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        RUN go mod download
+                        RUN go build -o /out/app
+                        FROM node:20 AS web
+                        RUN npm ci
+                        RUN npm run build
+                        FROM maven:3-eclipse-temurin-21
+                        RUN mvn -B package
+                        """,
+                        """
+                        FROM golang:1.22 AS build
+                        RUN --mount=type=cache,target=/go/pkg/mod --mount=type=cache,target=/root/.cache/go-build go mod download
+                        RUN --mount=type=cache,target=/go/pkg/mod --mount=type=cache,target=/root/.cache/go-build go build -o /out/app
+                        FROM node:20 AS web
+                        RUN --mount=type=cache,target=/root/.npm npm ci
+                        RUN npm run build
+                        FROM maven:3-eclipse-temurin-21
+                        RUN --mount=type=cache,target=/root/.m2/repository mvn -B package
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsExistingMountsAndContinuations() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM python:3.12
+                        RUN --mount=type=bind,source=requirements.txt,target=/tmp/requirements.txt \\
+                            pip install -r /tmp/requirements.txt
+                        RUN --mount=type=cache,target=/root/.cache/pip/ pip install uv
+                        """,
+                        """
+                        FROM python:3.12
+                        RUN --mount=type=cache,target=/root/.cache/pip --mount=type=bind,source=requirements.txt,target=/tmp/requirements.txt \\
+                            pip install -r /tmp/requirements.txt
+                        RUN --mount=type=cache,target=/root/.cache/pip/ pip install uv
+                        """
+                )
+        );
+    }
+
+    @Test
+    void skipsHomeDirectoryCachesForOtherUsers() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20
+                        USER node
+                        RUN npm ci
+                        """
+                )
+        );
+    }
+
+    @Test
+    void ownsCachesByNumericUser() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22
+                        USER 1000:1000
+                        RUN go mod download
+                        """,
+                        """
+                        FROM golang:1.22
+                        USER 1000:1000
+                        RUN --mount=type=cache,target=/go/pkg/mod,uid=1000,gid=1000 go mod download
+                        """
+                )
+        );
+    }
+
+    @Test
+    void skipsCachesForNamedUser() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22
+                        USER app
+                        RUN go mod download
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsBuildToolConfiguration() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM maven:3-eclipse-temurin-21
+                        COPY settings.xml /root/.m2/settings.xml
+                        RUN mvn -B package
+                        FROM gradle:8-jdk21
+                        COPY gradle.properties /root/.gradle/gradle.properties
+                        RUN --mount=type=cache,target=/root/.gradle/caches ./gradlew build
+                        """,
+                        """
+                        FROM maven:3-eclipse-temurin-21
+                        COPY settings.xml /root/.m2/settings.xml
+                        RUN --mount=type=cache,target=/root/.m2/repository mvn -B package
+                        FROM gradle:8-jdk21
+                        COPY gradle.properties /root/.gradle/gradle.properties
+                        RUN --mount=type=cache,target=/root/.gradle/wrapper --mount=type=cache,target=/root/.gradle/caches ./gradlew build
+                        """
+                )
+        );
+    }
+}
@@ -109,4 +109,42 @@ class AsDockerfileTest implements RewriteTest {
                 )
         );
     }
+
+    @Test
+    void leavesNonDockerfileContentAsPlainText() {
+        rewriteRun(
+                spec -> spec.recipe(new AsDockerfile("**/*.yml")),
+                text(
+                        """
+                        from: alpine:latest
+                        run: echo hello
+                        """,
+                        spec -> spec.path(".github/workflows/build.yml")
+                )
+        );
+    }
+
+    @Test
+    void loadPlainTextWithLeadingCommentsAndDirective() {
+        rewriteRun(
+                spec -> spec.recipe(new AsDockerfile("**/*.build"))
+                        .afterRecipe(after -> assertThat(after.getChangeset().getAllResults().get(0).getAfter())
+                                .isInstanceOf(Docker.Document.class)),
+                text(
+                        """
+                        # syntax=docker/dockerfile:1
+
+                        # build image
+                        FROM alpine:latest
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1
+
+                        # build image
+                        FROM alpine:latest
+                        """,
+                        spec -> spec.path("build/Dockerfile.build")
+                )
+        );
+    }
 }
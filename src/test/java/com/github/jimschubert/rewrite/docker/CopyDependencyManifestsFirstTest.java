@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static org.openrewrite.test.SourceSpecs.text;
+
+class CopyDependencyManifestsFirstTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new CopyDependencyManifestsFirst());
+    }
+
+    @Test
+    void copyPackageJsonBeforeNpmCi() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20
+                        WORKDIR /app
+                        COPY . .
+                        RUN npm ci
+                        RUN npm run build
+                        """,
+                        """
+                        FROM node:20
+                        WORKDIR /app
+                        COPY package.json package-lock.json* ./
+                        RUN npm ci
+                        COPY . .
+                        RUN npm run build
+                        """
+                )
+        );
+    }
+
+    @Test
+    void copyRequirementsWithOptionsAtEndOfFile() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM python:3.12
+                        WORKDIR /srv
+                        COPY --chown=app . /srv
+                        ENV PIP_NO_CACHE_DIR=1
+                        RUN pip install -r requirements.txt -r requirements-dev.txt
+                        """,
+                        """
+                        FROM python:3.12
+                        WORKDIR /srv
+                        COPY --chown=app requirements.txt requirements-dev.txt /srv/
+                        ENV PIP_NO_CACHE_DIR=1
+                        RUN pip install -r requirements.txt -r requirements-dev.txt
+                        COPY --chown=app . /srv
+                        """
+                )
+        );
+    }
+
+    @Test
+    void buildStageOfMultiStageBuild() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        WORKDIR /src
+                        COPY ./ ./
+                        RUN go mod download
+                        RUN go build -o /out/app
+                        FROM alpine:3.19
+                        COPY --from=build /out/app /app
+                        """,
+                        """
+                        FROM golang:1.22 AS build
+                        WORKDIR /src
+                        COPY go.mod go.sum* ./
+                        RUN go mod download
+                        COPY ./ ./
+                        RUN go build -o /out/app
+                        FROM alpine:3.19
+                        COPY --from=build /out/app /app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void installAndBuildInOneRun() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20
+                        COPY . .
+                        RUN npm ci && npm run build
+                        """
+                )
+        );
+    }
+
+    @Test
+    void manifestsAlreadyCopied() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20
+                        COPY package*.json ./
+                        COPY . .
+                        RUN npm ci
+                        """
+                )
+        );
+    }
+
+    @Test
+    void copyPomOfSingleModuleProject() {
+        rewriteRun(
+                text(
+                        """
+                        <project>
+                          <artifactId>app</artifactId>
+                        </project>
+                        """,
+                        spec -> spec.path("pom.xml")
+                ),
+                dockerfile(
+                        """
+                        FROM maven:3.9-eclipse-temurin-21
+                        WORKDIR /build
+                        COPY . .
+                        RUN mvn -B dependency:go-offline
+                        RUN mvn -B -o package
+                        """,
+                        """
+                        FROM maven:3.9-eclipse-temurin-21
+                        WORKDIR /build
+                        COPY pom.xml ./
+                        RUN mvn -B dependency:go-offline
+                        COPY . .
+                        RUN mvn -B -o package
+                        """,
+                        spec -> spec.path("Dockerfile")
+                )
+        );
+    }
+
+    @Test
+    void multiModuleMavenProject() {
+        rewriteRun(
+                text(
+                        """
+                        <project>
+                          <modules>
+                            <module>core</module>
+                          </modules>
+                        </project>
+                        """,
+                        spec -> spec.path("service/pom.xml")
+                ),
+                dockerfile(
+                        """
+                        FROM maven:3.9-eclipse-temurin-21
+                        COPY . .
+                        RUN mvn -B dependency:go-offline
+                        """,
+                        spec -> spec.path("service/Dockerfile")
+                ),
+                dockerfile(
+                        """
+                        FROM maven:3.9-eclipse-temurin-21
+                        COPY . .
+                        RUN mvn -B dependency:go-offline
+                        """,
+                        spec -> spec.path("unknown/Dockerfile")
+                )
+        );
+    }
+
+    @Test
+    void goModulesWithLocalSources() {
+        rewriteRun(
+                text(
+                        """
+                        go 1.22
+
+                        use ./api
+                        """,
+                        spec -> spec.path("workspace/go.work")
+                ),
+                dockerfile(
+                        """
+                        FROM golang:1.22
+                        COPY . .
+                        RUN go mod download
+                        """,
+                        spec -> spec.path("workspace/Dockerfile")
+                ),
+                text(
+                        """
+                        module example.com/app
+
+                        replace example.com/lib => ./lib
+                        """,
+                        spec -> spec.path("app/go.mod")
+                ),
+                dockerfile(
+                        """
+                        FROM golang:1.22
+                        COPY . .
+                        RUN go mod download
+                        """,
+                        spec -> spec.path("app/Dockerfile")
+                )
+        );
+    }
+
+    @Test
+    void cargoNeedsSourcesToFetch() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM rust:1.79
+                        COPY . .
+                        RUN cargo fetch
+                        RUN cargo build --release
+                        """
+                )
+        );
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class CrossCompileBuildStagesTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new CrossCompileBuildStages());
+    }
+
+    @Test
+    void crossCompilesGoBuilder() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        WORKDIR /src
+                        COPY . .
+                        RUN CGO_ENABLED=0 go build -o /out/app ./cmd/app
+                        FROM gcr.io/distroless/static
+                        COPY --from=build /out/app /app
+                        ENTRYPOINT ["/app"]
+                        """,
+                        """
+                        FROM --platform=$BUILDPLATFORM golang:1.22 AS build
+                        ARG TARGETOS TARGETARCH
+                        WORKDIR /src
+                        COPY . .
+                        RUN CGO_ENABLED=0 GOOS=$TARGETOS GOARCH=$TARGETARCH go build -o /out/app ./cmd/app
+                        FROM gcr.io/distroless/static
+                        COPY --from=build /out/app /app
+                        ENTRYPOINT ["/app"]
+                        """
+                )
+        );
+    }
+
+    @Test
+    void buildsPortableOutputOnBuildPlatform() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM maven:3.9-eclipse-temurin-21 AS build
+                        COPY . /src
+                        RUN mvn -f /src/pom.xml package
+                        FROM build AS test
+                        RUN mvn -f /src/pom.xml verify
+                        FROM eclipse-temurin:21-jre
+                        COPY --from=build /src/target/app.jar /app.jar
+                        """,
+                        """
+                        FROM --platform=$BUILDPLATFORM maven:3.9-eclipse-temurin-21 AS build
+                        COPY . /src
+                        RUN mvn -f /src/pom.xml package
+                        FROM build AS test
+                        RUN mvn -f /src/pom.xml verify
+                        FROM eclipse-temurin:21-jre
+                        COPY --from=build /src/target/app.jar /app.jar
+                        """
+                )
+        );
+    }
+
+    @Test
+    void leavesNativeAndRuntimeStagesOnTargetPlatform() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM rust:1.79 AS rust
+                        RUN cargo build --release
+                        FROM node:20 AS web
+                        RUN npm ci && npm run build
+                        FROM --platform=linux/amd64 golang:1.22 AS tools
+                        RUN go build -o /out/tool .
+                        FROM node:20-slim
+                        COPY --from=rust /target/release/app /usr/local/bin/app
+                        COPY --from=web /app/node_modules /app/node_modules
+                        COPY --from=tools /out/tool /usr/local/bin/tool
+                        """
+                )
+        );
+    }
+
+    @Test
+    void buildsNodeOutputOnBuildPlatform() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20 AS web
+                        WORKDIR /app
+                        COPY . .
+                        RUN npm ci && npm run build
+                        FROM nginx:1.27
+                        COPY --from=web /app/dist /usr/share/nginx/html
+                        """,
+                        """
+                        FROM --platform=$BUILDPLATFORM node:20 AS web
+                        WORKDIR /app
+                        COPY . .
+                        RUN npm ci && npm run build
+                        FROM nginx:1.27
+                        COPY --from=web /app/dist /usr/share/nginx/html
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsNodeStagesWhoseInstallDirectoryIsCopied() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20 AS deps
+                        WORKDIR /app
+                        COPY package.json package-lock.json ./
+                        RUN npm ci
+                        FROM node:20 AS tools
+                        WORKDIR /opt/tools
+                        RUN npm install -g typescript
+                        FROM node:20-slim
+                        COPY --from=deps /app /app
+                        RUN --mount=type=bind,from=tools,target=/tools ls /tools
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsGoBuildsWhichMayUseCgo() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        WORKDIR /src
+                        COPY . .
+                        RUN go build -o /out/app ./cmd/app
+                        FROM debian:bookworm-slim
+                        COPY --from=build /out/app /app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void crossCompilesWithCgoDisabledByEnv() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        ENV CGO_ENABLED=0
+                        RUN go build -o /out/app .
+                        FROM scratch
+                        COPY --from=build /out/app /app
+                        """,
+                        """
+                        FROM --platform=$BUILDPLATFORM golang:1.22 AS build
+                        ARG TARGETOS TARGETARCH
+                        ENV CGO_ENABLED=0
+                        RUN GOOS=$TARGETOS GOARCH=$TARGETARCH go build -o /out/app .
+                        FROM scratch
+                        COPY --from=build /out/app /app
+                        """
+                )
+        );
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import com.github.jimschubert.rewrite.docker.tree.TokenIndex;
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DockerPreconditionsTest {
+    private static Docker.Document parse(String dockerfile) {
+        return (Docker.Document) DockerParser.builder().build().parse(dockerfile).findFirst().orElseThrow();
+    }
+
+    private static boolean passes(TreeVisitor<?, ExecutionContext> check, Tree tree) {
+        return check.visit(tree, new InMemoryExecutionContext()) != tree;
+    }
+
+    @Test
+    void parserAttachesTokenIndex() {
+        Docker.Document doc = parse("FROM alpine:3.19 AS build\nRUN --mount=type=cache,target=/root/.m2 mvn package\n");
+
+        TokenIndex index = doc.getMarkers().findFirst(TokenIndex.class).orElseThrow();
+        assertThat(index.isCurrent(doc)).isTrue();
+        assertThat(index.mightContainToken("alpine:3.19")).isTrue();
+        assertThat(index.mightContainSubstring("--mount")).isTrue();
+        assertThat(index.mightContainSubstring("ubuntu")).isFalse();
+    }
+
+    @Test
+    void mayMatchRejectsDocumentsWithoutRequiredSubstrings() {
+        assertThat(passes(DockerPreconditions.mayMatch("old.*"), parse("FROM oldImage:latest\n"))).isTrue();
+        assertThat(passes(DockerPreconditions.mayMatch("old.*"), parse("FROM doNotTouch\n"))).isFalse();
+    }
+
+    @Test
+    void mayMatchWithoutRequiredSubstringsAlwaysPasses() {
+        assertThat(passes(DockerPreconditions.mayMatch(".*"), parse("FROM alpine\n"))).isTrue();
+        assertThat(passes(DockerPreconditions.mayMatch("alpine|debian"), parse("FROM ubuntu\n"))).isTrue();
+    }
+
+    @Test
+    void mayContainTokensMatchesOptionKeys() {
+        Docker.Document doc = parse("RUN --mount=type=cache,target=/var/cache/apt apt-get update\n");
+        assertThat(passes(DockerPreconditions.mayContainTokens("mount", "apt-get"), doc)).isTrue();
+        assertThat(passes(DockerPreconditions.mayContainTokens("mount", "yum"), doc)).isFalse();
+    }
+
+    @Test
+    void staleIndexFallsBackToTree() {
+        Docker.Document doc = parse("FROM alpine:latest\n");
+        Docker.Document modified = (Docker.Document) new DockerIsoVisitor<ExecutionContext>() {
+            @Override
+            public Docker.From visitFrom(Docker.From from, ExecutionContext ctx) {
+                return from.image("ubuntu");
+            }
+        }.visit(doc, new InMemoryExecutionContext());
+
+        assertThat(modified).isNotSameAs(doc);
+        assertThat(modified.getMarkers().findFirst(TokenIndex.class).orElseThrow().isCurrent(modified)).isFalse();
+        assertThat(passes(DockerPreconditions.mayMatch("ubuntu.*"), modified)).isTrue();
+        assertThat(passes(DockerPreconditions.mayMatch("alpine.*"), modified)).isFalse();
+    }
+
+    @Test
+    void containsTextChecksPrintedSource() {
+        Docker.Document doc = parse("FROM alpine:latest\nENV JAVA_HOME=/usr/lib/jvm/java-17\n");
+        assertThat(passes(DockerPreconditions.containsText("JAVA_HOME=/usr"), doc)).isTrue();
+        assertThat(passes(DockerPreconditions.containsText("java-21"), doc)).isFalse();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Dockerignore;
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RewriteTest;
+
+import java.nio.file.Paths;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerignore;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DockerignoreParserTest implements RewriteTest {
+
+    @Test
+    void roundTrip() {
+        rewriteRun(
+                dockerignore(
+                        """
+                        # build output
+                        target/
+                          *.log\t
+
+                        !important.log
+                          # not a comment
+                        """,
+                        spec -> spec.afterRecipe(doc -> {
+                            assertThat(doc.getEntries()).hasSize(6);
+                            assertThat(doc.getEntries().get(0)).isInstanceOf(Dockerignore.Comment.class);
+                            assertThat(doc.getEntries().get(3)).isInstanceOf(Dockerignore.Blank.class);
+                            assertThat(doc.getPatterns())
+                                    .extracting(Dockerignore.Pattern::getText)
+                                    .containsExactly("target/", "*.log", "!important.log", "# not a comment");
+                            assertThat(doc.getPatterns().get(2).isNegated()).isTrue();
+                            assertThat(doc.getPatterns().get(0).getNormalized()).isEqualTo("target");
+                        })
+                )
+        );
+    }
+
+    @Test
+    void crlfAndMissingTrailingNewline() {
+        rewriteRun(
+                dockerignore(
+                        "*.md\r\n\r\nbuild",
+                        spec -> spec.afterRecipe(doc -> {
+                            assertThat(doc.getEntries()).extracting(Dockerignore.Entry::getEol)
+                                    .containsExactly("\r\n", "\r\n", "");
+                            assertThat(doc.getMatcher().isExcluded("build/libs/app.jar")).isTrue();
+                            assertThat(doc.getMatcher().isExcluded("src/README.md")).isFalse();
+                        })
+                )
+        );
+    }
+
+    @Test
+    void modifiedDocumentMatchesItsOwnPatterns() {
+        rewriteRun(
+                dockerignore(
+                        "*.md\nbuild\n",
+                        spec -> spec.afterRecipe(doc -> {
+                            assertThat(doc.getMatcher().isExcluded("README.md")).isTrue();
+                            Dockerignore.Document edited = doc.withEntries(doc.getEntries().subList(1, 2));
+                            assertThat(edited.getMatcher().isExcluded("README.md")).isFalse();
+                            assertThat(edited.getMatcher().isExcluded("build")).isTrue();
+                        })
+                )
+        );
+    }
+
+    @Test
+    void acceptsDockerfileSpecificIgnoreFiles() {
+        DockerignoreParser parser = DockerignoreParser.builder().build();
+        assertThat(parser.accept(Paths.get(".dockerignore"))).isTrue();
+        assertThat(parser.accept(Paths.get("docker/app.Dockerfile.dockerignore"))).isTrue();
+        assertThat(parser.accept(Paths.get("Dockerfile"))).isFalse();
+        assertThat(parser.accept(Paths.get(".gitignore"))).isFalse();
+    }
+}
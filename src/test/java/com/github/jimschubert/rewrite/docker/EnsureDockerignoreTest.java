@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.nio.file.Paths;
 
 import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerignore;
 import static org.openrewrite.test.SourceSpecs.text;
 
 class EnsureDockerignoreTest implements RewriteTest {
@@ -102,4 +103,58 @@ class EnsureDockerignoreTest implements RewriteTest {
                 )
         );
     }
+
+    @Test
+    void existingPatternsAreComparedAfterCleaning() {
+        rewriteRun(
+                spec -> spec.recipe(new EnsureDockerignore(".git,.idea/,*.log"))
+                        .expectedCyclesThatMakeChanges(0),
+                text(
+                        //language=dockerignore
+                        """
+                        /.git
+                        .idea
+                        ./*.log
+                        """,
+                        spec -> spec.path(Paths.get(".dockerignore"))
+                )
+        );
+    }
+
+    @Test
+    void negatedPatternDoesNotCountAsExcluded() {
+        rewriteRun(
+                spec -> spec.recipe(new EnsureDockerignore("*.md")),
+                text(
+                        //language=dockerignore
+                        """
+                        !*.md
+                        """,
+                        //language=dockerignore
+                        """
+                        !*.md
+                        *.md
+                        """,
+                        spec -> spec.path(Paths.get(".dockerignore"))
+                )
+        );
+    }
+
+    @Test
+    void appendsToDockerignoreDocument() {
+        rewriteRun(
+                spec -> spec.recipe(new EnsureDockerignore("*.md,*.test,.git")),
+                dockerignore(
+                        """
+                        # This is a comment
+                        *.test""",
+                        """
+                        # This is a comment
+                        *.test
+                        *.md
+                        .git
+                        """
+                )
+        );
+    }
 }
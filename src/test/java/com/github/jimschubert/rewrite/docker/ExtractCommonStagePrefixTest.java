@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class ExtractCommonStagePrefixTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new ExtractCommonStagePrefix());
+    }
+
+    @Test
+    void extractsSharedPrefixIgnoringFormatting() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM debian:bookworm AS test
+                        RUN apt-get update && apt-get install -y curl
+                        ENV LANG=C.UTF-8
+                        RUN ./run-tests.sh
+                        FROM debian:bookworm AS app
+                        RUN apt-get update \\
+                            && apt-get install -y curl
+                        ENV LANG=C.UTF-8
+                        COPY app /usr/local/bin/app
+                        """,
+                        """
+                        FROM debian:bookworm AS debian-base
+                        RUN apt-get update && apt-get install -y curl
+                        ENV LANG=C.UTF-8
+
+                        FROM debian-base AS test
+                        RUN ./run-tests.sh
+                        FROM debian-base AS app
+                        COPY app /usr/local/bin/app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void updatesNumericStageReferences() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22
+                        WORKDIR /src
+                        COPY go.mod go.sum ./
+                        RUN go mod download
+                        COPY . .
+                        RUN go build -o /out/api ./cmd/api
+                        FROM golang:1.22
+                        WORKDIR /src
+                        COPY go.mod go.sum ./
+                        RUN go mod download
+                        COPY . .
+                        RUN go build -o /out/worker ./cmd/worker
+                        FROM alpine:3.20
+                        COPY --from=0 /out/api /usr/local/bin/api
+                        COPY --from=1 /out/worker /usr/local/bin/worker
+                        """,
+                        """
+                        FROM golang:1.22 AS golang-base
+                        WORKDIR /src
+                        COPY go.mod go.sum ./
+                        RUN go mod download
+                        COPY . .
+
+                        FROM golang-base
+                        RUN go build -o /out/api ./cmd/api
+                        FROM golang-base
+                        RUN go build -o /out/worker ./cmd/worker
+                        FROM alpine:3.20
+                        COPY --from=1 /out/api /usr/local/bin/api
+                        COPY --from=2 /out/worker /usr/local/bin/worker
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsPrefixesWithoutWorkOrAfterArg() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20 AS deps
+                        ARG NPM_TOKEN
+                        RUN npm ci
+                        FROM node:20 AS test
+                        ARG NPM_TOKEN
+                        RUN npm ci
+                        FROM node:20-slim
+                        WORKDIR /app
+                        CMD ["node", "server.js"]
+                        FROM node:20-slim
+                        WORKDIR /app
+                        CMD ["node", "worker.js"]
+                        """
+                )
+        );
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static org.openrewrite.test.SourceSpecs.text;
+
+class GenerateBakeFileTest implements RewriteTest {
+
+    @Test
+    void hclWithContextsArgsAndCache() {
+        rewriteRun(
+                spec -> spec.recipe(new GenerateBakeFile(null, null, "registry.example.com/cache",
+                        "TOKEN=dev,UNUSED=1,IMAGE=golang:${GO_VERSION}")),
+                dockerfile(
+                        """
+                        ARG VERSION=1.0
+                        FROM base:latest
+                        ARG PORT=8080
+                        ARG TOKEN
+                        ARG IMAGE
+                        RUN make
+                        """,
+                        spec -> spec.path("api/Dockerfile")),
+                dockerfile(
+                        """
+                        FROM alpine:3.19
+                        ONBUILD COPY --from=tools /bin/tool /usr/local/bin/tool
+                        """,
+                        spec -> spec.path("base/Dockerfile")),
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        RUN go build -o /out/tool
+                        FROM alpine:3.19
+                        COPY --from=build /out/tool /bin/tool
+                        """,
+                        spec -> spec.path("tools/Dockerfile")),
+                text(
+                        null,
+                        """
+                        # Generated from the Dockerfiles in this repository. Build everything with `docker buildx bake`.
+                        group "default" {
+                          targets = ["api", "base", "tools"]
+                        }
+
+                        target "api" {
+                          context = "api"
+                          dockerfile = "Dockerfile"
+                          tags = ["api"]
+                          contexts = {
+                            base = "target:base"
+                            tools = "target:tools"
+                          }
+                          args = {
+                            TOKEN = "dev"
+                          }
+                          cache-from = ["type=registry,ref=registry.example.com/cache:api"]
+                          cache-to = ["type=registry,ref=registry.example.com/cache:api,mode=max"]
+                        }
+
+                        target "base" {
+                          context = "base"
+                          dockerfile = "Dockerfile"
+                          tags = ["base"]
+                          cache-from = ["type=registry,ref=registry.example.com/cache:base"]
+                          cache-to = ["type=registry,ref=registry.example.com/cache:base,mode=max"]
+                        }
+
+                        target "tools" {
+                          context = "tools"
+                          dockerfile = "Dockerfile"
+                          tags = ["tools"]
+                          cache-from = ["type=registry,ref=registry.example.com/cache:tools"]
+                          cache-to = ["type=registry,ref=registry.example.com/cache:tools,mode=max"]
+                        }
+                        """,
+                        spec -> spec.path("docker-bake.hcl"))
+        );
+    }
+
+    @Test
+    void json() {
+        rewriteRun(
+                spec -> spec.recipe(new GenerateBakeFile("json", "registry.example.com/{directory}", null, null)),
+                dockerfile("FROM registry.example.com/base:1.2", spec -> spec.path("app/Dockerfile")),
+                dockerfile("FROM alpine", spec -> spec.path("base/Dockerfile")),
+                text(
+                        null,
+                        """
+                        {
+                          "group": {
+                            "default": {
+                              "targets": ["app", "base"]
+                            }
+                          },
+                          "target": {
+                            "app": {
+                              "context": "app",
+                              "dockerfile": "Dockerfile",
+                              "tags": ["registry.example.com/app"],
+                              "contexts": {
+                                "registry.example.com/base:1.2": "target:base"
+                              }
+                            },
+                            "base": {
+                              "context": "base",
+                              "dockerfile": "Dockerfile",
+                              "tags": ["registry.example.com/base"]
+                            }
+                          }
+                        }
+                        """,
+                        spec -> spec.path("docker-bake.json"))
+        );
+    }
+
+    @Test
+    void regenerateExistingBakeFile() {
+        rewriteRun(
+                spec -> spec.recipe(new GenerateBakeFile(null, null, null, null)),
+                dockerfile(
+                        """
+                        FROM alpine
+                        ARG PREFIX=${HOME}/bin
+                        """,
+                        spec -> spec.path("Dockerfile")),
+                text(
+                        """
+                        target "old" {
+                          context = "."
+                        }
+                        """,
+                        """
+                        # Generated from the Dockerfiles in this repository. Build everything with `docker buildx bake`.
+                        group "default" {
+                          targets = ["root"]
+                        }
+
+                        target "root" {
+                          context = "."
+                          dockerfile = "Dockerfile"
+                        }
+                        """,
+                        spec -> spec.path("docker-bake.hcl"))
+        );
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LayerCacheKeysTest {
+    private static Docker.Document parse(String dockerfile) {
+        return (Docker.Document) DockerParser.builder().build().parse(dockerfile).findFirst().orElseThrow();
+    }
+
+    private static List<LayerCacheKeys.Invalidation> compare(String before, String after) {
+        return LayerCacheKeys.compute(parse(after)).invalidatedSince(LayerCacheKeys.compute(parse(before)));
+    }
+
+    @Test
+    void formattingDoesNotInvalidate() {
+        List<LayerCacheKeys.Invalidation> invalidations = compare(
+                """
+                FROM alpine:3.19
+                RUN apk add --no-cache curl git
+                """,
+                """
+                FROM alpine:3.19 AS base
+                RUN apk add   --no-cache \\
+                    curl git
+                """
+        );
+
+        assertThat(invalidations).hasSize(1);
+        assertThat(invalidations.get(0).getFirstInvalidated()).isNull();
+        assertThat(invalidations.get(0).getRebuiltLayers()).isZero();
+    }
+
+    @Test
+    void changedInstructionInvalidatesRestOfStageAndDependents() {
+        List<LayerCacheKeys.Invalidation> invalidations = compare(
+                """
+                FROM golang:1.22 AS build
+                WORKDIR /src
+                COPY go.mod go.sum ./
+                RUN go mod download
+                COPY . .
+                RUN go build -o /out/app
+                FROM alpine:3.19
+                COPY --from=build /out/app /app
+                RUN chmod +x /app
+                """,
+                """
+                FROM golang:1.22 AS build
+                WORKDIR /src
+                COPY go.mod go.sum ./
+                RUN go mod download
+                COPY . .
+                RUN go build -trimpath -o /out/app
+                FROM alpine:3.19
+                COPY --from=build /out/app /app
+                RUN chmod +x /app
+                """
+        );
+
+        LayerCacheKeys.Invalidation build = invalidations.get(0);
+        assertThat(build.getStage().getName()).isEqualTo("build");
+        assertThat(build.getStage().getFilesystemLayers()).isEqualTo(4);
+        assertThat(build.getFirstInvalidated().getIndex()).isEqualTo(4);
+        assertThat(build.getFirstInvalidated().getText()).isEqualTo("RUN go build -trimpath -o /out/app");
+        assertThat(build.getRebuiltLayers()).isEqualTo(1);
+
+        LayerCacheKeys.Invalidation release = invalidations.get(1);
+        assertThat(release.getStage().getName()).isEqualTo("1");
+        assertThat(release.getFirstInvalidated().getText()).isEqualTo("COPY --from=build /out/app /app");
+        assertThat(release.getRebuiltLayers()).isEqualTo(2);
+    }
+
+    @Test
+    void environmentInvalidatesLaterRuns() {
+        List<LayerCacheKeys.Invalidation> invalidations = compare(
+                """
+                FROM node:20
+                COPY package.json .
+                ENV NODE_ENV=development
+                RUN npm ci
+                COPY . .
+                """,
+                """
+                FROM node:20
+                COPY package.json .
+                ENV NODE_ENV=production
+                RUN npm ci
+                COPY . .
+                """
+        );
+
+        assertThat(invalidations.get(0).getFirstInvalidated().getText()).isEqualTo("RUN npm ci");
+        assertThat(invalidations.get(0).getRebuiltLayers()).isEqualTo(2);
+    }
+
+    @Test
+    void baseImageInvalidatesWholeStage() {
+        List<LayerCacheKeys.Invalidation> invalidations = compare(
+                """
+                FROM alpine:3.19
+                RUN apk add curl
+                """,
+                """
+                FROM alpine:3.20
+                RUN apk add curl
+                """
+        );
+
+        assertThat(invalidations.get(0).getFirstInvalidated().getIndex()).isZero();
+        assertThat(invalidations.get(0).getRebuiltLayers()).isEqualTo(1);
+    }
+
+    @Test
+    void sourceDigestInvalidatesCopy() {
+        Docker.Document document = parse(
+                """
+                FROM alpine:3.19
+                COPY config.yml /etc/app/
+                RUN apk add curl
+                """
+        );
+
+        LayerCacheKeys before = LayerCacheKeys.compute(document, copy -> "sha256:1");
+        LayerCacheKeys after = LayerCacheKeys.compute(document, copy -> "sha256:2");
+
+        assertThat(LayerCacheKeys.compute(document, copy -> "sha256:1").invalidatedSince(before).get(0).getFirstInvalidated()).isNull();
+        assertThat(after.invalidatedSince(before).get(0).getFirstInvalidated().getIndex()).isEqualTo(1);
+        assertThat(after.invalidatedSince(before).get(0).getRebuiltLayers()).isEqualTo(2);
+    }
+
+    @Test
+    void heredocContentInvalidates() {
+        List<LayerCacheKeys.Invalidation> invalidations = compare(
+                """
+                FROM python:3.12
+                RUN python3 <<EOF
+                if True:
+                    print("hello")
+                EOF
+                """,
+                """
+                FROM python:3.12
+                RUN python3 <<EOF
+                # greet
+                if True:
+                  print("hello")
+                EOF
+                """
+        );
+
+        assertThat(invalidations.get(0).getFirstInvalidated().getIndex()).isEqualTo(1);
+        assertThat(invalidations.get(0).getRebuiltLayers()).isEqualTo(1);
+    }
+}
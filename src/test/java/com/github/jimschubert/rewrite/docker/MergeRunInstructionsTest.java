@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class MergeRunInstructionsTest implements RewriteTest {
+    @Test
+    void mergeConsecutiveRuns() {
+        rewriteRun(
+                spec -> spec.recipe(new MergeRunInstructions(null)),
+                dockerfile(
+                        """
+                        FROM debian:bookworm
+                        RUN apt-get update
+                        # tools for the build
+                        RUN apt-get install -y curl git
+                        RUN rm -rf /var/lib/apt/lists/*
+                        COPY . /src
+                        """,
+                        """
+                        FROM debian:bookworm
+                        RUN apt-get update \\
+                            # tools for the build
+                            && apt-get install -y curl git \\
+                            && rm -rf /var/lib/apt/lists/*
+                        COPY . /src
+                        """
+                )
+        );
+    }
+
+    @Test
+    void respectEscapeDirective() {
+        rewriteRun(
+                spec -> spec.recipe(new MergeRunInstructions(null)),
+                dockerfile(
+                        """
+                        # escape=`
+                        FROM alpine:3.19
+                        RUN apk add curl
+                        RUN apk add git
+                        """,
+                        """
+                        # escape=`
+                        FROM alpine:3.19
+                        RUN apk add curl `
+                            && apk add git
+                        """
+                )
+        );
+    }
+
+    @Test
+    void onlyMergeRunsWithSameOptions() {
+        rewriteRun(
+                spec -> spec.recipe(new MergeRunInstructions(null)),
+                dockerfile(
+                        """
+                        FROM node:20
+                        RUN --mount=type=cache,target=/root/.npm npm ci
+                        RUN npm run build
+                        RUN --network=none npm test
+                        """
+                )
+        );
+    }
+
+    @Test
+    void shellStateEndsChain() {
+        rewriteRun(
+                spec -> spec.recipe(new MergeRunInstructions(null)),
+                dockerfile(
+                        """
+                        FROM alpine:3.19
+                        RUN mkdir /app
+                        RUN cd /app && touch a
+                        RUN touch b
+                        """,
+                        """
+                        FROM alpine:3.19
+                        RUN mkdir /app \\
+                            && cd /app && touch a
+                        RUN touch b
+                        """
+                )
+        );
+    }
+
+    @Test
+    void assignmentEndsChain() {
+        rewriteRun(
+                spec -> spec.recipe(new MergeRunInstructions(null)),
+                dockerfile(
+                        """
+                        FROM alpine:3.19
+                        RUN CC=clang make
+                        RUN VERSION=$(cat VERSION) && echo "$VERSION"
+                        RUN trap 'rm -f /tmp/lock' EXIT
+                        RUN echo "$VERSION"
+                        """,
+                        """
+                        FROM alpine:3.19
+                        RUN CC=clang make \\
+                            && VERSION=$(cat VERSION) && echo "$VERSION"
+                        RUN trap 'rm -f /tmp/lock' EXIT
+                        RUN echo "$VERSION"
+                        """
+                )
+        );
+    }
+
+    @Test
+    void trailingSeparatorEndsChain() {
+        rewriteRun(
+                spec -> spec.recipe(new MergeRunInstructions(null)),
+                dockerfile(
+                        """
+                        FROM alpine:3.19
+                        RUN echo start;
+                        RUN crond &
+                        RUN apk add curl
+                        RUN find /tmp -name '*.log' -exec rm {} \\;
+                        RUN apk add git
+                        """,
+                        """
+                        FROM alpine:3.19
+                        RUN echo start;
+                        RUN crond &
+                        RUN apk add curl \\
+                            && find /tmp -name '*.log' -exec rm {} \\; \\
+                            && apk add git
+                        """
+                )
+        );
+    }
+
+    @Test
+    void minimumRuns() {
+        rewriteRun(
+                spec -> spec.recipe(new MergeRunInstructions(3)),
+                dockerfile(
+                        """
+                        FROM alpine:3.19
+                        RUN apk add curl
+                        RUN apk add git
+                        COPY . /src
+                        RUN make
+                        """
+                )
+        );
+    }
+}
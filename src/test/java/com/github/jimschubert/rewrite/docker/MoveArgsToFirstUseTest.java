@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class MoveArgsToFirstUseTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new MoveArgsToFirstUse());
+    }
+
+    @Test
+    void movesArgsBelowUnrelatedInstructions() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        ARG BASE=alpine:3.20
+                        FROM ${BASE}
+                        ARG VERSION
+                        ARG COMMIT
+                        RUN apk add --no-cache git make
+                        COPY . /src
+                        # stamp the binary
+                        RUN make VERSION=${VERSION} COMMIT=$COMMIT
+                        LABEL version=$VERSION
+                        """,
+                        """
+                        ARG BASE=alpine:3.20
+                        FROM ${BASE}
+                        RUN apk add --no-cache git make
+                        COPY . /src
+                        ARG VERSION
+                        ARG COMMIT
+                        # stamp the binary
+                        RUN make VERSION=${VERSION} COMMIT=$COMMIT
+                        LABEL version=$VERSION
+                        """
+                )
+        );
+    }
+
+    @Test
+    void movesDependentArgsAndTheirComments() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM debian:bookworm
+                        ARG DEBIAN_FRONTEND=noninteractive
+                        ARG UNUSED
+                        # the release to download
+                        ARG RELEASE=1.0
+                        ARG URL=https://example.com/tool-${RELEASE}.tar.gz
+                        RUN apt-get update && apt-get install -y curl
+                        RUN curl -fsSL "$URL" | tar -xz -C /opt
+                        """,
+                        """
+                        FROM debian:bookworm
+                        ARG DEBIAN_FRONTEND=noninteractive
+                        ARG UNUSED
+                        RUN apt-get update && apt-get install -y curl
+                        # the release to download
+                        ARG RELEASE=1.0
+                        ARG URL=https://example.com/tool-${RELEASE}.tar.gz
+                        RUN curl -fsSL "$URL" | tar -xz -C /opt
+                        """
+                )
+        );
+    }
+
+    @Test
+    void argAlreadyBeforeItsUse() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM alpine:3.20
+                        RUN apk add --no-cache curl
+                        ARG VERSION
+                        # comments don't count as instructions in between
+                        RUN curl -fsSLO https://example.com/tool-${VERSION}
+                        """
+                )
+        );
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class ParallelizeStagesTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new ParallelizeStages());
+    }
+
+    @Test
+    void splitIndependentGroupsWithSharedBase() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20 AS build
+                        ENV CI=true
+                        WORKDIR /src/web
+                        COPY web/ .
+                        RUN npm ci && npm run build
+                        WORKDIR /src/api
+                        COPY api/ .
+                        RUN npm ci && npm run compile
+                        RUN npm test
+
+                        FROM nginx:alpine
+                        COPY --from=build /src/web/dist /usr/share/nginx/html
+                        """,
+                        """
+                        FROM node:20 AS build-base
+                        ENV CI=true
+
+                        FROM build-base AS build-web
+                        WORKDIR /src/web
+                        COPY web/ .
+                        RUN npm ci && npm run build
+
+                        FROM build-base AS build-api
+                        WORKDIR /src/api
+                        COPY api/ .
+                        RUN npm ci && npm run compile
+                        RUN npm test
+
+                        FROM build-base AS build
+                        COPY --from=build-web /src/web /src/web
+                        COPY --from=build-api /src/api /src/api
+                        WORKDIR /src/api
+
+                        FROM nginx:alpine
+                        COPY --from=build /src/web/dist /usr/share/nginx/html
+                        """
+                )
+        );
+    }
+
+    @Test
+    void splitFinalStage() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20 AS build
+                        WORKDIR /src/web
+                        RUN npm ci
+                        WORKDIR /src/api
+                        RUN npm ci
+                        """,
+                        """
+                        FROM node:20 AS build-web
+                        WORKDIR /src/web
+                        RUN npm ci
+
+                        FROM node:20 AS build-api
+                        WORKDIR /src/api
+                        RUN npm ci
+
+                        FROM node:20 AS build
+                        COPY --from=build-web /src/web /src/web
+                        COPY --from=build-api /src/api /src/api
+                        WORKDIR /src/api
+                        """
+                )
+        );
+    }
+
+    @Test
+    void numericReferencesAreNamed() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22
+                        WORKDIR /src/a
+                        COPY a/ .
+                        RUN go build -o out ./...
+                        WORKDIR /src/b
+                        COPY b/ .
+                        RUN go build -o out ./...
+
+                        FROM alpine
+                        COPY --from=0 /src/a/out /a
+                        """,
+                        """
+                        FROM golang:1.22 AS stage0-a
+                        WORKDIR /src/a
+                        COPY a/ .
+                        RUN go build -o out ./...
+
+                        FROM golang:1.22 AS stage0-b
+                        WORKDIR /src/b
+                        COPY b/ .
+                        RUN go build -o out ./...
+
+                        FROM golang:1.22 AS stage0
+                        COPY --from=stage0-a /src/a /src/a
+                        COPY --from=stage0-b /src/b /src/b
+                        WORKDIR /src/b
+
+                        FROM alpine
+                        COPY --from=stage0 /src/a/out /a
+                        """
+                )
+        );
+    }
+
+    @Test
+    void dependentGroupsAreNotSplit() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20
+                        WORKDIR /src/web
+                        RUN npm ci && npm run build
+                        WORKDIR /src/api
+                        RUN cp -r /src/web/dist public && npm ci
+                        """
+                )
+        );
+    }
+
+    @Test
+    void relativeReferencesAreNotSplit() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20
+                        WORKDIR /src/web
+                        RUN npm ci && npm run build
+                        WORKDIR /src/api
+                        RUN cp -r ../web/dist public && npm ci
+                        """
+                )
+        );
+    }
+
+    @Test
+    void globalInstallsAreNotSplit() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM debian:bookworm
+                        WORKDIR /opt/tools
+                        RUN apt-get update && apt-get install -y curl
+                        WORKDIR /src/app
+                        RUN curl -fsSLO https://example.com/app.tar.gz
+                        """
+                )
+        );
+    }
+
+    @Test
+    void userChangesAreNotSplit() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20
+                        USER node
+                        WORKDIR /home/node/web
+                        RUN npm ci
+                        WORKDIR /home/node/api
+                        RUN npm ci
+                        """
+                )
+        );
+    }
+
+    @Test
+    void relativeWorkdirIsResolved() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20 AS build
+                        WORKDIR /src/web
+                        RUN npm ci
+                        WORKDIR ../api
+                        RUN npm ci
+                        """,
+                        """
+                        FROM node:20 AS build-web
+                        WORKDIR /src/web
+                        RUN npm ci
+
+                        FROM node:20 AS build-api
+                        WORKDIR /src/api
+                        RUN npm ci
+
+                        FROM node:20 AS build
+                        COPY --from=build-web /src/web /src/web
+                        COPY --from=build-api /src/api /src/api
+                        WORKDIR /src/api
+                        """
+                )
+        );
+    }
+
+    @Test
+    void installsOutsideDirectoryAreNotSplit() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM maven:3.9-eclipse-temurin-21
+                        WORKDIR /src/lib
+                        RUN mvn -B install
+                        WORKDIR /src/app
+                        RUN mvn -B package
+                        """,
+                        spec -> spec.path("maven/Dockerfile")
+                ),
+                dockerfile(
+                        """
+                        FROM gcc:14
+                        WORKDIR /src/lib
+                        RUN make && make install
+                        WORKDIR /src/app
+                        RUN make
+                        """,
+                        spec -> spec.path("make/Dockerfile")
+                ),
+                dockerfile(
+                        """
+                        FROM node:20
+                        WORKDIR /src/lib
+                        RUN npm ci && npm link
+                        WORKDIR /src/app
+                        RUN npm ci
+                        """,
+                        spec -> spec.path("npm/Dockerfile")
+                )
+        );
+    }
+
+    @Test
+    void unknownCommandsAreNotSplit() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM debian:bookworm
+                        WORKDIR /src/a
+                        RUN ./configure && make
+                        WORKDIR /src/b
+                        RUN make
+                        """
+                )
+        );
+    }
+}
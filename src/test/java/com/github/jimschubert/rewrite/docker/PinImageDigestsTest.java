@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PinImageDigestsTest implements RewriteTest {
+    private static final String ALPINE = "sha256:1111111111111111111111111111111111111111111111111111111111111111";
+    private static final String NODE = "sha256:2222222222222222222222222222222222222222222222222222222222222222";
+    private static final String NODE_ARM64 = "sha256:3333333333333333333333333333333333333333333333333333333333333333";
+
+    @TempDir
+    Path directory;
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new PinImageDigests(directory.resolve("digests.json").toString(),
+                directory.resolve("cache").toString(), null, 2));
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(directory.resolve("digests.json"), """
+                {
+                  "alpine:3.20": "%s",
+                  "node:20": {"digest": "%s", "platforms": {"linux/arm64": "%s"}}
+                }
+                """.formatted(ALPINE, NODE, NODE_ARM64));
+    }
+
+    @Test
+    void pinsImagesKeepingTags() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM --platform=linux/arm64 node:20 AS web
+                        RUN npm ci
+                        FROM --platform=$BUILDPLATFORM node:20 AS tools
+                        FROM alpine:3.20
+                        COPY --from=web /app /app
+                        """,
+                        """
+                        FROM --platform=linux/arm64 node:20@%s AS web
+                        RUN npm ci
+                        FROM --platform=$BUILDPLATFORM node:20@%s AS tools
+                        FROM alpine:3.20@%s
+                        COPY --from=web /app /app
+                        """.formatted(NODE_ARM64, NODE, ALPINE)
+                )
+        );
+        // digests from a file must not be reused by later registry lookups
+        assertThat(directory.resolve("cache")).doesNotExist();
+    }
+
+    @Test
+    void leavesStagesScratchArgumentsAndPinnedImagesAlone() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        ARG PYTHON=3.12
+                        FROM alpine:3.20@sha256:4444444444444444444444444444444444444444444444444444444444444444 AS base
+                        FROM base
+                        FROM python:${PYTHON}
+                        FROM scratch
+                        """
+                )
+        );
+    }
+}
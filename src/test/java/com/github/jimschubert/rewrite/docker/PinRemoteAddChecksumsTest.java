@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class PinRemoteAddChecksumsTest implements RewriteTest {
+    @TempDir
+    Path mirror;
+
+    @TempDir
+    Path cache;
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new PinRemoteAddChecksums(mirror.toString(), cache.toString(), 2));
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(mirror.resolve("example.com/releases"));
+        Files.writeString(mirror.resolve("example.com/releases/tool.tar.gz"), "hello");
+        Files.writeString(mirror.resolve("example.com/releases/config.yaml"), "world");
+    }
+
+    @Test
+    void pinsEachRemoteSource() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM alpine:3.20 AS tools
+                        ADD https://example.com/releases/tool.tar.gz /tmp/
+                        FROM alpine:3.20
+                        ADD --chmod=644 https://example.com/releases/config.yaml /etc/tool/config.yaml
+                        ADD https://example.com/releases/tool.tar.gz /opt/
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1
+                        FROM alpine:3.20 AS tools
+                        ADD --checksum=sha256:2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824 https://example.com/releases/tool.tar.gz /tmp/
+                        FROM alpine:3.20
+                        ADD --checksum=sha256:486ea46224d1bb4fb680f34f7c9ad96a8f24ec88be73ea8e5a6c65260e9cb8a7 --chmod=644 https://example.com/releases/config.yaml /etc/tool/config.yaml
+                        ADD --checksum=sha256:2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824 https://example.com/releases/tool.tar.gz /opt/
+                        """
+                )
+        );
+    }
+
+    @Test
+    void leavesUnpinnableSourcesAlone() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        # syntax=docker/dockerfile:1.7
+                        FROM alpine:3.20
+                        ADD --checksum=sha256:0000000000000000000000000000000000000000000000000000000000000000 https://example.com/releases/tool.tar.gz /tmp/
+                        ADD https://example.com/releases/${VERSION}/tool.tar.gz /tmp/
+                        ADD https://github.com/example/tool.git#v1.0 /src
+                        ADD app.tar.gz /app/
+                        """
+                )
+        );
+    }
+}
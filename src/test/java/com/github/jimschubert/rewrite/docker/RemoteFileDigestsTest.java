@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RemoteFileDigestsTest {
+    @TempDir
+    Path cache;
+
+    @Test
+    void cachesDigestsByUrlAndEtag() throws IOException {
+        CountingResolver resolver = new CountingResolver("v1");
+        String url = "https://example.com/tool.tar.gz";
+
+        assertThat(new RemoteFileDigests(resolver, cache, 1).digest(url))
+                .isEqualTo("sha256:2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824");
+        assertThat(new RemoteFileDigests(resolver, cache, 1).digest(url))
+                .isEqualTo("sha256:2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824");
+        assertThat(resolver.downloads).hasValue(1);
+
+        resolver.etag = "v2";
+        new RemoteFileDigests(resolver, cache, 1).digest(url);
+        assertThat(resolver.downloads).hasValue(2);
+    }
+
+    @Test
+    void fetchesEachUrlOnceAndReportsFailures() {
+        CountingResolver resolver = new CountingResolver(null);
+        Map<String, RemoteFileDigests.Digest> digests = new RemoteFileDigests(resolver, null, 4).digest(List.of(
+                "https://example.com/a", "https://example.com/b", "https://example.com/a", "https://example.com/missing"));
+
+        assertThat(digests).containsOnlyKeys("https://example.com/a", "https://example.com/b", "https://example.com/missing");
+        assertThat(digests.get("https://example.com/b").getDigest()).startsWith("sha256:");
+        assertThat(digests.get("https://example.com/missing").getError()).isInstanceOf(NoSuchFileException.class);
+        assertThat(resolver.downloads).hasValue(2);
+    }
+
+    private static class CountingResolver implements RemoteFileResolver {
+        final AtomicInteger downloads = new AtomicInteger();
+        volatile String etag;
+
+        CountingResolver(String etag) {
+            this.etag = etag;
+        }
+
+        @Override
+        public String etag(String url) throws IOException {
+            if (url.endsWith("/missing")) {
+                throw new NoSuchFileException(url);
+            }
+            return etag;
+        }
+
+        @Override
+        public InputStream open(String url) {
+            downloads.incrementAndGet();
+            return new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
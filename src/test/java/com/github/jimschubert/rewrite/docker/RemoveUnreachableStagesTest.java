@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class RemoveUnreachableStagesTest implements RewriteTest {
+    @Test
+    void removeUnusedStageAndRenumber() {
+        rewriteRun(
+                spec -> spec.recipe(new RemoveUnreachableStages(null)),
+                dockerfile(
+                        """
+                        # syntax=docker/dockerfile:1
+                        ARG GO_VERSION=1.22
+                        # lint the sources
+                        FROM golangci/golangci-lint AS lint
+                        RUN golangci-lint run
+
+                        # build the binary
+                        FROM golang:${GO_VERSION}
+                        RUN go build -o /out/app
+
+                        # final image
+                        FROM alpine:3.19
+                        COPY --from=1 /out/app /app
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1
+                        ARG GO_VERSION=1.22
+
+                        # build the binary
+                        FROM golang:${GO_VERSION}
+                        RUN go build -o /out/app
+
+                        # final image
+                        FROM alpine:3.19
+                        COPY --from=0 /out/app /app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepStagesUsedThroughMountsAndBase() {
+        rewriteRun(
+                spec -> spec.recipe(new RemoveUnreachableStages(null)),
+                dockerfile(
+                        """
+                        FROM node:20 AS deps
+                        RUN npm ci
+                        FROM deps AS build
+                        RUN --mount=type=bind,from=assets,target=/assets npm run build
+                        FROM alpine AS assets
+                        RUN echo assets
+                        FROM nginx
+                        COPY --from=build /app/dist /usr/share/nginx/html
+                        """
+                )
+        );
+    }
+
+    @Test
+    void pruneForTarget() {
+        rewriteRun(
+                spec -> spec.recipe(new RemoveUnreachableStages("test")),
+                dockerfile(
+                        """
+                        FROM alpine AS base
+                        RUN apk add make
+                        FROM base AS test
+                        RUN make test
+                        FROM base AS release
+                        RUN make release
+                        """,
+                        """
+                        FROM alpine AS base
+                        RUN apk add make
+                        FROM base AS test
+                        RUN make test
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepStagesNamedByBuildArguments() {
+        rewriteRun(
+                spec -> spec.recipe(new RemoveUnreachableStages(null)),
+                dockerfile(
+                        """
+                        ARG TARGET=prod
+                        FROM alpine AS app-dev
+                        RUN echo dev
+                        FROM alpine AS app-prod
+                        RUN echo prod
+                        FROM app-${TARGET}
+                        RUN echo done
+                        """,
+                        spec -> spec.path("Dockerfile")
+                ),
+                dockerfile(
+                        """
+                        ARG BUILDER=gcc
+                        FROM gcc AS gcc
+                        RUN make
+                        FROM clang AS clang
+                        RUN make
+                        FROM alpine
+                        COPY --from=${BUILDER} /out/app /app
+                        """,
+                        spec -> spec.path("tools/Dockerfile")
+                )
+        );
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+
+class ReplaceCopyWithBindMountTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new ReplaceCopyWithBindMount());
+    }
+
+    @Test
+    void mountsFilesReadOnlyByNextRun() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM python:3.12-slim
+                        WORKDIR /app
+                        COPY requirements.txt .
+                        RUN pip install --no-cache-dir -r requirements.txt
+                        # fetch the model
+                        COPY scripts/fetch-model.sh /tmp/fetch-model.sh
+                        RUN sh /tmp/fetch-model.sh
+                        COPY main.py .
+                        CMD ["python", "main.py"]
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1
+                        FROM python:3.12-slim
+                        WORKDIR /app
+                        RUN --mount=type=bind,source=requirements.txt,target=/app/requirements.txt pip install --no-cache-dir -r requirements.txt
+                        # fetch the model
+                        RUN --mount=type=bind,source=scripts/fetch-model.sh,target=/tmp/fetch-model.sh sh /tmp/fetch-model.sh
+                        COPY main.py .
+                        CMD ["python", "main.py"]
+                        """
+                )
+        );
+    }
+
+    @Test
+    void mountsSourcesCompiledAndDiscarded() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        # syntax=docker/dockerfile:1.4
+                        FROM golang:1.22 AS build
+                        COPY . /src
+                        RUN cd /src && go build -o /out/app ./cmd/app
+                        FROM gcr.io/distroless/static
+                        COPY --from=build /out/app /app
+                        """,
+                        """
+                        # syntax=docker/dockerfile:1.4
+                        FROM golang:1.22 AS build
+                        RUN --mount=type=bind,source=.,target=/src,rw cd /src && go build -o /out/app ./cmd/app
+                        FROM gcr.io/distroless/static
+                        COPY --from=build /out/app /app
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsCopiesReadLater() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM node:20 AS build
+                        WORKDIR /app
+                        COPY package.json .
+                        RUN npm install
+                        COPY . /src
+                        RUN cd /src && make
+                        COPY entrypoint.sh /usr/local/bin/entrypoint.sh
+                        RUN chmod +x /usr/local/bin/entrypoint.sh
+                        COPY setup.sh /tmp/setup.sh
+                        RUN sh /tmp/setup.sh && rm /tmp/setup.sh
+                        CMD ["npm", "start"]
+                        FROM alpine:3.20
+                        COPY --from=build /src/dist /dist
+                        """
+                )
+        );
+    }
+
+    @Test
+    void keepsCopiesWhoseTargetIsNotKnown() {
+        rewriteRun(
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        COPY main.go .
+                        RUN go build -o /out/app main.go
+                        FROM python:3.12-slim
+                        WORKDIR /app
+                        COPY .config /app/
+                        RUN python -m app.configure
+                        COPY conf.d ./
+                        RUN ls conf.d
+                        """
+                )
+        );
+    }
+}
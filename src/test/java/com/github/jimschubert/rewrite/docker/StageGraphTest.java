@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker;
+
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StageGraphTest {
+    private static StageGraph graph(String dockerfile) {
+        return StageGraph.build((Docker.Document) DockerParser.builder().build().parse(dockerfile).findFirst().orElseThrow());
+    }
+
+    @Test
+    void dependenciesFromBaseCopyAndMount() {
+        StageGraph graph = graph("""
+                ARG GO_VERSION=1.22
+                FROM golang:${GO_VERSION} AS deps
+                RUN go mod download
+                FROM deps AS build
+                RUN --mount=type=cache,target=/root/.cache/go-build --mount=type=bind,from=assets,source=/,target=/assets go build
+                FROM node:20 AS assets
+                RUN npm run build
+                FROM gcr.io/distroless/static
+                COPY --from=BUILD /out/app /app
+                COPY --from=alpine:3.19 /etc/ssl /etc/ssl
+                """);
+
+        assertThat(graph.size()).isEqualTo(4);
+        assertThat(graph.get(0).getDependencies()).isEmpty();
+        assertThat(graph.get(1).getBase()).isEqualTo(0);
+        assertThat(graph.get(1).getDependencies()).containsExactly(0, 2);
+        assertThat(graph.get(2).getDependencies()).isEmpty();
+        assertThat(graph.get(3).getBase()).isNull();
+        assertThat(graph.get(3).getDependencies()).containsExactly(1);
+        assertThat(graph.get(3).getDisplayName()).isEqualTo("3");
+
+        assertThat(graph.topologicalOrder()).containsExactly(0, 2, 1, 3);
+        assertThat(graph.levels(3)).containsExactly(List.of(0, 2), List.of(1), List.of(3));
+        assertThat(graph.criticalPath(3)).containsExactly(0, 1, 3);
+    }
+
+    @Test
+    void unreachableStages() {
+        StageGraph graph = graph("""
+                FROM alpine AS base
+                FROM base AS test
+                RUN make test
+                FROM base AS release
+                COPY --from=0 /etc/os-release /
+                """);
+
+        assertThat(graph.reachableFrom(graph.getFinalStage())).containsExactly(0, 2);
+        assertThat(graph.unreachableFrom(graph.getFinalStage())).containsExactly(1);
+        assertThat(graph.find("TEST")).isEqualTo(1);
+        assertThat(graph.find("2")).isEqualTo(2);
+        assertThat(graph.find("missing")).isNull();
+        assertThat(graph.unreachableFrom(1)).containsExactly(2);
+    }
+
+    @Test
+    void fromOnlyNamesEarlierStages() {
+        StageGraph graph = graph("""
+                FROM app
+                FROM alpine AS app
+                """);
+
+        assertThat(graph.get(0).getBase()).isNull();
+        assertThat(graph.unreachableFrom(1)).containsExactly(0);
+    }
+
+    @Test
+    void cyclesAreLeftOut() {
+        StageGraph graph = graph("""
+                FROM alpine AS a
+                COPY --from=b /b /b
+                FROM alpine AS b
+                COPY --from=a /a /a
+                FROM alpine
+                """);
+
+        assertThat(graph.isAcyclic()).isFalse();
+        assertThat(graph.topologicalOrder()).containsExactly(2);
+        assertThat(graph.criticalPath(0)).isEmpty();
+        assertThat(graph.criticalPath(2)).containsExactly(2);
+    }
+}
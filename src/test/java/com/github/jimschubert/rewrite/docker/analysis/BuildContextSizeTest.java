@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.table.BuildContextReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.test.RewriteTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerignore;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BuildContextSizeTest implements RewriteTest {
+    @TempDir
+    Path root;
+
+    private void write(String path, int size) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+    }
+
+    @Test
+    void reportsContextSourcesAndDirectories() throws IOException {
+        write("src/Main.java", 100);
+        write("node_modules/a/b.js", 1000);
+        write("docs/readme.md", 10);
+
+        rewriteRun(
+                spec -> spec.recipe(new BuildContextSize(root.toString(), null))
+                        .dataTable(BuildContextReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new BuildContextReport.Row("Dockerfile", ".", BuildContextReport.EntryType.CONTEXT, ".", 1100, 2, null),
+                                new BuildContextReport.Row("Dockerfile", ".", BuildContextReport.EntryType.SOURCE, "src/", 100, 1, null),
+                                new BuildContextReport.Row("Dockerfile", ".", BuildContextReport.EntryType.SOURCE, ".", 1100, 2, null),
+                                new BuildContextReport.Row("Dockerfile", ".", BuildContextReport.EntryType.DIRECTORY, "node_modules", 1000, 1, "node_modules"),
+                                new BuildContextReport.Row("Dockerfile", ".", BuildContextReport.EntryType.DIRECTORY, "src", 100, 1, null)
+                        )),
+                dockerfile(
+                        """
+                        FROM alpine:latest AS build
+                        COPY src/ /app/src
+                        COPY ${CONFIG} /app/config
+                        FROM alpine:latest
+                        COPY --from=build /app /app
+                        COPY . /app
+                        """
+                ),
+                dockerignore("docs")
+        );
+    }
+
+    @Test
+    void dockerfileSpecificIgnoreWins() throws IOException {
+        write("app/src/Main.java", 100);
+        write("app/target/app.jar", 5000);
+        Files.write(root.resolve("app/.dockerignore"), "src".getBytes());
+        Files.write(root.resolve("app/Dockerfile.dockerignore"), "target".getBytes());
+
+        rewriteRun(
+                spec -> spec.recipe(new BuildContextSize(root.toString(), 1))
+                        .dataTable(BuildContextReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new BuildContextReport.Row("app/Dockerfile", "app", BuildContextReport.EntryType.CONTEXT, ".", 109, 3, null),
+                                new BuildContextReport.Row("app/Dockerfile", "app", BuildContextReport.EntryType.SOURCE, "src", 100, 1, null),
+                                new BuildContextReport.Row("app/Dockerfile", "app", BuildContextReport.EntryType.DIRECTORY, "src", 100, 1, null)
+                        )),
+                dockerfile(
+                        """
+                        FROM alpine:latest
+                        COPY src src
+                        """,
+                        spec -> spec.path("app/Dockerfile")
+                )
+        );
+    }
+}
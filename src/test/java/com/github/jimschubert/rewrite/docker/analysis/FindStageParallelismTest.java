@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.table.StageParallelismReport;
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FindStageParallelismTest implements RewriteTest {
+
+    @Test
+    void reportsParallelismOfFinalStage() {
+        rewriteRun(
+                spec -> spec.recipe(new FindStageParallelism(null))
+                        .dataTable(StageParallelismReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new StageParallelismReport.Row("Dockerfile", "3", 4, 4, "", 3, "deps -> build -> 3", 2, 4.0 / 3)
+                        )),
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS deps
+                        RUN go mod download
+                        FROM deps AS build
+                        RUN go build -o /out/app
+                        FROM node:20 AS assets
+                        RUN npm run build
+                        FROM gcr.io/distroless/static
+                        COPY --from=build /out/app /app
+                        COPY --from=assets /dist /static
+                        """)
+        );
+    }
+
+    @Test
+    void reportsUnreachableStagesOfTarget() {
+        rewriteRun(
+                spec -> spec.recipe(new FindStageParallelism("test"))
+                        .dataTable(StageParallelismReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new StageParallelismReport.Row("Dockerfile", "test", 3, 2, "release", 2, "base -> test", 1, 1.0)
+                        )),
+                dockerfile(
+                        """
+                        FROM alpine AS base
+                        FROM base AS test
+                        RUN make test
+                        FROM base AS release
+                        """)
+        );
+    }
+
+    @Test
+    void singleStage() {
+        rewriteRun(
+                spec -> spec.recipe(new FindStageParallelism(null))
+                        .dataTable(StageParallelismReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new StageParallelismReport.Row("Dockerfile", "0", 1, 1, "", 1, "0", 1, 1.0)
+                        )),
+                dockerfile("FROM alpine")
+        );
+    }
+}
@@ -15,6 +15,7 @@
 package com.github.jimschubert.rewrite.docker.analysis;
 
 import com.github.jimschubert.rewrite.docker.table.ImageUseReport;
+import com.github.jimschubert.rewrite.docker.table.ImageUsageSummary;
 import org.junit.jupiter.api.Test;
 import org.openrewrite.test.RewriteTest;
 import org.openrewrite.test.TypeValidation;
@@ -32,9 +33,9 @@ class ListImagesTest implements RewriteTest {
                         """
                         path,image,tag,digest,platform,alias,stageNumber
                         Dockerfile,alpine,latest,,,,0
-                        old.dockerfile,alpine,latest,,,build,0
                         nested/Dockerfile,alpine,latest,,linux/amd64,build,0
                         nested/Dockerfile,debian,latest,,,,1
+                        old.dockerfile,alpine,latest,,,build,0
                         """),
                 dockerfile(
                         "FROM alpine:latest",
@@ -50,4 +51,60 @@ class ListImagesTest implements RewriteTest {
         );
     }
 
+    @Test
+    void listImagesSpilledToDisk() {
+        rewriteRun(
+                spec -> spec.recipe(new ListImages(2))
+                        .typeValidationOptions(TypeValidation.builder().immutableScanning(false).build())
+                        .dataTableAsCsv(ImageUseReport.class,
+                        """
+                        path,image,tag,digest,platform,alias,stageNumber
+                        a/Dockerfile,golang,1.22,,,build,0
+                        a/Dockerfile,gcr.io/distroless/static,,sha256:0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef,,,1
+                        b/Dockerfile,alpine,latest,,,,0
+                        c/Dockerfile,debian,bookworm,,linux/arm64,,0
+                        c/Dockerfile,debian,bookworm-slim,,,,1
+                        """),
+                dockerfile(
+                        """
+                        FROM --platform=linux/arm64 debian:bookworm
+                        FROM debian:bookworm-slim
+                        """, spec -> spec.path("c/Dockerfile")),
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        FROM gcr.io/distroless/static@sha256:0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef
+                        """, spec -> spec.path("a/Dockerfile")),
+                dockerfile(
+                        "FROM alpine:latest",
+                        spec -> spec.path("b/Dockerfile"))
+        );
+    }
+
+    @Test
+    void summarizeImageUsage() {
+        rewriteRun(
+                spec -> spec.recipe(new ListImages())
+                        .typeValidationOptions(TypeValidation.builder().immutableScanning(false).build())
+                        .dataTableAsCsv(ImageUsageSummary.class,
+                        """
+                        image,tag,digest,platform,stages,files,firstStage,lastStage,imageStages,imageFiles
+                        alpine,3.19,,,3,2,0,1,4,2
+                        alpine,3.19,,linux/arm64,1,1,2,2,4,2
+                        debian,12,,,1,1,0,0,1,1
+                        """),
+                dockerfile(
+                        """
+                        FROM alpine:3.19 AS build
+                        FROM alpine:3.19
+                        FROM --platform=linux/arm64 alpine:3.19
+                        """, spec -> spec.path("a/Dockerfile")),
+                dockerfile(
+                        "FROM alpine:3.19",
+                        spec -> spec.path("b/Dockerfile")),
+                dockerfile(
+                        "FROM debian:12",
+                        spec -> spec.path("c/Dockerfile"))
+        );
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.table.BaseImageConsolidationReport;
+import com.github.jimschubert.rewrite.docker.table.ImagePrewarmReport;
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlanBaseImageConsolidationTest implements RewriteTest {
+    private static final String DIGEST = "sha256:0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Test
+    void consolidatesTagsByMajorVersionAndVariant() {
+        rewriteRun(
+                spec -> spec.recipe(new PlanBaseImageConsolidation())
+                        .dataTable(BaseImageConsolidationReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new BaseImageConsolidationReport.Row("node", "20", "-alpine",
+                                        "20-alpine3.20, 20-alpine3.19", "20-alpine3.20", 2, 2, 1, 1),
+                                new BaseImageConsolidationReport.Row("python", "3", "-slim",
+                                        "3.12-slim, 3.12.4-slim, 3.11-slim", "3.12-slim", 4, 3, 2, 2),
+                                new BaseImageConsolidationReport.Row("ubuntu", null, "latest",
+                                        "latest", "latest", 1, 1, 0, 0)
+                        ))
+                        .dataTable(ImagePrewarmReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new ImagePrewarmReport.Row(1, "python:3.12-slim", 4, 3, "3.12.4-slim, 3.11-slim"),
+                                new ImagePrewarmReport.Row(2, "node:20-alpine3.20", 2, 2, "20-alpine3.19"),
+                                new ImagePrewarmReport.Row(3, "gcr.io/distroless/static@" + DIGEST, 1, 1, null),
+                                new ImagePrewarmReport.Row(4, "ubuntu:latest", 1, 1, null)
+                        )),
+                dockerfile(
+                        """
+                        FROM python:3.12-slim AS build
+                        FROM python:3.12-slim
+                        """,
+                        spec -> spec.path("a/Dockerfile")),
+                dockerfile(
+                        "FROM python:3.11-slim",
+                        spec -> spec.path("b/Dockerfile")),
+                dockerfile(
+                        """
+                        FROM python:3.12.4-slim
+                        FROM node:20-alpine3.19 AS web
+                        FROM web AS dist
+                        FROM scratch
+                        """,
+                        spec -> spec.path("c/Dockerfile")),
+                dockerfile(
+                        """
+                        FROM node:20-alpine3.20
+                        FROM gcr.io/distroless/static@%s
+                        FROM ubuntu:latest
+                        """.formatted(DIGEST),
+                        spec -> spec.path("d/Dockerfile"))
+        );
+    }
+}
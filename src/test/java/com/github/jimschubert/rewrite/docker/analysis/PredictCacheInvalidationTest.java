@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.table.CacheInvalidationReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.test.RewriteTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PredictCacheInvalidationTest implements RewriteTest {
+    @TempDir
+    Path baseline;
+
+    @Test
+    void reportsFirstInvalidatedInstructionPerStage() throws IOException {
+        Files.writeString(baseline.resolve("Dockerfile"),
+                """
+                FROM python:3.12 AS deps
+                COPY requirements.txt .
+                RUN pip install -r requirements.txt
+                FROM deps
+                COPY . /app
+                CMD ["python", "/app/main.py"]
+                """);
+
+        rewriteRun(
+                spec -> spec.recipe(new PredictCacheInvalidation(baseline.toString(), null))
+                        .dataTable(CacheInvalidationReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new CacheInvalidationReport.Row("Dockerfile", "deps", 2, 2, "RUN pip install --no-cache-dir -r requirements.txt", null, 1),
+                                new CacheInvalidationReport.Row("Dockerfile", "1", 1, 0, "FROM deps", null, 1)
+                        )),
+                dockerfile(
+                        """
+                        FROM python:3.12 AS deps
+                        COPY requirements.txt .
+                        RUN pip install --no-cache-dir -r requirements.txt
+                        FROM deps
+                        COPY . /app
+                        CMD ["python", "/app/main.py"]
+                        """
+                )
+        );
+    }
+
+    @Test
+    void unchangedDockerfileIsCached() throws IOException {
+        String dockerfile = """
+                FROM alpine:3.19
+                RUN apk add curl
+                """;
+        Files.writeString(baseline.resolve("Dockerfile"), dockerfile);
+
+        rewriteRun(
+                spec -> spec.recipe(new PredictCacheInvalidation(baseline.toString(), null))
+                        .dataTable(CacheInvalidationReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new CacheInvalidationReport.Row("Dockerfile", "0", 1, null, null, null, 0)
+                        )),
+                dockerfile(dockerfile)
+        );
+    }
+
+    @Test
+    void newDockerfileIsFullyRebuilt() {
+        rewriteRun(
+                spec -> spec.recipe(new PredictCacheInvalidation(baseline.toString(), null))
+                        .dataTable(CacheInvalidationReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new CacheInvalidationReport.Row("Dockerfile", "0", 2, 0, "FROM alpine:3.19", null, 2)
+                        )),
+                dockerfile(
+                        """
+                        FROM alpine:3.19
+                        WORKDIR /app
+                        COPY . .
+                        RUN make
+                        """
+                )
+        );
+    }
+
+    @Test
+    void reportsChangedContextFiles(@TempDir Path current) throws IOException {
+        String dockerfile = """
+                FROM node:20
+                WORKDIR /app
+                COPY package.json package-lock.json ./
+                RUN npm ci
+                COPY src/ src/
+                RUN npm run build
+                """;
+        for (Path root : new Path[]{baseline, current}) {
+            Files.writeString(root.resolve("Dockerfile"), dockerfile);
+            Files.writeString(root.resolve("package.json"), "{}");
+            Files.writeString(root.resolve("package-lock.json"), "{}");
+            Files.createDirectories(root.resolve("src"));
+            Files.writeString(root.resolve("src/index.js"), "console.log('hello')");
+            Files.writeString(root.resolve("src/util.js"), "");
+        }
+        Files.writeString(current.resolve("src/index.js"), "console.log('hello, world')");
+        Files.writeString(current.resolve("src/extra.js"), "");
+
+        rewriteRun(
+                spec -> spec.recipe(new PredictCacheInvalidation(baseline.toString(), current.toString()))
+                        .dataTable(CacheInvalidationReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new CacheInvalidationReport.Row("Dockerfile", "0", 4, 3, "COPY src/ src/",
+                                        "src/extra.js, src/index.js", 2)
+                        )),
+                dockerfile(dockerfile)
+        );
+    }
+}
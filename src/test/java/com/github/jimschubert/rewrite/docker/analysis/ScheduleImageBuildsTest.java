@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.analysis;
+
+import com.github.jimschubert.rewrite.docker.table.BuildScheduleReport;
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RewriteTest;
+
+import static com.github.jimschubert.rewrite.docker.Assertions.dockerfile;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduleImageBuildsTest implements RewriteTest {
+
+    @Test
+    void wavesAndCriticalPath() {
+        rewriteRun(
+                spec -> spec.recipe(new ScheduleImageBuilds(null))
+                        .dataTable(BuildScheduleReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new BuildScheduleReport.Row("base/Dockerfile", "base", 1, "", true, false),
+                                new BuildScheduleReport.Row("tools/Dockerfile", "tools", 1, "", false, false),
+                                new BuildScheduleReport.Row("web/Dockerfile", "web", 1, "", false, false),
+                                new BuildScheduleReport.Row("api/Dockerfile", "api", 2, "base, tools", true, true),
+                                new BuildScheduleReport.Row("Dockerfile", null, 3, "api", true, false)
+                        )),
+                dockerfile(
+                        """
+                        FROM alpine:3.19
+                        ONBUILD COPY --from=tools /bin/tool /usr/local/bin/tool
+                        """,
+                        spec -> spec.path("base/Dockerfile")),
+                dockerfile(
+                        """
+                        FROM golang:1.22 AS build
+                        RUN go build -o /out/tool
+                        FROM alpine:3.19
+                        COPY --from=build /out/tool /bin/tool
+                        """,
+                        spec -> spec.path("tools/Dockerfile")),
+                dockerfile(
+                        """
+                        ARG NODE=node:20
+                        FROM ${NODE}
+                        RUN npm ci
+                        """,
+                        spec -> spec.path("web/Dockerfile")),
+                dockerfile(
+                        """
+                        FROM base:latest
+                        RUN make
+                        """,
+                        spec -> spec.path("api/Dockerfile")),
+                dockerfile(
+                        "FROM api",
+                        spec -> spec.path("Dockerfile"))
+        );
+    }
+
+    @Test
+    void namingConvention() {
+        rewriteRun(
+                spec -> spec.recipe(new ScheduleImageBuilds("registry.example.com/{file}"))
+                        .dataTable(BuildScheduleReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new BuildScheduleReport.Row("images/base.Dockerfile", "registry.example.com/base", 1, "", true, false),
+                                new BuildScheduleReport.Row("images/Dockerfile.app", "registry.example.com/app", 2, "registry.example.com/base", true, false)
+                        )),
+                dockerfile(
+                        "FROM registry.example.com/base@sha256:0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef",
+                        spec -> spec.path("images/Dockerfile.app")),
+                dockerfile(
+                        "FROM alpine",
+                        spec -> spec.path("images/base.Dockerfile"))
+        );
+    }
+
+    @Test
+    void unusedStagesAreNotDependencies() {
+        rewriteRun(
+                spec -> spec.recipe(new ScheduleImageBuilds(null))
+                        .dataTable(BuildScheduleReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new BuildScheduleReport.Row("app/Dockerfile", "app", 1, "", true, false),
+                                new BuildScheduleReport.Row("base/Dockerfile", "base", 1, "", false, false)
+                        )),
+                dockerfile(
+                        """
+                        FROM base AS debug
+                        FROM alpine
+                        """,
+                        spec -> spec.path("app/Dockerfile")),
+                dockerfile(
+                        "FROM alpine",
+                        spec -> spec.path("base/Dockerfile"))
+        );
+    }
+
+    @Test
+    void cycles() {
+        rewriteRun(
+                spec -> spec.recipe(new ScheduleImageBuilds(null))
+                        .dataTable(BuildScheduleReport.Row.class, rows -> assertThat(rows).containsExactly(
+                                new BuildScheduleReport.Row("c/Dockerfile", "c", 1, "", true, false),
+                                new BuildScheduleReport.Row("a/Dockerfile", "a", null, "b", false, false),
+                                new BuildScheduleReport.Row("b/Dockerfile", "b", null, "a", false, false)
+                        )),
+                dockerfile("FROM b", spec -> spec.path("a/Dockerfile")),
+                dockerfile("FROM a", spec -> spec.path("b/Dockerfile")),
+                dockerfile("FROM alpine", spec -> spec.path("c/Dockerfile"))
+        );
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import com.github.jimschubert.rewrite.docker.DockerParser;
+import com.github.jimschubert.rewrite.docker.tree.Docker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextSnapshotTest {
+    @TempDir
+    Path context;
+
+    private void write(String path, String content) throws IOException {
+        Path file = context.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    @Test
+    void listsFilesNotIgnored() throws IOException {
+        write("src/main.go", "package main");
+        write("src/vendor/lib.go", "package lib");
+        write(".git/HEAD", "ref: refs/heads/main");
+        write("README.md", "");
+
+        ContextSnapshot snapshot = ContextSnapshot.take(context, DockerignoreMatcher.compile(List.of(".git", "*.md")));
+
+        assertThat(snapshot.getFiles()).containsExactly("src/main.go", "src/vendor/lib.go");
+        assertThat(snapshot.match(List.of("src/*.go"))).containsExactly("src/main.go");
+        assertThat(snapshot.match(List.of("/src/vendor"))).containsExactly("src/vendor/lib.go");
+        assertThat(snapshot.match(List.of("."))).containsExactly("src/main.go", "src/vendor/lib.go");
+    }
+
+    @Test
+    void digestDependsOnNamesAndContents() throws IOException {
+        write("a.txt", "a");
+        write("b.txt", "b");
+        ContextSnapshot snapshot = ContextSnapshot.take(context, DockerignoreMatcher.EMPTY);
+        String digest = snapshot.digest(List.of("a.txt", "b.txt"));
+
+        assertThat(snapshot.digest(List.of("b.txt", "a.txt"))).isEqualTo(digest);
+        assertThat(snapshot.digest(List.of("a.txt"))).isNotEqualTo(digest);
+
+        write("b.txt", "changed");
+        assertThat(ContextSnapshot.take(context, DockerignoreMatcher.EMPTY).digest(List.of("a.txt", "b.txt")))
+                .isNotEqualTo(digest);
+    }
+
+    @Test
+    void largeFilesAreDigestedThroughMappedReads() throws IOException, NoSuchAlgorithmException {
+        byte[] content = new byte[1024 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        Files.write(context.resolve("large.bin"), content);
+
+        StringBuilder expected = new StringBuilder("sha256:");
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+            expected.append(String.format("%02x", b));
+        }
+
+        assertThat(ContextSnapshot.take(context, DockerignoreMatcher.EMPTY).digest("large.bin"))
+                .isEqualTo(expected.toString());
+    }
+
+    @Test
+    void sourcesCopiedFromStagesAreNotContextSources() {
+        Docker.Document dockerfile = (Docker.Document) DockerParser.builder().build().parse(
+                "FROM alpine AS build\nFROM alpine\nCOPY app.conf /etc/\nCOPY --FROM=build /out /out\n"
+        ).findFirst().orElseThrow();
+        List<Docker> copies = dockerfile.getStages().get(1).getChildren().stream()
+                .filter(Docker.Copy.class::isInstance)
+                .collect(Collectors.toList());
+        assertThat(ContextSnapshot.contextSources(copies.get(0))).containsExactly("app.conf");
+        assertThat(ContextSnapshot.contextSources(copies.get(1))).isNull();
+    }
+}
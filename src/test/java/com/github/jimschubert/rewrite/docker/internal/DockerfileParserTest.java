@@ -497,6 +497,23 @@ class DockerfileParserTest {
         assertEquals("sha256:1234567890abcdef1234567890abcdef1234567890abcdef1234567890abcdef", from.getDigest());
     }
 
+    @Test
+    void testFullFromWithTagAndDigest() {
+        DockerfileParser parser = new DockerfileParser();
+        Docker.Document doc = parser.parse(new ByteArrayInputStream("FROM alpine:3.20@sha256:1234567890abcdef1234567890abcdef1234567890abcdef1234567890abcdef".getBytes(StandardCharsets.UTF_8)));
+
+        Docker.Stage stage = assertSingleStageWithChildCount(doc, 1);
+
+        Docker.From from = (Docker.From) stage.getChildren().get(0);
+        assertLiteral(from.getImage(), Quoting.UNQUOTED, " ", "alpine", "");
+        assertEquals("3.20", from.getTag());
+        assertEquals("sha256:1234567890abcdef1234567890abcdef1234567890abcdef1234567890abcdef", from.getDigest());
+
+        Docker.From repinned = from.withDigest("sha256:fedcba0987654321fedcba0987654321fedcba0987654321fedcba0987654321");
+        assertEquals("3.20", repinned.getTag());
+        assertEquals(":3.20@sha256:fedcba0987654321fedcba0987654321fedcba0987654321fedcba0987654321", repinned.getVersion().getText());
+    }
+
     @Test
     void testShell() {
         DockerfileParser parser = new DockerfileParser();
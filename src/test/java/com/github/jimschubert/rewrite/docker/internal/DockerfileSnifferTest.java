@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DockerfileSnifferTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "FROM alpine:latest",
+            "from alpine:latest\n",
+            "\n\n   FROM alpine\n",
+            "# comment\n# another\nARG VERSION=1\nFROM alpine:${VERSION}\n",
+            "# syntax=docker/dockerfile:1\n",
+            "#escape=`\nFROM windows",
+            "﻿FROM alpine\n",
+            "RUN\techo hello\n"
+    })
+    void acceptsDockerfiles(String text) {
+        assertTrue(DockerfileSniffer.looksLikeDockerfile(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "# only a comment\n",
+            "from: alpine\n",
+            "name: build\non: [push]\n",
+            "{\"from\": \"alpine\"}",
+            "#!/bin/sh\necho hello\n",
+            "FROMAGE alpine\n"
+    })
+    void rejectsOtherContent(String text) {
+        assertFalse(DockerfileSniffer.looksLikeDockerfile(text));
+    }
+
+    @Test
+    void acceptsLongCommentHeader() {
+        String header = "# Copyright (c) 2025 Example\n".repeat(DockerfileSniffer.MAX_LINES);
+        assertTrue(DockerfileSniffer.looksLikeDockerfile(header + "FROM alpine\n"));
+        assertFalse(DockerfileSniffer.looksLikeDockerfile(header));
+    }
+}
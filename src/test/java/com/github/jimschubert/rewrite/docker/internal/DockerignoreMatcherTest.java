@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DockerignoreMatcherTest {
+
+    static Stream<TestCase> provideTestCases() {
+        return Stream.of(
+                new TestCase(List.of("*.md"), "README.md", true),
+                new TestCase(List.of("*.md"), "docs/README.md", false),
+                new TestCase(List.of("**/*.md"), "docs/README.md", true),
+                new TestCase(List.of("**/*.md"), "README.md", true),
+                new TestCase(List.of("node_modules"), "node_modules/a/b.js", true),
+                new TestCase(List.of("/node_modules/"), "node_modules/a/b.js", true),
+                new TestCase(List.of("foo/**"), "foo", false),
+                new TestCase(List.of("foo/**"), "foo/bar/baz", true),
+                new TestCase(List.of("**"), "any/thing", true),
+                new TestCase(List.of("a/**/b"), "a/b", true),
+                new TestCase(List.of("a/**/b"), "a/x/y/b/c", true),
+                new TestCase(List.of("a/**/b"), "a/x/y/c", false),
+                new TestCase(List.of("*.md", "!README.md"), "README.md", false),
+                new TestCase(List.of("*.md", "!README.md"), "CHANGES.md", true),
+                new TestCase(List.of("!README.md", "*.md"), "README.md", true),
+                new TestCase(List.of("temp?"), "temp1", true),
+                new TestCase(List.of("temp?"), "temp12", false),
+                new TestCase(List.of("[a-c]x"), "bx", true),
+                new TestCase(List.of("[^a-c]x"), "bx", false),
+                new TestCase(List.of("[^a-c]x"), "dx", true),
+                new TestCase(List.of("\\*x"), "*x", true),
+                new TestCase(List.of("\\*x"), "ax", false),
+                new TestCase(List.of("a*b*c"), "aXXbYYbc", true),
+                new TestCase(List.of("a*b*c"), "aXXbYYbd", false),
+                new TestCase(List.of("[a"), "[a", false),
+                new TestCase(List.of("./build/../dist"), "dist/x", true),
+                new TestCase(List.of("dist"), "./dist/x", true),
+                new TestCase(List.of("**/**/x"), "x", true),
+                new TestCase(List.of("# comment", "  ", "x"), "x", true),
+                new TestCase(List.of("# x"), "# x", false)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideTestCases")
+    @DisplayName("Test DockerignoreMatcher.isExcluded() with various patterns")
+    void testIsExcluded(TestCase testCase) {
+        assertEquals(testCase.expected, DockerignoreMatcher.compile(testCase.patterns).isExcluded(testCase.path));
+    }
+
+    @Test
+    void normalizesPatterns() {
+        DockerignoreMatcher matcher = DockerignoreMatcher.compile(List.of("/a//b/", "! c/./d", "../e"));
+        assertEquals(List.of("a/b", "!c/d", "../e"), matcher.getPatterns());
+        assertTrue(matcher.hasNegations());
+        assertFalse(DockerignoreMatcher.compile(List.of("a")).hasNegations());
+    }
+
+    @Test
+    void handlesPatternsWithManySegments() {
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < 70; i++) {
+            pattern.append("**/");
+        }
+        pattern.append("z");
+        assertTrue(DockerignoreMatcher.compile(List.of(pattern.toString())).isExcluded("q/z"));
+    }
+
+    static class TestCase {
+        List<String> patterns;
+        String path;
+        boolean expected;
+
+        TestCase(List<String> patterns, String path, boolean expected) {
+            this.patterns = patterns;
+            this.path = path;
+            this.expected = expected;
+        }
+
+        @Override
+        public String toString() {
+            return patterns + " " + path + " -> " + expected;
+        }
+    }
+}
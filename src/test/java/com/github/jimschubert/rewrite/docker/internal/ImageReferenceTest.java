@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageReferenceTest {
+    @Test
+    void officialDockerHubImage() {
+        assertThat(ImageReference.parse("alpine"))
+                .isEqualTo(new ImageReference("docker.io", "library/alpine", "latest", null));
+        assertThat(ImageReference.parse("alpine").getApiHost()).isEqualTo("registry-1.docker.io");
+    }
+
+    @Test
+    void registryWithPortTagAndDigest() {
+        ImageReference reference = ImageReference.parse("localhost:5000/team/app:1.2@sha256:abc");
+        assertThat(reference).isEqualTo(new ImageReference("localhost:5000", "team/app", "1.2", "sha256:abc"));
+        assertThat(reference.getApiHost()).isEqualTo("localhost:5000");
+    }
+
+    @Test
+    void userImageOnDockerHub() {
+        assertThat(ImageReference.parse("bitnami/redis:7.2"))
+                .isEqualTo(new ImageReference("docker.io", "bitnami/redis", "7.2", null));
+        assertThat(ImageReference.parse("ghcr.io/org/tool:v1"))
+                .isEqualTo(new ImageReference("ghcr.io", "org/tool", "v1", null));
+    }
+}
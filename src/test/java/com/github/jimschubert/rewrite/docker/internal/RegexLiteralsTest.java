@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RegexLiteralsTest {
+
+    static Stream<TestCase> provideTestCases() {
+        return Stream.of(
+                new TestCase("old.*", List.of("old")),
+                new TestCase(".*/ubuntu/.*", List.of("/ubuntu/")),
+                new TestCase("alpine:3\\.1[0-9]", List.of("alpine:3.1")),
+                new TestCase("colou?r", List.of("colo", "r")),
+                new TestCase("(foo)?bar", List.of("bar")),
+                new TestCase("(foo)+bar", List.of("foo", "bar")),
+                new TestCase("\\d+-jdk", List.of("-jdk")),
+                new TestCase("\\Qa.b\\E.*", List.of("a.b")),
+                new TestCase("(?:.*)(17)(?:(?=\\-jdk-slim|-openjdk).*)", List.of("17")),
+                new TestCase("alpine|debian", List.of()),
+                new TestCase("(?i)alpine", List.of()),
+                new TestCase(".*", List.of()),
+                new TestCase("", List.of()),
+                new TestCase("[unclosed", List.of())
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideTestCases")
+    @DisplayName("Test RegexLiterals.requiredSubstrings() with various patterns")
+    void testRequiredSubstrings(TestCase testCase) {
+        assertEquals(testCase.expected, RegexLiterals.requiredSubstrings(testCase.regex));
+    }
+
+    static class TestCase {
+        String regex;
+        List<String> expected;
+
+        TestCase(String regex, List<String> expected) {
+            this.regex = regex;
+            this.expected = expected;
+        }
+
+        @Override
+        public String toString() {
+            return regex;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2025 Jim Schubert
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jimschubert.rewrite.docker.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedAccumulatorTest {
+
+    @Test
+    void ordersByPathThenStageThenInsertion() {
+        StripedAccumulator<String> acc = new StripedAccumulator<>(1);
+        acc.add("b/Dockerfile", 1, "b1");
+        acc.add("b/Dockerfile", 0, "b0-first");
+        acc.add("a/Dockerfile", 2, "a2");
+        acc.add("b/Dockerfile", 0, "b0-second");
+        acc.add("a/Dockerfile", 0, "a0");
+
+        assertThat(acc.isEmpty()).isFalse();
+        assertThat(acc.drain()).containsExactly("a0", "a2", "b0-first", "b0-second", "b1");
+        assertThat(acc.isEmpty()).isTrue();
+        assertThat(acc.drain()).isEmpty();
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        int threads = 8;
+        int files = 500;
+        StripedAccumulator<String> acc = new StripedAccumulator<>(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int f = thread; f < files; f += threads) {
+                        String path = String.format("%04d/Dockerfile", f);
+                        for (int stage = 0; stage < 3; stage++) {
+                            acc.add(path, stage, path + "#" + stage);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (int f = 0; f < files; f++) {
+            String path = String.format("%04d/Dockerfile", f);
+            for (int stage = 0; stage < 3; stage++) {
+                expected.add(path + "#" + stage);
+            }
+        }
+        assertThat(acc.drain()).containsExactlyElementsOf(expected);
+    }
+
+    private static final StripedAccumulator.Codec<String> STRING_CODEC = new StripedAccumulator.Codec<>() {
+        @Override
+        public void write(DataOutput out, String row) throws IOException {
+            StripedAccumulator.writeString(out, row);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return StripedAccumulator.readString(in);
+        }
+    };
+
+    @Test
+    void spilledRowsAreMergedInOrder() {
+        StripedAccumulator<String> acc = new StripedAccumulator<>(2, 3, STRING_CODEC);
+        acc.add("c/Dockerfile", 0, "c0");
+        acc.add("a/Dockerfile", 1, "a1");
+        acc.add("b/Dockerfile", 0, "b0-first");
+        // spilled after three rows
+        acc.add("a/Dockerfile", 0, "a0");
+        acc.add("b/Dockerfile", 0, "b0-second");
+        acc.add("b/Dockerfile", 1, null);
+        // spilled again, one row left in memory
+        acc.add("a/Dockerfile", 2, "a2");
+
+        assertThat(acc.isEmpty()).isFalse();
+        assertThat(acc.drain()).containsExactly("a0", "a1", "a2", "b0-first", "b0-second", null, "c0");
+        assertThat(acc.isEmpty()).isTrue();
+
+        // usable again after draining
+        acc.add("d/Dockerfile", 0, "d0");
+        assertThat(acc.drain()).containsExactly("d0");
+    }
+
+    @Test
+    void concurrentAddsWithSpilling() throws Exception {
+        StripedAccumulator<String> acc = new StripedAccumulator<>(4, 64, STRING_CODEC);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int f = thread; f < 1000; f += 4) {
+                        acc.add(String.format("%04d", f), 0, String.valueOf(f));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<String> drained = new ArrayList<>();
+        acc.drain(drained::add);
+        assertThat(drained).hasSize(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(drained.get(i)).isEqualTo(String.valueOf(i));
+        }
+    }
+}